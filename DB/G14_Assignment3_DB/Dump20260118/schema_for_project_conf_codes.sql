@@ -25,8 +25,10 @@ DROP TABLE IF EXISTS `conf_codes`;
 CREATE TABLE `conf_codes` (
   `code` int NOT NULL,
   `in_use` tinyint NOT NULL DEFAULT '0',
+  `reserved_by` varchar(96) DEFAULT NULL,
   PRIMARY KEY (`code`),
-  KEY `idx_conf_inuse` (`in_use`)
+  KEY `idx_conf_inuse` (`in_use`),
+  KEY `idx_conf_codes_reserved_by` (`reserved_by`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -36,7 +38,7 @@ CREATE TABLE `conf_codes` (
 
 LOCK TABLES `conf_codes` WRITE;
 /*!40000 ALTER TABLE `conf_codes` DISABLE KEYS */;
-INSERT INTO `conf_codes` VALUES (437960,1),(600002,1),(600003,1),(600004,1),(600005,1),(600006,1),(600007,1),(600008,1),(600009,1),(600010,1),(600011,1),(600012,1),(600013,1),(600014,1),(600015,1),(600016,1),(600017,1),(600018,1),(600019,1),(600020,1),(600021,1),(600022,1),(600023,1),(600024,1),(600025,1),(600026,1),(600027,1),(600028,1),(600029,1),(600030,1),(600031,1),(600032,1),(600033,1),(600034,1),(600035,1),(600036,1),(600037,1),(600038,1),(600039,1),(600040,1),(600041,1),(600042,1),(600043,1),(600044,1),(600045,1),(600046,1),(600047,1),(600048,1),(600049,1),(600050,1),(600051,1),(600052,1);
+INSERT INTO `conf_codes` VALUES (437960,1,NULL),(600002,1,NULL),(600003,1,NULL),(600004,1,NULL),(600005,1,NULL),(600006,1,NULL),(600007,1,NULL),(600008,1,NULL),(600009,1,NULL),(600010,1,NULL),(600011,1,NULL),(600012,1,NULL),(600013,1,NULL),(600014,1,NULL),(600015,1,NULL),(600016,1,NULL),(600017,1,NULL),(600018,1,NULL),(600019,1,NULL),(600020,1,NULL),(600021,1,NULL),(600022,1,NULL),(600023,1,NULL),(600024,1,NULL),(600025,1,NULL),(600026,1,NULL),(600027,1,NULL),(600028,1,NULL),(600029,1,NULL),(600030,1,NULL),(600031,1,NULL),(600032,1,NULL),(600033,1,NULL),(600034,1,NULL),(600035,1,NULL),(600036,1,NULL),(600037,1,NULL),(600038,1,NULL),(600039,1,NULL),(600040,1,NULL),(600041,1,NULL),(600042,1,NULL),(600043,1,NULL),(600044,1,NULL),(600045,1,NULL),(600046,1,NULL),(600047,1,NULL),(600048,1,NULL),(600049,1,NULL),(600050,1,NULL),(600051,1,NULL),(600052,1,NULL);
 /*!40000 ALTER TABLE `conf_codes` ENABLE KEYS */;
 UNLOCK TABLES;
 /*!40103 SET TIME_ZONE=@OLD_TIME_ZONE */;
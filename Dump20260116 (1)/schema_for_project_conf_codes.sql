@@ -25,7 +25,9 @@ DROP TABLE IF EXISTS `conf_codes`;
 CREATE TABLE `conf_codes` (
   `code` int NOT NULL,
   `in_use` tinyint(1) NOT NULL DEFAULT '0',
-  PRIMARY KEY (`code`)
+  `reserved_by` varchar(96) DEFAULT NULL,
+  PRIMARY KEY (`code`),
+  KEY `idx_conf_codes_reserved_by` (`reserved_by`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
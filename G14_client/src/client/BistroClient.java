@@ -2,9 +2,15 @@ package client;
 
 
 import ocsf.client.AbstractClient;
+import ocsf.codec.SerializationCodec;
+import common.BistroBinaryCodec;
 import common.ChatIF;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import client_gui.CancelReservationPageController;
 import client_gui.CurrentDinersController;
@@ -13,6 +19,8 @@ import client_gui.RepLoginController;
 import client_gui.SubscriberLoginController;
 import client_gui.RegisterSubscriberController;
 import client_gui.RepReservationsController;
+import entities.ChangeEvent;
+import entities.ListPage;
 import entities.Reservation;
 import entities.ServerResponseType;
 import entities.Subscriber;
@@ -37,9 +45,19 @@ public class BistroClient extends AbstractClient {
     /** Interface for displaying messages to the client UI */
     private ChatIF clientUI;
 
-    /** Indicates whether the client is currently waiting for a server response */
+    /**
+     * Indicates whether the client is currently waiting for a server response.
+     * @deprecated only one request can be tracked this way; use {@link #request(Object[])}
+     */
+    @Deprecated
     public static boolean awaitResponse = false;
 
+    /** Source of request ids for correlated requests */
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    /** Correlated requests still waiting for their response, by request id */
+    private final Map<Long, CompletableFuture<Object[]>> pendingRequests = new ConcurrentHashMap<>();
+
     /** Controller for representative login screen */
     private RepLoginController repLoginController;
 
@@ -121,6 +139,12 @@ public class BistroClient extends AbstractClient {
     public BistroClient(String host, int port, ChatIF clientUI) throws IOException {
         super(host, port);
         this.clientUI = clientUI;
+        // Must match the server transport: "nio" servers expect length-prefixed frames
+        setFramed("nio".equalsIgnoreCase(System.getProperty("bistro.transport", "classic")));
+        // Offer the compact codec first; the server falls back to Java serialization
+        if (!"java".equalsIgnoreCase(System.getProperty("bistro.codec", "binary"))) {
+            setCodecs(new BistroBinaryCodec(), new SerializationCodec());
+        }
         openConnection();
     }
 
@@ -153,6 +177,15 @@ public class BistroClient extends AbstractClient {
         }
 
         ServerResponseType type = (ServerResponseType) data[0];
+
+        // Answer to request(...): goes to the waiting future, not to the registered screens
+        if (type == ServerResponseType.CORRELATED) {
+            completeRequest(data);
+            return;
+        }
+
+        // A final answer to a booking, payment or waitlist join: the next one gets a new key
+        IdempotencyKeys.answered(type);
         
         switch (type) {
         	
@@ -456,6 +489,23 @@ public class BistroClient extends AbstractClient {
                 }
                 break;
             }
+
+            /** Availability calendar of a party size received. */
+            case AVAILABILITY_CALENDAR: {
+                if (data.length < 3 || !(data[1] instanceof Integer) || !(data[2] instanceof java.util.List<?>)) {
+                    displaySafe("Invalid AVAILABILITY_CALENDAR response.");
+                    break;
+                }
+
+                int diners = (Integer) data[1];
+                @SuppressWarnings("unchecked")
+                java.util.List<entities.DayAvailability> days = (java.util.List<entities.DayAvailability>) data[2];
+
+                if (reservationFormController != null) {
+                    Platform.runLater(() -> reservationFormController.setCalendar(diners, days));
+                }
+                break;
+            }
             
             /** Reservation created successfully. */
             case CREATE_SUCCESS: {
@@ -475,15 +525,27 @@ public class BistroClient extends AbstractClient {
 
                 java.util.List<String> slots = null;
                 if (data.length > 2 && data[2] instanceof java.util.List) {
-                    slots = (java.util.List<String>) data[2];
+                    @SuppressWarnings("unchecked")
+                    java.util.List<String> list = (java.util.List<String>) data[2];
+                    slots = list;
+                }
+
+                java.util.List<entities.SlotSuggestion> suggestions = null;
+                if (data.length > 3 && data[3] instanceof java.util.List) {
+                    @SuppressWarnings("unchecked")
+                    java.util.List<entities.SlotSuggestion> list = (java.util.List<entities.SlotSuggestion>) data[3];
+                    suggestions = list;
                 }
 
                 final java.util.List<String> finalSlots = slots;
+                final java.util.List<entities.SlotSuggestion> finalSuggestions = suggestions;
 
                 Platform.runLater(() -> {
                     if (reservationFormController != null) {
                         reservationFormController.createFailed(failMsg);
-                        if (finalSlots != null) {
+                        if (finalSuggestions != null) {
+                            reservationFormController.setSuggestions(finalSuggestions);
+                        } else if (finalSlots != null) {
                             reservationFormController.setSlots(finalSlots);
                         }
                     }
@@ -773,6 +835,80 @@ public class BistroClient extends AbstractClient {
                 break;
             }
 
+            /** Change subscriptions were updated; nothing to show. */
+            case CHANGES_SUBSCRIBED: {
+                System.out.println("Subscribed to changes: " + java.util.Arrays.toString((Object[]) data[1]));
+                break;
+            }
+
+            /** Pushed change of a subscribed topic: handed to the screen showing that data. */
+            case CHANGE_EVENT: {
+                if (data.length < 2 || !(data[1] instanceof ChangeEvent)) {
+                    displaySafe("Invalid CHANGE_EVENT message.");
+                    break;
+                }
+
+                ChangeEvent event = (ChangeEvent) data[1];
+                Platform.runLater(() -> {
+                    switch (event.getTopic()) {
+                        case TABLES:
+                            if (manageTablesController != null) manageTablesController.onChange(event);
+                            break;
+                        case WAITLIST:
+                            if (waitlistController != null) waitlistController.onChange(event);
+                            break;
+                        case CURRENT_DINERS:
+                            if (currentDinersController != null) currentDinersController.onChange(event);
+                            break;
+                    }
+                });
+                break;
+            }
+
+            /** One page of a list (page request or STREAM_LIST): shown by the screen of that list. */
+            case LIST_PAGE: {
+                if (data.length < 2 || !(data[1] instanceof ListPage<?>)) {
+                    displaySafe("Invalid LIST_PAGE response.");
+                    break;
+                }
+
+                ListPage<?> page = (ListPage<?>) data[1];
+                Platform.runLater(() -> {
+                    switch (page.getList()) {
+                        case GET_RESERVATIONS:
+                            if (viewAllReservationsController != null) {
+                                @SuppressWarnings("unchecked")
+                                ListPage<Reservation> reservations = (ListPage<Reservation>) page;
+                                viewAllReservationsController.addReservationsPage(reservations);
+                            }
+                            break;
+                        case GET_SUBSCRIBERS:
+                            if (subscribersController != null) {
+                                @SuppressWarnings("unchecked")
+                                ListPage<Subscriber> subscribers = (ListPage<Subscriber>) page;
+                                subscribersController.addSubscribersPage(subscribers);
+                            }
+                            break;
+                        default:
+                            System.out.println("Unhandled " + page);
+                            break;
+                    }
+                });
+                break;
+            }
+
+            /** Responses to a BATCH request: each one is handled as if it came alone. */
+            case BATCH_RESULT: {
+                if (data.length < 2 || !(data[1] instanceof Object[])) {
+                    displaySafe("Invalid BATCH_RESULT response.");
+                    break;
+                }
+                for (Object response : (Object[]) data[1]) {
+                    handleMessageFromServer(response);
+                }
+                break;
+            }
+
             /** Waitlist ratio by hour report data received. */
             case WAITLIST_RATIO_BY_HOUR_DATA: {
                 @SuppressWarnings("unchecked")
@@ -818,6 +954,95 @@ public class BistroClient extends AbstractClient {
         }
     }
 
+    /**
+     * Sends a request tagged with a new request id and returns a future that
+     * is completed with the server response carrying the same id.
+     *
+     * Unlike {@link #accept(Object)}, the response is not routed to the
+     * registered screen controllers, so several requests can be in flight at
+     * once and a late answer cannot reach a screen that did not ask for it.
+     * If the future is cancelled or times out (e.g. {@code orTimeout}), a
+     * response arriving later is dropped.
+     *
+     * The future is completed on the client reader thread; UI updates must go
+     * through {@link Platform#runLater(Runnable)}.
+     *
+     * @param request request built by {@link ClientRequestBuilder}
+     * @return future completed with the response (an Object[] starting with a ServerResponseType)
+     */
+    public CompletableFuture<Object[]> request(Object[] request) {
+        long id = nextRequestId.incrementAndGet();
+        CompletableFuture<Object[]> future = new CompletableFuture<>();
+        pendingRequests.put(id, future);
+        future.whenComplete((response, error) -> pendingRequests.remove(id));
+
+        try {
+            if (!isConnected()) {
+                openConnection();
+            }
+            sendToServer(ClientRequestBuilder.correlated(id, request));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Completes the future waiting for a CORRELATED response.
+     *
+     * @param data { CORRELATED, Long requestId, Object[] response }
+     */
+    private void completeRequest(Object[] data) {
+        if (data.length < 3 || !(data[1] instanceof Long) || !(data[2] instanceof Object[])) {
+            displaySafe("Invalid CORRELATED response.");
+            return;
+        }
+
+        // Even an answer nobody waits for any more ends its idempotency key
+        Object[] response = (Object[]) data[2];
+        markAnswered(response);
+
+        CompletableFuture<Object[]> future = pendingRequests.remove((Long) data[1]);
+        if (future == null) {
+            System.out.println("Dropped response to request " + data[1] + " (no longer waiting).");
+            return;
+        }
+        future.complete(response);
+    }
+
+    /**
+     * Forgets the idempotency key a response answers, like
+     * handleMessageFromServer does for uncorrelated responses; for a
+     * BATCH_RESULT, the key of every response in it.
+     *
+     * @param response response of a correlated request
+     */
+    private static void markAnswered(Object[] response) {
+        if (response.length == 0 || !(response[0] instanceof ServerResponseType)) return;
+        ServerResponseType type = (ServerResponseType) response[0];
+        if (type == ServerResponseType.BATCH_RESULT) {
+            if (response.length > 1 && response[1] instanceof Object[]) {
+                for (Object each : (Object[]) response[1]) {
+                    if (each instanceof Object[]) markAnswered((Object[]) each);
+                }
+            }
+            return;
+        }
+        IdempotencyKeys.answered(type);
+    }
+
+    /**
+     * Fails every request still waiting for a response.
+     *
+     * @param cause reason reported to the waiting futures
+     */
+    private void failPendingRequests(Exception cause) {
+        for (CompletableFuture<Object[]> future : pendingRequests.values()) {
+            future.completeExceptionally(cause);
+        }
+        pendingRequests.clear();
+    }
+
     /**
      * Safely displays a message to the console and UI thread.
      *
@@ -879,6 +1104,7 @@ public class BistroClient extends AbstractClient {
     @Override
     protected void connectionClosed() {
         
+        failPendingRequests(new IOException("Server closed the connection."));
         displaySafe("Server closed the connection.");
         System.exit(0);
     }
@@ -890,6 +1116,7 @@ public class BistroClient extends AbstractClient {
     @Override
     protected void connectionException(Exception exception) {
         
+        failPendingRequests(exception);
         displaySafe("Connection lost: " + exception.getMessage());
         System.exit(0);
     }
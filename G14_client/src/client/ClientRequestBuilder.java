@@ -1,11 +1,14 @@
 package client;
 
 import entities.AvailableSlotsRequest;
+import entities.ChangeTopic;
 import entities.ClientRequestType;
 import entities.CreateReservationRequest;
 import entities.Subscriber;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Builds request objects sent from the client to the server.
@@ -104,6 +107,17 @@ public class ClientRequestBuilder {
         return new Object[]{ ClientRequestType.GET_AVAILABLE_SLOTS, req };
     }
 
+    /**
+     * Creates a request for the availability of every bookable day
+     * (today to 31 days ahead) for a party size.
+     *
+     * @param diners number of diners
+     * @return availability calendar request object
+     */
+    public static Object[] getAvailabilityCalendar(int diners) {
+        return new Object[]{ ClientRequestType.GET_AVAILABILITY_CALENDAR, diners };
+    }
+
     /**
      * Creates a request to create a new reservation.
      *
@@ -111,7 +125,12 @@ public class ClientRequestBuilder {
      * @return create reservation request object
      */
     public static Object[] createReservation(CreateReservationRequest req) {
-        return new Object[]{ ClientRequestType.CREATE_RESERVATION, req };
+        String key = IdempotencyKeys.keyFor(ClientRequestType.CREATE_RESERVATION,
+                req.getSubscriberId(), req.getPhone(), req.getEmail(),
+                req.getReservationTime(), req.getNumberOfDiners());
+        CreateReservationRequest keyed = new CreateReservationRequest(req.getSubscriberId(), req.getPhone(),
+                req.getEmail(), req.getReservationTime(), req.getNumberOfDiners(), key);
+        return new Object[]{ ClientRequestType.CREATE_RESERVATION, keyed };
     }
     
     /**
@@ -143,6 +162,54 @@ public class ClientRequestBuilder {
         return new Object[] { entities.ClientRequestType.GET_SUBSCRIBERS };
     }
 
+    /**
+     * Creates a request for one page of all reservations, newest first.
+     *
+     * @param after cursor of the previous page ({@code ListPage.getNext()}), or null for the first page
+     * @param limit maximum number of reservations in the page
+     * @return reservations page request object
+     */
+    public static Object[] getReservationsPage(entities.PageCursor after, int limit) {
+        return new Object[] { ClientRequestType.GET_RESERVATIONS_PAGE, after, limit };
+    }
+
+    /**
+     * Creates a request for one page of the subscribers.
+     *
+     * @param after cursor of the previous page, or null for the first page
+     * @param limit maximum number of subscribers in the page
+     * @return subscribers page request object
+     */
+    public static Object[] getSubscribersPage(entities.PageCursor after, int limit) {
+        return new Object[] { ClientRequestType.GET_SUBSCRIBERS_PAGE, after, limit };
+    }
+
+    /**
+     * Creates a request for one page of the waitlist entries of a month.
+     *
+     * @param year requested year
+     * @param month requested month
+     * @param after cursor of the previous page, or null for the first page
+     * @param limit maximum number of entries in the page
+     * @return waitlist page request object
+     */
+    public static Object[] getWaitlistByMonthPage(int year, int month, entities.PageCursor after, int limit) {
+        return new Object[] { ClientRequestType.GET_WAITLIST_BY_MONTH_PAGE, year, month, after, limit };
+    }
+
+    /**
+     * Creates a request that makes the server send a whole list as LIST_PAGE
+     * messages while it reads it, so the first rows can be shown at once.
+     * Send it with {@code accept}, not inside a batch or {@code submit}.
+     *
+     * @param listRequest a getAllReservations, getSubscribers or getWaitlistByMonth request
+     * @param pageSize rows per page
+     * @return stream request object
+     */
+    public static Object[] streamList(Object[] listRequest, int pageSize) {
+        return new Object[] { ClientRequestType.STREAM_LIST, listRequest, pageSize };
+    }
+
     /**
      * Creates a request to retrieve the members report for a given month.
      *
@@ -280,7 +347,8 @@ public class ClientRequestBuilder {
      * @return pay bill request object
      */
     public static Object[] payBill(int confCode, double amount, String paidBy) {
-        return new Object[]{ ClientRequestType.PAY_BILL, new entities.PayBillRequest(confCode, amount, paidBy) };
+        String key = IdempotencyKeys.keyFor(ClientRequestType.PAY_BILL, confCode, amount, paidBy);
+        return new Object[]{ ClientRequestType.PAY_BILL, new entities.PayBillRequest(confCode, amount, paidBy, key) };
     }
     
     /**
@@ -301,7 +369,8 @@ public class ClientRequestBuilder {
      * @return join waitlist request object
      */
     public static Object[] joinWaitlistSubscriber(int subscriberId, int diners) {
-        return new Object[]{ ClientRequestType.JOIN_WAITLIST_SUBSCRIBER, subscriberId, diners };
+        String key = IdempotencyKeys.keyFor(ClientRequestType.JOIN_WAITLIST_SUBSCRIBER, subscriberId, diners);
+        return new Object[]{ ClientRequestType.JOIN_WAITLIST_SUBSCRIBER, subscriberId, diners, key };
     }
 
     /**
@@ -313,7 +382,8 @@ public class ClientRequestBuilder {
      * @return join waitlist request object
      */
     public static Object[] joinWaitlistNonSubscriber(String email, String phone, int diners) {
-        return new Object[]{ ClientRequestType.JOIN_WAITLIST_NON_SUBSCRIBER, email, phone, diners };
+        String key = IdempotencyKeys.keyFor(ClientRequestType.JOIN_WAITLIST_NON_SUBSCRIBER, email, phone, diners);
+        return new Object[]{ ClientRequestType.JOIN_WAITLIST_NON_SUBSCRIBER, email, phone, diners, key };
     }
 
     /**
@@ -386,6 +456,73 @@ public class ClientRequestBuilder {
         return new Object[]{ ClientRequestType.GET_CONF_CODE_CHALLENGE_FOR_SUBSCRIBER, subscriberId };
     }
 
+    /**
+     * Wraps a request with a request id. The server answers with a
+     * CORRELATED response carrying the same id.
+     *
+     * @param requestId id chosen by the client
+     * @param request the request to wrap
+     * @return correlated request object
+     */
+    public static Object[] correlated(long requestId, Object[] request) {
+        return new Object[]{ ClientRequestType.CORRELATED, requestId, request };
+    }
+
+    /**
+     * Creates a request to receive change events of the given topics.
+     * The server pushes a CHANGE_EVENT each time their data changes,
+     * until the client unsubscribes or disconnects.
+     *
+     * @param topics topics to subscribe to
+     * @return subscribe request object
+     */
+    public static Object[] subscribeChanges(ChangeTopic... topics) {
+        Object[] request = new Object[topics.length + 1];
+        request[0] = ClientRequestType.SUBSCRIBE_CHANGES;
+        System.arraycopy(topics, 0, request, 1, topics.length);
+        return request;
+    }
+
+    /**
+     * Creates a request to stop change events of the given topics.
+     *
+     * @param topics topics to unsubscribe from
+     * @return unsubscribe request object
+     */
+    public static Object[] unsubscribeChanges(ChangeTopic... topics) {
+        Object[] request = new Object[topics.length + 1];
+        request[0] = ClientRequestType.UNSUBSCRIBE_CHANGES;
+        System.arraycopy(topics, 0, request, 1, topics.length);
+        return request;
+    }
+
+    /**
+     * Combines several requests into one BATCH request, sent and answered
+     * in a single round trip. The server answers with one BATCH_RESULT
+     * holding the response of every request, in the same order.
+     *
+     * @param requests requests built by the other methods of this class
+     * @return batch request object
+     */
+    public static Object[] batch(Object[]... requests) {
+        return new Object[]{ ClientRequestType.BATCH, Arrays.copyOf(requests, requests.length, Object[].class) };
+    }
+
+    /**
+     * Sends a request on the client connection and returns a future
+     * completed with the server response to that request.
+     *
+     * Several requests may be in flight at the same time, e.g.
+     * {@code submit(getTimeReportByMonth(y, m)).thenCombine(submit(getMembersReportByMonth(y, m)), ...)}.
+     * See {@link BistroClient#request(Object[])}.
+     *
+     * @param request a request built by one of the methods of this class
+     * @return future completed with the response (an Object[] starting with a ServerResponseType)
+     */
+    public static CompletableFuture<Object[]> submit(Object[] request) {
+        return ClientUI.client.request(request);
+    }
+
 
 
 }
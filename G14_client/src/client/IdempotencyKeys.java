@@ -0,0 +1,148 @@
+package client;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.prefs.Preferences;
+
+import entities.ClientRequestType;
+import entities.ServerResponseType;
+
+/**
+ * Idempotency keys of the mutating requests (CREATE_RESERVATION, PAY_BILL,
+ * JOIN_WAITLIST_SUBSCRIBER, JOIN_WAITLIST_NON_SUBSCRIBER).
+ *
+ * A key is kept, per request type, from the moment the request is sent until
+ * its answer arrives. If the connection drops first, the client exits; the
+ * key is stored in the user preferences so that when the user sends the same
+ * request again after restarting, it goes out with the same key and the
+ * server replays the original answer instead of booking or paying twice.
+ * Once the answer arrived, the next request always gets a new key, even if it
+ * is identical.
+ *
+ * Only a hash of the request details is stored, never the details.
+ */
+public final class IdempotencyKeys {
+
+    /** Pending keys, one entry per request type: "hash key". */
+    private static final Preferences PENDING = pendingNode();
+
+    /** Same entries, for when the preferences cannot be read or written. */
+    private static final Map<ClientRequestType, String> MEMORY = new EnumMap<>(ClientRequestType.class);
+
+    private IdempotencyKeys() {
+    }
+
+    /**
+     * Returns the key to send with a request: the pending key of the same
+     * request if it was never answered, otherwise a new one.
+     *
+     * @param type the request type
+     * @param details the values that make two requests the same request
+     * @return idempotency key
+     */
+    public static synchronized String keyFor(ClientRequestType type, Object... details) {
+        String hash = hash(type, details);
+        String stored = get(type);
+        if (stored != null) {
+            int space = stored.indexOf(' ');
+            if (space > 0 && stored.substring(0, space).equals(hash)) {
+                return stored.substring(space + 1);
+            }
+        }
+        String key = UUID.randomUUID().toString();
+        put(type, hash + " " + key);
+        return key;
+    }
+
+    /**
+     * Forgets the pending key(s) answered by a response, so the next request
+     * of that type gets a new key. Generic ERROR responses leave the key
+     * pending: the server did not keep them and a resend runs again.
+     *
+     * @param response the type of a response received from the server
+     */
+    public static synchronized void answered(ServerResponseType response) {
+        switch (response) {
+            case CREATE_SUCCESS:
+            case CREATE_FAILED:
+                remove(ClientRequestType.CREATE_RESERVATION);
+                break;
+            case PAY_SUCCESS:
+            case PAY_FAILED:
+                remove(ClientRequestType.PAY_BILL);
+                break;
+            case WAITINGLIST_SUCCESS:
+            case WAITINGLIST_ERROR:
+                remove(ClientRequestType.JOIN_WAITLIST_SUBSCRIBER);
+                remove(ClientRequestType.JOIN_WAITLIST_NON_SUBSCRIBER);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // ================= Storage =================
+
+    private static Preferences pendingNode() {
+        try {
+            return Preferences.userNodeForPackage(IdempotencyKeys.class).node("pending");
+        } catch (Exception | Error e) {
+            // No preferences on this machine: keys live as long as the process
+            System.out.println("Idempotency keys are not persisted: " + e);
+            return null;
+        }
+    }
+
+    private static String get(ClientRequestType type) {
+        if (PENDING != null) {
+            try {
+                return PENDING.get(type.name(), null);
+            } catch (Exception e) {
+                // fall back to memory
+            }
+        }
+        return MEMORY.get(type);
+    }
+
+    private static void put(ClientRequestType type, String value) {
+        MEMORY.put(type, value);
+        if (PENDING != null) {
+            try {
+                PENDING.put(type.name(), value);
+                PENDING.flush();
+            } catch (Exception e) {
+                // kept in memory only
+            }
+        }
+    }
+
+    private static void remove(ClientRequestType type) {
+        MEMORY.remove(type);
+        if (PENDING != null) {
+            try {
+                PENDING.remove(type.name());
+                PENDING.flush();
+            } catch (Exception e) {
+                // nothing else to do
+            }
+        }
+    }
+
+    private static String hash(ClientRequestType type, Object[] details) {
+        String text = type.name() + Arrays.deepToString(details);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+}
@@ -2,6 +2,8 @@ package client_gui;
 
 import client.ClientRequestBuilder;
 import client.ClientUI;
+import entities.ChangeEvent;
+import entities.ChangeTopic;
 import entities.CurrentDinerRow; // תוודאי שזה קיים אצלך
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -67,6 +69,9 @@ public class CurrentDinersController {
             ClientUI.client.setCurrentDinersController(this);
         }
 
+        // Get pushed changes while the screen is open, instead of refreshing by hand
+        ClientUI.client.accept(ClientRequestBuilder.subscribeChanges(ChangeTopic.CURRENT_DINERS));
+
         // Automatically load data when entering the screen
         onRefresh();
         
@@ -111,12 +116,31 @@ public class CurrentDinersController {
         statusLabel.setText("Loaded " + rows.size() + " rows.");
     }
     
+    /**
+     * Applies a pushed change (someone was seated or left). A change that
+     * carries the diner row puts it at the top, as the latest arrival; any
+     * other change reloads the diners list.
+     *
+     * @param event change event of the CURRENT_DINERS topic
+     */
+    public void onChange(ChangeEvent event) {
+        if (event.getRow() instanceof CurrentDinerRow) {
+            CurrentDinerRow row = (CurrentDinerRow) event.getRow();
+            data.removeIf(r -> r.getResId() == row.getResId());
+            data.add(0, row);
+            statusLabel.setText("Loaded " + data.size() + " rows.");
+            return;
+        }
+        ClientUI.client.accept(ClientRequestBuilder.getCurrentDiners());
+    }
+
     /**
      * Loads and displays the representative actions screen.
      *
      * @param stage the current application stage
      */
     private void goBackToRepActions(Stage stage) {
+        ClientUI.client.accept(ClientRequestBuilder.unsubscribeChanges(ChangeTopic.CURRENT_DINERS));
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/Client_GUI_fxml/RepActions.fxml"));
             Parent root = loader.load();
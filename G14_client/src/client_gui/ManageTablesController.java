@@ -2,6 +2,8 @@ package client_gui;
 
 import client.ClientRequestBuilder;
 import client.ClientUI;
+import entities.ChangeEvent;
+import entities.ChangeTopic;
 import entities.RestaurantTable;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
@@ -11,6 +13,7 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.stream.Collectors;
 
 /**
@@ -79,6 +82,9 @@ public class ManageTablesController {
         // Filter toggle
         cbActiveOnly.selectedProperty().addListener((obs, oldV, newV) -> applyFilter());
 
+        // changes made by other screens are pushed instead of polled
+        ClientUI.client.accept(ClientRequestBuilder.subscribeChanges(ChangeTopic.TABLES));
+
         reload();
     }
 
@@ -99,6 +105,25 @@ public class ManageTablesController {
         setStatus("Loaded " + lastServerList.size() + " tables.");
     }
 
+ 
+    /**
+     * Applies a pushed table change. A change that carries the new table
+     * row is applied to the local list; any other change reloads the list.
+     *
+     * @param event change event of the TABLES topic
+     */
+    public void onChange(ChangeEvent event) {
+        if (event.getRow() instanceof RestaurantTable) {
+            RestaurantTable row = (RestaurantTable) event.getRow();
+            lastServerList.removeIf(t -> t.getTableNum() == row.getTableNum());
+            lastServerList.add(row);
+            lastServerList.sort(Comparator.comparingInt(RestaurantTable::getTableNum));
+            applyFilter();
+            return;
+        }
+        reload();
+    }
+
   
     // UI Actions
       
@@ -3,7 +3,9 @@ package client_gui;
 import client.ClientRequestBuilder;
 import client.ClientUI;
 import entities.MembersReportRow;
+import entities.ServerResponseType;
 import entities.TimeReportRow;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -162,10 +164,30 @@ public class ManagerReportsController {
         // Load time report too so totals exist (same month)
         timeStatusLabel.setText("Loading time report (for totals)...");
         timeData.clear();
-        ClientUI.client.accept(ClientRequestBuilder.getTimeReportByMonth(y, m));
 
-        // Then load members
-        ClientUI.client.accept(ClientRequestBuilder.getMembersReportByMonth(y, m));
+        // One round trip for both reports; the members chart is drawn
+        // only after the time rows it needs for the totals are set
+        Object[] batch = ClientRequestBuilder.batch(
+                ClientRequestBuilder.getTimeReportByMonth(y, m),
+                ClientRequestBuilder.getMembersReportByMonth(y, m));
+
+        ClientRequestBuilder.submit(batch)
+            .whenComplete((response, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    showTimeError("Request failed: " + error.getMessage());
+                    showMembersError("Request failed: " + error.getMessage());
+                    return;
+                }
+                if (response[0] != ServerResponseType.BATCH_RESULT) {
+                    String msg = (response.length > 1) ? String.valueOf(response[1]) : "Reports failed.";
+                    showTimeError(msg);
+                    showMembersError(msg);
+                    return;
+                }
+                Object[] responses = (Object[]) response[1];
+                applyTimeReport((Object[]) responses[0]);
+                applyMembersReport((Object[]) responses[1]);
+            }));
     }
 
     /**
@@ -180,8 +202,39 @@ public class ManagerReportsController {
         timeStatusLabel.setText("Loading time report...");
         timeData.clear();
 
-        ClientUI.client.accept(ClientRequestBuilder.getTimeReportByMonth(y, m));
-       
+        ClientRequestBuilder.submit(ClientRequestBuilder.getTimeReportByMonth(y, m))
+            .whenComplete((response, error) -> Platform.runLater(() -> {
+                if (error != null) showTimeError("Request failed: " + error.getMessage());
+                else applyTimeReport(response);
+            }));
+    }
+
+    /**
+     * Shows a TIME_REPORT_DATA response, or the error the server sent instead.
+     *
+     * @param response server response to the time report request
+     */
+    @SuppressWarnings("unchecked")
+    private void applyTimeReport(Object[] response) {
+        if (response[0] == ServerResponseType.TIME_REPORT_DATA && response.length > 1 && response[1] instanceof List<?>) {
+            setTimeReport(new ArrayList<>((List<TimeReportRow>) response[1]));
+        } else {
+            showTimeError((response.length > 1) ? String.valueOf(response[1]) : "Time report failed.");
+        }
+    }
+
+    /**
+     * Shows a MEMBERS_REPORT_DATA response, or the error the server sent instead.
+     *
+     * @param response server response to the members report request
+     */
+    @SuppressWarnings("unchecked")
+    private void applyMembersReport(Object[] response) {
+        if (response[0] == ServerResponseType.MEMBERS_REPORT_DATA && response.length > 1 && response[1] instanceof List<?>) {
+            setMembersReport(new ArrayList<>((List<MembersReportRow>) response[1]));
+        } else {
+            showMembersError((response.length > 1) ? String.valueOf(response[1]) : "Members report failed.");
+        }
     }
 
     /**
@@ -199,8 +199,9 @@ public class OpeningHoursController {
      */
     @FXML
     public void reload() {
-        ClientUI.client.accept(ClientRequestBuilder.getOpeningWeekly());
-        ClientUI.client.accept(ClientRequestBuilder.getOpeningSpecial());
+        ClientUI.client.accept(ClientRequestBuilder.batch(
+                ClientRequestBuilder.getOpeningWeekly(),
+                ClientRequestBuilder.getOpeningSpecial()));
     }
 
     /**
@@ -4,6 +4,8 @@ import client.ClientRequestBuilder;
 import client.ClientUI;
 import entities.AvailableSlotsRequest;
 import entities.CreateReservationRequest;
+import entities.DayAvailability;
+import entities.SlotSuggestion;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -16,6 +18,9 @@ import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Controller for the reservation form screen.
@@ -56,6 +61,15 @@ public class ReservationFormController {
     /** Original email prompt text (restored when switching from subscriber mode). */
     private String originalEmailPrompt;
 
+    /** Availability of the bookable days for the current number of guests (empty until received). */
+    private final Map<LocalDate, DayAvailability> calendar = new HashMap<>();
+
+    /** Number of guests of the last calendar request (0 = none). */
+    private int calendarDiners = 0;
+
+    /** Alternatives shown in the slots list after a failed create, by their label. */
+    private final Map<String, SlotSuggestion> suggestionByLabel = new HashMap<>();
+
 
     /**
      * Initializes the controller after the FXML is loaded.
@@ -75,7 +89,11 @@ public class ReservationFormController {
             slotsList.setOnMouseClicked(event -> {
                 if (event.getClickCount() == 1) {
                     String selected = slotsList.getSelectionModel().getSelectedItem();
-                    if (selected != null) {
+                    SlotSuggestion suggestion = (selected == null) ? null : suggestionByLabel.get(selected);
+                    if (suggestion != null) {
+                        applySuggestion(suggestion);
+                        setStatus("Selected: " + selected + ". Click Create Reservation.", false);
+                    } else if (selected != null) {
                         timeCombo.setValue(selected);
                         setStatus("Selected time: " + selected + ". Click Create Reservation.", false);
                     }
@@ -83,6 +101,14 @@ public class ReservationFormController {
             });
         }
 
+        // Shade the date picker with the availability of the entered number of guests
+        if (datePicker != null) {
+            datePicker.setDayCellFactory(picker -> new AvailabilityDateCell());
+        }
+        if (guestsField != null) {
+            guestsField.textProperty().addListener((obs, oldVal, newVal) -> requestCalendar(newVal));
+        }
+
         // Save original prompt texts
         if (phoneField != null) originalPhonePrompt = phoneField.getPromptText();
         if (emailField != null) originalEmailPrompt = emailField.getPromptText();
@@ -164,6 +190,88 @@ public class ReservationFormController {
 
 
 
+	/**
+     * Asks the server for the availability calendar of a number of guests,
+     * unless it is invalid or was already asked for.
+     *
+     * @param guestsText number of guests as typed
+     */
+    private void requestCalendar(String guestsText) {
+        int guests;
+        try {
+            guests = Integer.parseInt(safeTrim(guestsText));
+        } catch (NumberFormatException ex) {
+            return;
+        }
+        if (guests <= 0 || guests == calendarDiners) return;
+
+        calendarDiners = guests;
+        calendar.clear();
+        try {
+            ClientUI.client.handleMessageFromClientUI(ClientRequestBuilder.getAvailabilityCalendar(guests));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+
+	/**
+     * Stores the availability calendar received from the server and
+     * refreshes the date picker.
+     *
+     * @param diners number of guests the calendar was computed for
+     * @param days availability of each bookable day
+     */
+    public void setCalendar(int diners, List<DayAvailability> days) {
+        if (diners != calendarDiners || days == null) return; // answer to an older request
+
+        calendar.clear();
+        for (DayAvailability d : days) {
+            calendar.put(d.getDate(), d);
+        }
+
+        if (datePicker != null) {
+            // Cells are built when the popup opens; a new factory rebuilds them
+            datePicker.setDayCellFactory(picker -> new AvailabilityDateCell());
+        }
+
+        DayAvailability selected = datePicker == null ? null : calendar.get(datePicker.getValue());
+        if (selected != null && !selected.isClosed() && selected.getFreeSlots() == 0) {
+            setStatus("The selected date is fully booked for " + diners + " guests.", true);
+        }
+    }
+
+
+	/**
+     * Date picker cell shaded with the availability calendar: closed,
+     * full and out-of-range days are disabled, the others are green, or
+     * orange when less than half of the times are free.
+     */
+    private class AvailabilityDateCell extends DateCell {
+        @Override
+        public void updateItem(LocalDate date, boolean empty) {
+            super.updateItem(date, empty);
+            if (empty || date == null || calendar.isEmpty()) return;
+
+            DayAvailability d = calendar.get(date);
+            if (d == null) {
+                setDisable(true);
+            } else if (d.isClosed()) {
+                setDisable(true);
+                setTooltip(new Tooltip("Closed"));
+            } else if (d.getFreeSlots() == 0) {
+                setDisable(true);
+                setStyle("-fx-background-color: #f4c7c3;");
+                setTooltip(new Tooltip(d.getTotalSlots() == 0 ? "No bookable times" : "Fully booked"));
+            } else {
+                boolean few = d.getFreeSlots() * 2 < d.getTotalSlots();
+                setStyle(few ? "-fx-background-color: #fce8b2;" : "-fx-background-color: #b7e1cd;");
+                setTooltip(new Tooltip(d.getFreeSlots() + " of " + d.getTotalSlots() + " times free"));
+            }
+        }
+    }
+
+
 	/**
      * Handles the "Create Reservation" button action.
      * 
@@ -249,6 +357,10 @@ public class ReservationFormController {
     public void createSuccess(String msg) {
         setStatus("Reservation created successfully.", false);
 
+        // The new reservation may have filled a day: ask again
+        calendarDiners = 0;
+        if (guestsField != null) requestCalendar(guestsField.getText());
+
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Reservation Created");
         alert.setHeaderText("Success");
@@ -357,6 +469,7 @@ public class ReservationFormController {
         if (slotsList == null) return;
 
         slotsList.getItems().clear();
+        suggestionByLabel.clear();
 
         if (slots == null || slots.isEmpty()) {
             setStatus("No available slots for this date/guests.", true);
@@ -367,6 +480,69 @@ public class ReservationFormController {
         setStatus("Select a time from the list.", false);
     }
 
+    /**
+     * Shows the alternatives sent with a failed create: times on the same
+     * day are shown as "HH:mm", other days with their date, and the
+     * requested time for fewer guests with the number of guests. Selecting
+     * one fills the date, time and guests.
+     *
+     * @param suggestions alternatives from the server, nearest first
+     */
+    public void setSuggestions(List<SlotSuggestion> suggestions) {
+        if (slotsList == null) return;
+
+        slotsList.getItems().clear();
+        suggestionByLabel.clear();
+
+        if (suggestions == null || suggestions.isEmpty()) {
+            setStatus("No available times near the requested one. Please try another date.", true);
+            return;
+        }
+
+        LocalDate requestedDate = (datePicker == null) ? null : datePicker.getValue();
+        Integer requestedGuests = parseGuests();
+        java.time.format.DateTimeFormatter dayFmt = java.time.format.DateTimeFormatter.ofPattern("EEE dd/MM ");
+
+        for (SlotSuggestion s : suggestions) {
+            LocalDateTime t = s.getStart().toLocalDateTime();
+            StringBuilder label = new StringBuilder();
+            if (!t.toLocalDate().equals(requestedDate)) label.append(t.format(dayFmt));
+            label.append(String.format("%02d:%02d", t.getHour(), t.getMinute()));
+            if (requestedGuests == null || s.getDiners() != requestedGuests) {
+                label.append(" for ").append(s.getDiners()).append(s.getDiners() == 1 ? " guest" : " guests");
+            }
+            suggestionByLabel.put(label.toString(), s);
+            slotsList.getItems().add(label.toString());
+        }
+    }
+
+    /**
+     * Fills the form with a suggested date, time and number of guests.
+     *
+     * @param s the selected suggestion
+     */
+    private void applySuggestion(SlotSuggestion s) {
+        LocalDateTime t = s.getStart().toLocalDateTime();
+        if (datePicker != null) datePicker.setValue(t.toLocalDate());
+        timeCombo.setValue(String.format("%02d:%02d", t.getHour(), t.getMinute()));
+        if (guestsField != null && !String.valueOf(s.getDiners()).equals(guestsField.getText().trim())) {
+            guestsField.setText(String.valueOf(s.getDiners()));
+        }
+    }
+
+    /**
+     * @return the number of guests entered, or null if it is not a positive number
+     */
+    private Integer parseGuests() {
+        if (guestsField == null) return null;
+        try {
+            int v = Integer.parseInt(guestsField.getText().trim());
+            return v > 0 ? v : null;
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
 
     /**
      * Validates an email address format.
@@ -2,6 +2,7 @@ package client_gui;
 
 import client.ClientRequestBuilder;
 import client.ClientUI;
+import entities.ListPage;
 import entities.Subscriber;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -51,6 +52,9 @@ public class SubscribersController {
 
     private final ObservableList<Subscriber> data = FXCollections.observableArrayList();
 
+    /** Subscribers per page of the list stream. */
+    private static final int PAGE_SIZE = 200;
+
     /**
      * Initializes the table, connects the controller to the client,
      * loads subscribers automatically, and handles window close.
@@ -88,7 +92,9 @@ public class SubscribersController {
     private void onRefresh() {
         statusLabel.setText("Loading subscribers...");
         data.clear();
-        ClientUI.client.accept(ClientRequestBuilder.getSubscribers());
+        // Pages arrive while the server reads the subscribers (see addSubscribersPage)
+        ClientUI.client.accept(ClientRequestBuilder.streamList(
+                ClientRequestBuilder.getSubscribers(), PAGE_SIZE));
     }
 
     /**
@@ -138,6 +144,23 @@ public class SubscribersController {
         statusLabel.setText("Loaded " + rows.size() + " rows.");
     }
 
+    /**
+     * Shows one page of a subscribers stream. The first page replaces the
+     * table content, the following ones are appended.
+     *
+     * @param page page received from the server
+     */
+    public void addSubscribersPage(ListPage<Subscriber> page) {
+        if (page.getIndex() == 0) {
+            data.setAll(page.getRows());
+        } else {
+            data.addAll(page.getRows());
+        }
+        statusLabel.setText(page.isLast()
+                ? "Loaded " + data.size() + " rows."
+                : "Loading subscribers... " + data.size() + " rows so far.");
+    }
+
 
     /**
      * Displays an error message in the status label.
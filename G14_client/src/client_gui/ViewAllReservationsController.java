@@ -2,6 +2,7 @@ package client_gui;
 
 import client.ClientRequestBuilder;
 import client.ClientUI;
+import entities.ListPage;
 import entities.Reservation;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -56,6 +57,9 @@ public class ViewAllReservationsController {
 
     private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
+    /** Reservations per page of the list stream. */
+    private static final int PAGE_SIZE = 200;
+
     /**
      * Initializes table columns, registers the controller,
      * and automatically loads all reservations.
@@ -118,7 +122,23 @@ public class ViewAllReservationsController {
         if (ClientUI.client == null) return;
 
         
-        ClientUI.client.accept(ClientRequestBuilder.getAllReservations());
+        // Pages arrive while the server reads the reservations (see addReservationsPage)
+        ClientUI.client.accept(ClientRequestBuilder.streamList(
+                ClientRequestBuilder.getAllReservations(), PAGE_SIZE));
+    }
+
+    /**
+     * Shows one page of a reservations stream. The first page replaces the
+     * table content, the following ones are appended.
+     *
+     * @param page page received from the server
+     */
+    public void addReservationsPage(ListPage<Reservation> page) {
+        if (page.getIndex() == 0) {
+            table.getItems().setAll(page.getRows());
+        } else {
+            table.getItems().addAll(page.getRows());
+        }
     }
 
 
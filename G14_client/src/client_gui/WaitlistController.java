@@ -1,6 +1,7 @@
 package client_gui;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -14,6 +15,8 @@ import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.Label;
 import client.ClientUI;
+import entities.ChangeEvent;
+import entities.ChangeTopic;
 import entities.WaitlistRow;
 import client.ClientRequestBuilder;
 import javafx.scene.control.ComboBox;
@@ -74,6 +77,7 @@ public class WaitlistController {
 
     	if (ClientUI.client != null) {
     	    ClientUI.client.setWaitlistController(this);
+    	    ClientUI.client.accept(ClientRequestBuilder.subscribeChanges(ChangeTopic.WAITLIST));
     	}
     	javafx.application.Platform.runLater(this::refreshNow);
 
@@ -133,6 +137,35 @@ public class WaitlistController {
         }
     }
 
+    /**
+     * Applies a pushed waitlist change. A removed entry with a known
+     * confirmation code is dropped from the table and a change that carries
+     * the entry is put in its place by queue time; any other change reloads
+     * the waitlist.
+     *
+     * @param event change event of the WAITLIST topic
+     */
+    public void onChange(ChangeEvent event) {
+        if (event.getKind() == ChangeEvent.Kind.REMOVED && event.getKey() != null) {
+            ArrayList<WaitlistRow> rows = new ArrayList<>(waitlistTable.getItems());
+            if (rows.removeIf(r -> r.getConfCode() == event.getKey())) {
+                setWaitlist(rows);
+            }
+            return;
+        }
+        if (event.getRow() instanceof WaitlistRow) {
+            WaitlistRow row = (WaitlistRow) event.getRow();
+            ArrayList<WaitlistRow> rows = new ArrayList<>(waitlistTable.getItems());
+            rows.removeIf(r -> r.getConfCode() == row.getConfCode());
+            rows.add(row);
+            rows.sort(Comparator.comparing(WaitlistRow::getTimeEnterQueue,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+            setWaitlist(rows);
+            return;
+        }
+        refreshNow();
+    }
+
     /**
      * Refresh button handler.
      * Reloads the waitlist from the server.
@@ -147,6 +180,7 @@ public class WaitlistController {
      */
     @FXML
     private void onClose() {
+        ClientUI.client.accept(ClientRequestBuilder.unsubscribeChanges(ChangeTopic.WAITLIST));
         Stage stage = (Stage) waitlistTable.getScene().getWindow();
         stage.close();
     }
@@ -8,7 +8,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 import client.BistroClient;
-import entities.ClientRequestType;
+import client.ClientRequestBuilder;
 import entities.WaitlistJoinResult;
 import entities.WaitlistStatus;
 
@@ -113,11 +113,7 @@ public class subJoinWaitingListController {
 
             int subscriberId = Integer.parseInt(subTxt);
 
-            client.accept(new Object[]{
-            	    ClientRequestType.JOIN_WAITLIST_SUBSCRIBER,
-            	    subscriberId,
-            	    numGuests
-            	});
+            client.accept(ClientRequestBuilder.joinWaitlistSubscriber(subscriberId, numGuests));
 
 
         } else {
@@ -135,12 +131,7 @@ public class subJoinWaitingListController {
                 return;
             }
 
-            client.accept(new Object[]{
-            	    ClientRequestType.JOIN_WAITLIST_NON_SUBSCRIBER,
-            	    email,
-            	    phone,
-            	    numGuests
-            	});
+            client.accept(ClientRequestBuilder.joinWaitlistNonSubscriber(email, phone, numGuests));
 
         }
 
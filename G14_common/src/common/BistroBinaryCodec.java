@@ -0,0 +1,544 @@
+package common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import entities.ClientRequestType;
+import entities.CurrentDinerRow;
+import entities.DayAvailability;
+import entities.HourlyWaitlistRatioRow;
+import entities.ListPage;
+import entities.MembersReportRow;
+import entities.PageCursor;
+import entities.Reservation;
+import entities.RestaurantTable;
+import entities.ServerResponseType;
+import entities.SpecialHoursRow;
+import entities.Subscriber;
+import entities.TimeReportRow;
+import entities.WaitlistRow;
+import entities.WaitlistStatus;
+import entities.WeeklyHoursRow;
+import ocsf.codec.MessageCodec;
+
+/**
+ * Compact binary codec for the messages exchanged between the Bistro
+ * client and server.
+ *
+ * Every value starts with a one byte tag. Object[] envelopes, lists,
+ * strings, numbers, dates, the request/response enums and the entities
+ * that travel in large lists (reservations, report rows, waitlist rows,
+ * tables...) are written field by field without class descriptors.
+ * Any other Serializable value is written as an embedded Java
+ * serialization blob, so every message the application sends can be
+ * encoded.
+ *
+ * Both sides must be built from the same G14_common sources: enums are
+ * sent by ordinal and entity fields by position. Change {@link #NAME}
+ * whenever the format changes so old and new builds never agree on it.
+ */
+public class BistroBinaryCodec implements MessageCodec {
+
+    /** Name of this codec in the OCSF codec handshake. */
+    public static final String NAME = "bistro-bin-3";
+
+    // Value tags
+    private static final int T_NULL = 0;
+    private static final int T_ARRAY = 1;
+    private static final int T_LIST = 2;
+    private static final int T_STRING = 3;
+    private static final int T_INT = 4;
+    private static final int T_LONG = 5;
+    private static final int T_DOUBLE = 6;
+    private static final int T_TRUE = 7;
+    private static final int T_FALSE = 8;
+    private static final int T_TIMESTAMP = 9;
+    private static final int T_LOCAL_DATE = 10;
+    private static final int T_LOCAL_TIME = 11;
+    private static final int T_REQUEST_TYPE = 12;
+    private static final int T_RESPONSE_TYPE = 13;
+    private static final int T_WAITLIST_STATUS = 14;
+
+    // Entity tags
+    private static final int T_RESERVATION = 20;
+    private static final int T_TIME_REPORT_ROW = 21;
+    private static final int T_WAITLIST_ROW = 22;
+    private static final int T_RESTAURANT_TABLE = 23;
+    private static final int T_CURRENT_DINER_ROW = 24;
+    private static final int T_SUBSCRIBER = 25;
+    private static final int T_MEMBERS_REPORT_ROW = 26;
+    private static final int T_HOURLY_RATIO_ROW = 27;
+    private static final int T_WEEKLY_HOURS_ROW = 28;
+    private static final int T_SPECIAL_HOURS_ROW = 29;
+    private static final int T_PAGE_CURSOR = 30;
+    private static final int T_LIST_PAGE = 31;
+    private static final int T_DAY_AVAILABILITY = 32;
+
+    /** Any other value, written with Java serialization. */
+    private static final int T_JAVA = 127;
+
+    private static final ClientRequestType[] REQUEST_TYPES = ClientRequestType.values();
+    private static final ServerResponseType[] RESPONSE_TYPES = ServerResponseType.values();
+    private static final WaitlistStatus[] WAITLIST_STATUSES = WaitlistStatus.values();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object msg) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        write(out, msg);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] data) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        Object msg = read(in);
+        if (in.available() > 0) {
+            throw new StreamCorruptedException("Trailing bytes after message.");
+        }
+        return msg;
+    }
+
+    // ================= Writing =================
+
+    private void write(DataOutputStream out, Object v) throws IOException {
+        if (v == null) {
+            out.writeByte(T_NULL);
+        } else if (v instanceof Object[]) {
+            Object[] arr = (Object[]) v;
+            if (arr.getClass() != Object[].class) {
+                writeJava(out, v); // typed arrays keep their exact class
+                return;
+            }
+            out.writeByte(T_ARRAY);
+            writeVarInt(out, arr.length);
+            for (Object o : arr) write(out, o);
+        } else if (v instanceof ArrayList) {
+            List<?> list = (List<?>) v;
+            out.writeByte(T_LIST);
+            writeVarInt(out, list.size());
+            for (Object o : list) write(out, o);
+        } else if (v instanceof String) {
+            out.writeByte(T_STRING);
+            writeString(out, (String) v);
+        } else if (v instanceof Integer) {
+            out.writeByte(T_INT);
+            writeVarInt(out, zigZag((Integer) v));
+        } else if (v instanceof Long) {
+            out.writeByte(T_LONG);
+            writeVarLong(out, zigZag((Long) v));
+        } else if (v instanceof Double) {
+            out.writeByte(T_DOUBLE);
+            out.writeDouble((Double) v);
+        } else if (v instanceof Boolean) {
+            out.writeByte((Boolean) v ? T_TRUE : T_FALSE);
+        } else if (v.getClass() == Timestamp.class) {
+            out.writeByte(T_TIMESTAMP);
+            writeTimestampBody(out, (Timestamp) v);
+        } else if (v instanceof LocalDate) {
+            out.writeByte(T_LOCAL_DATE);
+            writeVarLong(out, zigZag(((LocalDate) v).toEpochDay()));
+        } else if (v instanceof LocalTime) {
+            out.writeByte(T_LOCAL_TIME);
+            writeVarLong(out, ((LocalTime) v).toNanoOfDay());
+        } else if (v instanceof ClientRequestType) {
+            out.writeByte(T_REQUEST_TYPE);
+            writeVarInt(out, ((ClientRequestType) v).ordinal());
+        } else if (v instanceof ServerResponseType) {
+            out.writeByte(T_RESPONSE_TYPE);
+            writeVarInt(out, ((ServerResponseType) v).ordinal());
+        } else if (v instanceof WaitlistStatus) {
+            out.writeByte(T_WAITLIST_STATUS);
+            writeVarInt(out, ((WaitlistStatus) v).ordinal());
+        } else if (v.getClass() == Reservation.class) {
+            out.writeByte(T_RESERVATION);
+            writeReservation(out, (Reservation) v);
+        } else if (v.getClass() == TimeReportRow.class) {
+            out.writeByte(T_TIME_REPORT_ROW);
+            writeTimeReportRow(out, (TimeReportRow) v);
+        } else if (v.getClass() == WaitlistRow.class) {
+            out.writeByte(T_WAITLIST_ROW);
+            WaitlistRow r = (WaitlistRow) v;
+            writeInt(out, r.getConfCode());
+            writeTimestamp(out, r.getTimeEnterQueue());
+            writeInt(out, r.getNumOfDiners());
+            writeInt(out, r.getCustomerId());
+            writeNullableString(out, r.getPhone());
+            writeNullableString(out, r.getEmail());
+        } else if (v.getClass() == RestaurantTable.class) {
+            out.writeByte(T_RESTAURANT_TABLE);
+            RestaurantTable t = (RestaurantTable) v;
+            writeInt(out, t.getTableNum());
+            writeInt(out, t.getSeats());
+            out.writeByte((t.isActive() ? 1 : 0) | (t.isOccupied() ? 2 : 0));
+        } else if (v.getClass() == CurrentDinerRow.class) {
+            out.writeByte(T_CURRENT_DINER_ROW);
+            CurrentDinerRow r = (CurrentDinerRow) v;
+            writeInt(out, r.getResId());
+            writeTimestamp(out, r.getReservationTime());
+            writeInt(out, r.getNumOfDin());
+            writeNullableString(out, r.getStatus());
+            writeInt(out, r.getCustomerId());
+            writeTimestamp(out, r.getArrivalTime());
+            writeNullableString(out, r.getPhone());
+            writeNullableString(out, r.getEmail());
+        } else if (v.getClass() == Subscriber.class) {
+            out.writeByte(T_SUBSCRIBER);
+            Subscriber s = (Subscriber) v;
+            writeInt(out, s.getSubscriberId());
+            writeNullableString(out, s.getName());
+            writeNullableString(out, s.getPersonalInfo());
+            writeInt(out, s.getCustomerId());
+            writeNullableString(out, s.getPhone());
+            writeNullableString(out, s.getEmail());
+            writeNullableString(out, s.getScanCode());
+        } else if (v.getClass() == MembersReportRow.class) {
+            out.writeByte(T_MEMBERS_REPORT_ROW);
+            MembersReportRow r = (MembersReportRow) v;
+            writeNullableString(out, r.getDay());
+            writeInt(out, r.getReservationsCount());
+            writeInt(out, r.getWaitlistCount());
+        } else if (v.getClass() == HourlyWaitlistRatioRow.class) {
+            out.writeByte(T_HOURLY_RATIO_ROW);
+            HourlyWaitlistRatioRow r = (HourlyWaitlistRatioRow) v;
+            writeInt(out, r.getHour());
+            out.writeDouble(r.getPercentWaitlist());
+        } else if (v.getClass() == WeeklyHoursRow.class) {
+            out.writeByte(T_WEEKLY_HOURS_ROW);
+            WeeklyHoursRow r = (WeeklyHoursRow) v;
+            writeInt(out, r.getDayOfWeek());
+            write(out, r.getOpen());
+            write(out, r.getClose());
+            out.writeBoolean(r.isClosed());
+        } else if (v.getClass() == SpecialHoursRow.class) {
+            out.writeByte(T_SPECIAL_HOURS_ROW);
+            SpecialHoursRow r = (SpecialHoursRow) v;
+            write(out, r.getDate());
+            write(out, r.getOpen());
+            write(out, r.getClose());
+            out.writeBoolean(r.isClosed());
+            writeNullableString(out, r.getReason());
+        } else if (v.getClass() == PageCursor.class) {
+            out.writeByte(T_PAGE_CURSOR);
+            PageCursor c = (PageCursor) v;
+            writeTimestamp(out, c.getTime());
+            writeInt(out, c.getId());
+        } else if (v.getClass() == ListPage.class) {
+            out.writeByte(T_LIST_PAGE);
+            ListPage<?> p = (ListPage<?>) v;
+            write(out, p.getList());
+            writeInt(out, p.getIndex());
+            write(out, p.getRows());
+            write(out, p.getNext());
+            out.writeBoolean(p.isLast());
+        } else if (v.getClass() == DayAvailability.class) {
+            out.writeByte(T_DAY_AVAILABILITY);
+            DayAvailability d = (DayAvailability) v;
+            write(out, d.getDate());
+            writeInt(out, d.getFreeSlots());
+            writeInt(out, d.getTotalSlots());
+            out.writeBoolean(d.isClosed());
+        } else {
+            writeJava(out, v);
+        }
+    }
+
+    private void writeReservation(DataOutputStream out, Reservation r) throws IOException {
+        writeInt(out, r.getResId());
+        writeInt(out, r.getCustomerId());
+        writeTimestamp(out, r.getReservationTime());
+        writeInt(out, r.getNumOfDin());
+        writeNullableString(out, r.getStatus());
+        writeTimestamp(out, r.getArrivalTime());
+        writeTimestamp(out, r.getLeaveTime());
+        writeTimestamp(out, r.getCreatedAt());
+        writeNullableString(out, r.getSource());
+        writeInt(out, r.getConfCode());
+        write(out, r.getTableNum());
+        out.writeBoolean(r.isReminderSent());
+        writeTimestamp(out, r.getReminderSentAt());
+    }
+
+    private void writeTimeReportRow(DataOutputStream out, TimeReportRow r) throws IOException {
+        writeInt(out, r.getResId());
+        writeInt(out, r.getConfCode());
+        writeNullableString(out, r.getSource());
+        writeTimestamp(out, r.getReservationTime());
+        writeTimestamp(out, r.getNotifiedAt());
+        writeTimestamp(out, r.getArrivalTime());
+        writeTimestamp(out, r.getLeaveTime());
+        writeTimestamp(out, r.getEffectiveStart());
+        writeInt(out, r.getLateMinutes());
+        writeInt(out, r.getStayMinutes());
+        writeInt(out, r.getOverstayMinutes());
+    }
+
+    private void writeJava(DataOutputStream out, Object v) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(v);
+        oos.close();
+        out.writeByte(T_JAVA);
+        writeVarInt(out, bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private void writeInt(DataOutputStream out, int v) throws IOException {
+        writeVarInt(out, zigZag(v));
+    }
+
+    /** Timestamp field: 0 = null, otherwise 1 + millis (zig-zag) and nanos. */
+    private void writeTimestamp(DataOutputStream out, Timestamp t) throws IOException {
+        if (t == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        writeTimestampBody(out, t);
+    }
+
+    private void writeTimestampBody(DataOutputStream out, Timestamp t) throws IOException {
+        // Millis carry the second; nanos are sent only below the millisecond
+        writeVarLong(out, zigZag(t.getTime()));
+        writeVarInt(out, t.getNanos() % 1_000_000);
+    }
+
+    private void writeNullableString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        writeString(out, s);
+    }
+
+    private void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] utf8 = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        writeVarInt(out, utf8.length);
+        out.write(utf8);
+    }
+
+    // ================= Reading =================
+
+    private Object read(DataInputStream in) throws IOException, ClassNotFoundException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case T_NULL:
+                return null;
+            case T_ARRAY: {
+                Object[] arr = new Object[readLength(in)];
+                for (int i = 0; i < arr.length; i++) arr[i] = read(in);
+                return arr;
+            }
+            case T_LIST: {
+                int n = readLength(in);
+                ArrayList<Object> list = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) list.add(read(in));
+                return list;
+            }
+            case T_STRING:
+                return readString(in);
+            case T_INT:
+                return readInt(in);
+            case T_LONG:
+                return unZigZag(readVarLong(in));
+            case T_DOUBLE:
+                return in.readDouble();
+            case T_TRUE:
+                return Boolean.TRUE;
+            case T_FALSE:
+                return Boolean.FALSE;
+            case T_TIMESTAMP:
+                return readTimestampBody(in);
+            case T_LOCAL_DATE:
+                return LocalDate.ofEpochDay(unZigZag(readVarLong(in)));
+            case T_LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(readVarLong(in));
+            case T_REQUEST_TYPE:
+                return REQUEST_TYPES[readVarInt(in)];
+            case T_RESPONSE_TYPE:
+                return RESPONSE_TYPES[readVarInt(in)];
+            case T_WAITLIST_STATUS:
+                return WAITLIST_STATUSES[readVarInt(in)];
+            case T_RESERVATION:
+                return new Reservation(
+                        readInt(in),                    // resId
+                        readInt(in),                    // customerId
+                        readTimestamp(in),              // reservationTime
+                        readInt(in),                    // numOfDin
+                        readNullableString(in),         // status
+                        readTimestamp(in),              // arrivalTime
+                        readTimestamp(in),              // leaveTime
+                        readTimestamp(in),              // createdAt
+                        readNullableString(in),         // source
+                        readInt(in),                    // confCode
+                        (Integer) read(in),             // tableNum
+                        in.readBoolean(),               // reminderSent
+                        readTimestamp(in));             // reminderSentAt
+            case T_TIME_REPORT_ROW:
+                return new TimeReportRow(
+                        readInt(in), readInt(in), readNullableString(in),
+                        readTimestamp(in), readTimestamp(in),
+                        readTimestamp(in), readTimestamp(in),
+                        readTimestamp(in),
+                        readInt(in), readInt(in), readInt(in));
+            case T_WAITLIST_ROW:
+                return new WaitlistRow(readInt(in), readTimestamp(in), readInt(in),
+                        readInt(in), readNullableString(in), readNullableString(in));
+            case T_RESTAURANT_TABLE: {
+                int tableNum = readInt(in);
+                int seats = readInt(in);
+                int flags = in.readUnsignedByte();
+                return new RestaurantTable(tableNum, seats, (flags & 1) != 0, (flags & 2) != 0);
+            }
+            case T_CURRENT_DINER_ROW:
+                return new CurrentDinerRow(readInt(in), readTimestamp(in), readInt(in),
+                        readNullableString(in), readInt(in), readTimestamp(in),
+                        readNullableString(in), readNullableString(in));
+            case T_SUBSCRIBER:
+                return new Subscriber(readInt(in), readNullableString(in), readNullableString(in),
+                        readInt(in), readNullableString(in), readNullableString(in),
+                        readNullableString(in));
+            case T_MEMBERS_REPORT_ROW:
+                return new MembersReportRow(readNullableString(in), readInt(in), readInt(in));
+            case T_HOURLY_RATIO_ROW:
+                return new HourlyWaitlistRatioRow(readInt(in), in.readDouble());
+            case T_WEEKLY_HOURS_ROW:
+                return new WeeklyHoursRow(readInt(in), (LocalTime) read(in), (LocalTime) read(in),
+                        in.readBoolean());
+            case T_SPECIAL_HOURS_ROW:
+                return new SpecialHoursRow((LocalDate) read(in), (LocalTime) read(in),
+                        (LocalTime) read(in), in.readBoolean(), readNullableString(in));
+            case T_PAGE_CURSOR:
+                return new PageCursor(readTimestamp(in), readInt(in));
+            case T_LIST_PAGE:
+                return readListPage(in);
+            case T_DAY_AVAILABILITY:
+                return new DayAvailability((LocalDate) read(in), readInt(in), readInt(in), in.readBoolean());
+            case T_JAVA: {
+                byte[] blob = new byte[readLength(in)];
+                in.readFully(blob);
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(blob))) {
+                    return ois.readObject();
+                }
+            }
+            default:
+                throw new StreamCorruptedException("Unknown value tag " + tag);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private ListPage<?> readListPage(DataInputStream in) throws IOException, ClassNotFoundException {
+        ClientRequestType list = (ClientRequestType) read(in);
+        int index = readInt(in);
+        ArrayList rows = (ArrayList) read(in);
+        PageCursor next = (PageCursor) read(in);
+        return new ListPage(list, index, rows, next, in.readBoolean());
+    }
+
+    private int readInt(DataInputStream in) throws IOException {
+        return unZigZag(readVarInt(in));
+    }
+
+    private Timestamp readTimestamp(DataInputStream in) throws IOException {
+        return in.readUnsignedByte() == 0 ? null : readTimestampBody(in);
+    }
+
+    private Timestamp readTimestampBody(DataInputStream in) throws IOException {
+        Timestamp t = new Timestamp(unZigZag(readVarLong(in)));
+        int subMillisNanos = readVarInt(in);
+        if (subMillisNanos != 0) {
+            t.setNanos(t.getNanos() + subMillisNanos);
+        }
+        return t;
+    }
+
+    private String readNullableString(DataInputStream in) throws IOException {
+        return in.readUnsignedByte() == 0 ? null : readString(in);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[readLength(in)];
+        in.readFully(utf8);
+        return new String(utf8, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    private int readLength(DataInputStream in) throws IOException {
+        int n = readVarInt(in);
+        if (n < 0 || n > in.available()) {
+            throw new StreamCorruptedException("Invalid length " + n);
+        }
+        return n;
+    }
+
+    // ================= Variable-length integers =================
+
+    private static int zigZag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static int unZigZag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new StreamCorruptedException("Malformed varint.");
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new StreamCorruptedException("Malformed varint.");
+    }
+}
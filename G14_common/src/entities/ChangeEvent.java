@@ -0,0 +1,100 @@
+package entities;
+
+import java.io.Serializable;
+
+
+/**
+ * A change pushed by the server to the clients subscribed to its topic.
+ *
+ * The event says which row changed (key) and how. When the server
+ * already holds the new state of the row it is sent as well, so the
+ * client can update that single row; otherwise the client reloads the
+ * list of the topic.
+ */
+public class ChangeEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * How the row identified by the key changed.
+     */
+    public enum Kind {
+        /** A new row was added */
+        ADDED,
+
+        /** An existing row changed */
+        UPDATED,
+
+        /** The row was removed */
+        REMOVED
+    }
+
+    /**
+     * Topic of the change.
+     */
+    private final ChangeTopic topic;
+
+    /**
+     * Kind of the change.
+     */
+    private final Kind kind;
+
+    /**
+     * Key of the changed row (table number or confirmation code).
+     * May be null if the server does not know which row changed.
+     */
+    private final Integer key;
+
+    /**
+     * New state of the row (for example a RestaurantTable).
+     * May be null; the client should then reload the topic's list.
+     */
+    private final Serializable row;
+
+    /**
+     * Constructs a new ChangeEvent.
+     *
+     * @param topic topic of the change
+     * @param kind kind of the change
+     * @param key key of the changed row, or null if unknown
+     * @param row new state of the row, or null if not available
+     */
+    public ChangeEvent(ChangeTopic topic, Kind kind, Integer key, Serializable row) {
+        this.topic = topic;
+        this.kind = kind;
+        this.key = key;
+        this.row = row;
+    }
+
+    /**
+     * Returns the topic of the change.
+     *
+     * @return change topic
+     */
+    public ChangeTopic getTopic() { return topic; }
+
+    /**
+     * Returns the kind of the change.
+     *
+     * @return change kind
+     */
+    public Kind getKind() { return kind; }
+
+    /**
+     * Returns the key of the changed row.
+     *
+     * @return table number or confirmation code, or null if unknown
+     */
+    public Integer getKey() { return key; }
+
+    /**
+     * Returns the new state of the changed row.
+     *
+     * @return row object, or null if not sent
+     */
+    public Serializable getRow() { return row; }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" + topic + " " + kind + " key=" + key + "}";
+    }
+}
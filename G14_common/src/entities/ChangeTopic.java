@@ -0,0 +1,29 @@
+package entities;
+
+import java.io.Serializable;
+
+
+/**
+ * Topics a client can subscribe to in order to be told about changes
+ * made by other clients, instead of re-requesting the full lists.
+ */
+public enum ChangeTopic implements Serializable {
+
+    /**
+     * Restaurant tables: added, seats changed, activated/deactivated,
+     * occupied or freed. The event key is the table number.
+     */
+    TABLES,
+
+    /**
+     * Waitlist entries: joined, left, offered a table or seated.
+     * The event key is the confirmation code, when known.
+     */
+    WAITLIST,
+
+    /**
+     * Diners currently seated in the restaurant: seated or left.
+     * The event key is the confirmation code or the table number.
+     */
+    CURRENT_DINERS
+}
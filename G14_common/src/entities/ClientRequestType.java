@@ -108,10 +108,16 @@ public enum ClientRequestType implements Serializable {
     /** Update personal details of a subscriber */
     UPDATE_SUBSCRIBER_PERSONAL_DETAILS,
 
-    /** Join waitlist as a subscriber */
+    /**
+     * Join waitlist as a subscriber.
+     * { JOIN_WAITLIST_SUBSCRIBER, subscriberId, diners, String idempotencyKey (optional) }.
+     */
     JOIN_WAITLIST_SUBSCRIBER,
 
-    /** Join waitlist as a non-subscriber */
+    /**
+     * Join waitlist as a non-subscriber.
+     * { JOIN_WAITLIST_NON_SUBSCRIBER, email, phone, diners, String idempotencyKey (optional) }.
+     */
     JOIN_WAITLIST_NON_SUBSCRIBER,
 
     /** Leave waitlist as a subscriber */
@@ -145,5 +151,64 @@ public enum ClientRequestType implements Serializable {
     GET_CONF_CODE_CHALLENGE_FOR_SUBSCRIBER,
 
     /** Identify a subscriber at the terminal */
-    TERMINAL_IDENTIFY_SUBSCRIBER
+    TERMINAL_IDENTIFY_SUBSCRIBER,
+
+    /**
+     * Envelope: { CORRELATED, Long requestId, Object[] request }.
+     * The response is sent back wrapped in {@link ServerResponseType#CORRELATED}
+     * with the same request id.
+     */
+    CORRELATED,
+
+    /**
+     * Several requests in one message: { BATCH, Object[] requests }, where
+     * each element is a request Object[]. Answered with a single
+     * {@link ServerResponseType#BATCH_RESULT}.
+     */
+    BATCH,
+
+    /**
+     * Subscribe to change events: { SUBSCRIBE_CHANGES, ChangeTopic... }.
+     * The server then pushes a {@link ServerResponseType#CHANGE_EVENT}
+     * whenever data of one of the topics changes.
+     */
+    SUBSCRIBE_CHANGES,
+
+    /** Stop change events: { UNSUBSCRIBE_CHANGES, ChangeTopic... } */
+    UNSUBSCRIBE_CHANGES,
+
+    /**
+     * One page of all reservations, newest first:
+     * { GET_RESERVATIONS_PAGE, PageCursor after (null = first page), Integer limit }.
+     * Answered with {@link ServerResponseType#LIST_PAGE}.
+     */
+    GET_RESERVATIONS_PAGE,
+
+    /**
+     * One page of the subscribers, by subscriber id:
+     * { GET_SUBSCRIBERS_PAGE, PageCursor after (null = first page), Integer limit }.
+     */
+    GET_SUBSCRIBERS_PAGE,
+
+    /**
+     * One page of the waitlist entries of a month, by entry time:
+     * { GET_WAITLIST_BY_MONTH_PAGE, year, month, PageCursor after (null = first page), Integer limit }.
+     */
+    GET_WAITLIST_BY_MONTH_PAGE,
+
+    /**
+     * A whole list sent as consecutive pages while it is read:
+     * { STREAM_LIST, Object[] listRequest, Integer pageSize }, where listRequest
+     * is a GET_RESERVATIONS, GET_SUBSCRIBERS or GET_WAITLIST_BY_MONTH request.
+     * Answered with {@link ServerResponseType#LIST_PAGE} messages, the last one
+     * marked as such. Cannot be sent inside BATCH or CORRELATED.
+     */
+    STREAM_LIST,
+
+    /**
+     * Free start times of every day of the booking horizon for a party size:
+     * { GET_AVAILABILITY_CALENDAR, Integer diners }.
+     * Answered with {@link ServerResponseType#AVAILABILITY_CALENDAR}.
+     */
+    GET_AVAILABILITY_CALENDAR
 }
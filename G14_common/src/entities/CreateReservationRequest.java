@@ -37,6 +37,13 @@ public class CreateReservationRequest implements Serializable {
      */
     private final int numberOfDiners;
 
+    /**
+     * Client-generated key that identifies this booking attempt.
+     * A request resent with the same key gets the response of the first one
+     * instead of creating a second reservation. Null if the client sends none.
+     */
+    private final String idempotencyKey;
+
     /**
      * Constructs a new CreateReservationRequest.
      *
@@ -48,11 +55,27 @@ public class CreateReservationRequest implements Serializable {
      */
     public CreateReservationRequest(Integer subscriberId, String phone, String email,
                                     Timestamp reservationTime, int numberOfDiners) {
+        this(subscriberId, phone, email, reservationTime, numberOfDiners, null);
+    }
+
+    /**
+     * Constructs a new CreateReservationRequest with an idempotency key.
+     *
+     * @param subscriberId subscriber identifier, or null for non-subscribers
+     * @param phone contact phone number
+     * @param email contact email address
+     * @param reservationTime date and time of the reservation
+     * @param numberOfDiners number of diners for the reservation
+     * @param idempotencyKey key of this booking attempt, or null
+     */
+    public CreateReservationRequest(Integer subscriberId, String phone, String email,
+                                    Timestamp reservationTime, int numberOfDiners, String idempotencyKey) {
         this.subscriberId = subscriberId;
         this.phone = phone;
         this.email = email;
         this.reservationTime = reservationTime;
         this.numberOfDiners = numberOfDiners;
+        this.idempotencyKey = idempotencyKey;
     }
 
     /**
@@ -89,4 +112,11 @@ public class CreateReservationRequest implements Serializable {
      * @return the number of diners
      */
     public int getNumberOfDiners() { return numberOfDiners; }
+
+    /**
+     * Returns the idempotency key of this booking attempt.
+     *
+     * @return the key, or null if none was set
+     */
+    public String getIdempotencyKey() { return idempotencyKey; }
 }
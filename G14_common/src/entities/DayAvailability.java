@@ -0,0 +1,85 @@
+package entities;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Availability of one day of the booking horizon for a party size,
+ * as returned by the availability calendar.
+ *
+ * Only start times that can still be booked are counted: the half-hour
+ * starts between opening time and 2 hours before closing, at least 1 hour
+ * and at most 31 days from now.
+ */
+public class DayAvailability implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The day. */
+    private final LocalDate date;
+
+    /** Bookable start times with a free table for the party. */
+    private final int freeSlots;
+
+    /** Bookable start times of the day, free or not. */
+    private final int totalSlots;
+
+    /** True if the restaurant is closed on this day. */
+    private final boolean closed;
+
+    /**
+     * Creates a new day availability.
+     *
+     * @param date the day
+     * @param freeSlots start times with a free table
+     * @param totalSlots start times of the day
+     * @param closed whether the restaurant is closed on this day
+     */
+    public DayAvailability(LocalDate date, int freeSlots, int totalSlots, boolean closed) {
+        this.date = date;
+        this.freeSlots = freeSlots;
+        this.totalSlots = totalSlots;
+        this.closed = closed;
+    }
+
+    /**
+     * Returns the day.
+     *
+     * @return the day
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Returns the number of start times with a free table for the party.
+     *
+     * @return free start times
+     */
+    public int getFreeSlots() {
+        return freeSlots;
+    }
+
+    /**
+     * Returns the number of bookable start times of the day, free or not.
+     *
+     * @return start times of the day (0 if closed or outside the horizon)
+     */
+    public int getTotalSlots() {
+        return totalSlots;
+    }
+
+    /**
+     * Indicates whether the restaurant is closed on this day.
+     *
+     * @return true if closed, false otherwise
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+        return "DayAvailability{" + date + " " + freeSlots + "/" + totalSlots + (closed ? " closed" : "") + "}";
+    }
+}
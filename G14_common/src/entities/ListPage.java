@@ -0,0 +1,104 @@
+package entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+
+/**
+ * One page of a list sent by the server: { LIST_PAGE, ListPage }.
+ *
+ * Pages answer the keyset page requests (GET_RESERVATIONS_PAGE, ...) and
+ * the STREAM_LIST request, which sends a whole list as consecutive pages
+ * while the rows are read from the database.
+ *
+ * @param <T> row type (Reservation, Subscriber, WaitlistRow)
+ */
+public class ListPage<T extends Serializable> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The full-list request this page belongs to (GET_RESERVATIONS,
+     * GET_SUBSCRIBERS or GET_WAITLIST_BY_MONTH), so the client knows which
+     * screen shows it.
+     */
+    private final ClientRequestType list;
+
+    /**
+     * Position of the page in a stream, starting at 0. Always 0 for a
+     * single page request.
+     */
+    private final int index;
+
+    /**
+     * Rows of the page, in list order.
+     */
+    private final ArrayList<T> rows;
+
+    /**
+     * Cursor to ask for the page after this one, or null if this is the
+     * last page.
+     */
+    private final PageCursor next;
+
+    /**
+     * True if no page follows.
+     */
+    private final boolean last;
+
+    /**
+     * Constructs a new ListPage.
+     *
+     * @param list full-list request the page belongs to
+     * @param index position of the page in a stream
+     * @param rows rows of the page
+     * @param next cursor of the next page, or null
+     * @param last true if no page follows
+     */
+    public ListPage(ClientRequestType list, int index, ArrayList<T> rows, PageCursor next, boolean last) {
+        this.list = list;
+        this.index = index;
+        this.rows = rows;
+        this.next = next;
+        this.last = last;
+    }
+
+    /**
+     * Returns the full-list request the page belongs to.
+     *
+     * @return request type
+     */
+    public ClientRequestType getList() { return list; }
+
+    /**
+     * Returns the position of the page in a stream.
+     *
+     * @return page index, 0 for the first page
+     */
+    public int getIndex() { return index; }
+
+    /**
+     * Returns the rows of the page.
+     *
+     * @return rows (never null)
+     */
+    public ArrayList<T> getRows() { return rows; }
+
+    /**
+     * Returns the cursor to request the next page with.
+     *
+     * @return cursor, or null if this is the last page
+     */
+    public PageCursor getNext() { return next; }
+
+    /**
+     * Returns whether this is the last page.
+     *
+     * @return true if no page follows
+     */
+    public boolean isLast() { return last; }
+
+    @Override
+    public String toString() {
+        return "ListPage{" + list + " #" + index + " rows=" + rows.size() + (last ? " last" : "") + "}";
+    }
+}
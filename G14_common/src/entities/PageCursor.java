@@ -0,0 +1,59 @@
+package entities;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+
+/**
+ * Position after the last row of a page, used to ask for the next page
+ * (keyset pagination).
+ *
+ * The server continues right after the row with this sort key, so a page
+ * costs the same however deep in the list it is, and rows added meanwhile
+ * do not shift the pages already read.
+ */
+public class PageCursor implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Time the list is sorted by (for example createdAt), or null when the
+     * list is sorted by id only or the last row had no time.
+     */
+    private final Timestamp time;
+
+    /**
+     * Id of the last row (reservation id, subscriber id or confirmation code);
+     * breaks ties between rows with the same time.
+     */
+    private final int id;
+
+    /**
+     * Constructs a new PageCursor.
+     *
+     * @param time sort time of the last row read, or null
+     * @param id id of the last row read
+     */
+    public PageCursor(Timestamp time, int id) {
+        this.time = time;
+        this.id = id;
+    }
+
+    /**
+     * Returns the sort time of the last row read.
+     *
+     * @return time, or null
+     */
+    public Timestamp getTime() { return time; }
+
+    /**
+     * Returns the id of the last row read.
+     *
+     * @return row id
+     */
+    public int getId() { return id; }
+
+    @Override
+    public String toString() {
+        return "PageCursor{" + time + " id=" + id + "}";
+    }
+}
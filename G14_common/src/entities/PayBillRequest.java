@@ -25,6 +25,13 @@ public class PayBillRequest implements Serializable {
      */
     private String paidBy; 
 
+    /**
+     * Client-generated key that identifies this payment attempt.
+     * A request resent with the same key gets the receipt of the first one
+     * instead of paying again. Null if the client sends none.
+     */
+    private String idempotencyKey;
+
     /**
      * Constructs a new PayBillRequest object.
      *
@@ -33,9 +40,22 @@ public class PayBillRequest implements Serializable {
      * @param paidBy identifier of the payer
      */
     public PayBillRequest(int confCode, double amount, String paidBy) {
+        this(confCode, amount, paidBy, null);
+    }
+
+    /**
+     * Constructs a new PayBillRequest object with an idempotency key.
+     *
+     * @param confCode reservation confirmation code
+     * @param amount bill amount before discounts
+     * @param paidBy identifier of the payer
+     * @param idempotencyKey key of this payment attempt, or null
+     */
+    public PayBillRequest(int confCode, double amount, String paidBy, String idempotencyKey) {
         this.confCode = confCode;
         this.amount = amount;
         this.paidBy = paidBy;
+        this.idempotencyKey = idempotencyKey;
     }
 
     /**
@@ -59,6 +79,13 @@ public class PayBillRequest implements Serializable {
      */
     public String getPaidBy() { return paidBy; }
 
+    /**
+     * Returns the idempotency key of this payment attempt.
+     *
+     * @return the key, or null if none was set
+     */
+    public String getIdempotencyKey() { return idempotencyKey; }
+
     /**
      * Sets the reservation confirmation code.
      *
@@ -79,4 +106,11 @@ public class PayBillRequest implements Serializable {
      * @param paidBy the payer identifier
      */
     public void setPaidBy(String paidBy) { this.paidBy = paidBy; }
+
+    /**
+     * Sets the idempotency key of this payment attempt.
+     *
+     * @param idempotencyKey the key, or null
+     */
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
 }
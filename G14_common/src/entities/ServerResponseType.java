@@ -153,7 +153,11 @@ public enum ServerResponseType implements Serializable {
     /** Reservation creation succeeded */
     CREATE_SUCCESS,
 
-    /** Reservation creation failed */
+    /**
+     * Reservation creation failed.
+     * { CREATE_FAILED, String message, List&lt;String&gt; sameDayTimes (optional),
+     *   List&lt;SlotSuggestion&gt; alternatives (optional) }.
+     */
     CREATE_FAILED,
 
     /** Waitlist operation succeeded */
@@ -184,5 +188,32 @@ public enum ServerResponseType implements Serializable {
     TERMINAL_SUBSCRIBER_IDENTIFIED,
 
     /** Subscriber was not found at the terminal */
-    TERMINAL_SUBSCRIBER_NOT_FOUND
+    TERMINAL_SUBSCRIBER_NOT_FOUND,
+
+    /**
+     * Envelope: { CORRELATED, Long requestId, Object[] response }.
+     * Answers a {@link ClientRequestType#CORRELATED} request with the same id.
+     */
+    CORRELATED,
+
+    /**
+     * Answer to a {@link ClientRequestType#BATCH} request:
+     * { BATCH_RESULT, Object[] responses }, one response per sub-request, in order.
+     */
+    BATCH_RESULT,
+
+    /** Topics the client is subscribed to after a (un)subscribe request */
+    CHANGES_SUBSCRIBED,
+
+    /** Pushed change of a subscribed topic: { CHANGE_EVENT, ChangeEvent } */
+    CHANGE_EVENT,
+
+    /** One page of a list: { LIST_PAGE, ListPage } */
+    LIST_PAGE,
+
+    /**
+     * Availability calendar: { AVAILABILITY_CALENDAR, Integer diners, ArrayList&lt;DayAvailability&gt; },
+     * one entry per day from today to the end of the booking horizon.
+     */
+    AVAILABILITY_CALENDAR
 }
@@ -0,0 +1,54 @@
+package entities;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * A bookable alternative offered when a reservation request cannot be
+ * created: a nearby start time with a free table for the same party, or the
+ * requested time for a smaller party.
+ */
+public class SlotSuggestion implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Suggested start date and time. */
+    private final Timestamp start;
+
+    /** Number of diners the suggestion has a table for. */
+    private final int diners;
+
+    /**
+     * Creates a new suggestion.
+     *
+     * @param start suggested start date and time
+     * @param diners number of diners with a free table at that time
+     */
+    public SlotSuggestion(Timestamp start, int diners) {
+        this.start = start;
+        this.diners = diners;
+    }
+
+    /**
+     * Returns the suggested start date and time.
+     *
+     * @return the start timestamp
+     */
+    public Timestamp getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the number of diners the suggestion has a table for.
+     *
+     * @return number of diners
+     */
+    public int getDiners() {
+        return diners;
+    }
+
+    @Override
+    public String toString() {
+        return "SlotSuggestion{" + start + " x" + diners + "}";
+    }
+}
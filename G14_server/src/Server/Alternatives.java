@@ -0,0 +1,29 @@
+package Server;
+
+import java.util.ArrayList;
+
+import entities.SlotSuggestion;
+
+/**
+ * What a failed booking is offered instead, found in one pass over the
+ * free start times by {@link OrdersRepository#suggestAlternatives}.
+ */
+public final class Alternatives {
+
+    /** Nearest free start times, then the requested time for a smaller party. */
+    public final ArrayList<SlotSuggestion> suggestions;
+
+    /** Every bookable free start time of the requested day (HH:mm), in order. */
+    public final ArrayList<String> sameDaySlots;
+
+    /**
+     * Creates the alternatives of a failed booking.
+     *
+     * @param suggestions suggestions, nearest first
+     * @param sameDaySlots free start times of the requested day
+     */
+    public Alternatives(ArrayList<SlotSuggestion> suggestions, ArrayList<String> sameDaySlots) {
+        this.suggestions = suggestions;
+        this.sameDaySlots = sameDaySlots;
+    }
+}
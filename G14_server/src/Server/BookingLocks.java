@@ -0,0 +1,257 @@
+package Server;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * BookingLocks
+ * ------------
+ * Striped locks that make "check the table is free, then insert" atomic
+ * for one (date, table) pair without serializing the whole server.
+ *
+ * A booking locks the stripes of every (day, table) pair its 2-hour window
+ * touches (two days for a booking that ends after midnight), always in
+ * ascending stripe order so two bookings can never deadlock. Bookings of
+ * different tables or days usually map to different stripes and run in
+ * parallel; two bookings of the same table and day wait for each other,
+ * and the second one sees the row committed by the first.
+ *
+ * Every path that puts a table on a reservation takes them: new bookings
+ * ({@link OrdersRepository#createReservation}), walk-ins and waitlist offers
+ * ({@link #lockNow}) and the reassignment after a table or hours change
+ * ({@link #lockAll}). The locks only cover this server process.
+ *
+ * A lock must stay held until the row it protects is committed. Code that
+ * commits after the method that took the lock returns (the DBController
+ * transactions) opens a {@link Scope} first: locks released inside a scope
+ * are kept until the scope is closed, after the commit or rollback.
+ */
+public final class BookingLocks {
+
+    /** The locks of the server. */
+    private static final BookingLocks INSTANCE = new BookingLocks(ServerConfig.BOOKING_LOCK_STRIPES);
+
+    /** Scope open on the current thread, or null. */
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private final ReentrantLock[] stripes;
+
+    /** Number of lock() calls. */
+    private final AtomicLong acquired = new AtomicLong();
+
+    /** Number of lock() calls that had to wait for another booking. */
+    private final AtomicLong contended = new AtomicLong();
+
+    /** Number of bookings that found their table taken and moved to another one. */
+    private final AtomicLong conflicts = new AtomicLong();
+
+    /**
+     * Locks held by one booking; unlocks them on close, or at the end of the
+     * scope open on the thread.
+     */
+    public final class Held implements AutoCloseable {
+        private final int[] indexes;
+
+        private Held(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        @Override
+        public void close() {
+            Scope scope = SCOPE.get();
+            if (scope != null) {
+                scope.kept.add(this);
+            } else {
+                unlock();
+            }
+        }
+
+        private void unlock() {
+            for (int i = indexes.length - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Keeps the booking locks released on the current thread until the
+     * transaction that wrote the protected rows has ended. Scopes nest: a
+     * scope opened inside another one joins it, and closing the joined
+     * handle does nothing.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Scope root;
+        private final List<Held> kept;
+
+        private Scope(Scope root) {
+            this.root = (root == null) ? this : root;
+            this.kept = (root == null) ? new ArrayList<>() : root.kept;
+        }
+
+        /** Highest stripe kept by the scope, or -1. */
+        private int highest() {
+            int max = -1;
+            for (Held h : kept) {
+                if (h.indexes.length > 0) max = Math.max(max, h.indexes[h.indexes.length - 1]);
+            }
+            return max;
+        }
+
+        /**
+         * Releases the locks kept by the scope. Does nothing for a joined
+         * handle.
+         */
+        @Override
+        public void close() {
+            if (root != this) return;
+            SCOPE.remove();
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                kept.get(i).unlock();
+            }
+            kept.clear();
+        }
+    }
+
+    private BookingLocks(int stripeCount) {
+        stripes = new ReentrantLock[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the locks of the server.
+     *
+     * @return the single instance
+     */
+    public static BookingLocks getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Opens a scope on the current thread, or joins the one already open.
+     *
+     * @return the scope, to close after the commit or rollback
+     */
+    public static Scope beginScope() {
+        Scope scope = new Scope(SCOPE.get());
+        if (scope.root == scope) SCOPE.set(scope);
+        return scope;
+    }
+
+    /**
+     * Locks every (day, table) stripe touched by a booking of a table
+     * from start (inclusive) to end (exclusive).
+     *
+     * @param tableNum table number
+     * @param start booking start
+     * @param end booking end
+     * @return the held locks, to be closed when the booking is committed
+     * @throws SQLException BOOKING_BUSY if the thread already keeps other
+     *         locks in its scope and could not get these in time
+     */
+    public Held lock(int tableNum, Timestamp start, Timestamp end) throws SQLException {
+        LocalDate first = start.toLocalDateTime().toLocalDate();
+        LocalDate last = end.toLocalDateTime().minusNanos(1).toLocalDate();
+
+        int[] indexes = new int[(int) (last.toEpochDay() - first.toEpochDay()) + 1];
+        int n = 0;
+        for (LocalDate d = first; !d.isAfter(last); d = d.plusDays(1)) {
+            indexes[n++] = stripeOf(d, tableNum);
+        }
+        return acquire(Arrays.stream(indexes, 0, n).distinct().sorted().toArray());
+    }
+
+    /**
+     * Locks a table for seating a party now: a walk-in, a waitlist offer or
+     * an arrival. Covers the 2-hour windows that start or end now.
+     *
+     * @param tableNum table number
+     * @return the held locks, to be closed when the seating is committed
+     * @throws SQLException see {@link #lock}
+     */
+    public Held lockNow(int tableNum) throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        return lock(tableNum, Timestamp.valueOf(now.minusHours(2)), Timestamp.valueOf(now.plusHours(2)));
+    }
+
+    /**
+     * Locks every stripe, for changes that may move any booking (the
+     * reassignment after a table or opening hours change). Bookings wait
+     * until it is released.
+     *
+     * @return the held locks
+     * @throws SQLException see {@link #lock}
+     */
+    public Held lockAll() throws SQLException {
+        int[] indexes = new int[stripes.length];
+        for (int i = 0; i < indexes.length; i++) indexes[i] = i;
+        return acquire(indexes);
+    }
+
+    /**
+     * Records a booking that found its table taken under the lock.
+     */
+    void recordConflict() {
+        conflicts.incrementAndGet();
+    }
+
+    /**
+     * Returns a one-line summary of the lock counters, for the server log.
+     *
+     * @return lock statistics
+     */
+    public String getStats() {
+        return "bookings=" + acquired.get() + " waited=" + contended.get()
+                + " retried=" + conflicts.get() + " stripes=" + stripes.length;
+    }
+
+    /**
+     * Locks the given stripes in ascending order. A thread whose scope keeps
+     * locks from an earlier step may already hold a higher stripe; waiting
+     * for a lower one could deadlock, so that wait is bounded.
+     */
+    private Held acquire(int[] indexes) throws SQLException {
+        Scope scope = SCOPE.get();
+        int highest = (scope == null) ? -1 : scope.highest();
+
+        acquired.incrementAndGet();
+        boolean waited = false;
+        for (int n = 0; n < indexes.length; n++) {
+            ReentrantLock lock = stripes[indexes[n]];
+            if (lock.tryLock()) continue;
+            waited = true;
+            if (indexes[n] > highest) {
+                lock.lock();
+                continue;
+            }
+            boolean locked = false;
+            try {
+                locked = lock.tryLock(ServerConfig.BOOKING_LOCK_WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!locked) {
+                for (int i = n - 1; i >= 0; i--) stripes[indexes[i]].unlock();
+                contended.incrementAndGet();
+                throw new SQLException("BOOKING_BUSY");
+            }
+        }
+        if (waited) contended.incrementAndGet();
+        return new Held(indexes);
+    }
+
+    private int stripeOf(LocalDate date, int tableNum) {
+        int h = (int) date.toEpochDay() * 31 + tableNum;
+        h ^= (h >>> 16);
+        return Math.floorMod(h * 0x9E3779B1, stripes.length);
+    }
+}
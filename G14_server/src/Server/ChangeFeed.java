@@ -0,0 +1,147 @@
+package Server;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import entities.ChangeEvent;
+import entities.ChangeTopic;
+import entities.RestaurantTable;
+import entities.ServerResponseType;
+import ocsf.server.AbstractServer;
+import ocsf.server.ConnectionToClient;
+
+/**
+ * ChangeFeed
+ * ----------
+ * Pushes change events to the clients that subscribed to a topic
+ * (tables, waitlist, current diners), so their screens can update
+ * without re-requesting the full lists.
+ *
+ * The topics of every client are kept in its ConnectionToClient info map.
+ * DBController publishes an event after each committed change; events are
+ * sent by a single background thread, in publish order, so the request
+ * that caused the change never waits for other clients.
+ *
+ * Push message format: { CHANGE_EVENT, ChangeEvent }.
+ */
+public class ChangeFeed {
+
+    private static final ServerLog.Category LOG = ServerLog.category("server");
+
+    /** Key used to keep the subscribed topics inside ConnectionToClient. */
+    private static final String TOPICS_KEY = "changeTopics";
+
+    /**
+     * Single-thread executor used for sending events.
+     * Runs as a daemon thread.
+     */
+    private static final ExecutorService EXEC = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "change-feed");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Server whose clients receive the events. Null until {@link #attach} is called. */
+    private static volatile AbstractServer server;
+
+    /** Utility class - no instances. */
+    private ChangeFeed() {
+    }
+
+    /**
+     * Sets the server whose clients receive the events.
+     *
+     * @param s the listening server
+     */
+    public static void attach(AbstractServer s) {
+        server = s;
+    }
+
+    /**
+     * Adds topics to the subscriptions of a client.
+     *
+     * @param client the client connection
+     * @param topics topics to add
+     * @return all topics the client is now subscribed to
+     */
+    public static Set<ChangeTopic> subscribe(ConnectionToClient client, Collection<ChangeTopic> topics) {
+        synchronized (client) {
+            EnumSet<ChangeTopic> updated = EnumSet.noneOf(ChangeTopic.class);
+            updated.addAll(topicsOf(client));
+            updated.addAll(topics);
+            client.setInfo(TOPICS_KEY, Collections.unmodifiableSet(updated));
+            return updated;
+        }
+    }
+
+    /**
+     * Removes topics from the subscriptions of a client.
+     *
+     * @param client the client connection
+     * @param topics topics to remove
+     * @return all topics the client is still subscribed to
+     */
+    public static Set<ChangeTopic> unsubscribe(ConnectionToClient client, Collection<ChangeTopic> topics) {
+        synchronized (client) {
+            EnumSet<ChangeTopic> updated = EnumSet.noneOf(ChangeTopic.class);
+            updated.addAll(topicsOf(client));
+            updated.removeAll(topics);
+            client.setInfo(TOPICS_KEY, Collections.unmodifiableSet(updated));
+            return updated;
+        }
+    }
+
+    /**
+     * Publishes a change to every client subscribed to its topic. Inside a
+     * transactional UnitOfWork it is pushed once the change is committed.
+     *
+     * @param topic topic of the change
+     * @param kind kind of the change
+     * @param key table number or confirmation code of the changed row, or null if unknown
+     * @param row new state of the row, or null
+     */
+    public static void publish(ChangeTopic topic, ChangeEvent.Kind kind, Integer key, Serializable row) {
+        UnitOfWork.afterCommit(() -> push(topic, kind, key, row));
+    }
+
+    private static void push(ChangeTopic topic, ChangeEvent.Kind kind, Integer key, Serializable row) {
+        AbstractServer s = server;
+        if (s == null) return;
+
+        Object[] msg = { ServerResponseType.CHANGE_EVENT, new ChangeEvent(topic, kind, key, row) };
+        EXEC.submit(() -> {
+            try {
+                s.sendToAllClients(msg, client -> topicsOf(client).contains(topic));
+            } catch (Throwable t) {
+                LOG.warn("Failed to push " + msg[1] + ": " + t.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Publishes that a table changed (seats, active flag or occupancy).
+     *
+     * @param tableNum table number
+     * @param table new state of the table, or null if it could not be read
+     */
+    public static void tableUpdated(int tableNum, RestaurantTable table) {
+        publish(ChangeTopic.TABLES, ChangeEvent.Kind.UPDATED, tableNum, table);
+    }
+
+    /**
+     * Returns the topics a client is subscribed to.
+     *
+     * @param client the client connection
+     * @return subscribed topics (never null)
+     */
+    @SuppressWarnings("unchecked")
+    private static Set<ChangeTopic> topicsOf(ConnectionToClient client) {
+        Object topics = client.getInfo(TOPICS_KEY);
+        return (topics == null) ? EnumSet.noneOf(ChangeTopic.class) : (Set<ChangeTopic>) topics;
+    }
+}
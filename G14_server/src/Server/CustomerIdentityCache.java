@@ -0,0 +1,264 @@
+package Server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CustomerIdentityCache
+ * ---------------------
+ * Bounded LRU cache of the lookups that turn a phone number, an email
+ * address or a subscriber ID into a CostumerId. Every booking, waitlist
+ * join and forgot-code request starts with one of them.
+ *
+ * Phone and email are both unique in `costumer`, so each one maps to at most
+ * one customer. Phones are keyed trimmed, emails trimmed and lower-cased (the
+ * column collation is case-insensitive). Only rows actually found are
+ * cached; a miss always goes to the database, so a new customer is never
+ * hidden.
+ *
+ * A customer's phone and email only change through
+ * UPDATE_SUBSCRIBER_PERSONAL_DETAILS, which calls {@link #forgetCustomer(int)}
+ * after its commit; REGISTER_SUBSCRIBER does the same for the customer it
+ * links. A lookup that raced with such a call is returned but not cached.
+ * Lookups made inside a transaction (including a transactional UnitOfWork)
+ * are not cached either: they may see uncommitted rows or an older snapshot.
+ *
+ * Size is set with bistro.identityCache.size; 0 disables caching.
+ */
+public final class CustomerIdentityCache {
+
+    /** The single cache of the server. */
+    private static final CustomerIdentityCache INSTANCE =
+            new CustomerIdentityCache(ServerConfig.IDENTITY_CACHE_SIZE);
+
+    private final int capacity;
+
+    /** "p:" + phone and "e:" + email to CostumerId, least recently used first. */
+    private final LinkedHashMap<String, Integer> byContact;
+
+    /** SubscriberId to CostumerId, least recently used first. */
+    private final LinkedHashMap<Integer, Integer> bySubscriber;
+
+    /** Incremented by every invalidation; guarded by this. */
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private CustomerIdentityCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.byContact = lru(this.capacity * 2);
+        this.bySubscriber = lru(this.capacity);
+    }
+
+    /**
+     * Returns the cache of the server.
+     *
+     * @return the single instance
+     */
+    public static CustomerIdentityCache getInstance() {
+        return INSTANCE;
+    }
+
+    // ================= Lookups =================
+
+    /**
+     * Finds the customer that has the given phone number or the given email.
+     *
+     * @param conn database connection used on a miss
+     * @param phone phone number
+     * @param email email address
+     * @return CostumerId, or null if no customer has either of them
+     * @throws SQLException on database error
+     */
+    public Integer findByPhoneOrEmail(Connection conn, String phone, String email) throws SQLException {
+        Integer id = cached(phoneKey(phone));
+        if (id == null) id = cached(emailKey(email));
+        if (id != null) {
+            hits.incrementAndGet();
+            return id;
+        }
+        misses.incrementAndGet();
+
+        String sql = "SELECT CostumerId, PhoneNum, Email FROM schema_for_project.costumer "
+                + "WHERE PhoneNum=? OR Email=? LIMIT 1";
+        return query(conn, sql, phone, email);
+    }
+
+    /**
+     * Finds the customer that has both the given phone number and email.
+     *
+     * @param conn database connection used on a miss
+     * @param phone phone number
+     * @param email email address
+     * @return CostumerId, or null if no customer has both of them
+     * @throws SQLException on database error
+     */
+    public Integer findByPhoneAndEmail(Connection conn, String phone, String email) throws SQLException {
+        Integer byPhone = cached(phoneKey(phone));
+        if (byPhone != null && byPhone.equals(cached(emailKey(email)))) {
+            hits.incrementAndGet();
+            return byPhone;
+        }
+        misses.incrementAndGet();
+
+        String sql = "SELECT CostumerId, PhoneNum, Email FROM schema_for_project.costumer "
+                + "WHERE PhoneNum=? AND Email=?";
+        return query(conn, sql, phone, email);
+    }
+
+    /**
+     * Finds the customer linked to a subscriber.
+     *
+     * @param conn database connection used on a miss
+     * @param subscriberId subscriber identifier
+     * @return CostumerId, or null if the subscriber does not exist or has none
+     * @throws SQLException on database error
+     */
+    public Integer findBySubscriber(Connection conn, int subscriberId) throws SQLException {
+        if (capacity > 0) {
+            Integer id;
+            synchronized (this) {
+                id = bySubscriber.get(subscriberId);
+            }
+            if (id != null) {
+                hits.incrementAndGet();
+                return id;
+            }
+        }
+        misses.incrementAndGet();
+
+        long gen = generation();
+        String sql = "SELECT CostumerId FROM schema_for_project.subscriber WHERE SubscriberId = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, subscriberId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Object v = rs.getObject("CostumerId");
+                if (v == null) return null;
+                int id = rs.getInt("CostumerId");
+                if (cacheable(conn)) {
+                    synchronized (this) {
+                        if (gen == generation) bySubscriber.put(subscriberId, id);
+                    }
+                }
+                return id;
+            }
+        }
+    }
+
+    // ================= Invalidation =================
+
+    /**
+     * Drops every entry that points to a customer. Called after the
+     * customer's phone or email was committed; inside a transactional
+     * UnitOfWork, done at its commit, so a lookup of the old contact made
+     * before the commit cannot stay cached.
+     *
+     * @param customerId CostumerId whose entries are dropped
+     */
+    public void forgetCustomer(int customerId) {
+        UnitOfWork.afterCommit(() -> forget(customerId));
+    }
+
+    private synchronized void forget(int customerId) {
+        generation++;
+        Integer id = customerId;
+        byContact.values().removeIf(id::equals);
+        bySubscriber.values().removeIf(id::equals);
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public synchronized void clear() {
+        generation++;
+        byContact.clear();
+        bySubscriber.clear();
+    }
+
+    /**
+     * Returns a one-line summary of the cache counters, for the server log.
+     *
+     * @return cache statistics
+     */
+    public String getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        long pct = (h + m) == 0 ? 0 : (h * 100) / (h + m);
+        int size;
+        synchronized (this) {
+            size = byContact.size() + bySubscriber.size();
+        }
+        return "hits=" + h + " misses=" + m + " hitRate=" + pct + "% entries=" + size;
+    }
+
+    // ================= Internals =================
+
+    /**
+     * Runs a costumer query and caches the phone and email of the row found.
+     */
+    private Integer query(Connection conn, String sql, String phone, String email) throws SQLException {
+        long gen = generation();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, phone);
+            ps.setString(2, email);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                int id = rs.getInt("CostumerId");
+                if (cacheable(conn)) {
+                    String p = phoneKey(rs.getString("PhoneNum"));
+                    String e = emailKey(rs.getString("Email"));
+                    synchronized (this) {
+                        if (gen == generation) {
+                            if (p != null) byContact.put(p, id);
+                            if (e != null) byContact.put(e, id);
+                        }
+                    }
+                }
+                return id;
+            }
+        }
+    }
+
+    private synchronized Integer cached(String key) {
+        return key == null ? null : byContact.get(key);
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    private boolean cacheable(Connection conn) throws SQLException {
+        return capacity > 0 && conn.getAutoCommit() && !UnitOfWork.inTransaction();
+    }
+
+    private static String phoneKey(String phone) {
+        if (phone == null) return null;
+        String p = phone.trim();
+        return p.isEmpty() ? null : "p:" + p;
+    }
+
+    private static String emailKey(String email) {
+        if (email == null) return null;
+        String e = email.trim().toLowerCase(Locale.ROOT);
+        return e.isEmpty() ? null : "e:" + e;
+    }
+
+    private static <K> LinkedHashMap<K, Integer> lru(int max) {
+        return new LinkedHashMap<K, Integer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Integer> eldest) {
+                return size() > max;
+            }
+        };
+    }
+}
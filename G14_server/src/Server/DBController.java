@@ -13,6 +13,7 @@ import java.util.Random;
 import entities.Reservation;
 import entities.Subscriber;
 import entities.CurrentDinerRow;
+import entities.DayAvailability;
 import entities.MembersReportRow;
 import entities.TimeReportRow;
 import entities.WaitlistRow;
@@ -21,6 +22,11 @@ import entities.SpecialHoursRow;
 import entities.WeeklyHoursRow;
 import entities.WaitlistJoinResult;
 import entities.WaitlistStatus;
+import entities.ChangeEvent;
+import entities.ChangeTopic;
+import entities.ClientRequestType;
+import entities.ListPage;
+import entities.PageCursor;
 
 import server_repositries.TableRepository;
 import server_repositries.WaitlistRepository;
@@ -43,6 +49,10 @@ import java.time.LocalTime;
  */
 public class DBController {
 
+    private static final ServerLog.Category LOG = ServerLog.category("jobs");
+    private static final ServerLog.Category POOL_LOG = ServerLog.category("pool");
+    private static final ServerLog.Category FEED_LOG = ServerLog.category("server");
+
     /**
      * The JDBC connection string for the project database.
      */
@@ -82,11 +92,13 @@ public class DBController {
      */
     public static boolean initPool() {
         try {
-            MySQLConnectionPool.init(DB_URL, dbUser, dbPassword, 10, 30 * 60_000, 60 * 5);
+            MySQLConnectionPool.init(DB_URL, dbUser, dbPassword,
+                    ServerConfig.POOL_MAX_ACTIVE, ServerConfig.POOL_MIN_IDLE, ServerConfig.POOL_ACQUIRE_TIMEOUT_MS,
+                    30 * 60_000, 60 * 5);
 
             PooledConnection pc = MySQLConnectionPool.getInstance().getConnection();
             if (pc == null) {
-                System.out.println("Failed to init DB Pool (connection is null)");
+                POOL_LOG.error("Failed to init DB Pool (connection is null)");
                 if (ServerUI.serverController != null) {
                     ServerUI.serverController.setDbStatus("Disconnected");
                     ServerUI.serverController.appendLog("DB connection failed. Please check username/password.");
@@ -94,9 +106,21 @@ public class DBController {
                 return false;
             }
 
-            MySQLConnectionPool.getInstance().releaseConnection(pc);
+            try {
+                // Give back the confirmation codes a previous run reserved but did not use
+                int released = server_repositries.ConfCodeRepository.releaseReserved(pc.getConnection());
+                if (released > 0) POOL_LOG.info("Released " + released + " reserved confirmation codes");
+
+                // Load the slot index now so the first slot search does not pay for it
+                SlotAvailabilityIndex.getInstance().preload(pc.getConnection());
+            } catch (SQLException e) {
+                POOL_LOG.warn("Slot index not loaded: " + e.getMessage());
+            } finally {
+                MySQLConnectionPool.getInstance().releaseConnection(pc);
+            }
+            MySQLConnectionPool.getInstance().warmUp();
 
-            System.out.println("DB Pool initialized");
+            POOL_LOG.info("DB Pool initialized");
             if (ServerUI.serverController != null) {
                 ServerUI.serverController.setDbStatus("Connected");
             }
@@ -106,7 +130,7 @@ public class DBController {
 
             String msg = friendlyDbError(e);
 
-            System.out.println("Failed to init DB Pool: " + msg);
+            POOL_LOG.error("Failed to init DB Pool: " + msg);
 
             if (ServerUI.serverController != null) {
                 ServerUI.serverController.setDbStatus("Disconnected");
@@ -148,14 +172,38 @@ public class DBController {
      * Stops the connection pool and closes database connections.
      */
     public static void shutdownPool() {
+        try {
+            PooledConnection pc = MySQLConnectionPool.getInstance().getConnection();
+            try {
+                server_repositries.ConfCodeRepository.releaseReserved(pc.getConnection());
+            } finally {
+                MySQLConnectionPool.getInstance().releaseConnection(pc);
+            }
+        } catch (Exception e) {
+            // the codes are given back on the next start
+        }
+
         try {
             MySQLConnectionPool.getInstance().shutdown();
-            System.out.println("DB Pool shutdown");
+            POOL_LOG.info("DB Pool shutdown");
         } catch (Exception e) {
             // do not crash server ui on shutdown errors
         }
     }
 
+    /**
+     * Returns the counters of the connection pool, for the server window.
+     *
+     * @return pool statistics, or null if the pool is not running
+     */
+    public static String getPoolStats() {
+        try {
+            return MySQLConnectionPool.getInstance().getStats();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
     /**
      * Retrieves all reservations from the system.
      *
@@ -285,6 +333,7 @@ public class DBController {
             int subscriberId = subscribersRepo.insertSubscriber(conn, name, phone, costumerId,scanCode);
 
             conn.commit();
+            CustomerIdentityCache.getInstance().forgetCustomer(costumerId);
 
             
             Subscriber s = new Subscriber(subscriberId, name, phone, email,scanCode);
@@ -396,6 +445,160 @@ public class DBController {
         }
     }
 
+    /**
+     * Returns one page of all reservations, newest first.
+     *
+     * @param after cursor returned with the previous page, or null for the first page
+     * @param limit maximum number of reservations in the page
+     * @return the page
+     * @throws Exception on database errors
+     */
+    public static ListPage<Reservation> getReservationsPage(PageCursor after, int limit) throws Exception {
+        PooledConnection pc = null;
+        try {
+            pc = MySQLConnectionPool.getInstance().getConnection();
+            // One extra row tells whether another page follows
+            ArrayList<Reservation> rows = ordersRepo.getOrdersPage(pc.getConnection(), after, limit + 1);
+            return toPage(ClientRequestType.GET_RESERVATIONS, rows, limit, DBController::cursorOf);
+        } finally {
+            if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
+        }
+    }
+
+    /**
+     * Returns one page of the subscribers, by subscriber id.
+     *
+     * @param after cursor returned with the previous page, or null for the first page
+     * @param limit maximum number of subscribers in the page
+     * @return the page
+     * @throws Exception on database errors
+     */
+    public static ListPage<Subscriber> getSubscribersPage(PageCursor after, int limit) throws Exception {
+        PooledConnection pc = null;
+        try {
+            pc = MySQLConnectionPool.getInstance().getConnection();
+            ArrayList<Subscriber> rows = viewRepo.getSubscribersPage(pc.getConnection(), after, limit + 1);
+            return toPage(ClientRequestType.GET_SUBSCRIBERS, rows, limit, DBController::cursorOf);
+        } finally {
+            if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
+        }
+    }
+
+    /**
+     * Returns one page of the waitlist entries of a month, by entry time.
+     *
+     * @param year the year
+     * @param month the month (1–12)
+     * @param after cursor returned with the previous page, or null for the first page
+     * @param limit maximum number of entries in the page
+     * @return the page
+     * @throws Exception on database errors
+     */
+    public static ListPage<WaitlistRow> getWaitlistByMonthPage(int year, int month, PageCursor after, int limit)
+            throws Exception {
+        PooledConnection pc = null;
+        try {
+            pc = MySQLConnectionPool.getInstance().getConnection();
+            ArrayList<WaitlistRow> rows =
+                    viewRepo.getWaitlistByMonthPage(pc.getConnection(), year, month, after, limit + 1);
+            return toPage(ClientRequestType.GET_WAITLIST_BY_MONTH, rows, limit, DBController::cursorOf);
+        } finally {
+            if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
+        }
+    }
+
+    /**
+     * Reads all reservations (newest first) and hands them to the handler
+     * while they are read from the database.
+     *
+     * @param handler receives each reservation
+     * @throws Exception on database errors or if the handler fails
+     */
+    public static void streamReservations(RowHandler<Reservation> handler) throws Exception {
+        PooledConnection pc = null;
+        try {
+            pc = MySQLConnectionPool.getInstance().getConnection();
+            handler.onConnection(pc);
+            ordersRepo.streamAllOrders(pc.getConnection(), handler);
+        } finally {
+            handler.onConnection(null);
+            if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
+        }
+    }
+
+    /**
+     * Reads all subscribers (by id) and hands them to the handler while they
+     * are read from the database.
+     *
+     * @param handler receives each subscriber
+     * @throws Exception on database errors or if the handler fails
+     */
+    public static void streamSubscribers(RowHandler<Subscriber> handler) throws Exception {
+        PooledConnection pc = null;
+        try {
+            pc = MySQLConnectionPool.getInstance().getConnection();
+            handler.onConnection(pc);
+            viewRepo.streamSubscribers(pc.getConnection(), handler);
+        } finally {
+            handler.onConnection(null);
+            if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
+        }
+    }
+
+    /**
+     * Reads the waitlist entries of a month (by entry time) and hands them to
+     * the handler while they are read from the database.
+     *
+     * @param year the year
+     * @param month the month (1–12)
+     * @param handler receives each row
+     * @throws Exception on database errors or if the handler fails
+     */
+    public static void streamWaitlistByMonth(int year, int month, RowHandler<WaitlistRow> handler) throws Exception {
+        PooledConnection pc = null;
+        try {
+            pc = MySQLConnectionPool.getInstance().getConnection();
+            handler.onConnection(pc);
+            viewRepo.streamWaitlistByMonth(pc.getConnection(), year, month, handler);
+        } finally {
+            handler.onConnection(null);
+            if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
+        }
+    }
+
+    /**
+     * Builds a page from rows read with one extra row: if the extra row is
+     * there it is dropped and the page gets the cursor of its last row.
+     *
+     * @param list the full-list request the page belongs to
+     * @param rows rows read (at most limit + 1)
+     * @param limit page size
+     * @param cursorOf returns the cursor positioned after a row
+     * @return the page
+     */
+    private static <T extends java.io.Serializable> ListPage<T> toPage(ClientRequestType list, ArrayList<T> rows,
+            int limit, java.util.function.Function<T, PageCursor> cursorOf) {
+        boolean more = rows.size() > limit;
+        if (more) rows.remove(rows.size() - 1);
+        PageCursor next = more ? cursorOf.apply(rows.get(rows.size() - 1)) : null;
+        return new ListPage<>(list, 0, rows, next, !more);
+    }
+
+    /** Cursor after a reservation in the all-reservations order. */
+    public static PageCursor cursorOf(Reservation r) {
+        return new PageCursor(r.getCreatedAt(), r.getResId());
+    }
+
+    /** Cursor after a subscriber in the subscribers order. */
+    public static PageCursor cursorOf(Subscriber s) {
+        return new PageCursor(null, s.getSubscriberId());
+    }
+
+    /** Cursor after a waitlist row in the month order. */
+    public static PageCursor cursorOf(WaitlistRow w) {
+        return new PageCursor(w.getTimeEnterQueue(), w.getConfCode());
+    }
+
     /**
      * Retrieves diners currently seated in the restaurant.
      *
@@ -454,6 +657,8 @@ public class DBController {
             con = pc.getConnection();
             boolean oldAuto = con.getAutoCommit();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
             
             try {
                 String err = restaurantRepo.addTable(con, tableNum, seats);
@@ -470,12 +675,17 @@ public class DBController {
                 );
 
                 con.commit();
+                TableCatalog.reload(con);
+                SlotAvailabilityIndex.getInstance().invalidate();
+                ChangeFeed.publish(ChangeTopic.TABLES, ChangeEvent.Kind.ADDED, tableNum,
+                        new RestaurantTable(tableNum, seats, true, false));
                 return null;
 
             } catch (Exception e) {
                 con.rollback();
                 throw e;
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(oldAuto);
             }
 
@@ -510,6 +720,8 @@ public class DBController {
 
             boolean oldAuto = con.getAutoCommit();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
 
             try {
                 String err = restaurantRepo.updateTableSeats(con, tableNum, newSeats);
@@ -526,12 +738,16 @@ public class DBController {
                 );
 
                 con.commit();
+                TableCatalog.reload(con);
+                SlotAvailabilityIndex.getInstance().invalidate();
+                ChangeFeed.tableUpdated(tableNum, readTable(con, tableNum));
                 return null;
 
             } catch (Exception e) {
                 con.rollback();
                 throw e;
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(oldAuto);
             }
 
@@ -566,6 +782,8 @@ public class DBController {
 
             boolean oldAuto = con.getAutoCommit();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
 
             try {
                 String err = restaurantRepo.deactivateTable(con, tableNum);
@@ -582,12 +800,16 @@ public class DBController {
                 );
 
                 con.commit();
+                TableCatalog.reload(con);
+                SlotAvailabilityIndex.getInstance().invalidate();
+                ChangeFeed.tableUpdated(tableNum, readTable(con, tableNum));
                 return null;
 
             } catch (Exception e) {
                 con.rollback();
                 throw e;
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(oldAuto);
             }
 
@@ -623,6 +845,8 @@ public class DBController {
 
             boolean oldAuto = con.getAutoCommit();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
 
             try {
                 String err = restaurantRepo.activateTable(con, tableNum);
@@ -639,12 +863,16 @@ public class DBController {
                 );
 
                 con.commit();
+                TableCatalog.reload(con);
+                SlotAvailabilityIndex.getInstance().invalidate();
+                ChangeFeed.tableUpdated(tableNum, readTable(con, tableNum));
                 return null;
 
             } catch (Exception e) {
                 con.rollback();
                 throw e;
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(oldAuto);
             }
 
@@ -699,6 +927,8 @@ public class DBController {
 
             boolean oldAuto = con.getAutoCommit();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
 
             try {
                 String err = restaurantRepo.updateWeeklyHours(con, dayOfWeek, isClosed, open, close);
@@ -715,12 +945,15 @@ public class DBController {
                 );
 
                 con.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
+                OpeningHoursCache.getInstance().invalidate();
                 return null;
 
             } catch (Exception e) {
                 con.rollback();
                 throw e;
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(oldAuto);
             }
 
@@ -775,6 +1008,8 @@ public class DBController {
 
             boolean oldAuto = con.getAutoCommit();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
 
             try {
                 String err = restaurantRepo.upsertSpecialHours(con, date, isClosed, open, close, reason);
@@ -791,12 +1026,15 @@ public class DBController {
                 );
 
                 con.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
+                OpeningHoursCache.getInstance().invalidate();
                 return null;
 
             } catch (Exception e) {
                 con.rollback();
                 throw e;
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(oldAuto);
             }
 
@@ -831,6 +1069,8 @@ public class DBController {
 
             boolean oldAuto = con.getAutoCommit();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
 
             try {
                 String err = restaurantRepo.deleteSpecialHours(con, date);
@@ -847,12 +1087,15 @@ public class DBController {
                 );
 
                 con.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
+                OpeningHoursCache.getInstance().invalidate();
                 return null;
 
             } catch (Exception e) {
                 con.rollback();
                 throw e;
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(oldAuto);
             }
 
@@ -886,6 +1129,44 @@ public class DBController {
         }
     }
     
+    /**
+     * Returns alternatives for a reservation request that could not be
+     * booked: the nearest free start times (same or adjacent day), the
+     * requested time for a smaller party, and every free time of the
+     * requested day.
+     *
+     * @param req the request that failed
+     * @return suggestions, nearest first, and the free times of the day
+     * @throws Exception on database errors
+     */
+    public static Alternatives suggestAlternatives(CreateReservationRequest req) throws Exception {
+        PooledConnection pc = null;
+        try {
+            pc = MySQLConnectionPool.getInstance().getConnection();
+            return ordersRepo.suggestAlternatives(pc.getConnection(), req.getReservationTime(),
+                    req.getNumberOfDiners(), ServerConfig.SUGGESTIONS);
+        } finally {
+            if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
+        }
+    }
+
+    /**
+     * Returns the availability calendar of the booking horizon for a party size.
+     *
+     * @param diners number of diners
+     * @return one entry per day, from today
+     * @throws Exception on database errors
+     */
+    public static ArrayList<DayAvailability> getAvailabilityCalendar(int diners) throws Exception {
+        PooledConnection pc = null;
+        try {
+            pc = MySQLConnectionPool.getInstance().getConnection();
+            return ordersRepo.getAvailabilityCalendar(pc.getConnection(), diners);
+        } finally {
+            if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
+        }
+    }
+
     /**
      * Creates a new reservation.
      *
@@ -985,6 +1266,8 @@ public class DBController {
             if (pc == null) return "DB connection is null";
 
             boolean ok = subscribersRepo.updateSubscriberPersonalDetails(pc.getConnection(), s);
+            // Committed (or rolled back): the old phone and email must not resolve to this customer any more
+            CustomerIdentityCache.getInstance().forgetCustomer(s.getCustomerId());
             return ok ? null : "Update failed";
 
         } finally {
@@ -1020,6 +1303,7 @@ public class DBController {
         PooledConnection pc = null;
 
         Integer tableNumBefore = null;
+        entities.PaymentReceipt receipt;
 
         try {
             pc = MySQLConnectionPool.getInstance().getConnection();
@@ -1027,17 +1311,18 @@ public class DBController {
 
             tableNumBefore = ordersRepo.getTableNumByConfCode(conn, req.getConfCode());
 
-            entities.PaymentReceipt receipt = ordersRepo.payBillByConfCode(conn, req);
-
-            if (tableNumBefore != null) {
-                DBController.onTableFreed(tableNumBefore);
-            }
-
-            return receipt;
+            receipt = ordersRepo.payBillByConfCode(conn, req);
 
         } finally {
             if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
         }
+
+        // After the connection went back: onTableFreed takes one of its own
+        if (tableNumBefore != null) {
+            DBController.onTableFreed(tableNumBefore);
+        }
+
+        return receipt;
     }
 
     /**
@@ -1051,11 +1336,15 @@ public class DBController {
     public static TableAssignmentRepository.Result onTableFreed(int tableNum) throws Exception {
         PooledConnection pc = null;
         TableAssignmentRepository.Result r = null;
+        RestaurantTable table = null;
+        WaitlistRow offered = null;
 
         try {
             pc = MySQLConnectionPool.getInstance().getConnection();
             Connection con = pc.getConnection();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
 
             try {
                 // 1) Expire old offers first
@@ -1065,11 +1354,19 @@ public class DBController {
                 r = TableAssignmentRepository.handleFreedTable(con, tableNum);
 
                 con.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
+
+                // New rows for the change events, read before the connection goes back
+                table = readTable(con, tableNum);
+                if (r != null && r.type == TableAssignmentRepository.Result.Type.WAITLIST_OFFERED) {
+                    offered = readWaitlistRow(con, r.confCode);
+                }
 
             } catch (Exception e) {
                 con.rollback();
                 throw e;
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(true);
             }
 
@@ -1081,8 +1378,13 @@ public class DBController {
         if (r != null && r.type == TableAssignmentRepository.Result.Type.WAITLIST_OFFERED) {
             NotificationService.sendWaitlistOfferEmailAsync(r.email, r.confCode, r.tableNum);
             NotificationService.sendWaitlistOfferSmsSimAsync(r.phone, r.confCode, r.tableNum);
+            ChangeFeed.publish(ChangeTopic.WAITLIST, ChangeEvent.Kind.UPDATED, r.confCode, offered);
         }
 
+        // 4) Tell subscribed screens: the diners of this table left
+        ChangeFeed.tableUpdated(tableNum, table);
+        ChangeFeed.publish(ChangeTopic.CURRENT_DINERS, ChangeEvent.Kind.REMOVED, null, null);
+
         return r;
     }
 
@@ -1101,6 +1403,8 @@ public class DBController {
             pc = MySQLConnectionPool.getInstance().getConnection();
             Connection con = pc.getConnection();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
             try {
                 TableAssignmentRepository.expireOldOffers(con);
 
@@ -1110,6 +1414,9 @@ public class DBController {
                    
                     Integer tableNum = ordersRepo.getTableNumByConfCode(con, confCode); // כבר יש לך מתודה כזאת
                     con.commit();
+                    SlotAvailabilityIndex.getInstance().invalidate();
+                    ChangeFeed.publish(ChangeTopic.WAITLIST, ChangeEvent.Kind.REMOVED, confCode, null);
+                    publishSeated(con, confCode, tableNum);
                     return new Object[]{ null, (tableNum == null ? -1 : tableNum) };
                 }
 
@@ -1117,7 +1424,11 @@ public class DBController {
                 Object[] res = TableAssignmentRepository.receiveTableNow(con, confCode);
 
                 String err = (String) res[0];
-                if (err == null) con.commit();
+                if (err == null) {
+                    con.commit();
+                    SlotAvailabilityIndex.getInstance().invalidate();
+                    publishSeated(con, confCode, (res.length > 1 && res[1] instanceof Integer) ? (Integer) res[1] : null);
+                }
                 else con.rollback();
 
                 return res;
@@ -1126,6 +1437,7 @@ public class DBController {
                 con.rollback();
                 return new Object[]{ e.getMessage(), -1 };
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(true);
             }
         } catch (Exception e) {
@@ -1152,6 +1464,8 @@ public class DBController {
             pc = MySQLConnectionPool.getInstance().getConnection();
             Connection con = pc.getConnection();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
             try {
                 WaitlistJoinResult res = WaitlistRepository.joinSubscriber(con, subscriberId, diners);
                 
@@ -1161,6 +1475,8 @@ public class DBController {
                 }
 
                 con.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
+                publishWaitlistJoined(con, res);
                 return res;
 
             } catch (Exception e) {
@@ -1172,6 +1488,7 @@ public class DBController {
                     "Failed to join waiting list."
                 );
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(true);
             }
 
@@ -1201,6 +1518,8 @@ public class DBController {
             pc = MySQLConnectionPool.getInstance().getConnection();
             Connection con = pc.getConnection();
             con.setAutoCommit(false);
+            // Booking locks taken below stay held until the commit or rollback
+            BookingLocks.Scope bookingLocks = BookingLocks.beginScope();
             try {
                 WaitlistJoinResult res = WaitlistRepository.joinNonSubscriber(con, email, phone, diners);
                 
@@ -1210,6 +1529,8 @@ public class DBController {
                 }
                 
                 con.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
+                publishWaitlistJoined(con, res);
                 return res;
 
             } catch (Exception e) {
@@ -1221,6 +1542,7 @@ public class DBController {
                     "Failed to join waiting list."
                 );
             } finally {
+                bookingLocks.close();
                 con.setAutoCommit(true);
             }
 
@@ -1236,6 +1558,91 @@ public class DBController {
         }
     }
 
+    /**
+     * Publishes the change events of a successful waitlist join:
+     * a new waitlist entry, or a party seated right away.
+     *
+     * @param con connection the join was committed on
+     * @param res result of the join operation
+     */
+    private static void publishWaitlistJoined(Connection con, WaitlistJoinResult res) {
+        if (res.getTableNum() != null) {
+            publishSeated(con, res.getConfirmationCode(), res.getTableNum());
+        } else {
+            int confCode = res.getConfirmationCode();
+            ChangeFeed.publish(ChangeTopic.WAITLIST, ChangeEvent.Kind.ADDED, confCode,
+                    readWaitlistRow(con, confCode));
+        }
+    }
+
+    /**
+     * Publishes the change events of a party that was just seated.
+     *
+     * @param con connection the seating was committed on
+     * @param confCode confirmation code of the party
+     * @param tableNum table they got, or null if unknown
+     */
+    private static void publishSeated(Connection con, int confCode, Integer tableNum) {
+        if (tableNum != null && tableNum > 0) {
+            ChangeFeed.tableUpdated(tableNum, readTable(con, tableNum));
+        }
+        ChangeFeed.publish(ChangeTopic.CURRENT_DINERS, ChangeEvent.Kind.ADDED, confCode,
+                readCurrentDiner(con, confCode));
+    }
+
+    // ================= Change event rows =================
+    // The change is already committed when these run, so a failed read
+    // must not fail the request: the event goes out without its row and
+    // the subscribed screens reload their list instead.
+
+    /**
+     * Reads the new state of a table for its change event.
+     *
+     * @param con database connection
+     * @param tableNum table number
+     * @return the table, or null if it could not be read
+     */
+    private static RestaurantTable readTable(Connection con, int tableNum) {
+        try {
+            return restaurantRepo.getTable(con, tableNum);
+        } catch (Exception e) {
+            FEED_LOG.warn("Change event sent without table " + tableNum + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a waitlist entry for its change event.
+     *
+     * @param con database connection
+     * @param confCode confirmation code of the entry
+     * @return the waitlist row, or null if it could not be read
+     */
+    private static WaitlistRow readWaitlistRow(Connection con, int confCode) {
+        try {
+            return viewRepo.getWaitlistRow(con, confCode);
+        } catch (Exception e) {
+            FEED_LOG.warn("Change event sent without waitlist row " + confCode + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a seated party for its change event.
+     *
+     * @param con database connection
+     * @param confCode confirmation code of the party
+     * @return the current diner row, or null if it could not be read
+     */
+    private static CurrentDinerRow readCurrentDiner(Connection con, int confCode) {
+        try {
+            return viewRepo.getCurrentDiner(con, confCode);
+        } catch (Exception e) {
+            FEED_LOG.warn("Change event sent without diner row " + confCode + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Removes a subscriber from the waitlist.
      *
@@ -1250,7 +1657,11 @@ public class DBController {
             con.setAutoCommit(false);
             try {
                 String err = WaitlistRepository.leaveSubscriber(con, subscriberId);
-                if (err == null) con.commit();
+                if (err == null) {
+                    con.commit();
+                    SlotAvailabilityIndex.getInstance().invalidate();
+                    ChangeFeed.publish(ChangeTopic.WAITLIST, ChangeEvent.Kind.REMOVED, null, null);
+                }
                 else con.rollback();
                 return err;
             } catch (Exception e) {
@@ -1281,7 +1692,11 @@ public class DBController {
             con.setAutoCommit(false);
             try {
                 String err = WaitlistRepository.leaveNonSubscriber(con, email, phone);
-                if (err == null) con.commit();
+                if (err == null) {
+                    con.commit();
+                    SlotAvailabilityIndex.getInstance().invalidate();
+                    ChangeFeed.publish(ChangeTopic.WAITLIST, ChangeEvent.Kind.REMOVED, null, null);
+                }
                 else con.rollback();
                 return err;
             } catch (Exception e) {
@@ -1318,6 +1733,7 @@ public class DBController {
                 ordersRepo.processReservationReminders(conn);
                 freed = ordersRepo.cancelNoShowReservations(conn);
                 conn.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -1333,7 +1749,7 @@ public class DBController {
             try {
                 DBController.onTableFreed(t);
             } catch (Exception e) {
-                System.out.println("[WARN] onTableFreed failed for table=" + t + " : " + e.getMessage());
+                LOG.warn("onTableFreed failed for table=" + t + " : " + e.getMessage());
             }
         }
     }
@@ -1353,6 +1769,7 @@ public class DBController {
             try {
                 TableAssignmentRepository.expireOldOffers(con);
                 con.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
             } catch (Exception e) {
                 con.rollback();
                 throw e;
@@ -1417,6 +1834,7 @@ public class DBController {
             try {
                 ordersRepo.sendBillsAfterTwoHours(con); // או OrdersRepository.sendBillsAfterTwoHours(con) אם סטטי
                 con.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
             } catch (Exception e) {
                 con.rollback();
                 throw e;
@@ -1652,6 +2070,7 @@ public class DBController {
      */
     public static void runEndOfDayCleanup(java.time.LocalDate day) throws Exception {
         PooledConnection pc = null;
+        java.util.ArrayList<Integer> tablesToFree = new java.util.ArrayList<>();
         try {
             pc = MySQLConnectionPool.getInstance().getConnection();
             Connection con = pc.getConnection();
@@ -1660,7 +2079,6 @@ public class DBController {
 
             java.sql.Date sqlDay = java.sql.Date.valueOf(day);
 
-            java.util.ArrayList<Integer> tablesToFree = new java.util.ArrayList<>();
             java.util.ArrayList<Integer> confCodesToFree = new java.util.ArrayList<>();
 
             try {
@@ -1702,9 +2120,7 @@ public class DBController {
                 }
 
                 // 5) free codes (optional)
-                for (Integer code : confCodesToFree) {
-                    server_repositries.ConfCodeRepository.free(con, code);
-                }
+                server_repositries.ConfCodeRepository.freeAll(con, confCodesToFree);
 
                 // 6) free tables
                 for (Integer t : tablesToFree) {
@@ -1712,6 +2128,7 @@ public class DBController {
                 }
 
                 con.commit();
+                SlotAvailabilityIndex.getInstance().invalidate();
 
             } catch (Exception e) {
                 con.rollback();
@@ -1720,15 +2137,15 @@ public class DBController {
                 con.setAutoCommit(oldAuto);
             }
 
-            // 7) after commit -> optional: offer freed tables to waitlist
-            for (Integer t : tablesToFree) {
-                try { DBController.onTableFreed(t); }
-                catch (Exception ex) { System.out.println("[WARN] onTableFreed failed: " + ex.getMessage()); }
-            }
-
         } finally {
             if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
         }
+
+        // 7) after commit -> optional: offer freed tables to waitlist
+        for (Integer t : tablesToFree) {
+            try { DBController.onTableFreed(t); }
+            catch (Exception ex) { LOG.warn("onTableFreed failed for table=" + t + " : " + ex.getMessage()); }
+        }
     }
     
     /**
@@ -2,17 +2,27 @@ package Server;
 import entities.AvailableSlotsRequest;
 
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 import Server.NotificationService;
 
+import entities.ChangeTopic;
 import entities.ClientRequestType;
 import entities.CurrentDinerRow;
 import entities.ForgotConfirmationCodeRequest;
+import entities.PageCursor;
 import entities.Reservation;
 import entities.ServerResponseType;
+import common.BistroBinaryCodec;
+import ocsf.codec.SerializationCodec;
 import ocsf.server.AbstractServer;
 import ocsf.server.ConnectionToClient;
+import ocsf.server.OverflowPolicy;
+import entities.ChangeEvent;
 import entities.Subscriber;
 import entities.TerminalSubscriberIdentifyResult;
 import entities.MembersReportRow;
@@ -22,9 +32,14 @@ import entities.WaitlistRow;
 import entities.WaitlistStatus;
 import entities.CreateReservationRequest;
 import entities.Reservation;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import server_repositries.WaitlistRepository;
 
 
@@ -54,6 +69,66 @@ import server_repositries.WaitlistRepository;
 
 public class EchoServer extends AbstractServer {
 
+    private static final ServerLog.Category LOG = ServerLog.category("server");
+    private static final ServerLog.Category REQUEST_LOG = ServerLog.category("request");
+
+    /**
+     * Worker pool used when the server runs in concurrent dispatch mode
+     * (see {@link ServerConfig#DISPATCH_MODE} and {@link ServerConfig#THREAD_MODE}).
+     * Null in serial mode.
+     */
+    private final RequestDispatcher dispatcher;
+
+    /**
+     * Id of the correlated request handled by the current thread, or null
+     * while a plain request is handled (see {@link #processCorrelated}).
+     */
+    private final ThreadLocal<Long> currentRequestId = new ThreadLocal<>();
+
+    /**
+     * Collects the response of a BATCH sub-request handled by the current
+     * thread instead of sending it (see {@link #processCaptured}).
+     */
+    private final ThreadLocal<List<Object>> capturedReplies = new ThreadLocal<>();
+
+    /**
+     * Idempotency key of the request the current thread runs for the
+     * {@link IdempotencyStore} (see {@link #processIdempotent}), or null.
+     */
+    private final ThreadLocal<String> runningKey = new ThreadLocal<>();
+
+    /** Runs the read-only sub-requests of BATCH requests in parallel. */
+    private final ExecutorService batchWorkers;
+
+    /**
+     * Requests that only read data. A BATCH made only of these requests
+     * runs its sub-requests in parallel; any other BATCH runs them one
+     * after the other, in order.
+     */
+    private static final Set<ClientRequestType> READ_ONLY_REQUESTS = EnumSet.of(
+            ClientRequestType.GET_RESERVATIONS,
+            ClientRequestType.GET_RESERVATION_INFO,
+            ClientRequestType.GET_ACTIVE_RESERVATIONS,
+            ClientRequestType.GET_WAITLIST,
+            ClientRequestType.GET_WAITLIST_BY_MONTH,
+            ClientRequestType.GET_CURRENT_DINERS,
+            ClientRequestType.GET_SUBSCRIBERS,
+            ClientRequestType.GET_RESERVATIONS_PAGE,
+            ClientRequestType.GET_SUBSCRIBERS_PAGE,
+            ClientRequestType.GET_WAITLIST_BY_MONTH_PAGE,
+            ClientRequestType.GET_AVAILABLE_SLOTS,
+            ClientRequestType.GET_AVAILABILITY_CALENDAR,
+            ClientRequestType.GET_BILL_BY_CONF_CODE,
+            ClientRequestType.MANAGER_WAITLIST_RATIO_BY_HOUR,
+            ClientRequestType.MANAGER_TIME_REPORT_BY_MONTH,
+            ClientRequestType.MANAGER_MEMBERS_REPORT_BY_MONTH,
+            ClientRequestType.GET_TABLES,
+            ClientRequestType.GET_OPENING_WEEKLY,
+            ClientRequestType.GET_OPENING_SPECIAL,
+            ClientRequestType.GET_ALL_RESERVATIONS_FOR_SUBSCRIBER,
+            ClientRequestType.GET_DONE_RESERVATIONS_FOR_SUBSCRIBER,
+            ClientRequestType.GET_SUBSCRIBER_PERSONAL_DETAILS);
+
 	/**
      * Constructs a new EchoServer instance.
      *
@@ -61,13 +136,86 @@ public class EchoServer extends AbstractServer {
      */
     public EchoServer(int port) {
         super(port);
+        ChangeFeed.attach(this);
+        setBacklog(ServerConfig.ACCEPT_BACKLOG);
+        setOutputResetInterval(ServerConfig.OUTPUT_RESET_BYTES);
+        setOutboundQueue(ServerConfig.OUTBOUND_CAPACITY, ServerConfig.outboundPolicy());
+        if (ServerConfig.isNioTransport()) {
+            setNioThreads(ServerConfig.NIO_THREADS);
+            if (ServerConfig.isBinaryCodec()) {
+                setCodecs(new BistroBinaryCodec(), new SerializationCodec());
+            } else {
+                setCodecs(new SerializationCodec());
+            }
+        }
+
+        ThreadFactory virtualWorkers = null;
+        if (ServerConfig.isVirtualThreads()) {
+            setConnectionThreadFactory(VirtualThreads.factory("client-reader-"));
+            virtualWorkers = VirtualThreads.factory("request-worker-v");
+            if (virtualWorkers == null) {
+                LOG.warn("Virtual threads need Java 21 or later, using platform threads.");
+            }
+        }
+
+        ThreadFactory batchFactory = (virtualWorkers != null) ? VirtualThreads.factory("batch-worker-v") : null;
+        if (batchFactory == null) {
+            AtomicInteger seq = new AtomicInteger();
+            batchFactory = r -> {
+                Thread t = new Thread(r, "batch-worker-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+        }
+        this.batchWorkers = Executors.newFixedThreadPool(ServerConfig.BATCH_THREADS, batchFactory);
+
+        if (!ServerConfig.isConcurrentDispatch()) {
+            this.dispatcher = null;
+        } else if (virtualWorkers != null) {
+            this.dispatcher = new RequestDispatcher(virtualWorkers,
+                    ServerConfig.VIRTUAL_MAX_ACTIVE, ServerConfig.DISPATCH_MAX_PENDING_PER_CLIENT);
+        } else {
+            this.dispatcher = new RequestDispatcher(ServerConfig.DISPATCH_THREADS,
+                    ServerConfig.DISPATCH_MAX_PENDING_PER_CLIENT);
+        }
     }
 
     /**
-     * Handles messages received from a connected client.
+     * Entry point for every client message (called by the OCSF framework).
      *
-     * This method is called automatically by the OCSF framework
-     * whenever a client sends a message to the server.
+     * In serial mode the request is handled right here, inside the OCSF
+     * receive monitor, exactly as before.
+     * In concurrent mode the request is queued on the worker pool and this
+     * method returns immediately, so one slow request (a long report, a DB
+     * wait) no longer blocks the requests of other clients.
+     *
+     * @param msg    the message received from the client
+     * @param client the client connection that sent the message
+     */
+    @Override
+    protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+        if (dispatcher == null) {
+            processRequest(msg, client);
+            return;
+        }
+
+        boolean accepted = dispatcher.dispatch(client, () -> processRequest(msg, client));
+        if (!accepted) {
+            try {
+                Object busy = ServerResponseBuilder.error("Server is busy, please try again.");
+                Long requestId = requestIdOf(msg);
+                client.sendToClient(requestId == null ? busy : ServerResponseBuilder.correlated(requestId, busy));
+            } catch (Exception e) {
+                REQUEST_LOG.error("Could not send the busy answer", e);
+            }
+        }
+    }
+
+    /**
+     * Handles a single request received from a connected client.
+     *
+     * This method is called by {@link #handleMessageFromClient}, either
+     * directly (serial mode) or from a worker thread (concurrent mode).
      *
      * Message handling flow:
      * 1. Validate that the message is an Object[]
@@ -82,16 +230,15 @@ public class EchoServer extends AbstractServer {
      * @param msg    the message received from the client
      * @param client the client connection that sent the message
      */
-    @Override
-    protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+    private void processRequest(Object msg, ConnectionToClient client) {
 
     	// Validate message type
         if (!(msg instanceof Object[])) {
-            System.out.println("Unknown message type from client: " + msg.getClass());
+            REQUEST_LOG.warn("Unknown message type from client: " + msg.getClass());
             try {
-                client.sendToClient(ServerResponseBuilder.error("Invalid request type."));
+                reply(client, ServerResponseBuilder.error("Invalid request type."));
             } catch (Exception e) {
-                e.printStackTrace();
+                REQUEST_LOG.error("Could not answer an unknown message type", e);
             }
             return;
         }
@@ -101,20 +248,36 @@ public class EchoServer extends AbstractServer {
         // Validate request format
         if (data.length == 0 || !(data[0] instanceof ClientRequestType)) {
             try {
-                client.sendToClient(ServerResponseBuilder.error("Invalid request format."));
+                reply(client, ServerResponseBuilder.error("Invalid request format."));
             } catch (Exception e) {
-                e.printStackTrace();
+                REQUEST_LOG.error("Could not answer an invalid request", e);
             }
             return;
         }
         
         ClientRequestType type = (ClientRequestType) data[0];
 
+        if (type == ClientRequestType.CORRELATED) {
+            processCorrelated(data, client);
+            return;
+        }
+
+        String key = idempotencyKeyOf(type, data);
+        if (key != null && runningKey.get() == null) {
+            processIdempotent(type, key, data, client);
+            return;
+        }
+
+        if (ServerConfig.UOW_ENABLED && UnitOfWork.current() == null && ServerConfig.isTransactional(type.name())) {
+            processTransactional(data, client);
+            return;
+        }
+
+        // All the DB work of this request shares one pooled connection
+        UnitOfWork uow = ServerConfig.UOW_ENABLED ? UnitOfWork.begin(false) : null;
         try {
-        	// Log request in server GUI
-            if (ServerUI.serverController != null) {
-                ServerUI.serverController.appendLog("Received request: " + type);
-            }
+        	// Log request (debug only: one line per request)
+            if (REQUEST_LOG.isDebug()) REQUEST_LOG.debug("Received request: " + type);
 
             switch (type) {
 
@@ -122,7 +285,7 @@ public class EchoServer extends AbstractServer {
             	 * Returns all active orders from the database.
             	 */
             	case GET_RESERVATIONS: {
-            		client.sendToClient(
+            		reply(client, 
             				new Object[]{
             						ServerResponseType.RESERVATIONS_LIST_ALL,
             						DBController.getAllReservations()
@@ -133,7 +296,7 @@ public class EchoServer extends AbstractServer {
                 case CREATE_RESERVATION: {
                     try {
                         if (data.length < 2 || !(data[1] instanceof CreateReservationRequest)) {
-                            client.sendToClient(ServerResponseBuilder.createFailed("Missing CreateReservationRequest."));
+                            reply(client, ServerResponseBuilder.createFailed("Missing CreateReservationRequest."));
                             break;
                         }
 
@@ -145,7 +308,7 @@ public class EchoServer extends AbstractServer {
                         if (req.getSubscriberId() != null) {
                             Subscriber s = DBController.getSubscriberPersonalDetails(req.getSubscriberId());
                             if (s == null) {
-                                client.sendToClient(ServerResponseBuilder.createFailed(
+                                reply(client, ServerResponseBuilder.createFailed(
                                         "Invalid Subscriber ID. Please check the number and try again."));
                                 break;
                             }
@@ -158,7 +321,7 @@ public class EchoServer extends AbstractServer {
                         if (req.getSubscriberId() == null) {
                             // Guest must provide BOTH phone and email
                             if (phone.isEmpty() || email.isEmpty()) {
-                                client.sendToClient(ServerResponseBuilder.createFailed(
+                                reply(client, ServerResponseBuilder.createFailed(
                                     "Phone and email are required for guest reservations."
                                 ));
                                 break;
@@ -166,7 +329,7 @@ public class EchoServer extends AbstractServer {
                         } else {
                             // Subscriber must exist (already checked) and must have at least one contact method
                             if (phone.isEmpty() && email.isEmpty()) {
-                                client.sendToClient(ServerResponseBuilder.createFailed(
+                                reply(client, ServerResponseBuilder.createFailed(
                                     "Subscriber profile must contain phone or email."
                                 ));
                                 break;
@@ -199,50 +362,41 @@ public class EchoServer extends AbstractServer {
                         if (!email.isEmpty()) notif.append("📧 Email sent to: ").append(email).append("\n");
                         if (!phone.isEmpty()) notif.append("📱 SMS sent to: ").append(phone).append("\n");
 
-                        client.sendToClient(ServerResponseBuilder.createSuccess(created, notif.toString()));
+                        reply(client, ServerResponseBuilder.createSuccess(created, notif.toString()));
                         break;
 
                     } catch (Exception e) {
                         msg = (e.getMessage() == null) ? "Create failed." : e.getMessage();
 
-                        // If no table big enough (e.g. 10 diners and max is 8)
-                        if ("NO_TABLE_BIG_ENOUGH".equals(msg)) {
-                            client.sendToClient(ServerResponseBuilder.createFailed(
-                                    "Sorry, the restaurant has no table that can fit " +
-                                    ((CreateReservationRequest) data[1]).getNumberOfDiners() + " diners."
-                            ));
-                            break;
-                        }
-
-                        // If the time is full -> return suggested times (half-hour slots)
+                        // The time is full, closed or the party too big -> return the nearest alternatives
                         if ("NO_AVAILABILITY".equals(msg) ||
                             "OUTSIDE_OPENING_HOURS".equals(msg) ||
-                            "CLOSED_DAY".equals(msg)) {
+                            "CLOSED_DAY".equals(msg) ||
+                            "NO_TABLE_BIG_ENOUGH".equals(msg)) {
 
                             CreateReservationRequest req = (CreateReservationRequest) data[1];
 
-                            // Suggest slots for the same day (00:00 - 23:59)
-                            java.time.LocalDate d = req.getReservationTime().toLocalDateTime().toLocalDate();
-                            java.sql.Timestamp from = java.sql.Timestamp.valueOf(d.atStartOfDay());
-                            java.sql.Timestamp to   = java.sql.Timestamp.valueOf(d.atTime(23, 59, 59));
+                            // Suggestions and all the free times of the same day (for clients that
+                            // only read the time list), from one scan of the free start times
+                            Alternatives alternatives = DBController.suggestAlternatives(req);
 
-                            java.util.ArrayList<String> slots =
-                                    DBController.getAvailableSlots(new entities.AvailableSlotsRequest(from, to, req.getNumberOfDiners()));
-
-                            String userMsg = "No available table at the requested time. Please choose another time from the list.";
+                            String userMsg = "No available table at the requested time. Please choose one of the suggested times.";
 
                             if ("OUTSIDE_OPENING_HOURS".equals(msg)) {
                                 userMsg = "Requested time is outside opening hours. Please choose another time.";
                             } else if ("CLOSED_DAY".equals(msg)) {
                                 userMsg = "The restaurant is closed on that date. Please choose another date/time.";
+                            } else if ("NO_TABLE_BIG_ENOUGH".equals(msg)) {
+                                userMsg = "Sorry, the restaurant has no table that can fit " +
+                                        req.getNumberOfDiners() + " diners.";
                             }
 
-                            client.sendToClient(ServerResponseBuilder.createFailed(userMsg, slots));
+                            reply(client, ServerResponseBuilder.createFailed(userMsg, alternatives.sameDaySlots, alternatives.suggestions));
                             break;
                         }
 
                         // default
-                        client.sendToClient(ServerResponseBuilder.createFailed("Create failed: " + msg));
+                        reply(client, ServerResponseBuilder.createFailed("Create failed: " + msg));
                         break;
                     }
                 }
@@ -270,8 +424,8 @@ public class EchoServer extends AbstractServer {
 
                     String err = DBController.updateReservation(resId, ts, numOfDin);
 
-                    if (err == null) client.sendToClient(ServerResponseBuilder.updateSuccess());
-                    else client.sendToClient(ServerResponseBuilder.updateFailed(err));
+                    if (err == null) reply(client, ServerResponseBuilder.updateSuccess());
+                    else reply(client, ServerResponseBuilder.updateFailed(err));
                     break;
                 }
 
@@ -282,7 +436,7 @@ public class EchoServer extends AbstractServer {
                  */
                 case REP_LOGIN:{
                     if (data.length < 3) {
-                        client.sendToClient(ServerResponseBuilder.error("REP_LOGIN missing parameters."));
+                        reply(client, ServerResponseBuilder.error("REP_LOGIN missing parameters."));
                         break;
                     }
 
@@ -292,9 +446,9 @@ public class EchoServer extends AbstractServer {
                     String typeFromDb = DBController.validateRepLogin(username, password); // "agent"/"manager"/null
 
                     if (typeFromDb != null) {
-                        client.sendToClient(new Object[]{ entities.ServerResponseType.LOGIN_SUCCESS, typeFromDb });
+                        reply(client, new Object[]{ entities.ServerResponseType.LOGIN_SUCCESS, typeFromDb });
                     } else {
-                        client.sendToClient(ServerResponseBuilder.loginFailed("Wrong username or password."));
+                        reply(client, ServerResponseBuilder.loginFailed("Wrong username or password."));
                     }
                     break;
                 }
@@ -304,7 +458,7 @@ public class EchoServer extends AbstractServer {
                  */
                 case REGISTER_SUBSCRIBER:{
                     if (data.length < 4) {
-                        client.sendToClient(ServerResponseBuilder.error("REGISTER_SUBSCRIBER missing parameters."));
+                        reply(client, ServerResponseBuilder.error("REGISTER_SUBSCRIBER missing parameters."));
                         break;
                     }
 
@@ -314,9 +468,9 @@ public class EchoServer extends AbstractServer {
 
                     try {
                         Subscriber s = DBController.registerSubscriber(name, phone, email);
-                        client.sendToClient(ServerResponseBuilder.registerSuccess(s));
+                        reply(client, ServerResponseBuilder.registerSuccess(s));
                     } catch (Exception ex) {
-                        client.sendToClient(ServerResponseBuilder.registerFailed(ex.getMessage()));
+                        reply(client, ServerResponseBuilder.registerFailed(ex.getMessage()));
                     }
                     break;
                 }
@@ -328,7 +482,7 @@ public class EchoServer extends AbstractServer {
                 case GET_RESERVATION_INFO: {
 
                     if (data.length < 2) {
-                        client.sendToClient(
+                        reply(client, 
                             ServerResponseBuilder.error("Missing conformation code.")
                         );
                         break;
@@ -341,7 +495,7 @@ public class EchoServer extends AbstractServer {
 
                     // Reservation not found
                     if (r == null) {
-                        client.sendToClient(
+                        reply(client, 
                             ServerResponseBuilder.reservationNotFound("Reservation not found")
                         );
                         break;
@@ -349,7 +503,7 @@ public class EchoServer extends AbstractServer {
 
                     // Status check BEFORE opening info page
                     if (!r.getStatus().equalsIgnoreCase("ACTIVE")) {
-                        client.sendToClient(
+                        reply(client, 
                             ServerResponseBuilder.reservationNotAllowed(
                                 "Reservation cannot be canceled. Status: " + r.getStatus())
                         );
@@ -357,7 +511,7 @@ public class EchoServer extends AbstractServer {
                     }
 
                     //Only ACTIVE reservations reach here
-                    client.sendToClient(
+                    reply(client, 
                         ServerResponseBuilder.reservationFound(r)
                     );
                     break;
@@ -371,21 +525,21 @@ public class EchoServer extends AbstractServer {
                  */
                 case DELETE_RESERVATION: {
                     if (data.length < 2) {
-                        client.sendToClient(ServerResponseBuilder.error("Missing conformation code."));
+                        reply(client, ServerResponseBuilder.error("Missing conformation code."));
                         break;
                     }
                     int ConfCode = (Integer) data[1];
 
                     String err = DBController.cancelReservation(ConfCode);
 
-                    if (err == null) client.sendToClient(ServerResponseBuilder.deleteSuccess("Reservation canceled successfully."));
+                    if (err == null) reply(client, ServerResponseBuilder.deleteSuccess("Reservation canceled successfully."));
                     break;
                 }
                      
                 /** Handles subscriber login by subscriber ID */    
                 case SUBSCRIBER_LOGIN:{
                     if (data.length < 2) {
-                        client.sendToClient(ServerResponseBuilder.error("SUBSCRIBER_LOGIN missing parameters."));
+                        reply(client, ServerResponseBuilder.error("SUBSCRIBER_LOGIN missing parameters."));
                         break;
                     }
 
@@ -393,7 +547,7 @@ public class EchoServer extends AbstractServer {
                     try {
                         subscriberId = Integer.parseInt(data[1].toString());
                     } catch (NumberFormatException e) {
-                    	client.sendToClient(new Object[]{ ServerResponseType.SUBSCRIBER_LOGIN_FAILED, "Invalid subscriber code format." });
+                    	reply(client, new Object[]{ ServerResponseType.SUBSCRIBER_LOGIN_FAILED, "Invalid subscriber code format." });
                         break;
                     }
 
@@ -401,15 +555,15 @@ public class EchoServer extends AbstractServer {
                     try {
                         subscriber = DBController.checkSubscriberLogin(subscriberId);
                     } catch (Exception e) {
-                        client.sendToClient(ServerResponseBuilder.error("Database error."));
-                        e.printStackTrace();
+                        reply(client, ServerResponseBuilder.error("Database error."));
+                        REQUEST_LOG.error("Subscriber login failed", e);
                         break;
                     }
 
                     if (subscriber != null) {
-                        client.sendToClient(new Object[]{ ServerResponseType.SUBSCRIBER_LOGIN_SUCCESS, subscriber });
+                        reply(client, new Object[]{ ServerResponseType.SUBSCRIBER_LOGIN_SUCCESS, subscriber });
                     } else {
-                    	 client.sendToClient(new Object[]{ ServerResponseType.SUBSCRIBER_LOGIN_FAILED, "Wrong subscriber ID." });
+                    	 reply(client, new Object[]{ ServerResponseType.SUBSCRIBER_LOGIN_FAILED, "Wrong subscriber ID." });
                     }
                     break;
                 }
@@ -417,7 +571,7 @@ public class EchoServer extends AbstractServer {
 
                 /** Returns all active reservations */
                 case GET_ACTIVE_RESERVATIONS:{
-                    client.sendToClient(
+                    reply(client, 
                         ServerResponseBuilder.reservations(DBController.getActiveReservations())
                     );
                     
@@ -428,11 +582,11 @@ public class EchoServer extends AbstractServer {
                 case GET_WAITLIST: {
                     try {
                         ArrayList<WaitlistRow> result = DBController.getWaitlist();
-                        client.sendToClient(
+                        reply(client, 
                             new Object[]{ ServerResponseType.WAITLIST_LIST, result }
                         );
                     } catch (Exception e) {
-                        client.sendToClient(
+                        reply(client, 
                             new Object[]{ ServerResponseType.ERROR, e.getMessage() }
                         );
                     }
@@ -447,9 +601,9 @@ public class EchoServer extends AbstractServer {
 
                         ArrayList<WaitlistRow> result = DBController.getWaitlistByMonth(year, month);
 
-                        client.sendToClient(new Object[] { ServerResponseType.WAITLIST_LIST, result });
+                        reply(client, new Object[] { ServerResponseType.WAITLIST_LIST, result });
                     } catch (Exception e) {
-                        client.sendToClient(new Object[] { ServerResponseType.ERROR, e.getMessage() });
+                        reply(client, new Object[] { ServerResponseType.ERROR, e.getMessage() });
                     }
                     break;
                 }
@@ -458,9 +612,9 @@ public class EchoServer extends AbstractServer {
                 case GET_CURRENT_DINERS: {
                     try {
                     	ArrayList<CurrentDinerRow> result = DBController.getCurrentDiners();
-                        client.sendToClient(new Object[] { ServerResponseType.CURRENT_DINERS_LIST, result });
+                        reply(client, new Object[] { ServerResponseType.CURRENT_DINERS_LIST, result });
                     } catch (Exception e) {
-                        client.sendToClient(new Object[] { ServerResponseType.ERROR, e.getMessage() });
+                        reply(client, new Object[] { ServerResponseType.ERROR, e.getMessage() });
                     }
                     break;
                 }
@@ -469,18 +623,54 @@ public class EchoServer extends AbstractServer {
                 case GET_SUBSCRIBERS: {
                     try {
                         ArrayList<Subscriber> result = DBController.getSubscribers();
-                        client.sendToClient(new Object[] { ServerResponseType.SUBSCRIBERS_LIST, result });
+                        reply(client, new Object[] { ServerResponseType.SUBSCRIBERS_LIST, result });
                     } catch (Exception e) {
-                        client.sendToClient(new Object[] { ServerResponseType.ERROR, e.getMessage() });
+                        reply(client, new Object[] { ServerResponseType.ERROR, e.getMessage() });
                     }
                     break;
                 }
 
+                /** Returns one page of all reservations, newest first */
+                case GET_RESERVATIONS_PAGE: {
+                    PageCursor after = (data.length > 1) ? (PageCursor) data[1] : null;
+                    reply(client, new Object[] { ServerResponseType.LIST_PAGE,
+                            DBController.getReservationsPage(after, pageSizeOf(data, 2)) });
+                    break;
+                }
+
+                /** Returns one page of the subscribers */
+                case GET_SUBSCRIBERS_PAGE: {
+                    PageCursor after = (data.length > 1) ? (PageCursor) data[1] : null;
+                    reply(client, new Object[] { ServerResponseType.LIST_PAGE,
+                            DBController.getSubscribersPage(after, pageSizeOf(data, 2)) });
+                    break;
+                }
+
+                /** Returns one page of the waitlist entries of a month */
+                case GET_WAITLIST_BY_MONTH_PAGE: {
+                    if (data.length < 3) {
+                        reply(client, ServerResponseBuilder.error("GET_WAITLIST_BY_MONTH_PAGE missing parameters."));
+                        break;
+                    }
+                    int year = (int) data[1];
+                    int month = (int) data[2];
+                    PageCursor after = (data.length > 3) ? (PageCursor) data[3] : null;
+                    reply(client, new Object[] { ServerResponseType.LIST_PAGE,
+                            DBController.getWaitlistByMonthPage(year, month, after, pageSizeOf(data, 4)) });
+                    break;
+                }
+
+                /** Sends a whole list as LIST_PAGE messages while it is read */
+                case STREAM_LIST: {
+                    processStream(data, client);
+                    break;
+                }
+
                 /** Returns monthly members report for manager */
                 case MANAGER_MEMBERS_REPORT_BY_MONTH: {
                     try {
                         if (data.length < 3) {
-                            client.sendToClient(new Object[] { ServerResponseType.ERROR, "MANAGER_MEMBERS_REPORT_BY_MONTH missing parameters." });
+                            reply(client, new Object[] { ServerResponseType.ERROR, "MANAGER_MEMBERS_REPORT_BY_MONTH missing parameters." });
                             break;
                         }
 
@@ -488,11 +678,11 @@ public class EchoServer extends AbstractServer {
                         int month = (int) data[2]; // 1-12
 
                         ArrayList<MembersReportRow> result = DBController.getMembersReportByMonth(year, month);
-                        client.sendToClient(new Object[] { ServerResponseType.MEMBERS_REPORT_DATA, result });
+                        reply(client, new Object[] { ServerResponseType.MEMBERS_REPORT_DATA, result });
 
                     } catch (Exception e) {
-                        client.sendToClient(new Object[] { ServerResponseType.ERROR, e.getMessage() });
-                        e.printStackTrace();
+                        reply(client, new Object[] { ServerResponseType.ERROR, e.getMessage() });
+                        REQUEST_LOG.error("Members report failed", e);
                     }
                     break;
                 }
@@ -500,14 +690,26 @@ public class EchoServer extends AbstractServer {
                 /** Returns available reservation time slots */
                 case GET_AVAILABLE_SLOTS: {
                     if (data.length < 2 || !(data[1] instanceof AvailableSlotsRequest)) {
-                        client.sendToClient(ServerResponseBuilder.error("GET_AVAILABLE_SLOTS missing request object."));
+                        reply(client, ServerResponseBuilder.error("GET_AVAILABLE_SLOTS missing request object."));
                         break;
                     }
 
                     AvailableSlotsRequest req = (AvailableSlotsRequest) data[1];
                     ArrayList<String> slots = DBController.getAvailableSlots(req);
 
-                    client.sendToClient(ServerResponseBuilder.slotsList(slots));
+                    reply(client, ServerResponseBuilder.slotsList(slots));
+                    break;
+                }
+
+                /** Returns the free start times of every day of the booking horizon */
+                case GET_AVAILABILITY_CALENDAR: {
+                    if (data.length < 2 || !(data[1] instanceof Integer) || (Integer) data[1] <= 0) {
+                        reply(client, ServerResponseBuilder.error("GET_AVAILABILITY_CALENDAR requires a positive number of diners."));
+                        break;
+                    }
+
+                    int diners = (Integer) data[1];
+                    reply(client, ServerResponseBuilder.availabilityCalendar(diners, DBController.getAvailabilityCalendar(diners)));
                     break;
                 }
 
@@ -515,7 +717,7 @@ public class EchoServer extends AbstractServer {
                 case MANAGER_TIME_REPORT_BY_MONTH: {
                     try {
                         if (data.length < 3) {
-                            client.sendToClient(new Object[] { ServerResponseType.ERROR, "MANAGER_TIME_REPORT_BY_MONTH missing parameters." });
+                            reply(client, new Object[] { ServerResponseType.ERROR, "MANAGER_TIME_REPORT_BY_MONTH missing parameters." });
                             break;
                         }
 
@@ -523,18 +725,18 @@ public class EchoServer extends AbstractServer {
                         int month = (int) data[2]; // 1-12
 
                         ArrayList<TimeReportRow> result = DBController.getTimeReportRawByMonth(year, month);
-                        client.sendToClient(new Object[] { ServerResponseType.TIME_REPORT_DATA, result });
+                        reply(client, new Object[] { ServerResponseType.TIME_REPORT_DATA, result });
 
                     } catch (Exception e) {
-                        client.sendToClient(new Object[] { ServerResponseType.ERROR, e.getMessage() });
-                        e.printStackTrace();
+                        reply(client, new Object[] { ServerResponseType.ERROR, e.getMessage() });
+                        REQUEST_LOG.error("Time report failed", e);
                     }
                     break;
                 }
                 
                 /** Returns all restaurant tables */
                 case GET_TABLES: {
-                    client.sendToClient(new Object[]{ ServerResponseType.TABLES_LIST, DBController.getTables() });
+                    reply(client, new Object[]{ ServerResponseType.TABLES_LIST, DBController.getTables() });
                     break;
                 }
 
@@ -543,7 +745,7 @@ public class EchoServer extends AbstractServer {
                     int tableNum = (Integer) data[1];
                     int seats = (Integer) data[2];
                     String err = DBController.addTable(tableNum, seats);
-                    client.sendToClient(err == null
+                    reply(client, err == null
                             ? new Object[]{ ServerResponseType.TABLE_UPDATE_SUCCESS }
                             : new Object[]{ ServerResponseType.ERROR, err });
                     break;
@@ -554,7 +756,7 @@ public class EchoServer extends AbstractServer {
                     int tableNum = (Integer) data[1];
                     int seats = (Integer) data[2];
                     String err = DBController.updateTableSeats(tableNum, seats);
-                    client.sendToClient(err == null
+                    reply(client, err == null
                             ? new Object[]{ ServerResponseType.TABLE_UPDATE_SUCCESS }
                             : new Object[]{ ServerResponseType.ERROR, err });
                     break;
@@ -564,7 +766,7 @@ public class EchoServer extends AbstractServer {
                 case DEACTIVATE_TABLE: {
                     int tableNum = (Integer) data[1];
                     String err = DBController.deactivateTable(tableNum);
-                    client.sendToClient(err == null
+                    reply(client, err == null
                             ? new Object[]{ ServerResponseType.TABLE_UPDATE_SUCCESS }
                             : new Object[]{ ServerResponseType.ERROR, err });
                     break;
@@ -574,15 +776,36 @@ public class EchoServer extends AbstractServer {
                 case ACTIVATE_TABLE: {
                     int tableNum = (Integer) data[1];
                     String err = DBController.activateTable(tableNum);
-                    client.sendToClient(err == null
+                    reply(client, err == null
                             ? new Object[]{ ServerResponseType.TABLE_UPDATE_SUCCESS }
                             : new Object[]{ ServerResponseType.ERROR, err });
                     break;
                 }
 
+                /** Starts or stops change events of the given topics for this client */
+                case SUBSCRIBE_CHANGES:
+                case UNSUBSCRIBE_CHANGES: {
+                    List<ChangeTopic> topics = new ArrayList<>();
+                    for (int i = 1; i < data.length; i++) {
+                        if (data[i] instanceof ChangeTopic) topics.add((ChangeTopic) data[i]);
+                    }
+
+                    Set<ChangeTopic> subscribed = (type == ClientRequestType.SUBSCRIBE_CHANGES)
+                            ? ChangeFeed.subscribe(client, topics)
+                            : ChangeFeed.unsubscribe(client, topics);
+                    reply(client, new Object[]{ ServerResponseType.CHANGES_SUBSCRIBED, subscribed.toArray() });
+                    break;
+                }
+
+                /** Runs several requests and answers with one BATCH_RESULT */
+                case BATCH: {
+                    processBatch(data, client);
+                    break;
+                }
+
                 /** Returns weekly opening hours */
                 case GET_OPENING_WEEKLY: {
-                    client.sendToClient(new Object[]{ ServerResponseType.WEEKLY_HOURS_LIST, DBController.getWeeklyHours() });
+                    reply(client, new Object[]{ ServerResponseType.WEEKLY_HOURS_LIST, DBController.getWeeklyHours() });
                     break;
                 }
                 
@@ -594,7 +817,7 @@ public class EchoServer extends AbstractServer {
                     java.time.LocalTime close = (java.time.LocalTime) data[4];
 
                     String err = DBController.updateWeeklyHours(dayOfWeek, isClosed, open, close);
-                    client.sendToClient(err == null
+                    reply(client, err == null
                             ? new Object[]{ ServerResponseType.HOURS_UPDATE_SUCCESS }
                             : new Object[]{ ServerResponseType.ERROR, err });
                     break;
@@ -602,7 +825,7 @@ public class EchoServer extends AbstractServer {
                 
                 /** Returns special opening hours */
                 case GET_OPENING_SPECIAL: {
-                    client.sendToClient(new Object[]{ ServerResponseType.SPECIAL_HOURS_LIST, DBController.getSpecialHours() });
+                    reply(client, new Object[]{ ServerResponseType.SPECIAL_HOURS_LIST, DBController.getSpecialHours() });
                     break;
                 }
                 /** Adds or updates special opening hours */
@@ -614,7 +837,7 @@ public class EchoServer extends AbstractServer {
                     String reason = (String) data[5];
 
                     String err = DBController.upsertSpecialHours(date, isClosed, open, close, reason);
-                    client.sendToClient(err == null
+                    reply(client, err == null
                             ? new Object[]{ ServerResponseType.HOURS_UPDATE_SUCCESS }
                             : new Object[]{ ServerResponseType.ERROR, err });
                     break;
@@ -624,7 +847,7 @@ public class EchoServer extends AbstractServer {
                 case DELETE_OPENING_SPECIAL: {
                     java.time.LocalDate date = (java.time.LocalDate) data[1];
                     String err = DBController.deleteSpecialHours(date);
-                    client.sendToClient(err == null
+                    reply(client, err == null
                             ? new Object[]{ ServerResponseType.HOURS_UPDATE_SUCCESS }
                             : new Object[]{ ServerResponseType.ERROR, err });
                     break;
@@ -639,7 +862,7 @@ public class EchoServer extends AbstractServer {
 
 
                     // Sends the filtered reservations list back to the client
-                    client.sendToClient(new Object[]{ ServerResponseType.SUBSCRIBER_RESERVATIONS_LIST, list });
+                    reply(client, new Object[]{ ServerResponseType.SUBSCRIBER_RESERVATIONS_LIST, list });
 
                     break;
                 }
@@ -651,7 +874,7 @@ public class EchoServer extends AbstractServer {
                     ArrayList<Reservation> list =
                             DBController.getDoneReservationsForSubscriber(subscriberId);
 
-                    client.sendToClient(new Object[]{
+                    reply(client, new Object[]{
                             ServerResponseType.SUBSCRIBER_RESERVATIONS_LIST,
                             list
                     });
@@ -664,7 +887,7 @@ public class EchoServer extends AbstractServer {
 
                     Subscriber s = DBController.getSubscriberPersonalDetails(subscriberId);
 
-                    client.sendToClient(new Object[]{
+                    reply(client, new Object[]{
                             ServerResponseType.SUBSCRIBER_PERSONAL_DETAILS,
                             s
                     });
@@ -677,7 +900,7 @@ public class EchoServer extends AbstractServer {
 
                     String err = DBController.updateSubscriberPersonalDetails(updated);
 
-                    client.sendToClient(new Object[]{
+                    reply(client, new Object[]{
                             ServerResponseType.SUBSCRIBER_PERSONAL_DETAILS_UPDATED,
                             err
                     });
@@ -688,7 +911,7 @@ public class EchoServer extends AbstractServer {
                 case PAY_BILL: {
                     try {
                         if (data.length < 2 || !(data[1] instanceof entities.PayBillRequest)) {
-                            client.sendToClient(ServerResponseBuilder.payFailed("Missing PayBillRequest."));
+                            reply(client, ServerResponseBuilder.payFailed("Missing PayBillRequest."));
                             break;
                         }
 
@@ -697,12 +920,12 @@ public class EchoServer extends AbstractServer {
                        
                         entities.PaymentReceipt receipt = DBController.payBillByConfCode(req);
 
-                        client.sendToClient(ServerResponseBuilder.paySuccess(receipt));
+                        reply(client, ServerResponseBuilder.paySuccess(receipt));
                         break;
 
                     } catch (Exception e) {
                         String m = (e.getMessage() == null) ? "Payment failed." : e.getMessage();
-                        client.sendToClient(ServerResponseBuilder.payFailed(m));
+                        reply(client, ServerResponseBuilder.payFailed(m));
                         break;
                     }
                 }
@@ -713,12 +936,12 @@ public class EchoServer extends AbstractServer {
                     entities.BillDetails bill = DBController.getBillByConfCode(confCode);
 
                     if (bill == null) {
-                        client.sendToClient(new Object[]{
+                        reply(client, new Object[]{
                                 ServerResponseType.BILL_NOT_FOUND,
                                 "No open bill found for this code."
                         });
                     } else {
-                        client.sendToClient(new Object[]{
+                        reply(client, new Object[]{
                                 ServerResponseType.BILL_FOUND,
                                 bill
                         });
@@ -735,9 +958,9 @@ public class EchoServer extends AbstractServer {
                         WaitlistJoinResult res = DBController.joinWaitlistSubscriber(subscriberId, diners);
 
                         if (res.getStatus() == WaitlistStatus.FAILED) {
-                            client.sendToClient(ServerResponseBuilder.waitlistError(res));
+                            reply(client, ServerResponseBuilder.waitlistError(res));
                         } else {
-                            client.sendToClient(ServerResponseBuilder.waitlistSuccess(res));
+                            reply(client, ServerResponseBuilder.waitlistSuccess(res));
                         }
 
                     } catch (Exception e) {
@@ -745,7 +968,7 @@ public class EchoServer extends AbstractServer {
                     	WaitlistJoinResult res = new WaitlistJoinResult(
                     		    WaitlistStatus.FAILED, -1, null, "Bad request format."
                     		);
-                    		client.sendToClient(ServerResponseBuilder.waitlistError(res));
+                    		reply(client, ServerResponseBuilder.waitlistError(res));
                     }
                     break;
                 }
@@ -760,16 +983,16 @@ public class EchoServer extends AbstractServer {
                         WaitlistJoinResult res = DBController.joinWaitlistNonSubscriber(email, phone, diners);
 
                         if (res.getStatus() == WaitlistStatus.FAILED) {
-                            client.sendToClient(ServerResponseBuilder.waitlistError(res));
+                            reply(client, ServerResponseBuilder.waitlistError(res));
                         } else {
-                            client.sendToClient(ServerResponseBuilder.waitlistSuccess(res));
+                            reply(client, ServerResponseBuilder.waitlistSuccess(res));
                         }
 
                     } catch (Exception e) {
                     	WaitlistJoinResult res = new WaitlistJoinResult(
                     		    WaitlistStatus.FAILED, -1, null, "Bad request format."
                     		);
-                    		client.sendToClient(ServerResponseBuilder.waitlistError(res));
+                    		reply(client, ServerResponseBuilder.waitlistError(res));
                     }
                     break;
                 }
@@ -781,12 +1004,12 @@ public class EchoServer extends AbstractServer {
 
                         String err = DBController.leaveWaitlistSubscriber(subscriberId);
                         if (err == null) {
-                            client.sendToClient(ServerResponseBuilder.waitlistSuccessMsg("Left waitlist (subscriber)."));
+                            reply(client, ServerResponseBuilder.waitlistSuccessMsg("Left waitlist (subscriber)."));
                         } else {
-                            client.sendToClient(ServerResponseBuilder.waitlistErrorMsg(err));
+                            reply(client, ServerResponseBuilder.waitlistErrorMsg(err));
                         }
                     } catch (Exception e) {
-                        client.sendToClient(new Object[]{ ServerResponseType.ERROR, "Bad request format." });
+                        reply(client, new Object[]{ ServerResponseType.ERROR, "Bad request format." });
                     }
                     break;
                 }
@@ -799,12 +1022,12 @@ public class EchoServer extends AbstractServer {
 
                         String err = DBController.leaveWaitlistNonSubscriber(email, phone);
                         if (err == null) {
-                            client.sendToClient(ServerResponseBuilder.waitlistSuccessMsg("Left waitlist (Non-subscriber)."));
+                            reply(client, ServerResponseBuilder.waitlistSuccessMsg("Left waitlist (Non-subscriber)."));
                         } else {
-                            client.sendToClient(ServerResponseBuilder.waitlistErrorMsg(err));
+                            reply(client, ServerResponseBuilder.waitlistErrorMsg(err));
                         }
                     } catch (Exception e) {
-                        client.sendToClient(new Object[]{ ServerResponseType.ERROR, "Bad request format." });
+                        reply(client, new Object[]{ ServerResponseType.ERROR, "Bad request format." });
                     }
                     break;
                 }
@@ -813,7 +1036,7 @@ public class EchoServer extends AbstractServer {
                 case TRY_OFFER_TABLE_TO_WAITLIST: {
                     try {
                         if (data.length < 2) {
-                            client.sendToClient(new Object[]{ ServerResponseType.ERROR, "Missing table number." });
+                            reply(client, new Object[]{ ServerResponseType.ERROR, "Missing table number." });
                             break;
                         }
 
@@ -824,7 +1047,7 @@ public class EchoServer extends AbstractServer {
                             DBController.onTableFreed(tableNum);
 
                         if (r == null) {
-                            client.sendToClient(new Object[]{ ServerResponseType.INFO, "No suitable reservation or waitlist entry for this table." });
+                            reply(client, new Object[]{ ServerResponseType.INFO, "No suitable reservation or waitlist entry for this table." });
                             break;
                         }
 
@@ -838,13 +1061,13 @@ public class EchoServer extends AbstractServer {
                             }
                         }
 
-                        client.sendToClient(new Object[]{
+                        reply(client, new Object[]{
                             ServerResponseType.INFO,
                             "Assigned=" + r.type + " Table=" + r.tableNum + " Code=" + r.confCode
                         });
 
                     } catch (Exception e) {
-                        client.sendToClient(new Object[]{ ServerResponseType.ERROR, e.getMessage() });
+                        reply(client, new Object[]{ ServerResponseType.ERROR, e.getMessage() });
                     }
                     break;
                 }
@@ -853,7 +1076,7 @@ public class EchoServer extends AbstractServer {
                 case CONFIRM_RECEIVE_TABLE: {
                     try {
                         if (data.length < 2) {
-                            client.sendToClient(new Object[]{
+                            reply(client, new Object[]{
                                 ServerResponseType.INFO,
                                 "Missing confirmation code."
                             });
@@ -867,28 +1090,28 @@ public class EchoServer extends AbstractServer {
                         // SUCCESS – table assigned
                         if (out[0] == null) {
                             int tableNum = (int) out[1];
-                            client.sendToClient(new Object[]{
+                            reply(client, new Object[]{
                                 ServerResponseType.INFO,
                                 "You have been seated at table " + tableNum + "."
                             });
                         } 
                         // NO TABLE AVAILABLE
                         else if ("NO_TABLE_AVAILABLE".equals(out[0])) {
-                            client.sendToClient(new Object[]{
+                            reply(client, new Object[]{
                                 ServerResponseType.NO_TABLE_AVAILABLE,
                                 "No suitable table is available at the moment."
                             });
                         }
                         // OTHER INFO (priority, wait, etc.)
                         else {
-                            client.sendToClient(new Object[]{
+                            reply(client, new Object[]{
                                 ServerResponseType.INFO,
                                 (String) out[0]
                             });
                         }
 
                     } catch (Exception e) {
-                        client.sendToClient(new Object[]{
+                        reply(client, new Object[]{
                             ServerResponseType.INFO,
                             "Invalid request."
                         });
@@ -899,10 +1122,8 @@ public class EchoServer extends AbstractServer {
                 /** Retrieves a forgotten confirmation code by contact details */
                 case FORGOT_CONFIRMATION_CODE: {
                     try {
-                        System.out.println("FORGOT_CONFIRMATION_CODE arrived");
-
                         if (data.length < 2 || !(data[1] instanceof ForgotConfirmationCodeRequest)) {
-                            client.sendToClient(new Object[]{ ServerResponseType.ERROR, "Invalid request payload." });
+                            reply(client, new Object[]{ ServerResponseType.ERROR, "Invalid request payload." });
                             break;
                         }
 
@@ -912,7 +1133,7 @@ public class EchoServer extends AbstractServer {
                         String email = (req.getEmail() == null) ? "" : req.getEmail().trim();
 
                         if (phone.isEmpty() || email.isEmpty()) {
-                            client.sendToClient(new Object[]{
+                            reply(client, new Object[]{
                                 ServerResponseType.CONFIRMATION_CODE_NOT_FOUND,
                                 "Please enter BOTH phone and email."
                             });
@@ -920,18 +1141,18 @@ public class EchoServer extends AbstractServer {
                         }
 
                         Integer code = DBController.findActiveConfirmationCode(phone, email);
-                        System.out.println("DB returned code=" + code);
+                        if (REQUEST_LOG.isDebug()) REQUEST_LOG.debug("FORGOT_CONFIRMATION_CODE found code=" + code);
 
                         if (code == null) {
-                            client.sendToClient(new Object[]{ ServerResponseType.CONFIRMATION_CODE_NOT_FOUND, "Reservation not found." });
+                            reply(client, new Object[]{ ServerResponseType.CONFIRMATION_CODE_NOT_FOUND, "Reservation not found." });
                         } else {
-                            client.sendToClient(new Object[]{ ServerResponseType.CONFIRMATION_CODE_FOUND, code });
+                            reply(client, new Object[]{ ServerResponseType.CONFIRMATION_CODE_FOUND, code });
                         }
 
                     } catch (Exception e) {
-                        e.printStackTrace();
+                        REQUEST_LOG.error("Confirmation code lookup failed", e);
                         try {
-                            client.sendToClient(new Object[]{ ServerResponseType.ERROR, "Server error." });
+                            reply(client, new Object[]{ ServerResponseType.ERROR, "Server error." });
                         } catch (Exception ignore) {}
                     }
                     break;
@@ -943,9 +1164,9 @@ public class EchoServer extends AbstractServer {
                         int year = (int) data[1];
                         int month = (int) data[2];
                         DBController.runMonthlyReportsSnapshot(year, month);
-                        client.sendToClient(new Object[]{ ServerResponseType.MONTHLY_SNAPSHOT_OK });
+                        reply(client, new Object[]{ ServerResponseType.MONTHLY_SNAPSHOT_OK });
                     } catch (Exception e) {
-                        client.sendToClient(new Object[]{ ServerResponseType.MONTHLY_SNAPSHOT_FAILED, e.getMessage() });
+                        reply(client, new Object[]{ ServerResponseType.MONTHLY_SNAPSHOT_FAILED, e.getMessage() });
                     }
                     break;
                 }
@@ -958,7 +1179,7 @@ public class EchoServer extends AbstractServer {
                     ArrayList<entities.HourlyWaitlistRatioRow> rows =
                             DBController.getWaitlistRatioByHour(year, month);
 
-                    client.sendToClient(new Object[]{
+                    reply(client, new Object[]{
                             ServerResponseType.WAITLIST_RATIO_BY_HOUR_DATA,
                             rows
                     });
@@ -974,14 +1195,14 @@ public class EchoServer extends AbstractServer {
                     java.util.List<Integer> options = DBController.getConfCodeChallengeForSubscriber(subscriberId);
 
                     if (options == null || options.isEmpty()) {
-                        client.sendToClient(new Object[]{
+                        reply(client, new Object[]{
                             ServerResponseType.CONF_CODE_CHALLENGE_EMPTY,
                             "No active confirmation code found for this subscriber."
                         });
                         break;
                     }
 
-                    client.sendToClient(new Object[]{
+                    reply(client, new Object[]{
                         ServerResponseType.CONF_CODE_CHALLENGE,
                         options
                     });
@@ -1006,7 +1227,7 @@ public class EchoServer extends AbstractServer {
                         result = new TerminalSubscriberIdentifyResult(true, s, null);
                     }
 
-                    client.sendToClient(new Object[] {
+                    reply(client, new Object[] {
                         ServerResponseType.TERMINAL_SUBSCRIBER_IDENTIFIED,
                         result
                     });
@@ -1023,12 +1244,12 @@ public class EchoServer extends AbstractServer {
                     Subscriber s = DBController.getSubscriberByScanCode(scanCode);
 
                     if (s == null) {
-                        client.sendToClient(new Object[] {
+                        reply(client, new Object[] {
                             ServerResponseType.ERROR,
                             "Subscriber not found"
                         });
                     } else {
-                        client.sendToClient(new Object[] {
+                        reply(client, new Object[] {
                             ServerResponseType.TERMINAL_SUBSCRIBER_IDENTIFIED,
                             s
                         });
@@ -1042,7 +1263,7 @@ public class EchoServer extends AbstractServer {
 
 
                 default:
-                    client.sendToClient(ServerResponseBuilder.error("Unknown request: " + type));
+                    reply(client, ServerResponseBuilder.error("Unknown request: " + type));
                     break;
             }
             
@@ -1050,17 +1271,343 @@ public class EchoServer extends AbstractServer {
             
 
         } catch (Exception e) {
-            e.printStackTrace();
+            REQUEST_LOG.error("Request failed", e);
             try {
-                client.sendToClient(ServerResponseBuilder.error("Server error: " + e.getMessage()));
+                reply(client, ServerResponseBuilder.error("Server error: " + e.getMessage()));
             } catch (Exception ex) {
-                ex.printStackTrace();
+                REQUEST_LOG.error("Could not send the error answer", ex);
             }
+        } finally {
+            if (uow != null) uow.close();
         }
     }
     
 
 
+    /**
+     * Handles a { CORRELATED, requestId, request } envelope.
+     *
+     * The inner request is handled like any other request; while it runs,
+     * every response sent through {@link #reply} is wrapped with the
+     * request id so the client can complete the matching future.
+     *
+     * @param data   the envelope received from the client
+     * @param client the client connection that sent the message
+     */
+    private void processCorrelated(Object[] data, ConnectionToClient client) {
+        Long requestId = requestIdOf(data);
+        if (requestId == null || data.length < 3) {
+            try {
+                client.sendToClient(ServerResponseBuilder.error("Invalid correlated request."));
+            } catch (Exception e) {
+                REQUEST_LOG.error("Could not answer an invalid correlated request", e);
+            }
+            return;
+        }
+
+        currentRequestId.set(requestId);
+        try {
+            processRequest(data[2], client);
+        } finally {
+            currentRequestId.remove();
+        }
+    }
+
+    /**
+     * Handles a { BATCH, Object[] requests } request.
+     *
+     * Every sub-request is handled by {@link #processRequest} with its
+     * response captured, and all responses are sent back together as one
+     * BATCH_RESULT, in request order. If every sub-request only reads data,
+     * they run in parallel on the batch workers, each in its own unit of
+     * work, while this thread only waits: it must not keep a pooled
+     * connection that the workers may need. Otherwise they run one after the
+     * other on this thread, on the connection of its unit of work.
+     *
+     * @param data   the BATCH request
+     * @param client the client connection that sent the message
+     * @throws IOException if the response could not be sent
+     */
+    private void processBatch(Object[] data, ConnectionToClient client) throws IOException {
+        if (data.length < 2 || !(data[1] instanceof Object[])) {
+            reply(client, ServerResponseBuilder.error("BATCH missing sub-requests."));
+            return;
+        }
+
+        Object[] requests = (Object[]) data[1];
+        if (requests.length > ServerConfig.BATCH_MAX_REQUESTS) {
+            reply(client, ServerResponseBuilder.error(
+                    "BATCH has too many requests (max " + ServerConfig.BATCH_MAX_REQUESTS + ")."));
+            return;
+        }
+
+        Object[] responses = new Object[requests.length];
+
+        if (requests.length > 1 && isReadOnly(requests)) {
+            List<Future<Object>> pending = new ArrayList<>();
+            for (Object request : requests) {
+                pending.add(batchWorkers.submit(() -> processCaptured(request, client)));
+            }
+
+            for (int i = 0; i < requests.length; i++) {
+                try {
+                    responses[i] = pending.get(i).get();
+                } catch (ExecutionException e) {
+                    responses[i] = ServerResponseBuilder.error("Server error: " + e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    responses[i] = ServerResponseBuilder.error("Server error: interrupted.");
+                }
+            }
+        } else {
+            for (int i = 0; i < requests.length; i++) {
+                responses[i] = processCaptured(requests[i], client);
+            }
+        }
+
+        reply(client, ServerResponseBuilder.batchResult(responses));
+    }
+
+    /**
+     * Returns true if every request of a batch only reads data.
+     *
+     * @param requests the sub-requests of a BATCH request
+     * @return true if the sub-requests may run in parallel
+     */
+    private static boolean isReadOnly(Object[] requests) {
+        for (Object request : requests) {
+            if (!(request instanceof Object[])) return false;
+            Object[] sub = (Object[]) request;
+            if (sub.length == 0 || !READ_ONLY_REQUESTS.contains(sub[0])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Handles one BATCH sub-request and returns its response instead of sending it.
+     *
+     * Only the first response of the sub-request is captured; a request that
+     * answers more than once sends the extra responses as usual.
+     *
+     * @param request the sub-request
+     * @param client  the client connection that sent the batch
+     * @return the response of the sub-request
+     */
+    private Object processCaptured(Object request, ConnectionToClient client) {
+        if (request instanceof Object[] && ((Object[]) request).length > 0
+                && ((Object[]) request)[0] == ClientRequestType.BATCH) {
+            return ServerResponseBuilder.error("Nested BATCH requests are not supported.");
+        }
+
+        List<Object> replies = new ArrayList<>(1);
+        Long outerRequestId = currentRequestId.get();
+        List<Object> outerReplies = capturedReplies.get();
+        currentRequestId.remove();
+        capturedReplies.set(replies);
+        try {
+            processRequest(request, client);
+        } finally {
+            if (outerReplies != null) capturedReplies.set(outerReplies);
+            else capturedReplies.remove();
+            if (outerRequestId != null) currentRequestId.set(outerRequestId);
+        }
+        return replies.isEmpty() ? ServerResponseBuilder.error("No response.") : replies.get(0);
+    }
+
+    /**
+     * Handles a request configured with bistro.uow.transactional: all its DB
+     * work runs in one transaction (see {@link UnitOfWork}), and its response
+     * is sent only after the commit. If the commit fails, the client gets an
+     * error instead.
+     *
+     * @param data   the request
+     * @param client the client connection
+     */
+    private void processTransactional(Object[] data, ConnectionToClient client) {
+        Object response;
+        try (UnitOfWork uow = UnitOfWork.begin(true)) {
+            response = processCaptured(data, client);
+            uow.commit();
+        } catch (Exception e) {
+            REQUEST_LOG.error("Transactional request failed", e);
+            response = ServerResponseBuilder.error("Server error: " + e.getMessage());
+        }
+
+        try {
+            reply(client, response);
+        } catch (Exception e) {
+            REQUEST_LOG.error("Could not send the answer", e);
+        }
+    }
+
+    /**
+     * Handles a request that carries an idempotency key: the first copy runs
+     * and its response is stored, copies resent after a dropped connection
+     * (or sent twice) get that response without running again.
+     *
+     * Generic ERROR responses (server busy, unexpected failures) are not
+     * stored, so a resend after one of them really runs.
+     *
+     * @param type   the request type
+     * @param key    the idempotency key of the request
+     * @param data   the request
+     * @param client the client connection
+     */
+    private void processIdempotent(ClientRequestType type, String key, Object[] data, ConnectionToClient client) {
+        IdempotencyStore.Slot slot = IdempotencyStore.getInstance().begin(type, key);
+        Object response = null;
+
+        if (slot.isOwner()) {
+            runningKey.set(key);
+            try {
+                response = processCaptured(data, client);
+            } finally {
+                runningKey.remove();
+                boolean keep = response instanceof Object[]
+                        && ((Object[]) response).length > 0
+                        && ((Object[]) response)[0] != ServerResponseType.ERROR;
+                slot.complete(response, keep);
+            }
+        } else {
+            response = slot.await();
+            if (response == null) {
+                response = ServerResponseBuilder.error("The same request is still being processed, please try again.");
+            }
+            REQUEST_LOG.info("Replayed response of " + type);
+        }
+
+        try {
+            reply(client, response);
+        } catch (Exception e) {
+            REQUEST_LOG.error("Could not send the answer", e);
+        }
+    }
+
+    /**
+     * Returns the client idempotency key of a mutating request: the field of
+     * the CreateReservationRequest / PayBillRequest, or the optional last
+     * element of a waitlist join.
+     *
+     * @param type the request type
+     * @param data the request
+     * @return the key, or null if the request has none
+     */
+    private static String idempotencyKeyOf(ClientRequestType type, Object[] data) {
+        Object key = null;
+        switch (type) {
+            case CREATE_RESERVATION:
+                if (data.length > 1 && data[1] instanceof CreateReservationRequest)
+                    key = ((CreateReservationRequest) data[1]).getIdempotencyKey();
+                break;
+            case PAY_BILL:
+                if (data.length > 1 && data[1] instanceof entities.PayBillRequest)
+                    key = ((entities.PayBillRequest) data[1]).getIdempotencyKey();
+                break;
+            case JOIN_WAITLIST_SUBSCRIBER:
+                if (data.length > 3) key = data[3];
+                break;
+            case JOIN_WAITLIST_NON_SUBSCRIBER:
+                if (data.length > 4) key = data[4];
+                break;
+            default:
+                return null;
+        }
+        return (key instanceof String && !((String) key).isEmpty()) ? (String) key : null;
+    }
+
+    /**
+     * Handles a STREAM_LIST request: runs the list query with a streaming
+     * ResultSet and sends a LIST_PAGE to the client each time pageSize rows
+     * were read, then a last page with the rest.
+     *
+     * A stream answers with several messages, so it cannot be a BATCH
+     * sub-request or a CORRELATED request; those get an ERROR and should use
+     * the GET_..._PAGE requests instead.
+     *
+     * @param data   { STREAM_LIST, Object[] listRequest, Integer pageSize }
+     * @param client the client connection
+     * @throws Exception on database errors or if a page could not be sent
+     */
+    private void processStream(Object[] data, ConnectionToClient client) throws Exception {
+        if (capturedReplies.get() != null || currentRequestId.get() != null) {
+            reply(client, ServerResponseBuilder.error("STREAM_LIST cannot be batched or correlated; use the page requests."));
+            return;
+        }
+        if (data.length < 2 || !(data[1] instanceof Object[]) || ((Object[]) data[1]).length == 0) {
+            reply(client, ServerResponseBuilder.error("STREAM_LIST missing list request."));
+            return;
+        }
+
+        Object[] listRequest = (Object[]) data[1];
+        int pageSize = pageSizeOf(data, 2);
+
+        if (listRequest[0] == ClientRequestType.GET_RESERVATIONS) {
+            PageStreamer<Reservation> pages = new PageStreamer<>(client, ClientRequestType.GET_RESERVATIONS,
+                    pageSize, DBController::cursorOf);
+            DBController.streamReservations(pages);
+            pages.finish();
+        } else if (listRequest[0] == ClientRequestType.GET_SUBSCRIBERS) {
+            PageStreamer<Subscriber> pages = new PageStreamer<>(client, ClientRequestType.GET_SUBSCRIBERS,
+                    pageSize, DBController::cursorOf);
+            DBController.streamSubscribers(pages);
+            pages.finish();
+        } else if (listRequest[0] == ClientRequestType.GET_WAITLIST_BY_MONTH && listRequest.length >= 3) {
+            PageStreamer<WaitlistRow> pages = new PageStreamer<>(client, ClientRequestType.GET_WAITLIST_BY_MONTH,
+                    pageSize, DBController::cursorOf);
+            DBController.streamWaitlistByMonth((int) listRequest[1], (int) listRequest[2], pages);
+            pages.finish();
+        } else {
+            reply(client, ServerResponseBuilder.error("STREAM_LIST does not support " + listRequest[0] + "."));
+        }
+    }
+
+    /**
+     * Reads the page size of a page or stream request, within the limits of
+     * {@link ServerConfig#PAGE_MAX}.
+     *
+     * @param data  the request
+     * @param index position of the page size in the request
+     * @return page size to use
+     */
+    private static int pageSizeOf(Object[] data, int index) {
+        int size = (data.length > index && data[index] instanceof Integer)
+                ? (Integer) data[index]
+                : ServerConfig.PAGE_SIZE;
+        return Math.max(1, Math.min(size, ServerConfig.PAGE_MAX));
+    }
+
+    /**
+     * Returns the request id of a correlated request envelope.
+     *
+     * @param msg the message received from the client
+     * @return the request id, or null if the message is a plain request
+     */
+    private static Long requestIdOf(Object msg) {
+        if (!(msg instanceof Object[])) return null;
+        Object[] data = (Object[]) msg;
+        if (data.length < 2 || data[0] != ClientRequestType.CORRELATED) return null;
+        return (data[1] instanceof Long) ? (Long) data[1] : null;
+    }
+
+    /**
+     * Sends a response to the client that sent the request being handled.
+     * Responses to correlated requests are wrapped with the request id;
+     * the response of a BATCH sub-request is kept for the BATCH_RESULT.
+     *
+     * @param client   the client connection
+     * @param response the response to send
+     * @throws IOException if the response could not be sent
+     */
+    private void reply(ConnectionToClient client, Object response) throws IOException {
+        List<Object> captured = capturedReplies.get();
+        if (captured != null && captured.isEmpty()) {
+            captured.add(response);
+            return;
+        }
+        Long requestId = currentRequestId.get();
+        client.sendToClient(requestId == null ? response : ServerResponseBuilder.correlated(requestId, response));
+    }
+
     /**
      * Called when a client successfully connects to the server.
      *
@@ -1076,11 +1623,7 @@ public class EchoServer extends AbstractServer {
         String host = addr != null ? addr.getHostName()    : "unknown";
 
         String msg = "Client connected: IP=" + ip + ", Host=" + host + ", Status=CONNECTED";
-        System.out.println(msg);
-
-        if (ServerUI.serverController != null) {
-            ServerUI.serverController.appendLog(msg);
-        }
+        LOG.info(msg);
 
         client.setInfo("ip", ip);
         client.setInfo("host", host);
@@ -1105,17 +1648,14 @@ public class EchoServer extends AbstractServer {
         if (ip == null)   ip   = "unknown";
         if (host == null) host = "unknown";
 
-        String msg = "Client disconnected: IP=" + ip + ", Host=" + host + ", Status=DISCONNECTED";
-        System.out.println(msg);
-
-        if (ServerUI.serverController != null) {
-            ServerUI.serverController.appendLog(msg);
-        }
+        String msg = "Client disconnected: IP=" + ip + ", Host=" + host + ", Status=DISCONNECTED"
+                + sendStats(client);
+        LOG.info(msg);
         
         try {
             client.close();
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Could not close a client connection", e);
         }
     }
 
@@ -1140,12 +1680,44 @@ public class EchoServer extends AbstractServer {
         if (host == null) host = "unknown";
 
         String msg = "Client disconnected (exception): IP=" + ip + ", Host=" + host +
-                     ", Status=DISCONNECTED";
-        System.out.println(msg);
+                     ", Status=DISCONNECTED" +
+                     sendStats(client);
+        LOG.info(msg);
+    }
 
-        if (ServerUI.serverController != null) {
-            ServerUI.serverController.appendLog(msg);
+    /**
+     * Formats what was sent to a client for the disconnect log lines:
+     * volume, largest outbound queue depth, write latency and the number
+     * of coalesced change events.
+     *
+     * @param client the client connection
+     * @return the statistics, starting with ", "
+     */
+    private static String sendStats(ConnectionToClient client) {
+        return ", Sent=" + client.getMessagesSent() + " msgs/" + client.getBytesWritten() + " bytes"
+                + ", QueueMax=" + client.getMaxOutboundQueueDepth()
+                + ", WriteLatency=" + client.getAverageWriteLatencyMicros() + "/"
+                + client.getMaxWriteLatencyMicros() + " us avg/max"
+                + ", Coalesced=" + client.getCoalescedCount();
+    }
+
+    /**
+     * Pushed change events for the same row may replace each other while
+     * they wait in the outbound queue of a slow client: only the latest
+     * state of the row matters.
+     *
+     * @param msg the message being sent
+     * @return "change:TOPIC:key" for a change event with a key, null otherwise
+     */
+    @Override
+    protected Object getCoalesceKey(Object msg) {
+        if (!(msg instanceof Object[])) return null;
+        Object[] arr = (Object[]) msg;
+        if (arr.length < 2 || arr[0] != ServerResponseType.CHANGE_EVENT || !(arr[1] instanceof ChangeEvent)) {
+            return null;
         }
+        ChangeEvent event = (ChangeEvent) arr[1];
+        return event.getKey() == null ? null : "change:" + event.getTopic() + ":" + event.getKey();
     }
 
     /**
@@ -1155,11 +1727,9 @@ public class EchoServer extends AbstractServer {
      */
     @Override
     protected void serverStarted() {
-        String msg = "Server is listening on port " + getPort();
-        System.out.println(msg);
+        LOG.info("Server is listening on port " + getPort());
 
         if (ServerUI.serverController != null) {
-            ServerUI.serverController.appendLog(msg);
             ServerUI.serverController.setDbStatus("Connected");
         }
         ReminderScheduler.start();
@@ -1172,14 +1742,30 @@ public class EchoServer extends AbstractServer {
      */
     @Override
     protected void serverStopped() {
-        String msg = "Server has stopped.";
-        System.out.println(msg);
+        String msg = "Server has stopped. Booking locks: " + BookingLocks.getInstance().getStats()
+                + ". Customer identities: " + CustomerIdentityCache.getInstance().getStats()
+                + ". Idempotent requests: " + IdempotencyStore.getInstance().getStats()
+                + ". Log: " + ServerLog.getStats();
+        LOG.info(msg);
 
         if (ServerUI.serverController != null) {
-            ServerUI.serverController.appendLog(msg);
             ServerUI.serverController.setDbStatus("Disconnected");
         }
     }
+
+    /**
+     * Called when the server is closed.
+     *
+     * Stops the request worker pool (if concurrent dispatch is enabled)
+     * and the batch workers.
+     */
+    @Override
+    protected void serverClosed() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        batchWorkers.shutdown();
+    }
     
     
 }
\ No newline at end of file
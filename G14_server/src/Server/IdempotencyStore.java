@@ -0,0 +1,194 @@
+package Server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import entities.ClientRequestType;
+
+/**
+ * IdempotencyStore
+ * ----------------
+ * Responses of the mutating requests that carried a client idempotency key
+ * (CREATE_RESERVATION, PAY_BILL, JOIN_WAITLIST_SUBSCRIBER,
+ * JOIN_WAITLIST_NON_SUBSCRIBER), so that a request resent after a dropped
+ * connection gets the original response instead of booking, paying or
+ * joining a second time.
+ *
+ * The first request with a key runs normally; a copy that arrives while it
+ * runs waits for its response, and copies that arrive later get the stored
+ * response. Responses are kept for bistro.idempotency.ttlSec seconds, at most
+ * bistro.idempotency.size of them (oldest dropped first). Keys are scoped by
+ * request type.
+ */
+final class IdempotencyStore {
+
+    /** The single store of the server. */
+    private static final IdempotencyStore INSTANCE =
+            new IdempotencyStore(ServerConfig.IDEMPOTENCY_SIZE, ServerConfig.IDEMPOTENCY_TTL_SEC);
+
+    /** Longest time a copy waits for the request it duplicates. */
+    private static final long WAIT_SEC = 60;
+
+    private final int capacity;
+    private final long ttlNanos;
+
+    /** Requests still running, by scoped key. */
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> running = new ConcurrentHashMap<>();
+
+    /** Stored responses by scoped key, oldest first; guarded by itself. */
+    private final LinkedHashMap<String, Stored> done = new LinkedHashMap<>();
+
+    private final AtomicLong replayed = new AtomicLong();
+
+    /** One stored response. */
+    private static final class Stored {
+        final Object response;
+        final long storedAt;
+
+        Stored(Object response, long storedAt) {
+            this.response = response;
+            this.storedAt = storedAt;
+        }
+    }
+
+    /**
+     * The right to run a keyed request, or the response of the request it
+     * duplicates.
+     */
+    final class Slot {
+        private final String key;
+        private final CompletableFuture<Object> future;
+        private final boolean owner;
+
+        private Slot(String key, CompletableFuture<Object> future, boolean owner) {
+            this.key = key;
+            this.future = future;
+            this.owner = owner;
+        }
+
+        /**
+         * @return true if the caller must run the request and then call
+         *         {@link #complete(Object, boolean)}
+         */
+        boolean isOwner() {
+            return owner;
+        }
+
+        /**
+         * Returns the response of the original request, waiting for it if it
+         * is still running. Only for slots that are not owners.
+         *
+         * @return the original response, or null if it did not finish in time
+         */
+        Object await() {
+            try {
+                return future.get(WAIT_SEC, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        /**
+         * Publishes the response of the request. Called once by the owner,
+         * also when the request failed.
+         *
+         * @param response the response sent to the client (may be null)
+         * @param keep whether later copies may replay it; false for answers
+         *             such as "server busy" after which the request should
+         *             really run again
+         */
+        void complete(Object response, boolean keep) {
+            if (keep && response != null && capacity > 0) {
+                synchronized (done) {
+                    done.put(key, new Stored(response, System.nanoTime()));
+                    Iterator<Map.Entry<String, Stored>> it = done.entrySet().iterator();
+                    while (done.size() > capacity && it.hasNext()) {
+                        it.next();
+                        it.remove();
+                    }
+                }
+            }
+            running.remove(key, future);
+            future.complete(response);
+        }
+    }
+
+    private IdempotencyStore(int capacity, int ttlSec) {
+        this.capacity = Math.max(0, capacity);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSec));
+    }
+
+    /**
+     * Returns the store of the server.
+     *
+     * @return the single instance
+     */
+    static IdempotencyStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts a keyed request: either the caller owns it and must run it, or
+     * it is a copy of a running or finished request.
+     *
+     * @param type request type (keys are scoped by it)
+     * @param key client idempotency key
+     * @return the slot of the request
+     */
+    Slot begin(ClientRequestType type, String key) {
+        String scoped = type.name() + ':' + key;
+
+        Stored stored = lookup(scoped);
+        if (stored != null) {
+            replayed.incrementAndGet();
+            return new Slot(scoped, CompletableFuture.completedFuture(stored.response), false);
+        }
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> other = running.putIfAbsent(scoped, mine);
+        if (other != null) {
+            replayed.incrementAndGet();
+            return new Slot(scoped, other, false);
+        }
+
+        // The original may have finished between lookup() and putIfAbsent()
+        stored = lookup(scoped);
+        if (stored != null) {
+            running.remove(scoped, mine);
+            mine.complete(stored.response);
+            replayed.incrementAndGet();
+            return new Slot(scoped, mine, false);
+        }
+        return new Slot(scoped, mine, true);
+    }
+
+    /**
+     * Returns a one-line summary of the store, for the server log.
+     *
+     * @return store statistics
+     */
+    String getStats() {
+        int size;
+        synchronized (done) {
+            size = done.size();
+        }
+        return "replayed=" + replayed.get() + " stored=" + size;
+    }
+
+    private Stored lookup(String scoped) {
+        long now = System.nanoTime();
+        synchronized (done) {
+            // Drop expired responses from the oldest end
+            Iterator<Stored> it = done.values().iterator();
+            while (it.hasNext() && now - it.next().storedAt > ttlNanos) {
+                it.remove();
+            }
+            return done.get(scoped);
+        }
+    }
+}
@@ -5,11 +5,17 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * MySQLConnectionPool manages reusable MySQL connections for the server.
@@ -20,13 +26,40 @@ import java.util.concurrent.TimeUnit;
  * - The pool keeps a queue of available connections (PooledConnection objects).
  * - When the server needs a connection, it tries to reuse one from the queue.
  * - If the queue is empty, it creates a new physical MySQL connection.
- * - When a connection is returned, it goes back to the queue (if there is space).
+ * - When a connection is returned, it goes back to the queue.
+ *
+ * The pool is bounded: at most maxActive physical connections exist at any
+ * time. A caller that finds all of them in use waits (first come, first
+ * served) up to acquireTimeoutMillis for one to be returned, and then gets an
+ * IllegalStateException saying the pool is exhausted. A burst of requests
+ * therefore queues inside the server instead of opening more MySQL
+ * connections than the database accepts.
  *
  * The pool also runs a background "cleaner" that checks idle connections.
- * If a connection was not used for too long, it is closed automatically.
+ * If a connection was not used for too long, it is closed automatically,
+ * but at least minIdle connections are kept open.
+ *
+ * Broken connections (killed by MySQL for wait_timeout, or cut by the
+ * network) are not handed out: a connection idle for a while is checked with
+ * Connection.isValid() before it is returned by getConnection(), and idle
+ * connections are checked in the background (keepalive). Connections held
+ * for too long are reported (with the stack that acquired them when
+ * bistro.pool.trackStacks is on) and, after bistro.pool.leakReclaimSec,
+ * closed and replaced, so a path that forgets releaseConnection() does not
+ * shrink the pool for good. The connection of
+ * a UnitOfWork only counts as held while one of its DB calls uses it, and
+ * the connection of a streamed list only while it reads a page, not while
+ * it waits for the client to read the previous ones.
+ *
+ * A thread must not ask for a second connection while it holds one: with
+ * every connection in use, it would wait for itself until the timeout.
+ * Inside a UnitOfWork this cannot happen: the thread gets the connection it
+ * already holds.
  */
 public class MySQLConnectionPool {
 
+    private static final ServerLog.Category LOG = ServerLog.category("pool");
+
 	/**
      * The singleton instance of the pool (created only once).
      */
@@ -41,11 +74,15 @@ public class MySQLConnectionPool {
 
     /**
      * Pool configuration:
-     * maxPoolSize = how many connections can be stored in the pool queue.
+     * maxActive = how many physical connections may exist (in use + idle).
+     * minIdle = how many idle connections the cleaner keeps open.
+     * acquireTimeoutMillis = how long getConnection() waits for a free connection.
      * maxIdleTimeMillis = how long a connection may stay unused before closing.
      * checkIntervalSeconds = how often the cleaner checks for idle connections.
      */
-    private final int maxPoolSize;
+    private final int maxActive;
+    private final int minIdle;
+    private final long acquireTimeoutMillis;
     private final long maxIdleTimeMillis;
     private final long checkIntervalSeconds;
 
@@ -53,7 +90,42 @@ public class MySQLConnectionPool {
      * Queue that holds available (idle) pooled connections.
      */
     private final BlockingQueue<PooledConnection> pool;
-    
+
+    /**
+     * One permit per connection that may be handed out. Fair, so waiting
+     * callers are served in arrival order.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Physical connections currently open (in use + idle + being opened).
+     */
+    private final AtomicInteger total = new AtomicInteger();
+
+    /**
+     * Connections currently handed out.
+     */
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Counters for the server log and the server window.
+     */
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong broken = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+
+    /**
+     * How often held connections and idle connections are checked.
+     */
+    private static final long HOUSEKEEPING_SECONDS = 10;
+
+    /**
+     * Set by shutdown(); connections returned afterwards are closed.
+     */
+    private volatile boolean closed;
+
     /**
      * Background service that runs the cleanup task periodically.
      */
@@ -65,22 +137,28 @@ public class MySQLConnectionPool {
      * @param dbUrl JDBC URL for the MySQL database
      * @param user database username
      * @param pass database password
-     * @param maxPoolSize maximum number of connections kept inside the pool queue
+     * @param maxActive maximum number of physical connections
+     * @param minIdle number of idle connections kept open by the cleaner
+     * @param acquireTimeoutMillis how long a caller waits for a free connection
      * @param maxIdleTimeMillis max allowed idle time before closing a connection
      * @param checkIntervalSeconds how often to run the cleanup check
      */
     private MySQLConnectionPool(String dbUrl, String user, String pass,
-                                int maxPoolSize, long maxIdleTimeMillis, long checkIntervalSeconds) {
+                                int maxActive, int minIdle, long acquireTimeoutMillis,
+                                long maxIdleTimeMillis, long checkIntervalSeconds) {
 
         this.dbUrl = dbUrl;
         this.user = user;
         this.pass = pass;
 
-        this.maxPoolSize = maxPoolSize;
+        this.maxActive = Math.max(1, maxActive);
+        this.minIdle = Math.max(0, Math.min(minIdle, this.maxActive));
+        this.acquireTimeoutMillis = Math.max(0, acquireTimeoutMillis);
         this.maxIdleTimeMillis = maxIdleTimeMillis;
         this.checkIntervalSeconds = checkIntervalSeconds;
 
-        this.pool = new LinkedBlockingQueue<>(maxPoolSize);
+        this.pool = new LinkedBlockingQueue<>(this.maxActive);
+        this.permits = new Semaphore(this.maxActive, true);
 
      // Start a background timer that checks idle connections every X seconds
         this.cleanerService = Executors.newSingleThreadScheduledExecutor();
@@ -90,8 +168,34 @@ public class MySQLConnectionPool {
                 checkIntervalSeconds,
                 TimeUnit.SECONDS
         );
+        this.cleanerService.scheduleWithFixedDelay(
+                this::checkConnections,
+                HOUSEKEEPING_SECONDS,
+                HOUSEKEEPING_SECONDS,
+                TimeUnit.SECONDS
+        );
 
-        System.out.println("[Pool] Initialized. Max Size: " + maxPoolSize);
+        LOG.info("Initialized. Max Active: " + this.maxActive
+                + ", Min Idle: " + this.minIdle
+                + ", Acquire Timeout: " + this.acquireTimeoutMillis + " ms");
+    }
+
+    /**
+     * Creates the pool instance only once, with the sizes and timeout taken
+     * from {@link ServerConfig}; maxPoolSize is the largest number of
+     * connections, in use or idle.
+     *
+     * @param dbUrl JDBC URL for the MySQL database
+     * @param user database username
+     * @param pass database password
+     * @param maxPoolSize maximum number of physical connections
+     * @param maxIdleTimeMillis max allowed idle time before closing a connection
+     * @param checkIntervalSeconds how often to run the cleanup check
+     */
+    public static void init(String dbUrl, String user, String pass,
+                            int maxPoolSize, long maxIdleTimeMillis, long checkIntervalSeconds) {
+        init(dbUrl, user, pass, maxPoolSize, ServerConfig.POOL_MIN_IDLE, ServerConfig.POOL_ACQUIRE_TIMEOUT_MS,
+                maxIdleTimeMillis, checkIntervalSeconds);
     }
 
     /**
@@ -103,14 +207,18 @@ public class MySQLConnectionPool {
      * @param dbUrl JDBC URL for the MySQL database
      * @param user database username
      * @param pass database password
-     * @param maxPoolSize maximum number of connections stored in the pool queue
+     * @param maxActive maximum number of physical connections (in use + idle)
+     * @param minIdle number of idle connections kept open by the cleaner
+     * @param acquireTimeoutMillis how long getConnection() waits for a free connection
      * @param maxIdleTimeMillis max allowed idle time before closing a connection
      * @param checkIntervalSeconds how often to run the cleanup check
      */
     public static synchronized void init(String dbUrl, String user, String pass,
-                                         int maxPoolSize, long maxIdleTimeMillis, long checkIntervalSeconds) {
+                                         int maxActive, int minIdle, long acquireTimeoutMillis,
+                                         long maxIdleTimeMillis, long checkIntervalSeconds) {
         if (instance == null) {
-            instance = new MySQLConnectionPool(dbUrl, user, pass, maxPoolSize, maxIdleTimeMillis, checkIntervalSeconds);
+            instance = new MySQLConnectionPool(dbUrl, user, pass, maxActive, minIdle, acquireTimeoutMillis,
+                    maxIdleTimeMillis, checkIntervalSeconds);
         }
     }
 
@@ -131,126 +239,426 @@ public class MySQLConnectionPool {
      * Gets a connection for database work.
      *
      * Steps:
-     * 1) Try to take a connection from the pool queue.
-     * 2) If the pool is empty -> create a new physical connection.
-     * 3) If reusing an existing connection -> reset its "last used" time.
+     * 1) Wait (in arrival order) until fewer than maxActive connections are in use.
+     * 2) Try to take a connection from the pool queue; if it was idle for a
+     *    while and no longer works, close it and take the next one.
+     * 3) If the pool is empty -> create a new physical connection.
+     * 4) If reusing an existing connection -> reset its "last used" time.
      *
-     * @return a PooledConnection (can be reused later)
+     * No lock is held while a physical connection is opened, so this method
+     * is safe to call from many threads at once, including virtual threads.
+     *
+     * Inside a UnitOfWork, returns the connection of the unit of work.
+     *
+     * @return a PooledConnection (can be reused later), or null if a new
+     *         connection could not be opened
+     * @throws IllegalStateException if no connection became free within the
+     *         acquire timeout, or the thread was interrupted while waiting
      */
     public PooledConnection getConnection() {
-        PooledConnection pConn = pool.poll();
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null) return uow.lease(this);
+        return acquire();
+    }
 
-        if (pConn == null) {
-            System.out.println("[Pool] Queue empty. Creating NEW physical connection!!!");
-            return createNewConnection();
+    /**
+     * Takes a connection from the pool, waiting for one if all are in use.
+     */
+    PooledConnection acquire() {
+        boolean got;
+        try {
+            // The timed tryAcquire keeps arrival order even with no wait; the
+            // untimed one lets a thread that just released barge past the waiters.
+            got = permits.tryAcquire(0, TimeUnit.MILLISECONDS);
+            if (!got) {
+                waited.incrementAndGet();
+                got = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database connection.");
         }
+        if (!got) {
+            timeouts.incrementAndGet();
+            LOG.warn("DB connection pool exhausted. " + getStats());
+            throw new IllegalStateException("Connection pool exhausted: all " + maxActive
+                    + " connections in use for " + acquireTimeoutMillis + " ms.");
+        }
+        return checkOut();
+    }
 
-        pConn.touch();
-        System.out.println("[Pool] Reusing existing connection.");
-        return pConn;
+    /**
+     * Gets a connection only if one is free right now.
+     *
+     * For optional work done while the caller already holds a connection
+     * (for example reserving a block of confirmation codes in advance), which
+     * must never wait for the pool. Always a separate connection, also
+     * inside a UnitOfWork.
+     *
+     * @return a PooledConnection, or null if all connections are in use or a
+     *         new connection could not be opened
+     */
+    public PooledConnection tryGetConnection() {
+        if (!permits.tryAcquire()) return null;
+        return checkOut();
     }
 
     /**
      * Returns a connection back to the pool after finishing DB work.
      *
-     * If the pool already has the maximum amount of connections stored,
-     * the returned connection is not kept and will be closed instead.
+     * A connection that was closed in the meantime, or any connection
+     * returned after shutdown(), is dropped. Returning the same connection
+     * twice, or one the pool already took back, has no effect. The
+     * connection of the current UnitOfWork stays with it until it is closed.
      *
      * @param pConn the pooled connection to return to the pool
      */
     public void releaseConnection(PooledConnection pConn) {
         if (pConn == null) return;
 
-        pConn.touch();
-        boolean added = pool.offer(pConn);
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null && uow.keep(pConn)) return;
+
+        if (!pConn.markReturned()) {
+            LOG.warn("Connection already returned or taken back, ignored.");
+            return;
+        }
+        borrowed.remove(pConn);
+
+        if (pConn.isLeakReported()) {
+            LOG.info("Connection reported as held too long returned after "
+                    + (System.currentTimeMillis() - pConn.getBorrowedAt()) + " ms by " + pConn.getBorrowThread());
+        }
 
-        if (added) {
-            System.out.println("[Pool] Connection returned. Current Pool Size: " + pool.size());
-        } else {
-        	// Pool is full, so we do not keep more connections
-            try { pConn.closePhysicalConnection(); } catch (Exception ignored) {}
+        try {
+            pConn.touch();
+            if (closed || isBroken(pConn) || !pool.offer(pConn)) {
+                discard(pConn);
+            } else {
+                if (LOG.isDebug()) LOG.debug("Connection returned. Current Pool Size: " + pool.size());
+            }
+        } finally {
+            permits.release();
         }
     }
 
+    /**
+     * Asks the cleaner thread to open connections until minIdle are idle,
+     * so the first requests after startup do not pay for opening them.
+     */
+    public void warmUp() {
+        try {
+            cleanerService.execute(this::fillMinIdle);
+        } catch (Exception ignored) {}
+    }
+
+    /**
+     * Returns a one-line summary of the pool, for the server log.
+     *
+     * @return pool statistics
+     */
+    public String getStats() {
+        return "active=" + (maxActive - permits.availablePermits())
+                + " idle=" + pool.size()
+                + " open=" + total.get() + "/" + maxActive
+                + " waiting=" + permits.getQueueLength()
+                + " waited=" + waited.get()
+                + " timeouts=" + timeouts.get()
+                + " broken=" + broken.get()
+                + " leaks=" + leaks.get()
+                + " reclaimed=" + reclaimed.get()
+                + " " + StatementCache.getStats()
+                + " " + UnitOfWork.getStats();
+    }
+
+    /**
+     * Hands out a connection to a caller that holds a permit. The permit is
+     * given back if no connection can be handed out.
+     */
+    private PooledConnection checkOut() {
+        PooledConnection pConn = null;
+        try {
+            while (true) {
+                pConn = pool.poll();
+
+                if (pConn == null) {
+                    LOG.debug("Queue empty. Creating NEW physical connection.");
+                    pConn = createNewConnection();
+                    break;
+                }
+                if (isUsable(pConn)) {
+                    LOG.debug("Reusing existing connection.");
+                    break;
+                }
+                LOG.warn("Idle connection is broken, closing it.");
+                broken.incrementAndGet();
+                discard(pConn);
+            }
+        } finally {
+            if (pConn == null) permits.release();
+        }
+        if (pConn == null) return null;
+
+        pConn.touch();
+        pConn.markCheckedOut(ServerConfig.POOL_TRACK_STACKS ? new Throwable("Connection acquired here") : null);
+        borrowed.add(pConn);
+        return pConn;
+    }
+
+    /**
+     * Checks an idle connection before it is handed out, unless it was used
+     * or checked very recently.
+     */
+    private boolean isUsable(PooledConnection pConn) {
+        long now = System.currentTimeMillis();
+        long quiet = now - Math.max(pConn.getLastUsed(), pConn.getLastValidated());
+        if (quiet < ServerConfig.POOL_VALIDATE_AFTER_MS) return true;
+        return validate(pConn);
+    }
+
+    /**
+     * Runs Connection.isValid() with the configured budget.
+     *
+     * @return true if the connection works
+     */
+    private static boolean validate(PooledConnection pConn) {
+        try {
+            Connection c = pConn.getConnection();
+            if (c != null && c.isValid(Math.max(1, ServerConfig.POOL_VALIDATION_TIMEOUT_SEC))) {
+                pConn.validated();
+                return true;
+            }
+        } catch (SQLException ignored) {}
+        return false;
+    }
+
     /**
      * Creates a brand new physical connection to MySQL and wraps it as PooledConnection.
      *
+     * Never opens more than maxActive connections: a caller holding a permit
+     * that finds the limit reached (a connection it could reuse is on its way
+     * back to the queue) waits for that connection instead.
+     *
      * @return a new PooledConnection or null if connection failed
      */
     private PooledConnection createNewConnection() {
+        while (true) {
+            int open = total.get();
+            if (open < maxActive) {
+                if (total.compareAndSet(open, open + 1)) break;
+                continue;
+            }
+            try {
+                PooledConnection idle = pool.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (idle != null) return idle;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+
         try {
-            Connection c = DriverManager.getConnection(dbUrl, user, pass);
-            return new PooledConnection(c);
+            return openPhysicalConnection();
         } catch (SQLException e) {
-            System.err.println("CONNECTION ERROR DETAILS");
-            e.printStackTrace();
+            total.decrementAndGet();
+            LOG.error("Could not open a DB connection", e);
             return null;
         }
     }
 
+    /**
+     * Opens a physical connection, with server-side prepared statements if
+     * bistro.pool.serverPrepare is set.
+     */
+    private PooledConnection openPhysicalConnection() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", user);
+        props.setProperty("password", pass);
+        if (ServerConfig.POOL_SERVER_PREPARE) {
+            props.setProperty("useServerPrepStmts", "true");
+        }
+        return new PooledConnection(DriverManager.getConnection(dbUrl, props));
+    }
+
+    /**
+     * Closes a physical connection and forgets it.
+     */
+    private void discard(PooledConnection pConn) {
+        total.decrementAndGet();
+        try { pConn.closePhysicalConnection(); } catch (Exception ignored) {}
+    }
+
+    private static boolean isBroken(PooledConnection pConn) {
+        try {
+            return pConn.getConnection() == null || pConn.getConnection().isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Opens connections until minIdle are idle, without going over maxActive.
+     */
+    private void fillMinIdle() {
+        while (!closed && pool.size() < minIdle) {
+            int open = total.get();
+            if (open >= maxActive) return;
+            if (!total.compareAndSet(open, open + 1)) continue;
+
+            PooledConnection pConn;
+            try {
+                pConn = openPhysicalConnection();
+            } catch (SQLException e) {
+                total.decrementAndGet();
+                LOG.warn("Could not open idle connection: " + e.getMessage());
+                return;
+            }
+            if (closed || !pool.offer(pConn)) {
+                discard(pConn);
+                return;
+            }
+        }
+    }
+
     /**
      * Cleanup task: checks all connections that are currently inside the pool queue.
      *
-     * If a connection was idle longer than maxIdleTimeMillis, it is closed and removed.
-     * Otherwise, it is returned back to the pool queue.
+     * If a connection was idle longer than maxIdleTimeMillis, it is closed and
+     * removed, as long as more than minIdle connections are idle. Connections
+     * are removed one by one, so callers can keep taking the others meanwhile.
+     * Afterwards, connections are opened again up to minIdle.
      *
      * This method runs automatically in the background every checkIntervalSeconds.
      */
     private void checkIdleConnections() {
-        if (pool.isEmpty()) return;
+        if (!pool.isEmpty()) {
+            LOG.debug("Checking idle connections...");
 
-        System.out.println("[Timer] Checking idle connections...");
-        
-     // Take all idle connections out of the queue temporarily
-        List<PooledConnection> temp = new ArrayList<>();
-        pool.drainTo(temp);
+            List<PooledConnection> temp = new ArrayList<>(pool);
 
-        long now = System.currentTimeMillis();
-        int closedCount = 0;
-
-        for (PooledConnection pConn : temp) {
-            if (pConn == null) continue;
-
-            long idleTime = now - pConn.getLastUsed();
-            System.out.println("[Timer] Connection idle for: " + idleTime + " ms");
-            
-            if (now - pConn.getLastUsed() > maxIdleTimeMillis) {
-                try {
-                	System.out.println("[Timer] Closing idle connection"); 
-                    pConn.closePhysicalConnection();
+            long now = System.currentTimeMillis();
+            int closedCount = 0;
+
+            for (PooledConnection pConn : temp) {
+                if (pool.size() <= minIdle) break;
+
+                long idleTime = now - pConn.getLastUsed();
+                if (LOG.isDebug()) LOG.debug("Connection idle for: " + idleTime + " ms");
+
+                // remove() fails if a caller took the connection in the meantime
+                if (idleTime > maxIdleTimeMillis && pool.remove(pConn)) {
+                    discard(pConn);
                     closedCount++;
-                } catch (Exception ignored) {}
-            } else {
-            	// Still valid -> return it back into the pool
-                pool.offer(pConn);
+                }
+            }
+
+            if (closedCount > 0) {
+                LOG.info("Evicted " + closedCount + " idle connections. Pool Size: " + pool.size());
+            }
+        }
+
+        fillMinIdle();
+    }
+
+    /**
+     * Housekeeping task: reports and takes back connections held too long,
+     * then checks idle connections that were not checked for a while.
+     *
+     * Runs in the background every HOUSEKEEPING_SECONDS.
+     */
+    private void checkConnections() {
+        try {
+            checkBorrowedConnections();
+            keepAlive();
+        } catch (Exception e) {
+            // never let an exception cancel the scheduled task
+            LOG.error("Housekeeping failed", e);
+        }
+    }
+
+    private void checkBorrowedConnections() {
+        long now = System.currentTimeMillis();
+        long reportMs = TimeUnit.SECONDS.toMillis(ServerConfig.POOL_LEAK_REPORT_SEC);
+        long reclaimMs = TimeUnit.SECONDS.toMillis(ServerConfig.POOL_LEAK_RECLAIM_SEC);
+
+        for (PooledConnection pConn : borrowed) {
+            // A unit of work keeps its connection for the whole request; only its DB calls count
+            if (pConn.isParked()) continue;
+            long held = now - pConn.getBorrowedAt();
+
+            if (reportMs > 0 && held > reportMs && pConn.markLeakReported()) {
+                leaks.incrementAndGet();
+                LOG.warn("DB connection held for " + held + " ms by " + pConn.getBorrowThread()
+                        + " (possible leak" + (ServerConfig.POOL_TRACK_STACKS ? ")"
+                                : "; run with -Dbistro.pool.trackStacks=true for its stack)"),
+                        pConn.getBorrowStack());
+            }
+
+            // markReturned() fails if the holder released it in the meantime
+            if (reclaimMs > 0 && held > reclaimMs && pConn.markReturned()) {
+                borrowed.remove(pConn);
+                reclaimed.incrementAndGet();
+                discard(pConn);
+                permits.release();
+                LOG.warn("DB connection held for " + held + " ms by " + pConn.getBorrowThread()
+                        + " was closed and replaced");
             }
         }
+    }
 
-        if (closedCount > 0) {
-            System.out.println("[Timer] Evicted " + closedCount + " idle connections. Pool Size: " + pool.size());
+    /**
+     * Checks idle connections not checked for POOL_KEEPALIVE_SEC, one at a
+     * time so the others stay available, and closes the broken ones.
+     */
+    private void keepAlive() {
+        long keepAliveMs = TimeUnit.SECONDS.toMillis(ServerConfig.POOL_KEEPALIVE_SEC);
+        if (keepAliveMs <= 0 || pool.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        for (PooledConnection pConn : new ArrayList<>(pool)) {
+            if (closed) return;
+            if (now - Math.max(pConn.getLastUsed(), pConn.getLastValidated()) < keepAliveMs) continue;
+
+            // remove() fails if a caller took the connection in the meantime
+            if (!pool.remove(pConn)) continue;
+
+            if (!validate(pConn)) {
+                LOG.warn("Keepalive found a broken connection, closing it.");
+                broken.incrementAndGet();
+                discard(pConn);
+            } else if (closed || !pool.offer(pConn)) {
+                discard(pConn);
+            }
         }
+        fillMinIdle();
     }
 
     /**
      * Shuts down the pool completely.
      *
      * This method stops the background cleaner and closes all connections
-     * that are currently in the pool queue.
+     * that are currently in the pool queue. Connections still in use are
+     * closed when they are returned.
      *
      * After shutdown, the pool instance becomes null and must be re-initialized
      * if the server starts again.
      */
     public synchronized void shutdown() {
+        closed = true;
         try {
             cleanerService.shutdownNow();
         } catch (Exception ignored) {}
 
-        pool.forEach(pc -> {
-            try { pc.closePhysicalConnection(); } catch (Exception ignored) {}
-        });
-        pool.clear();
+        LOG.info(getStats());
+
+        PooledConnection pc;
+        while ((pc = pool.poll()) != null) {
+            discard(pc);
+        }
 
-        instance = null;
-        System.out.println("[Pool] Shutdown complete.");
+        synchronized (MySQLConnectionPool.class) {
+            if (instance == this) instance = null;
+        }
+        LOG.info("Shutdown complete.");
     }
 }
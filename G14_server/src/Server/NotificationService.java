@@ -21,6 +21,8 @@ import jakarta.mail.internet.MimeMessage;
  */
 public class NotificationService {
 
+    private static final ServerLog.Category LOG = ServerLog.category("notify");
+
 	
 	 /**
      * Single-thread executor used for sending notifications asynchronously.
@@ -53,8 +55,7 @@ public class NotificationService {
             try {
                 sendSubscriberEmail(s);
             } catch (Throwable t) {
-                System.out.println("[NotificationService] Failed to send email: " + t.getMessage());
-                t.printStackTrace();
+                LOG.error("Failed to send email", t);
             }
         });
     }
@@ -89,7 +90,7 @@ public class NotificationService {
         message.setContent(html, "text/html; charset=UTF-8");
         Transport.send(message);
 
-        System.out.println("[NotificationService] Email sent to " + s.getEmail());
+        LOG.info("Email sent to " + s.getEmail());
     }
 
     /**
@@ -123,8 +124,7 @@ public class NotificationService {
             try {
                 sendWaitlistNotification(email, confCode);
             } catch (Throwable t) {
-                System.out.println("[NotificationService] Failed to send waitlist email: " + t.getMessage());
-                t.printStackTrace();
+                LOG.error("Failed to send waitlist email", t);
             }
         });
     }
@@ -159,7 +159,7 @@ public class NotificationService {
         message.setContent(html, "text/html; charset=UTF-8");
         Transport.send(message);
 
-        System.out.println("[NotificationService] Waitlist email sent to " + email);
+        LOG.info("Waitlist email sent to " + email);
     }
     
  
@@ -177,8 +177,7 @@ public class NotificationService {
             try {
                 sendReservationEmail(email.trim(), r, phoneOptional);
             } catch (Throwable t) {
-                System.out.println("[NotificationService] Failed to send reservation email: " + t.getMessage());
-                t.printStackTrace();
+                LOG.error("Failed to send reservation email", t);
             }
         });
     }
@@ -226,7 +225,7 @@ public class NotificationService {
 	    message.setContent(html, "text/html; charset=UTF-8");
 	    Transport.send(message);
 	
-	    System.out.println("[NotificationService] Reservation email sent to " + email);
+	    LOG.info("Reservation email sent to " + email);
 	}
 
 
@@ -250,11 +249,10 @@ public class NotificationService {
                         "Guests: " + r.getNumOfDin();
 
                 
-                System.out.println("[SMS SIM] to " + phone.trim() + ":\n" + text);
+                LOG.info("SMS SIM to " + phone.trim() + ":\n" + text);
 
             } catch (Throwable t) {
-                System.out.println("[NotificationService] Failed to send SMS sim: " + t.getMessage());
-                t.printStackTrace();
+                LOG.error("Failed to send SMS sim", t);
             }
         });
     }
@@ -274,8 +272,7 @@ public class NotificationService {
             try {
                 sendReservationReminderEmail(email.trim(), r);
             } catch (Throwable t) {
-                System.out.println("[NotificationService] Failed to send reminder email: " + t.getMessage());
-                t.printStackTrace();
+                LOG.error("Failed to send reminder email", t);
             }
         });
     }
@@ -316,7 +313,7 @@ public class NotificationService {
         message.setContent(html, "text/html; charset=UTF-8");
         Transport.send(message);
 
-        System.out.println("[NotificationService] Reminder email sent to " + email);
+        LOG.info("Reminder email sent to " + email);
     }
 
     /**
@@ -338,11 +335,10 @@ public class NotificationService {
                     "Date/Time: " + r.getReservationTime() + "\n" +
                     "Guests: " + r.getNumOfDin();
 
-                System.out.println("[SMS SIM] to " + phone.trim() + ":\n" + text);
+                LOG.info("SMS SIM to " + phone.trim() + ":\n" + text);
 
             } catch (Throwable t) {
-                System.out.println("[NotificationService] Failed to send reminder SMS sim: " + t.getMessage());
-                t.printStackTrace();
+                LOG.error("Failed to send reminder SMS sim", t);
             }
         });
     }
@@ -363,8 +359,7 @@ public class NotificationService {
              try {
                  sendWaitlistOfferEmail(email.trim(), confCode, tableNum);
              } catch (Throwable t) {
-                 System.out.println("[NotificationService] Failed to send waitlist offer email: " + t.getMessage());
-                 t.printStackTrace();
+                 LOG.error("Failed to send waitlist offer email", t);
              }
          });
      }
@@ -407,7 +402,7 @@ public class NotificationService {
          message.setContent(html, "text/html; charset=UTF-8");
          Transport.send(message);
 
-         System.out.println("[NotificationService] Waitlist offer email sent to " + email);
+         LOG.info("Waitlist offer email sent to " + email);
      }
 
 
@@ -424,9 +419,9 @@ public class NotificationService {
      public static void sendWaitlistOfferSmsSimAsync(String phone, int confirmationCode, int tableNum) {
          EXEC.submit(() -> {
              try {
-                 System.out.println("[SMS] To: " + phone + " | Table available. Code: " + confirmationCode + ", Table: " + tableNum);
+                 LOG.info("SMS to: " + phone + " | Table available. Code: " + confirmationCode + ", Table: " + tableNum);
              } catch (Throwable t) {
-                 System.out.println("[NotificationService] Failed to send waitlist offer sms: " + t.getMessage());
+                 LOG.warn("Failed to send waitlist offer sms: " + t.getMessage());
              }
          });
  
@@ -446,8 +441,7 @@ public class NotificationService {
     	        try {
     	            sendBillEmail(email.trim(), confCode, finalAmount);
     	        } catch (Throwable t) {
-    	            System.out.println("[NotificationService] Failed to send bill email: " + t.getMessage());
-    	            t.printStackTrace();
+    	            LOG.error("Failed to send bill email", t);
     	        }
     	    });
     	}
@@ -488,7 +482,7 @@ public class NotificationService {
     	    message.setContent(html, "text/html; charset=UTF-8");
     	    Transport.send(message);
 
-    	    System.out.println("[NotificationService] Bill email sent to " + email);
+    	    LOG.info("Bill email sent to " + email);
     	}
 
     	/**
@@ -510,11 +504,10 @@ public class NotificationService {
     	                "Amount: " + finalAmount + " ₪\n" +
     	                "Pay via app/terminal using your code.";
 
-    	            System.out.println("[SMS SIM] to " + phone.trim() + ":\n" + text);
+    	            LOG.info("SMS SIM to " + phone.trim() + ":\n" + text);
 
     	        } catch (Throwable t) {
-    	            System.out.println("[NotificationService] Failed to send bill SMS sim: " + t.getMessage());
-    	            t.printStackTrace();
+    	            LOG.error("Failed to send bill SMS sim", t);
     	        }
     	    });
     	 }
@@ -538,11 +531,11 @@ public class NotificationService {
 
     	public static void sendReservationCanceledAsync(String email, entities.Reservation r, String reason) {
     		if (email == null || email.trim().isEmpty()) {
-    	        System.out.println("[Email] cancel mail SKIPPED (empty email)");
+    	        LOG.debug("Cancel mail skipped (empty email)");
     	        return;
     	    }
 
-    	    System.out.println("[Email] queue cancel mail to: " + email);
+    	    if (LOG.isDebug()) LOG.debug("Queue cancel mail to: " + email);
 
 
     	    EXEC.submit(() -> {
@@ -575,11 +568,10 @@ public class NotificationService {
     	            message.setContent(html, "text/html; charset=UTF-8");
     	            Transport.send(message);
     	            
-    	            System.out.println("[Email] cancel mail SENT OK to: " + email);
+    	            LOG.info("Cancel mail sent to " + email);
 
     	        } catch (Throwable t) {
-    	            System.out.println("[Email] cancel mail FAILED to: " + email + " reason=" + t);
-    	            t.printStackTrace(); // הכי חשוב
+    	            LOG.error("Cancel mail failed to " + email, t);
     	        }
     	    });
     	}
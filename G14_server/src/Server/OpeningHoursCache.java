@@ -0,0 +1,217 @@
+package Server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * OpeningHoursCache
+ * -----------------
+ * Effective opening window of each date: the special hours of the date
+ * when it has some, otherwise the weekly hours of its day of week, otherwise
+ * closed.
+ *
+ * The weekly rows and the special rows from yesterday on are loaded with two
+ * queries and kept until a manager changes them (UPDATE_OPENING_WEEKLY,
+ * UPSERT/DELETE special hours), which calls {@link #invalidate()} after the
+ * commit. Dates before the loaded range are read from the database.
+ *
+ * A load that raced with an invalidation is used once but not kept, so a
+ * reader can never keep hours older than the last change.
+ */
+public final class OpeningHoursCache {
+
+    /** The single cache of the server. */
+    private static final OpeningHoursCache INSTANCE = new OpeningHoursCache();
+
+    /** Loaded rows; null until loaded or after an invalidation. */
+    private volatile Snapshot snapshot;
+
+    /** Incremented by every invalidation. */
+    private long generation;
+
+    /** Weekly rows and special rows from a given day on. */
+    private static final class Snapshot {
+        final LocalDate from;
+        final Map<Integer, OpeningWindow> weekly;
+        final Map<LocalDate, OpeningWindow> special;
+
+        Snapshot(LocalDate from, Map<Integer, OpeningWindow> weekly, Map<LocalDate, OpeningWindow> special) {
+            this.from = from;
+            this.weekly = weekly;
+            this.special = special;
+        }
+
+        OpeningWindow get(LocalDate date) {
+            OpeningWindow w = special.get(date);
+            if (w == null) w = weekly.get(date.getDayOfWeek().getValue());
+            return w == null ? OpeningWindow.CLOSED : w; // no row => closed
+        }
+    }
+
+    /** Singleton - use {@link #getInstance()}. */
+    private OpeningHoursCache() {
+    }
+
+    /**
+     * Returns the cache of the server.
+     *
+     * @return the single instance
+     */
+    public static OpeningHoursCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the effective opening window of a date.
+     *
+     * @param conn database connection used if the cache must be loaded
+     * @param date date to check
+     * @return opening window (closed if no hours are defined)
+     * @throws SQLException if loading fails
+     */
+    public OpeningWindow get(Connection conn, LocalDate date) throws SQLException {
+        Snapshot s = current(conn);
+        if (s == null || date.isBefore(s.from)) return readRange(conn, date, date).get(date);
+        return s.get(date);
+    }
+
+    /**
+     * Returns the effective opening windows of a range of days.
+     *
+     * @param conn database connection used if the cache must be loaded
+     * @param from first day
+     * @param to last day (inclusive)
+     * @return opening window of every day of the range
+     * @throws SQLException if loading fails
+     */
+    public Map<LocalDate, OpeningWindow> getRange(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        Snapshot s = current(conn);
+        if (s == null || from.isBefore(s.from)) return readRange(conn, from, to);
+
+        Map<LocalDate, OpeningWindow> result = new HashMap<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            result.put(d, s.get(d));
+        }
+        return result;
+    }
+
+    /**
+     * Drops the loaded hours. Called after opening hours were committed;
+     * inside a transactional UnitOfWork, done at its commit.
+     */
+    public void invalidate() {
+        UnitOfWork.afterCommit(this::drop);
+    }
+
+    private synchronized void drop() {
+        generation++;
+        snapshot = null;
+    }
+
+    /**
+     * Reads the effective opening windows of a range of days directly from
+     * the database with two queries, bypassing the cache.
+     *
+     * Used inside a transaction that has just changed the hours (the
+     * revalidation of future reservations), which must see its own
+     * uncommitted rows.
+     *
+     * @param conn database connection
+     * @param from first day
+     * @param to last day (inclusive)
+     * @return opening window of every day of the range
+     * @throws SQLException if a database error occurs
+     */
+    public static Map<LocalDate, OpeningWindow> readRange(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        Snapshot s = load(conn, from, to);
+
+        Map<LocalDate, OpeningWindow> result = new HashMap<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            result.put(d, s.get(d));
+        }
+        return result;
+    }
+
+    // ================= Loading =================
+
+    /**
+     * Returns the loaded hours, loading them first if needed.
+     *
+     * @return the snapshot, or null if the cache is disabled
+     */
+    private Snapshot current(Connection conn) throws SQLException {
+        if (!ServerConfig.HOURS_CACHE_ENABLED) return null;
+
+        LocalDate from = LocalDate.now().minusDays(1);
+        Snapshot s = snapshot;
+        if (s != null && s.from.equals(from)) return s;
+
+        long gen;
+        synchronized (this) {
+            gen = generation;
+        }
+
+        s = load(conn, from, null);
+
+        synchronized (this) {
+            // Keep it only if no change was committed while loading
+            if (gen == generation) snapshot = s;
+        }
+        return s;
+    }
+
+    /**
+     * Loads the weekly rows and the special rows of a range.
+     *
+     * @param from first special date
+     * @param to last special date, or null for no limit
+     */
+    private static Snapshot load(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        Map<LocalDate, OpeningWindow> special = new HashMap<>();
+        String specialSql =
+            "SELECT specialDate, isClosed, openTime, closeTime " +
+            "FROM schema_for_project.opening_hours_special " +
+            "WHERE specialDate >= ?" + (to == null ? "" : " AND specialDate <= ?");
+
+        try (PreparedStatement ps = conn.prepareStatement(specialSql)) {
+            ps.setDate(1, java.sql.Date.valueOf(from));
+            if (to != null) ps.setDate(2, java.sql.Date.valueOf(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    special.put(rs.getDate("specialDate").toLocalDate(), readWindow(rs));
+                }
+            }
+        }
+
+        Map<Integer, OpeningWindow> weekly = new HashMap<>();
+        String weeklySql =
+            "SELECT dayOfWeek, isClosed, openTime, closeTime " +
+            "FROM schema_for_project.opening_hours_weekly";
+
+        try (PreparedStatement ps = conn.prepareStatement(weeklySql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                weekly.put(rs.getInt("dayOfWeek"), readWindow(rs));
+            }
+        }
+
+        return new Snapshot(from, weekly, special);
+    }
+
+    /**
+     * Reads the isClosed, openTime and closeTime columns of an opening hours row.
+     */
+    private static OpeningWindow readWindow(ResultSet rs) throws SQLException {
+        Time ot = rs.getTime("openTime");
+        Time ct = rs.getTime("closeTime");
+        return new OpeningWindow(rs.getInt("isClosed") == 1,
+                ot == null ? null : ot.toLocalTime(),
+                ct == null ? null : ct.toLocalTime());
+    }
+}
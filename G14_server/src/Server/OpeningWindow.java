@@ -0,0 +1,35 @@
+package Server;
+
+import java.time.LocalTime;
+
+/**
+ * Represents the opening status and hours of the restaurant for a specific date.
+ * Instances are immutable and shared by {@link OpeningHoursCache}.
+ */
+final class OpeningWindow {
+
+    /** Window of a closed day. */
+    static final OpeningWindow CLOSED = new OpeningWindow(true, null, null);
+
+    /** Indicates whether the restaurant is closed on this date */
+    final boolean isClosed;
+
+    /** Opening time (null if closed) */
+    final LocalTime openTime;
+
+    /** Closing time (null if closed) */
+    final LocalTime closeTime;
+
+    /**
+     * Creates an opening window. A day without both times is closed.
+     *
+     * @param isClosed whether the restaurant is closed
+     * @param openTime opening time
+     * @param closeTime closing time
+     */
+    OpeningWindow(boolean isClosed, LocalTime openTime, LocalTime closeTime) {
+        this.isClosed = isClosed || openTime == null || closeTime == null;
+        this.openTime = openTime;
+        this.closeTime = closeTime;
+    }
+}
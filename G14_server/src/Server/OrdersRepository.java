@@ -6,6 +6,16 @@ import java.sql.*;
 import entities.CreateReservationRequest;
 import java.util.Random;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.Map;
+import entities.DayAvailability;
+import entities.SlotSuggestion;
+import entities.PageCursor;
 import entities.Reservation;
 import server_repositries.TableRepository;
 
@@ -15,6 +25,43 @@ import server_repositries.TableRepository;
  */
 public class OrdersRepository {
 
+    private static final ServerLog.Category LOG = ServerLog.category("jobs");
+    private static final ServerLog.Category SLOTS_LOG = ServerLog.category("slots");
+
+    /** MySQL error of a statement the server cannot parse (no WITH RECURSIVE / window functions). */
+    private static final int ER_PARSE_ERROR = 1064;
+
+    /** Set when the database rejected the set-based slot query; the per-slot checks are used instead. */
+    private static volatile boolean setBasedUnsupported = false;
+
+    /**
+     * Free start times of one day with the best table of each, in one round
+     * trip: a recursive CTE generates the half-hour starts, every start is
+     * joined with the active tables that seat the party, the tables with an
+     * overlapping reservation are removed (idx_res_table_time range on
+     * TableNum, reservationTime) and ROW_NUMBER keeps the smallest table of
+     * each start.
+     */
+    private static final String FREE_SLOTS_SQL =
+        "WITH RECURSIVE slots (s) AS ( " +
+        "    SELECT CAST(? AS DATETIME) " +
+        "    UNION ALL " +
+        "    SELECT s + INTERVAL 30 MINUTE FROM slots WHERE s + INTERVAL 30 MINUTE <= ? " +
+        "), ranked AS ( " +
+        "    SELECT slots.s, t.TableNum, " +
+        "           ROW_NUMBER() OVER (PARTITION BY slots.s ORDER BY t.Seats, t.TableNum) AS rn " +
+        "    FROM slots " +
+        "    JOIN schema_for_project.`table` t ON t.isActive = 1 AND t.Seats >= ? " +
+        "    WHERE NOT EXISTS ( " +
+        "        SELECT 1 FROM schema_for_project.reservation r " +
+        "        WHERE r.TableNum = t.TableNum " +
+        "          AND r.reservationTime > slots.s - INTERVAL 2 HOUR " +
+        "          AND r.reservationTime < slots.s + INTERVAL 2 HOUR " +
+        "          AND r.Status NOT IN ('CANCELED','DONE') " +
+        "    ) " +
+        ") " +
+        "SELECT s, TableNum FROM ranked WHERE rn = 1 ORDER BY s";
+
 	/**
      * Base SELECT query for fetching reservation data.
      */
@@ -68,6 +115,75 @@ public class OrdersRepository {
 	    return fetchReservations(conn, sql, null);
 	}
 
+	/**
+	 * Order of the reservation pages: newest first, ties broken by id.
+	 * Rows without createdAt come last (MySQL sorts NULL lowest).
+	 */
+	private static final String RES_PAGE_ORDER = " ORDER BY r.createdAt DESC, r.ResId DESC";
+
+	/**
+	 * Retrieves one page of all reservations, newest first (keyset pagination).
+	 * The page starts right after the cursor, so deep pages cost the same as
+	 * the first one.
+	 *
+	 * @param conn  database connection
+	 * @param after cursor of the last reservation already read, or null for the first page
+	 * @param limit maximum number of reservations to return
+	 * @return reservations of the page
+	 * @throws SQLException if a database error occurs
+	 */
+	public ArrayList<Reservation> getOrdersPage(Connection conn, PageCursor after, int limit) throws SQLException {
+	    if (after == null) {
+	        return fetchReservations(conn, RES_BASE_SELECT + RES_PAGE_ORDER + " LIMIT ?",
+	                ps -> ps.setInt(1, limit));
+	    }
+
+	    if (after.getTime() == null) {
+	        // Already inside the rows without createdAt: continue by id
+	        return fetchReservations(conn,
+	                RES_BASE_SELECT + "WHERE r.createdAt IS NULL AND r.ResId < ?" + RES_PAGE_ORDER + " LIMIT ?",
+	                ps -> {
+	                    ps.setInt(1, after.getId());
+	                    ps.setInt(2, limit);
+	                });
+	    }
+
+	    String sql = RES_BASE_SELECT +
+	            "WHERE (r.createdAt < ? OR (r.createdAt = ? AND r.ResId < ?) OR r.createdAt IS NULL)" +
+	            RES_PAGE_ORDER + " LIMIT ?";
+	    return fetchReservations(conn, sql, ps -> {
+	        ps.setTimestamp(1, after.getTime());
+	        ps.setTimestamp(2, after.getTime());
+	        ps.setInt(3, after.getId());
+	        ps.setInt(4, limit);
+	    });
+	}
+
+	/**
+	 * Reads all reservations in page order and hands them to the handler one
+	 * by one while the ResultSet is read, without building the whole list.
+	 *
+	 * The driver streams the rows (fetch size {@link Integer#MIN_VALUE} for
+	 * MySQL Connector/J); the connection cannot run other statements until
+	 * this method returns.
+	 *
+	 * @param conn    database connection
+	 * @param handler receives each reservation
+	 * @throws Exception if a database error occurs or the handler fails
+	 */
+	public void streamAllOrders(Connection conn, RowHandler<Reservation> handler) throws Exception {
+	    try (PreparedStatement ps = conn.prepareStatement(RES_BASE_SELECT + RES_PAGE_ORDER,
+	            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+	        ps.setFetchSize(Integer.MIN_VALUE);
+
+	        try (ResultSet rs = ps.executeQuery()) {
+	            while (rs.next()) {
+	                handler.handle(mapRowToReservation(rs));
+	            }
+	        }
+	    }
+	}
+
 
 
     /**
@@ -125,8 +241,11 @@ public class OrdersRepository {
             ps.setInt(3, resId);
 
             int rows = ps.executeUpdate();
-            return (rows > 0) ? null : ("Reservation " + resId + " was not updated.");
+            if (rows <= 0) return "Reservation " + resId + " was not updated.";
         }
+
+        SlotAvailabilityIndex.getInstance().refresh(conn, resId);
+        return null;
     }
 
 
@@ -228,6 +347,7 @@ public class OrdersRepository {
             	server_repositries.ConfCodeRepository.free(conn, ConfCode);
 
                 conn.commit();
+                SlotAvailabilityIndex.getInstance().removeByConfCode(ConfCode);
                 return null;
             } else {
                 conn.rollback();
@@ -313,7 +433,7 @@ public class OrdersRepository {
         if (win.isClosed) return result;
 
         // If diners > max table seats -> no slots at all
-        int maxSeats = getMaxActiveTableSeats(conn);
+        int maxSeats = maxActiveTableSeats(conn, from);
         if (diners > maxSeats) return result;
 
         // build half-hour slots between open and (close - 2 hours)
@@ -322,10 +442,21 @@ public class OrdersRepository {
 
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("HH:mm");
 
+        // No index for this day: one set-based query instead of a query per (slot, table)
+        SlotAvailabilityIndex index = SlotAvailabilityIndex.getInstance();
+        if (!start.isAfter(lastStart)
+                && !(index.covers(conn, Timestamp.valueOf(start)) && index.covers(conn, Timestamp.valueOf(lastStart)))) {
+            Map<LocalDateTime, Integer> free = findFreeSlots(conn, start, lastStart, diners);
+            if (free != null) {
+                for (LocalDateTime t : free.keySet()) result.add(t.format(fmt));
+                return result;
+            }
+        }
+
         for (LocalDateTime t = start; !t.isAfter(lastStart); t = t.plusMinutes(30)) {
             Timestamp slotTs = Timestamp.valueOf(t);
 
-            Integer table = findBestAvailableTable(conn, slotTs, diners);
+            Integer table = findTableForSlot(conn, slotTs, diners);
             if (table != null) {
                 // show just hour, or include table number if you want
                 result.add(t.format(fmt));
@@ -335,6 +466,200 @@ public class OrdersRepository {
         return result;
     }
 
+    /**
+     * Returns the availability of every day a reservation can be made for,
+     * from today to the end of the 31-day horizon, for a party size.
+     *
+     * A start time counts when it is on the half hour, between opening time
+     * and 2 hours before closing, and between 1 hour and 31 days from now
+     * (the createReservation rules). The free ones are read from the slot
+     * index masks; without the index each start is checked like in
+     * {@link #getAvailableSlots}.
+     *
+     * @param conn   database connection
+     * @param diners number of diners
+     * @return one entry per day, in date order
+     * @throws SQLException if a database error occurs
+     */
+    public ArrayList<DayAvailability> getAvailabilityCalendar(Connection conn, int diners) throws SQLException {
+        ArrayList<DayAvailability> result = new ArrayList<>();
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime earliest = now.plusHours(1);
+        LocalDateTime latest = now.plusDays(31);
+        LocalDate firstDay = now.toLocalDate();
+        LocalDate lastDay = latest.toLocalDate();
+        int days = (int) (lastDay.toEpochDay() - firstDay.toEpochDay()) + 1;
+
+        Map<LocalDate, OpeningWindow> windows = getOpeningWindows(conn, firstDay, lastDay);
+
+        Timestamp nowTs = Timestamp.valueOf(now);
+        boolean fits = diners <= maxActiveTableSeats(conn, nowTs);
+
+        SlotAvailabilityIndex index = SlotAvailabilityIndex.getInstance();
+        long[] masks = fits && index.covers(conn, Timestamp.valueOf(latest))
+                ? index.getFreeStartMasks(firstDay, days, diners)
+                : null;
+
+        for (int i = 0; i < days; i++) {
+            LocalDate date = firstDay.plusDays(i);
+            OpeningWindow win = windows.get(date);
+            if (win == null || win.isClosed) {
+                result.add(new DayAvailability(date, 0, 0, true));
+                continue;
+            }
+
+            LocalDateTime start = LocalDateTime.of(date, roundUpToHalfHour(win.openTime));
+            LocalDateTime lastStart = LocalDateTime.of(date, win.closeTime).minusHours(2);
+
+            // Without the index: the free starts of the day in one query
+            Map<LocalDateTime, Integer> freeStarts = (fits && masks == null && !start.isAfter(lastStart))
+                    ? findFreeSlots(conn, start, lastStart, diners)
+                    : null;
+
+            int total = 0;
+            int free = 0;
+            for (LocalDateTime t = start; !t.isAfter(lastStart); t = t.plusMinutes(30)) {
+                if (t.isBefore(earliest) || t.isAfter(latest)) continue;
+                total++;
+
+                if (!fits) continue;
+                if (masks != null) {
+                    int slot = (t.getHour() * 60 + t.getMinute()) / 30;
+                    if ((masks[i] >>> slot & 1L) != 0) free++;
+                } else if (freeStarts != null) {
+                    if (freeStarts.containsKey(t)) free++;
+                } else if (findTableForSlot(conn, Timestamp.valueOf(t), diners) != null) {
+                    free++;
+                }
+            }
+            result.add(new DayAvailability(date, free, total, false));
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds alternatives for a reservation request that could not be booked
+     * (no free table, outside opening hours, closed day, party too big):
+     *
+     *   the nearest free start times for the same party, on the requested
+     *   day or the day before or after, closest to the requested time first
+     *   the requested time itself for the largest smaller party that still
+     *   gets a table
+     *
+     * and, from the same free starts, the full list of free times of the
+     * requested day.
+     *
+     * Only bookable starts are suggested (createReservation rules). The free
+     * starts are read from the slot index masks, otherwise with one
+     * set-based query per day, so the whole search costs at most a few
+     * queries.
+     *
+     * @param conn      database connection
+     * @param requested requested start time
+     * @param diners    requested number of diners
+     * @param max       maximum number of alternative start times
+     * @return suggestions (nearest start times first, then the party-size
+     *         fit) and the free times of the requested day
+     * @throws SQLException if a database error occurs
+     */
+    public Alternatives suggestAlternatives(Connection conn, Timestamp requested, int diners, int max) throws SQLException {
+        ArrayList<SlotSuggestion> result = new ArrayList<>();
+        ArrayList<String> sameDay = new ArrayList<>();
+        Alternatives alternatives = new Alternatives(result, sameDay);
+        if (requested == null || diners <= 0) return alternatives;
+
+        LocalDateTime req = requested.toLocalDateTime();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime earliest = now.plusHours(1);
+        LocalDateTime latest = now.plusDays(31);
+
+        LocalDate firstDay = req.toLocalDate().minusDays(1);
+        if (firstDay.isBefore(earliest.toLocalDate())) firstDay = earliest.toLocalDate();
+        LocalDate lastDay = req.toLocalDate().plusDays(1);
+        if (lastDay.isAfter(latest.toLocalDate())) lastDay = latest.toLocalDate();
+        if (firstDay.isAfter(lastDay)) return alternatives;
+
+        Map<LocalDate, OpeningWindow> windows = getOpeningWindows(conn, firstDay, lastDay);
+        int maxSeats = maxActiveTableSeats(conn, Timestamp.valueOf(now));
+
+        // 1) Nearest free starts for the same party; the ones of the requested day are its slot list
+        if (diners <= maxSeats) {
+            List<LocalDateTime> free = freeStarts(conn, windows, firstDay, lastDay, earliest, latest, diners);
+            DateTimeFormatter fmt = DateTimeFormatter.ofPattern("HH:mm");
+            for (LocalDateTime t : free) {
+                if (t.toLocalDate().equals(req.toLocalDate())) sameDay.add(t.format(fmt));
+            }
+            free.remove(req);
+            free.sort(Comparator.<LocalDateTime>comparingLong(t -> Math.abs(Duration.between(req, t).toMinutes()))
+                    .thenComparing(Comparator.naturalOrder()));
+            for (int i = 0; i < free.size() && i < max; i++) {
+                result.add(new SlotSuggestion(Timestamp.valueOf(free.get(i)), diners));
+            }
+        }
+
+        // 2) The requested time for a smaller party
+        OpeningWindow win = windows.get(req.toLocalDate());
+        if (win != null && !win.isClosed
+                && !req.isBefore(earliest) && !req.isAfter(latest)
+                && !req.toLocalTime().isBefore(win.openTime)
+                && !req.toLocalTime().plusHours(2).isAfter(win.closeTime)) {
+            for (int d = Math.min(diners - 1, maxSeats); d >= 1; d--) {
+                if (findTableForSlot(conn, requested, d) != null) {
+                    result.add(new SlotSuggestion(requested, d));
+                    break;
+                }
+            }
+        }
+
+        return alternatives;
+    }
+
+    /**
+     * Returns the bookable half-hour starts of a range of days that have a
+     * free table for the party, in time order.
+     */
+    private List<LocalDateTime> freeStarts(Connection conn, Map<LocalDate, OpeningWindow> windows,
+            LocalDate firstDay, LocalDate lastDay, LocalDateTime earliest, LocalDateTime latest, int diners) throws SQLException {
+        List<LocalDateTime> result = new ArrayList<>();
+        int days = (int) (lastDay.toEpochDay() - firstDay.toEpochDay()) + 1;
+
+        SlotAvailabilityIndex index = SlotAvailabilityIndex.getInstance();
+        long[] masks = index.covers(conn, Timestamp.valueOf(firstDay.atStartOfDay()))
+                && index.covers(conn, Timestamp.valueOf(lastDay.atStartOfDay()))
+                ? index.getFreeStartMasks(firstDay, days, diners)
+                : null;
+
+        for (int i = 0; i < days; i++) {
+            LocalDate date = firstDay.plusDays(i);
+            OpeningWindow win = windows.get(date);
+            if (win == null || win.isClosed) continue;
+
+            LocalDateTime start = LocalDateTime.of(date, roundUpToHalfHour(win.openTime));
+            LocalDateTime lastStart = LocalDateTime.of(date, win.closeTime).minusHours(2);
+            if (start.isAfter(lastStart)) continue;
+
+            Map<LocalDateTime, Integer> freeOfDay = masks == null ? findFreeSlots(conn, start, lastStart, diners) : null;
+
+            for (LocalDateTime t = start; !t.isAfter(lastStart); t = t.plusMinutes(30)) {
+                if (t.isBefore(earliest) || t.isAfter(latest)) continue;
+
+                boolean free;
+                if (masks != null) {
+                    int slot = (t.getHour() * 60 + t.getMinute()) / 30;
+                    free = (masks[i] >>> slot & 1L) != 0;
+                } else if (freeOfDay != null) {
+                    free = freeOfDay.containsKey(t);
+                } else {
+                    free = findTableForSlot(conn, Timestamp.valueOf(t), diners) != null;
+                }
+                if (free) result.add(t);
+            }
+        }
+        return result;
+    }
+
     /**
      * Creates a new reservation.
      * 
@@ -378,14 +703,15 @@ public class OrdersRepository {
         }
 
         // 3) diners > max seats
-        int maxSeats = getMaxActiveTableSeats(conn);
+        int maxSeats = maxActiveTableSeats(conn, startTs);
         if (diners > maxSeats) throw new SQLException("NO_TABLE_BIG_ENOUGH");
 
-        // 4) Find table
-        Integer chosenTable = findBestAvailableTable(conn, startTs, diners);
+        // 4) Find table (in memory when possible); confirmed under the booking lock below
+        Set<Integer> taken = new HashSet<>();
+        Integer chosenTable = findTableForSlot(conn, startTs, diners, taken);
         if (chosenTable == null) throw new SQLException("NO_AVAILABILITY");
 
-
+
      // 5) Enforce required fields (server-side)
         String phone = req.getPhone() == null ? "" : req.getPhone().trim();
         String email = req.getEmail() == null ? "" : req.getEmail().trim();
@@ -399,10 +725,53 @@ public class OrdersRepository {
 
         
         // 5) Resolve customer id (עדיין לפני טרנזקציה)
-
+
         int customerId = resolveCustomerId(conn, req.getSubscriberId(), req.getPhone(), req.getEmail());
 
-        
+        // 6) Check and insert under the (date, table) lock, moving to the next best table on conflict
+        Timestamp endTs = Timestamp.valueOf(startTs.toLocalDateTime().plusHours(2));
+        BookingLocks locks = BookingLocks.getInstance();
+
+        for (int attempt = 1; ; attempt++) {
+            BookingLocks.Held held = locks.lock(chosenTable, startTs, endTs);
+            try {
+                // No other booking of this table and day can commit until the lock is released
+                if (isTableFree(conn, chosenTable, startTs, endTs)) {
+                    return insertReservation(conn, startTs, diners, customerId, chosenTable);
+                }
+            } finally {
+                held.close();
+            }
+
+            locks.recordConflict();
+            taken.add(chosenTable);
+
+            // Bookings update the index before releasing the lock, so if it still
+            // shows the table free, it missed a change made by another path
+            SlotAvailabilityIndex index = SlotAvailabilityIndex.getInstance();
+            if (index.covers(conn, startTs) && index.isTableFree(chosenTable, startTs)) {
+                index.invalidate();
+            }
+
+            if (attempt >= ServerConfig.BOOKING_MAX_ATTEMPTS) throw new SQLException("NO_AVAILABILITY");
+            chosenTable = findTableForSlot(conn, startTs, diners, taken);
+            if (chosenTable == null) throw new SQLException("NO_AVAILABILITY");
+        }
+    }
+
+    /**
+     * Inserts a new ACTIVE reservation in its own transaction and records it
+     * in the slot index. Called with the booking lock of the table held.
+     *
+     * @param conn database connection
+     * @param startTs reservation start time
+     * @param diners number of diners
+     * @param customerId customer id
+     * @param chosenTable table checked free under the lock
+     * @return created Reservation object
+     * @throws SQLException if the insert fails
+     */
+    private Reservation insertReservation(Connection conn, Timestamp startTs, int diners, int customerId, int chosenTable) throws SQLException {
         boolean oldAuto = conn.getAutoCommit();
         conn.setAutoCommit(false);
 
@@ -438,6 +807,7 @@ public class OrdersRepository {
             }
 
             conn.commit();
+            SlotAvailabilityIndex.getInstance().add(generatedResId, confCode, chosenTable, startTs);
 
             Reservation created = new Reservation();
             created.setResId(generatedResId);
@@ -477,25 +847,9 @@ public class OrdersRepository {
    
 
 /**
- * Represents the opening status and hours of the restaurant for a specific date.
- */ 
-    private static class OpeningWindow {
-    	 /** Indicates whether the restaurant is closed on this date */
-        boolean isClosed;
-
-        /** Opening time (null if closed) */
-        LocalTime openTime;
-
-        /** Closing time (null if closed) */
-        LocalTime closeTime;
-    }
-    
-
-/**
- * Determines the opening window for a given date.
- * The method first checks special opening hours for the date.
- * If none exist, it falls back to the regular weekly schedule.
- * If no valid data is found, the day is considered closed.
+ * Returns the opening window of a date from {@link OpeningHoursCache}.
+ * Special hours of the date take priority over the weekly schedule;
+ * without either the day is closed.
  *
  * @param conn database connection
  * @param date date to check opening hours for
@@ -503,64 +857,20 @@ public class OrdersRepository {
  * @throws SQLException if a database error occurs
  */
     private OpeningWindow getOpeningWindow(Connection conn, LocalDate date) throws SQLException {
-        OpeningWindow w = new OpeningWindow();
-
-        // 1) special date override
-        String specialSql =
-            "SELECT isClosed, openTime, closeTime " +
-            "FROM schema_for_project.opening_hours_special " +
-            "WHERE specialDate = ?";
-
-        try (PreparedStatement ps = conn.prepareStatement(specialSql)) {
-            ps.setDate(1, java.sql.Date.valueOf(date));
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    int isClosed = rs.getInt("isClosed");
-                    w.isClosed = (isClosed == 1);
-                    Time ot = rs.getTime("openTime");
-                    Time ct = rs.getTime("closeTime");
-                    w.openTime = (ot == null) ? null : ot.toLocalTime();
-                    w.closeTime = (ct == null) ? null : ct.toLocalTime();
-
-                    if (w.isClosed || w.openTime == null || w.closeTime == null) {
-                        w.isClosed = true;
-                    }
-                    return w;
-                }
-            }
-        }
-        
-        
-        
-        int dow = date.getDayOfWeek().getValue();
-
-        String weeklySql =
-            "SELECT isClosed, openTime, closeTime " +
-            "FROM schema_for_project.opening_hours_weekly " +
-            "WHERE dayOfWeek = ?";
-
-        try (PreparedStatement ps = conn.prepareStatement(weeklySql)) {
-            ps.setInt(1, dow);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    int isClosed = rs.getInt("isClosed");
-                    w.isClosed = (isClosed == 1);
-                    Time ot = rs.getTime("openTime");
-                    Time ct = rs.getTime("closeTime");
-                    w.openTime = (ot == null) ? null : ot.toLocalTime();
-                    w.closeTime = (ct == null) ? null : ct.toLocalTime();
-
-                    if (w.isClosed || w.openTime == null || w.closeTime == null) {
-                        w.isClosed = true;
-                    }
-                } else {
-                    // no row => closed
-                    w.isClosed = true;
-                }
-            }
-        }
+        return OpeningHoursCache.getInstance().get(conn, date);
+    }
 
-        return w;
+/**
+ * Returns the opening windows of a range of days from {@link OpeningHoursCache}.
+ *
+ * @param conn database connection
+ * @param from first day
+ * @param to last day (inclusive)
+ * @return opening window of every day of the range
+ * @throws SQLException if a database error occurs
+ */
+    private Map<LocalDate, OpeningWindow> getOpeningWindows(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        return OpeningHoursCache.getInstance().getRange(conn, from, to);
     }
 
 /**
@@ -608,12 +918,95 @@ public class OrdersRepository {
      * @throws SQLException if a database error occurs
      */
     private int getMaxActiveTableSeats(Connection conn) throws SQLException {
-        String sql = "SELECT COALESCE(MAX(Seats), 0) AS mx FROM schema_for_project.`table` WHERE isActive = 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            if (rs.next()) return rs.getInt("mx");
+        return TableCatalog.get(conn).getMaxActiveSeats();
+    }
+
+    /**
+     * Returns the seats of the largest active table, from the slot index
+     * when it is enabled.
+     *
+     * @param conn database connection
+     * @param at time the answer is needed for (decides whether the index covers it)
+     * @return maximum number of seats, or 0 if no active tables exist
+     * @throws SQLException if a database error occurs
+     */
+    private int maxActiveTableSeats(Connection conn, Timestamp at) throws SQLException {
+        SlotAvailabilityIndex index = SlotAvailabilityIndex.getInstance();
+        return index.covers(conn, at) ? index.getMaxSeats() : getMaxActiveTableSeats(conn);
+    }
+
+    /**
+     * Finds the smallest free table for a 2-hour reservation, in memory with
+     * the slot index when the time is inside its horizon, otherwise with
+     * {@link #findBestAvailableTable}.
+     *
+     * @param conn database connection
+     * @param start reservation start time
+     * @param diners number of diners
+     * @return table number if available, or null if none found
+     * @throws SQLException if a database error occurs
+     */
+    private Integer findTableForSlot(Connection conn, Timestamp start, int diners) throws SQLException {
+        return findTableForSlot(conn, start, diners, Collections.emptySet());
+    }
+
+    /**
+     * Same as {@link #findTableForSlot(Connection, Timestamp, int)}, skipping
+     * the given tables (already found taken by a concurrent booking).
+     *
+     * @param conn database connection
+     * @param start reservation start time
+     * @param diners number of diners
+     * @param exclude tables not to return
+     * @return table number if available, or null if none found
+     * @throws SQLException if a database error occurs
+     */
+    private Integer findTableForSlot(Connection conn, Timestamp start, int diners, Set<Integer> exclude) throws SQLException {
+        SlotAvailabilityIndex index = SlotAvailabilityIndex.getInstance();
+        if (index.covers(conn, start)) {
+            return index.findBestTable(start, diners, exclude);
+        }
+        return findBestAvailableTable(conn, start, diners, TableCatalog.get(conn), exclude);
+    }
+
+    /**
+     * Finds, with a single query, every half-hour start time between two
+     * times of the same day at which a table for the party is free for 2
+     * hours, and the smallest such table. Same result as calling
+     * {@link #findBestAvailableTable(Connection, Timestamp, int)} for each
+     * start, in one round trip instead of one query per (start, table).
+     *
+     * Needs MySQL 8 (WITH RECURSIVE, ROW_NUMBER); on an older server the
+     * first call returns null and later calls return null right away.
+     *
+     * @param conn database connection
+     * @param firstStart first start time
+     * @param lastStart last start time (inclusive)
+     * @param diners number of diners
+     * @return free start times in order, each with its best table, or null if
+     *         the database does not support the query
+     * @throws SQLException if a database error occurs
+     */
+    public Map<LocalDateTime, Integer> findFreeSlots(Connection conn, LocalDateTime firstStart, LocalDateTime lastStart, int diners) throws SQLException {
+        if (setBasedUnsupported || !ServerConfig.SET_BASED_SLOTS) return null;
+
+        Map<LocalDateTime, Integer> result = new LinkedHashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(FREE_SLOTS_SQL)) {
+            ps.setTimestamp(1, Timestamp.valueOf(firstStart));
+            ps.setTimestamp(2, Timestamp.valueOf(lastStart));
+            ps.setInt(3, diners);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.put(rs.getTimestamp("s").toLocalDateTime(), rs.getInt("TableNum"));
+                }
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_PARSE_ERROR) throw e;
+            setBasedUnsupported = true;
+            SLOTS_LOG.warn("Database does not support the set-based slot query, checking slots one by one.");
+            return null;
         }
-        return 0;
+        return result;
     }
 
     /**
@@ -628,27 +1021,29 @@ public class OrdersRepository {
      * @throws SQLException if a database error occurs
      */
     private Integer findBestAvailableTable(Connection conn, Timestamp start, int diners) throws SQLException {
+        return findBestAvailableTable(conn, start, diners, TableCatalog.get(conn), Collections.emptySet());
+    }
 
-        // candidate tables: smallest first
-    	String tablesSql =
-    		    "SELECT TableNum, Seats " +
-    		    "FROM schema_for_project.`table` " +
-    		    "WHERE isActive = 1 AND Seats >= ? " +
-    		    "ORDER BY Seats ASC, TableNum ASC";
-
+    /**
+     * Same as {@link #findBestAvailableTable(Connection, Timestamp, int)} with
+     * the candidate tables taken from the given catalog.
+     *
+     * @param conn database connection
+     * @param start reservation start time
+     * @param diners number of diners
+     * @param catalog tables to choose from
+     * @param exclude tables not to return
+     * @return table number if available, or null if none found
+     * @throws SQLException if a database error occurs
+     */
+    private Integer findBestAvailableTable(Connection conn, Timestamp start, int diners, TableCatalog catalog, Set<Integer> exclude) throws SQLException {
         Timestamp end = Timestamp.valueOf(start.toLocalDateTime().plusHours(2));
 
-        try (PreparedStatement ps = conn.prepareStatement(tablesSql)) {
-            ps.setInt(1, diners);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    int tableNum = rs.getInt("TableNum");
-
-                    if (isTableFree(conn, tableNum, start, end)) {
-                        return tableNum;
-                    }
-                }
+        // candidate tables: smallest first
+        for (int tableNum : catalog.getCandidates(diners)) {
+            if (exclude.contains(tableNum)) continue;
+            if (isTableFree(conn, tableNum, start, end)) {
+                return tableNum;
             }
         }
         return null;
@@ -710,7 +1105,7 @@ public class OrdersRepository {
         }
     }
 
-
+
     
     /**
      * Checks whether a reservation was made by a subscriber.
@@ -720,7 +1115,7 @@ public class OrdersRepository {
      * @return true if the reservation belongs to a subscriber, false otherwise
      * @throws SQLException if a database error occurs
      */
-   
+   
     private boolean isSubscriberReservation(Connection conn, int resId) throws SQLException {
         String sql =
             "SELECT 1 " +
@@ -729,7 +1124,7 @@ public class OrdersRepository {
             "WHERE r.ResId = ? " +
             "LIMIT 1";
 
-
+
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, resId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -970,8 +1365,6 @@ public class OrdersRepository {
 
         Timestamp paidAt = new Timestamp(System.currentTimeMillis());
 
-        Integer freedTableNum = null;
-        
         try {
             int paymentId = upsertPaymentAsPaid(conn,
                     raw.getResId(),
@@ -981,20 +1374,13 @@ public class OrdersRepository {
                     finalAmount,
                     paidAt);
 
-            freedTableNum = closeReservationAfterPayment(conn, raw.getResId(), paidAt);
+            closeReservationAfterPayment(conn, raw.getResId(), paidAt);
 
             Timestamp createdAt = getPaymentCreatedAt(conn, paymentId);
 
             conn.commit();
 
-            if (freedTableNum != null) {
-                try {
-                    DBController.onTableFreed(freedTableNum);
-                } catch (Exception e) {
-                    System.out.println("[WARN] onTableFreed failed for table=" + freedTableNum + " : " + e.getMessage());
-                }
-            }
-            
+            // The freed table is offered by the caller once it gave this connection back
             return new entities.PaymentReceipt(
                     paymentId,
                     raw.getResId(),
@@ -1074,14 +1460,8 @@ public class OrdersRepository {
             throw new SQLException("INVALID_EMAIL");
         }
 
-        String select = "SELECT CostumerId FROM schema_for_project.costumer WHERE PhoneNum = ? AND Email = ?";
-        try (PreparedStatement ps = conn.prepareStatement(select)) {
-            ps.setString(1, safePhone);
-            ps.setString(2, safeEmail);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getInt("CostumerId");
-            }
-        }
+        Integer existing = CustomerIdentityCache.getInstance().findByPhoneAndEmail(conn, safePhone, safeEmail);
+        if (existing != null) return existing;
 
         String insert = "INSERT INTO schema_for_project.costumer (PhoneNum, Email) VALUES (?, ?)";
         try (PreparedStatement ps = conn.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
@@ -1147,8 +1527,7 @@ public class OrdersRepository {
                 NotificationService.sendReservationReminderEmailAsync(ci.email, r);
                 NotificationService.sendReservationReminderSmsSimAsync(ci.phone, r);
             } catch (Exception ex) {
-                System.out.println("[WARN] reminder enqueue failed confCode=" + r.getConfCode()
-                        + " : " + ex.getMessage());
+                LOG.warn("Reminder enqueue failed confCode=" + r.getConfCode() + " : " + ex.getMessage());
                 // לא זורקים הלאה כדי לא להפיל את כל ה-job
             }
         }
@@ -1294,6 +1673,8 @@ public class OrdersRepository {
             "SET Status='CANCELED' " +
             "WHERE ResId=? AND Status='ACTIVE' AND arrivalTime IS NULL";
 
+        ArrayList<Integer> codesToFree = new ArrayList<>();
+
         try (PreparedStatement up = conn.prepareStatement(updateSql)) {
             for (int i = 0; i < resIds.size(); i++) {
                 int resId = resIds.get(i);
@@ -1305,7 +1686,7 @@ public class OrdersRepository {
                 if (up.executeUpdate() == 1) {
 
                     if (confCode != null) {           
-                        server_repositries.ConfCodeRepository.free(conn, confCode);
+                        codesToFree.add(confCode);
                     }
 
                     if (tableNum != null) {
@@ -1316,6 +1697,7 @@ public class OrdersRepository {
             }
         }
 
+        server_repositries.ConfCodeRepository.freeAll(conn, codesToFree);
         return freedTables;
     }
     
@@ -1419,8 +1801,7 @@ public class OrdersRepository {
 
                 	// fallback log if neither exists
                 	if ((email == null || email.trim().isEmpty()) && (phone == null || phone.trim().isEmpty())) {
-                	    System.out.println("[BILL] No email/phone for confCode=" + confCode +
-                	              " amount=" + finalAmount);
+                	    LOG.info("Bill: no email/phone for confCode=" + confCode + " amount=" + finalAmount);
                 	}
 
 
@@ -1438,7 +1819,7 @@ public class OrdersRepository {
     }
 
 
-
+
     
     /**
      * Finds the most recent active confirmation code for a given customer.
@@ -1448,7 +1829,7 @@ public class OrdersRepository {
      * @return latest active confirmation code, or null if none found
      * @throws SQLException if a database error occurs
      */
-
+
     public static Integer findLatestActiveConfirmationCodeByCustomerId(Connection conn, int customerId) throws SQLException {
         String sql =
             "SELECT ConfCode " +
@@ -1479,6 +1860,9 @@ public class OrdersRepository {
      *
      * The method does not modify reservations that are not ACTIVE.
      *
+     * It holds every booking lock (see {@link BookingLocks#lockAll()}); the
+     * caller opens a BookingLocks scope so they stay held until its commit.
+     *
      * @param conn active database connection (expected to be managed by the caller)
      * @param fromDate start date (inclusive)
      * @param toDate end date (inclusive)
@@ -1488,6 +1872,21 @@ public class OrdersRepository {
      */
 
     public int revalidateFutureReservations(Connection conn, java.time.LocalDate fromDate, java.time.LocalDate toDate, String reason) throws SQLException {
+        // Read through the cache: the caller may have just changed the hours in this transaction
+        Map<LocalDate, OpeningWindow> windows = OpeningHoursCache.readRange(conn, fromDate, toDate);
+        TableCatalog tables = TableCatalog.load(conn);
+
+        // Tables may move: keep every booking out until the caller commits (its BookingLocks scope)
+        BookingLocks.Held locks = BookingLocks.getInstance().lockAll();
+        try {
+            return revalidate(conn, fromDate, toDate, reason, windows, tables);
+        } finally {
+            locks.close();
+        }
+    }
+
+    private int revalidate(Connection conn, java.time.LocalDate fromDate, java.time.LocalDate toDate, String reason,
+            Map<LocalDate, OpeningWindow> windows, TableCatalog tables) throws SQLException {
         int canceled = 0;
 
         String sql =
@@ -1513,7 +1912,7 @@ public class OrdersRepository {
                     java.time.LocalDate date = startTs.toLocalDateTime().toLocalDate();
 
                     // 1) opening hours check
-                    OpeningWindow win = getOpeningWindow(conn, date);
+                    OpeningWindow win = windows.getOrDefault(date, OpeningWindow.CLOSED);
                     if (win.isClosed) {
                         canceled += cancelReservationByResId(conn, resId);
                         notifyCancel(conn, customerId, startTs, diners, reason);
@@ -1529,7 +1928,7 @@ public class OrdersRepository {
                     }
 
                     // 2) max seats check
-                    int maxSeats = getMaxActiveTableSeats(conn);
+                    int maxSeats = tables.getMaxActiveSeats();
                     if (diners > maxSeats) {
                         canceled += cancelReservationByResId(conn, resId);
                         notifyCancel(conn, customerId, startTs, diners, reason);
@@ -1539,10 +1938,10 @@ public class OrdersRepository {
                     // 3) table still valid? else try re-assign
                     Integer chosen = null;
 
-                    if (currentTable != null && isTableStillValidForReservation(conn, currentTable, diners)) {
+                    if (currentTable != null && tables.fits(currentTable, diners)) {
                         chosen = currentTable;
                     } else {
-                        chosen = findBestAvailableTable(conn, startTs, diners);
+                        chosen = findBestAvailableTable(conn, startTs, diners, tables, Collections.emptySet());
                     }
 
                     if (chosen == null) {
@@ -1587,31 +1986,6 @@ public class OrdersRepository {
         }
     }
 
-    /**
-     * Checks whether a specific table is still valid for a reservation.
-     *
-     * A table is considered valid if:
-     * - It exists in the tables list,
-     * - It is marked as active (isActive = 1),
-     * - It has enough seats for the requested number of diners.
-     *
-     * @param conn active database connection
-     * @param tableNum table number to validate
-     * @param diners number of diners required
-     * @return true if the table is active and has enough seats; false otherwise
-     * @throws SQLException if a database error occurs during the query
-     */
-
-    private boolean isTableStillValidForReservation(Connection conn, int tableNum, int diners) throws SQLException {
-        String sql = "SELECT 1 FROM schema_for_project.`table` WHERE TableNum=? AND isActive=1 AND Seats>=? LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, tableNum);
-            ps.setInt(2, diners);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
-        }
-    }
 
     /**
      * Sends a cancellation notification for a reservation that was canceled by the system.
@@ -1635,10 +2009,10 @@ public class OrdersRepository {
         ContactInfo ci = getContactInfoByCustomerId(conn, customerId);
 
         String email = (ci == null) ? null : ci.email;
-        System.out.println("[revalidate] cancel notify customerId=" + customerId + " email=" + email);
+        if (LOG.isDebug()) LOG.debug("Revalidate: cancel notify customerId=" + customerId + " email=" + email);
 
         if (email == null || email.trim().isEmpty()) {
-            System.out.println("[revalidate] cancel email SKIPPED (missing email) for customerId=" + customerId);
+            LOG.info("Revalidate: cancel email skipped (missing email) for customerId=" + customerId);
             return;
         }
 
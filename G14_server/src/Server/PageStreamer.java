@@ -0,0 +1,146 @@
+package Server;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.function.Function;
+
+import entities.ClientRequestType;
+import entities.ListPage;
+import entities.PageCursor;
+import entities.ServerResponseType;
+import ocsf.server.ConnectionToClient;
+
+/**
+ * PageStreamer
+ * ------------
+ * Groups the rows of a streamed query into pages and sends every page to
+ * the client as soon as it is full: { LIST_PAGE, ListPage }.
+ *
+ * The client can show the first page while later rows are still being
+ * read, and neither side ever holds the whole list in one message.
+ * Every page carries the cursor of its last row, so a client that stops
+ * reading the stream can continue with the keyset page requests.
+ *
+ * The query keeps its pooled connection for the whole stream. While a page
+ * waits for room in the client's queue the connection is parked, and the
+ * time it is held restarts with every page, so a long stream to a slow
+ * reader is neither reported nor reclaimed as a leak.
+ *
+ * @param <T> row type
+ */
+public class PageStreamer<T extends Serializable> implements RowHandler<T> {
+
+    /** Longest time to wait for a slow client to make room in its queue (ms). */
+    private static final long MAX_WAIT_MS = 30_000;
+
+    private final ConnectionToClient client;
+    private final ClientRequestType list;
+    private final int pageSize;
+    private final Function<T, PageCursor> cursorOf;
+
+    /** Connection the rows are read on, or null if not known. */
+    private PooledConnection lease;
+
+    /** Rows of the page being filled. */
+    private ArrayList<T> rows;
+
+    /** Index of the page being filled. */
+    private int index = 0;
+
+    /**
+     * Constructs a new PageStreamer.
+     *
+     * @param client the client that receives the pages
+     * @param list the full-list request the pages belong to
+     * @param pageSize number of rows per page
+     * @param cursorOf returns the cursor positioned after a row
+     */
+    public PageStreamer(ConnectionToClient client, ClientRequestType list, int pageSize,
+                        Function<T, PageCursor> cursorOf) {
+        this.client = client;
+        this.list = list;
+        this.pageSize = pageSize;
+        this.cursorOf = cursorOf;
+        this.rows = new ArrayList<>(pageSize);
+    }
+
+    /**
+     * Adds a row; sends the page when it is full.
+     *
+     * @param row the row read
+     * @throws IOException if the page could not be sent
+     */
+    @Override
+    public void handle(T row) throws IOException {
+        rows.add(row);
+        if (rows.size() >= pageSize) {
+            send(false);
+        }
+    }
+
+    /**
+     * Keeps the connection of the query, to park it while a page waits;
+     * null once the query is closed (the last page does not touch it).
+     *
+     * @param pc the connection of the query, or null
+     */
+    @Override
+    public void onConnection(PooledConnection pc) {
+        this.lease = pc;
+    }
+
+    /**
+     * Sends the rows left as the last page (possibly empty).
+     *
+     * @throws IOException if the page could not be sent
+     */
+    public void finish() throws IOException {
+        send(true);
+    }
+
+    /**
+     * Returns the number of pages sent so far.
+     *
+     * @return pages sent
+     */
+    public int getPagesSent() {
+        return index;
+    }
+
+    private void send(boolean last) throws IOException {
+        PageCursor next = (last || rows.isEmpty()) ? null : cursorOf.apply(rows.get(rows.size() - 1));
+        ListPage<T> page = new ListPage<>(list, index++, rows, next, last);
+        rows = new ArrayList<>(pageSize);
+
+        PooledConnection pc = lease;
+        if (pc != null) pc.park();
+        try {
+            awaitRoom();
+            client.sendToClient(new Object[]{ ServerResponseType.LIST_PAGE, page });
+        } finally {
+            if (pc != null) pc.unpark();
+        }
+    }
+
+    /**
+     * Waits while the outbound queue of the client is more than half full,
+     * so a long stream never overflows it: the query is read at the speed
+     * the client reads the pages. The queue wakes this thread as it drains.
+     *
+     * @throws IOException if the client does not make room in time
+     */
+    private void awaitRoom() throws IOException {
+        int capacity = ServerConfig.OUTBOUND_CAPACITY;
+        if (capacity <= 0) return;
+
+        try {
+            if (!client.awaitOutboundQueueDepth(capacity / 2, MAX_WAIT_MS)) {
+                throw new IOException("Client " + client + " does not read the " + list + " stream.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while streaming " + list + ".");
+        }
+    }
+}
@@ -2,6 +2,7 @@ package Server;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * PooledConnection is a small helper class used by the connection pool.
@@ -11,6 +12,9 @@ import java.sql.SQLException;
  *
  * The pool uses this information to decide when a connection has been
  * idle for too long and should be closed.
+ *
+ * It also owns the prepared statement cache of the connection (see
+ * StatementCache), so statements stay prepared across borrows.
  */
 public class PooledConnection {
  
@@ -18,11 +22,55 @@ public class PooledConnection {
      * The actual JDBC connection to the database.
      */
     private final Connection connection;
+
+    /**
+     * Prepared statements of this connection, or null if caching is off.
+     */
+    private final StatementCache statements;
+
+    /**
+     * Connection handed out instead of the usual one while a transactional
+     * UnitOfWork holds this connection, or null.
+     */
+    private volatile Connection view;
     
     /**
      * The last time (in milliseconds) this connection was used.
+     * Volatile because the pool cleaner reads it from its own thread.
      */
-    private long lastUsed;
+    private volatile long lastUsed;
+
+    /**
+     * True while a caller holds this connection, so that the pool can ignore
+     * a second release of the same connection.
+     */
+    private final AtomicBoolean checkedOut = new AtomicBoolean();
+
+    /**
+     * The last time (in milliseconds) the connection was known to work:
+     * opened, or checked with Connection.isValid().
+     */
+    private volatile long lastValidated;
+
+    /**
+     * Who holds the connection and since when, for leak reports.
+     * borrowStack is null when stack capture is turned off.
+     */
+    private volatile long borrowedAt;
+    private volatile String borrowThread;
+    private volatile Throwable borrowStack;
+
+    /**
+     * Set once the current holder was reported for holding it too long.
+     */
+    private final AtomicBoolean leakReported = new AtomicBoolean();
+
+    /**
+     * Set while a UnitOfWork keeps the connection between two DB calls, or
+     * while a streamed list waits for its client. The leak detection skips
+     * it then.
+     */
+    private volatile boolean parked;
 
     /**
      * Creates a new PooledConnection wrapper around a JDBC connection.
@@ -33,18 +81,34 @@ public class PooledConnection {
      */
     public PooledConnection(Connection connection) {
         this.connection = connection;
+        this.statements = (connection != null && ServerConfig.POOL_STATEMENT_CACHE_SIZE > 0)
+                ? new StatementCache(connection, ServerConfig.POOL_STATEMENT_CACHE_SIZE)
+                : null;
         touch();
+        lastValidated = lastUsed;
     }
 
     /**
      * Returns the wrapped JDBC connection.
      *
      * This connection is used by repository classes to run SQL queries.
+     * Its prepareStatement(String) returns cached statements.
      *
-     * @return the physical JDBC Connection
+     * @return the JDBC Connection
      */
     public Connection getConnection() {
-        return connection;
+        Connection v = view;
+        if (v != null) return v;
+        return statements == null ? connection : statements.getConnection();
+    }
+
+    /**
+     * Replaces the connection returned by getConnection(), or restores it.
+     *
+     * @param view the connection to hand out, or null for the usual one
+     */
+    void setView(Connection view) {
+        this.view = view;
     }
 
     /**
@@ -68,6 +132,112 @@ public class PooledConnection {
         lastUsed = System.currentTimeMillis();
     }
 
+    /**
+     * Marks the connection as handed out by the pool.
+     *
+     * @param stack where it was acquired, or null
+     */
+    void markCheckedOut(Throwable stack) {
+        borrowedAt = System.currentTimeMillis();
+        borrowThread = Thread.currentThread().getName();
+        borrowStack = stack;
+        leakReported.set(false);
+        parked = false;
+        checkedOut.set(true);
+    }
+
+    /**
+     * Marks the connection as kept with no DB call using it: by its
+     * UnitOfWork between calls, or by a PageStreamer waiting for its client.
+     */
+    void park() {
+        parked = true;
+    }
+
+    /**
+     * Marks the connection as used by a DB call again; the time it is held
+     * is counted from now.
+     */
+    void unpark() {
+        borrowedAt = System.currentTimeMillis();
+        leakReported.set(false);
+        parked = false;
+    }
+
+    /**
+     * @return true while a UnitOfWork keeps the connection between DB calls
+     */
+    boolean isParked() {
+        return parked;
+    }
+
+    /**
+     * Marks the connection as returned to the pool.
+     *
+     * @return true if it was handed out, false if it was already returned
+     */
+    boolean markReturned() {
+        return checkedOut.compareAndSet(true, false);
+    }
+
+    /**
+     * @return true while a caller holds the connection
+     */
+    boolean isCheckedOut() {
+        return checkedOut.get();
+    }
+
+    /**
+     * @return when the current holder acquired the connection (ms since epoch)
+     */
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    /**
+     * @return name of the thread that acquired the connection
+     */
+    String getBorrowThread() {
+        return borrowThread;
+    }
+
+    /**
+     * @return where the connection was acquired, or null if not captured
+     */
+    Throwable getBorrowStack() {
+        return borrowStack;
+    }
+
+    /**
+     * Marks the current holder as reported.
+     *
+     * @return true the first time it is called for this holder
+     */
+    boolean markLeakReported() {
+        return leakReported.compareAndSet(false, true);
+    }
+
+    /**
+     * @return true if the current holder was reported
+     */
+    boolean isLeakReported() {
+        return leakReported.get();
+    }
+
+    /**
+     * @return the last time the connection was known to work (ms since epoch)
+     */
+    long getLastValidated() {
+        return lastValidated;
+    }
+
+    /**
+     * Records that the connection was just checked and works.
+     */
+    void validated() {
+        lastValidated = System.currentTimeMillis();
+    }
+
     /**
      * Closes the physical JDBC connection.
      *
@@ -78,6 +248,7 @@ public class PooledConnection {
      * @throws SQLException if closing the connection fails
      */
     public void closePhysicalConnection() throws SQLException {
+        if (statements != null) statements.closeAll();
     	if (connection != null && !connection.isClosed())
     		connection.close();
     }
@@ -11,6 +11,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class ReminderScheduler {
 
+    private static final ServerLog.Category LOG = ServerLog.category("jobs");
+
 	/**
      * Single-thread scheduled executor used to run background jobs.
      * The thread runs as a daemon so it does not block server shutdown.
@@ -39,14 +41,17 @@ public class ReminderScheduler {
         started = true;
 
         SES.scheduleAtFixedRate(() -> {
+            // One pooled connection for all the jobs of this run
+            UnitOfWork uow = ServerConfig.UOW_ENABLED ? UnitOfWork.begin(false) : null;
             try {
                 DBController.runReservationReminderJob();
                 DBController.runWaitlistExpireJob();
                 runMonthlyIfNeeded();
                 DBController.runBillAfterTwoHoursJob();
             } catch (Exception e) {
-                System.out.println("[ReminderScheduler] error: " + e.getMessage());
-                e.printStackTrace();
+                LOG.error("Scheduled jobs failed: " + e.getMessage(), e);
+            } finally {
+                if (uow != null) uow.close();
             }
         }, 0, 1, TimeUnit.MINUTES);
     }
@@ -68,8 +73,7 @@ public class ReminderScheduler {
         try {
             DBController.runMonthlyReportsSnapshot(year, month);
         } catch (Exception e) {
-            System.out.println("[MonthlySnapshot] error: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Monthly snapshot failed: " + e.getMessage(), e);
         }
     }
 
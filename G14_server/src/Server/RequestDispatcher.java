@@ -0,0 +1,221 @@
+package Server;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ocsf.server.ConnectionToClient;
+
+/**
+ * RequestDispatcher
+ * -----------------
+ * Runs client requests on a fixed-size worker pool instead of inside the
+ * OCSF receive monitor.
+ *
+ * Ordering rule:
+ * - Requests from different clients may run in parallel.
+ * - Requests from the same client run one after the other, in the order
+ *   they were received, so every client still gets its responses in order.
+ *
+ * Each client owns a small queue (stored in the ConnectionToClient info map).
+ * At most one task per client is ever waiting in the worker pool, so the
+ * pool queue is bounded by the number of connected clients, and every client
+ * is bounded by {@code maxPendingPerClient}.
+ */
+public class RequestDispatcher {
+
+    private static final ServerLog.Category LOG = ServerLog.category("request");
+
+    /** Key used to keep the per-client queue inside ConnectionToClient. */
+    private static final String QUEUE_KEY = "dispatchQueue";
+
+    /** Worker pool shared by all clients. */
+    private final ExecutorService workers;
+
+    /**
+     * Limits the number of requests running at the same time when workers
+     * are created per task (virtual threads). Null for the fixed pool.
+     */
+    private final Semaphore running;
+
+    /** Maximum number of waiting requests per client. */
+    private final int maxPendingPerClient;
+
+    /** Number of requests that finished running. */
+    private final AtomicLong completed = new AtomicLong();
+
+    /** Number of requests refused because a client queue was full. */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Creates a dispatcher with a fixed number of worker threads.
+     *
+     * @param threads number of worker threads
+     * @param maxPendingPerClient maximum number of waiting requests per client
+     */
+    public RequestDispatcher(int threads, int maxPendingPerClient) {
+        this.maxPendingPerClient = maxPendingPerClient;
+        this.running = null;
+
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "request-worker-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Creates a dispatcher that runs every request on a fresh thread of the
+     * given factory (meant for virtual threads, which are cheap to create and
+     * cheap to block). At most {@code maxActive} requests run at the same
+     * time, which also bounds the number of DB connections in use.
+     *
+     * @param factory thread factory used for the workers
+     * @param maxActive maximum number of requests running at the same time
+     * @param maxPendingPerClient maximum number of waiting requests per client
+     */
+    public RequestDispatcher(ThreadFactory factory, int maxActive, int maxPendingPerClient) {
+        this.maxPendingPerClient = maxPendingPerClient;
+        this.running = new Semaphore(maxActive, true);
+        this.workers = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                30L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                factory);
+    }
+
+    /**
+     * Queues a request of the given client.
+     *
+     * @param client the client that sent the request
+     * @param task the request handling code
+     * @return false if the client already has too many waiting requests
+     */
+    public boolean dispatch(ConnectionToClient client, Runnable task) {
+        ClientQueue queue = queueOf(client);
+        boolean accepted = queue.offer(task);
+        if (!accepted) rejected.incrementAndGet();
+        return accepted;
+    }
+
+    /**
+     * Stops the worker pool. Requests that are already running are allowed to finish.
+     */
+    public void shutdown() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of requests that finished running
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * @return number of requests refused because a client queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns (and creates on first use) the queue of a client.
+     *
+     * @param client the client connection
+     * @return the client's request queue
+     */
+    private ClientQueue queueOf(ConnectionToClient client) {
+        synchronized (client) {
+            ClientQueue queue = (ClientQueue) client.getInfo(QUEUE_KEY);
+            if (queue == null) {
+                queue = new ClientQueue();
+                client.setInfo(QUEUE_KEY, queue);
+            }
+            return queue;
+        }
+    }
+
+    /**
+     * Per-client FIFO queue. When it has work, exactly one drain task
+     * for it is scheduled in the worker pool; that task runs a single
+     * request and then re-schedules itself, so a busy client cannot
+     * hold a worker forever.
+     */
+    private final class ClientQueue implements Runnable {
+
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        /** True while a drain task of this queue is waiting or running. */
+        private boolean scheduled = false;
+
+        synchronized boolean offer(Runnable task) {
+            if (tasks.size() >= maxPendingPerClient) return false;
+            tasks.add(task);
+            if (!scheduled) {
+                try {
+                    workers.execute(this);
+                    scheduled = true;
+                } catch (RejectedExecutionException e) {
+                    // Server is shutting down
+                    tasks.clear();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+            }
+            boolean permit = false;
+            try {
+                if (running != null) {
+                    running.acquire();
+                    permit = true;
+                }
+                if (task != null) task.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOG.error("Request failed on " + Thread.currentThread().getName(), e);
+            } finally {
+                if (permit) running.release();
+                completed.incrementAndGet();
+                synchronized (this) {
+                    scheduled = false;
+                    if (!tasks.isEmpty()) {
+                        try {
+                            workers.execute(this);
+                            scheduled = true;
+                        } catch (RejectedExecutionException e) {
+                            tasks.clear();
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
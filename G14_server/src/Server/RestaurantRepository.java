@@ -52,6 +52,31 @@ public class RestaurantRepository {
         return list;
     }
 
+    /**
+     * Retrieves a single restaurant table.
+     *
+     * @param conn active database connection
+     * @param tableNum table number
+     * @return the table, or null if it does not exist
+     * @throws SQLException on database error
+     */
+    public RestaurantTable getTable(Connection conn, int tableNum) throws SQLException {
+        String sql = "SELECT TableNum, Seats, isActive, isOccupied FROM schema_for_project.`table` WHERE TableNum=?";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, tableNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new RestaurantTable(
+                    rs.getInt("TableNum"),
+                    rs.getInt("Seats"),
+                    rs.getInt("isActive") == 1,
+                    rs.getInt("isOccupied") == 1
+                );
+            }
+        }
+    }
+
     
     /**
      * Adds a new table to the restaurant.
@@ -320,7 +345,7 @@ public class RestaurantRepository {
     
    
     /**
-     * Returns the closing time for a given date.
+     * Returns the closing time for a given date, from {@link OpeningHoursCache}.
      *
      * Special opening hours take priority over weekly opening hours.
      * If the restaurant is closed on the given date, null is returned.
@@ -331,43 +356,8 @@ public class RestaurantRepository {
      * @throws SQLException on database error
      */
     public Time getCloseTimeForDate(Connection conn, LocalDate date) throws SQLException {
-        //Special override
-        String specialSql =
-                "SELECT isClosed, closeTime " +
-                "FROM schema_for_project.opening_hours_special " +
-                "WHERE specialDate=?";
-
-        try (PreparedStatement ps = conn.prepareStatement(specialSql)) {
-            ps.setDate(1, Date.valueOf(date));
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    boolean isClosed = rs.getInt("isClosed") == 1;
-                    if (isClosed) return null;
-                    return rs.getTime("closeTime"); // יכול להיות null אם DB לא תקין, אבל אצלך CHECK מונע
-                }
-            }
-        }
-
-     // dayOfWeek mapping: 1 = Monday, 7 = Sunday (ISO / Java)
-        int dayOfWeek = date.getDayOfWeek().getValue();
-
-        String weeklySql =
-                "SELECT isClosed, closeTime " +
-                "FROM schema_for_project.opening_hours_weekly " +
-                "WHERE dayOfWeek=?";
-
-        try (PreparedStatement ps = conn.prepareStatement(weeklySql)) {
-            ps.setInt(1, dayOfWeek);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    boolean isClosed = rs.getInt("isClosed") == 1;
-                    if (isClosed) return null;
-                    return rs.getTime("closeTime");
-                }
-            }
-        }
-
-        return null;
+        OpeningWindow w = OpeningHoursCache.getInstance().get(conn, date);
+        return w.isClosed ? null : Time.valueOf(w.closeTime);
     }
 
 }
@@ -0,0 +1,32 @@
+package Server;
+
+/**
+ * Receives the rows of a query one by one, while the ResultSet is read.
+ *
+ * Used by the streaming repository methods so a long list never has to be
+ * held in memory as a whole.
+ *
+ * @param <T> row type
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+
+    /**
+     * Handles one row.
+     *
+     * @param row the mapped row
+     * @throws Exception to stop reading (the query is closed)
+     */
+    void handle(T row) throws Exception;
+
+    /**
+     * Called before the first row with the connection the rows are read on,
+     * and with null once the query is closed. A handler that may wait
+     * between rows (for a slow client) parks the connection while it waits,
+     * so the pool does not count the wait as holding it.
+     *
+     * @param pc the connection of the query, or null
+     */
+    default void onConnection(PooledConnection pc) {
+    }
+}
@@ -0,0 +1,425 @@
+package Server;
+
+import ocsf.server.OverflowPolicy;
+
+/**
+ * ServerConfig
+ * ------------
+ * Central place for server tuning switches.
+ *
+ * Every value is read once from a JVM system property (for example
+ * {@code -Dbistro.dispatch=serial}) and falls back to the default
+ * documented on each switch.
+ */
+public final class ServerConfig {
+
+    /** Utility class - no instances. */
+    private ServerConfig() {
+    }
+
+    /**
+     * Request dispatch mode.
+     *
+     * "serial"     - every request runs inside the OCSF receive monitor,
+     *                one at a time (original behaviour).
+     * "concurrent" - requests are handed to a bounded worker pool; requests
+     *                of different clients run in parallel, requests of the
+     *                same client are still handled in arrival order (default;
+     *                concurrent bookings are kept apart by {@link BookingLocks}).
+     */
+    public static final String DISPATCH_MODE =
+            System.getProperty("bistro.dispatch", "concurrent");
+
+    /** Number of worker threads used in concurrent dispatch mode. */
+    public static final int DISPATCH_THREADS =
+            Integer.getInteger("bistro.dispatch.threads",
+                    Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+
+    /**
+     * Maximum number of requests a single client may have waiting
+     * for a worker. Further requests are answered with a "server busy" error.
+     */
+    public static final int DISPATCH_MAX_PENDING_PER_CLIENT =
+            Integer.getInteger("bistro.dispatch.maxPending", 32);
+
+    /**
+     * Thread model for client connections and request handling.
+     *
+     * "platform" - connection readers and request workers are platform
+     *              threads (original behaviour).
+     * "virtual"  - connection readers and request workers are virtual threads
+     *              (Java 21+). Implies concurrent dispatch, so no request blocks
+     *              inside the OCSF receive monitor. Falls back to platform
+     *              threads when the JVM has no virtual threads.
+     */
+    public static final String THREAD_MODE =
+            System.getProperty("bistro.threads", "platform");
+
+    /**
+     * Maximum number of requests running at the same time with virtual threads.
+     * Each running request may hold one DB connection; the ones beyond
+     * bistro.pool.maxActive wait for the pool.
+     */
+    public static final int VIRTUAL_MAX_ACTIVE =
+            Integer.getInteger("bistro.virtual.maxActive", 64);
+
+    /**
+     * Client transport.
+     *
+     * "classic" - one ConnectionToClient thread per client reading a Java
+     *             object stream (original behaviour).
+     * "nio"     - all clients are served by a few non-blocking I/O threads
+     *             and messages are length-prefixed frames. Clients must be
+     *             started with the same setting (-Dbistro.transport=nio).
+     *             Requests are read on the I/O threads, so this mode is meant
+     *             to be used together with concurrent dispatch.
+     */
+    public static final String TRANSPORT =
+            System.getProperty("bistro.transport", "classic");
+
+    /** Number of I/O threads used by the NIO transport. */
+    public static final int NIO_THREADS =
+            Integer.getInteger("bistro.nio.threads", 2);
+
+    /** Maximum number of clients waiting to be accepted by the operating system. */
+    public static final int ACCEPT_BACKLOG =
+            Integer.getInteger("bistro.backlog", 100);
+
+    /**
+     * Returns true if the NIO transport is selected.
+     *
+     * @return true for the NIO transport
+     */
+    public static boolean isNioTransport() {
+        return "nio".equalsIgnoreCase(TRANSPORT);
+    }
+
+    /** Maximum number of sub-requests accepted in one BATCH request. */
+    public static final int BATCH_MAX_REQUESTS =
+            Integer.getInteger("bistro.batch.max", 16);
+
+    /**
+     * Number of threads that run the read-only sub-requests of a BATCH
+     * request in parallel (the thread handling the batch runs one as well).
+     */
+    public static final int BATCH_THREADS =
+            Integer.getInteger("bistro.batch.threads", 4);
+
+    /**
+     * Message codec offered to NIO clients.
+     *
+     * "binary" - compact field-by-field encoding of the Bistro messages
+     *            ({@code common.BistroBinaryCodec}), with Java serialization
+     *            still accepted for clients that do not offer it.
+     * "java"   - Java serialization only.
+     *
+     * Only used with the NIO transport; the classic transport always uses
+     * Java object streams.
+     */
+    public static final String CODEC =
+            System.getProperty("bistro.codec", "binary");
+
+    /**
+     * Returns true if the compact binary codec may be negotiated.
+     *
+     * @return true for the binary codec
+     */
+    public static boolean isBinaryCodec() {
+        return !"java".equalsIgnoreCase(CODEC);
+    }
+
+    /**
+     * Reset policy of the object stream used to send responses to a client.
+     *
+     *  0 - reset after every response (default).
+     *  N - reset once at least N bytes were sent since the last reset.
+     * -1 - never reset (original behaviour; every response stays in the
+     *      stream's handle table until the client disconnects).
+     */
+    public static final long OUTPUT_RESET_BYTES =
+            Long.getLong("bistro.output.resetBytes", 0L);
+
+    /**
+     * Whether available slots and the table of a new reservation are found
+     * with the in-memory {@link SlotAvailabilityIndex} ("true", default) or
+     * with one SQL overlap query per table and slot ("false").
+     */
+    public static final boolean SLOT_INDEX_ENABLED =
+            Boolean.parseBoolean(System.getProperty("bistro.slotIndex", "true"));
+
+    /**
+     * Age (seconds) after which the slot index is reloaded even if nothing
+     * invalidated it.
+     */
+    public static final int SLOT_INDEX_MAX_AGE_SEC =
+            Integer.getInteger("bistro.slotIndex.maxAgeSec", 300);
+
+    /**
+     * Whether slot searches that the slot index does not cover use one
+     * set-based query per day ("true", default) or one query per start time
+     * and table ("false").
+     */
+    public static final boolean SET_BASED_SLOTS =
+            Boolean.parseBoolean(System.getProperty("bistro.slotQuery.setBased", "true"));
+
+    /**
+     * Number of alternative start times sent back when a reservation
+     * cannot be created at the requested time.
+     */
+    public static final int SUGGESTIONS =
+            Integer.getInteger("bistro.suggestions", 6);
+
+    /**
+     * Whether opening windows are read from {@link OpeningHoursCache}
+     * ("true", default) or queried for every check ("false").
+     */
+    public static final boolean HOURS_CACHE_ENABLED =
+            Boolean.parseBoolean(System.getProperty("bistro.hoursCache", "true"));
+
+    /**
+     * Largest number of MySQL connections the pool opens, in use or idle.
+     * Requests that find all of them in use wait for one to be returned.
+     */
+    public static final int POOL_MAX_ACTIVE =
+            Integer.getInteger("bistro.pool.maxActive", 20);
+
+    /**
+     * Idle connections the pool keeps open even when they are not used.
+     */
+    public static final int POOL_MIN_IDLE =
+            Integer.getInteger("bistro.pool.minIdle", 2);
+
+    /**
+     * Milliseconds a request waits for a free connection before it fails
+     * with "Connection pool exhausted".
+     */
+    public static final long POOL_ACQUIRE_TIMEOUT_MS =
+            Long.getLong("bistro.pool.acquireTimeoutMs", 5000);
+
+    /**
+     * A connection idle for longer than this many milliseconds is checked
+     * with Connection.isValid() before it is handed out; a broken one is
+     * closed and another one is used. 0 checks every time.
+     */
+    public static final long POOL_VALIDATE_AFTER_MS =
+            Long.getLong("bistro.pool.validateAfterMs", 30_000);
+
+    /**
+     * Seconds a validation (on borrow or keepalive) may take.
+     */
+    public static final int POOL_VALIDATION_TIMEOUT_SEC =
+            Integer.getInteger("bistro.pool.validationTimeoutSec", 2);
+
+    /**
+     * Idle connections not checked for this many seconds are checked in the
+     * background, so MySQL does not drop them for wait_timeout and broken
+     * ones are closed before a request gets them. 0 disables keepalive.
+     */
+    public static final int POOL_KEEPALIVE_SEC =
+            Integer.getInteger("bistro.pool.keepaliveSec", 120);
+
+    /**
+     * A connection held longer than this many seconds is reported in the log,
+     * with the stack that acquired it. 0 disables the reports.
+     */
+    public static final int POOL_LEAK_REPORT_SEC =
+            Integer.getInteger("bistro.pool.leakReportSec", 30);
+
+    /**
+     * A connection held longer than this many seconds is taken back: it is
+     * closed and its place is given to a new connection. 0 never takes
+     * connections back.
+     */
+    public static final int POOL_LEAK_RECLAIM_SEC =
+            Integer.getInteger("bistro.pool.leakReclaimSec", 300);
+
+    /**
+     * Whether the stack of every connection acquisition is recorded for the
+     * leak reports. Off by default: it costs a stack walk per acquisition;
+     * turn it on to find a leak the reports point to.
+     */
+    public static final boolean POOL_TRACK_STACKS =
+            Boolean.parseBoolean(System.getProperty("bistro.pool.trackStacks", "false"));
+
+    /**
+     * Prepared statements kept open per pooled connection, keyed by SQL
+     * (see StatementCache). 0 prepares a new statement on every call.
+     */
+    public static final int POOL_STATEMENT_CACHE_SIZE =
+            Integer.getInteger("bistro.pool.statementCacheSize", 64);
+
+    /**
+     * Whether statements are prepared on the MySQL server
+     * (Connector/J useServerPrepStmts) instead of in the driver. With the
+     * statement cache the server parses each SQL once per connection.
+     */
+    public static final boolean POOL_SERVER_PREPARE =
+            Boolean.parseBoolean(System.getProperty("bistro.pool.serverPrepare", "false"));
+
+    /**
+     * Whether each client request (and each run of the scheduled jobs) does
+     * all its DB work on one pooled connection (see {@link UnitOfWork}).
+     * false leases the pool once per DBController call (original behaviour).
+     */
+    public static final boolean UOW_ENABLED =
+            Boolean.parseBoolean(System.getProperty("bistro.uow", "true"));
+
+    /**
+     * Request types, comma separated (for example "CREATE_RESERVATION"),
+     * whose DB work also runs in one transaction committed before the
+     * response is sent. Empty by default: every DBController call commits
+     * on its own.
+     */
+    public static final String UOW_TRANSACTIONAL =
+            System.getProperty("bistro.uow.transactional", "");
+
+    private static final java.util.Set<String> TRANSACTIONAL_TYPES = parseList(UOW_TRANSACTIONAL);
+
+    /**
+     * Returns true if a request type runs in one transaction.
+     *
+     * @param requestType name of the request type
+     * @return true if listed in bistro.uow.transactional
+     */
+    public static boolean isTransactional(String requestType) {
+        return TRANSACTIONAL_TYPES.contains(requestType);
+    }
+
+    private static java.util.Set<String> parseList(String list) {
+        java.util.Set<String> set = new java.util.HashSet<>();
+        for (String s : list.split(",")) {
+            if (!s.trim().isEmpty()) set.add(s.trim().toUpperCase(java.util.Locale.ROOT));
+        }
+        return set;
+    }
+
+    /**
+     * Phones, emails and subscriber IDs whose CostumerId is kept by
+     * {@link CustomerIdentityCache}. 0 disables the cache.
+     */
+    public static final int IDENTITY_CACHE_SIZE =
+            Integer.getInteger("bistro.identityCache.size", 4096);
+
+    /**
+     * Responses kept by {@link IdempotencyStore} for replay to resent
+     * requests. 0 disables replay (copies running at the same time still
+     * wait for the original).
+     */
+    public static final int IDEMPOTENCY_SIZE =
+            Integer.getInteger("bistro.idempotency.size", 10000);
+
+    /**
+     * Seconds a stored response can be replayed.
+     */
+    public static final int IDEMPOTENCY_TTL_SEC =
+            Integer.getInteger("bistro.idempotency.ttlSec", 600);
+
+    /**
+     * Number of (date, table) lock stripes used by {@link BookingLocks}.
+     * More stripes means fewer unrelated bookings waiting for each other.
+     */
+    public static final int BOOKING_LOCK_STRIPES =
+            Integer.getInteger("bistro.booking.stripes", 64);
+
+    /**
+     * Tables a booking tries before answering NO_AVAILABILITY when the
+     * tables it picked were taken by concurrent bookings.
+     */
+    public static final int BOOKING_MAX_ATTEMPTS =
+            Integer.getInteger("bistro.booking.maxAttempts", 5);
+
+    /**
+     * Milliseconds a booking waits for a table lock whose stripe is below one
+     * its transaction already keeps (see BookingLocks.Scope) before it fails
+     * with BOOKING_BUSY. Other waits have no limit: those locks are taken in
+     * ascending order and cannot deadlock.
+     */
+    public static final long BOOKING_LOCK_WAIT_MS =
+            Long.getLong("bistro.booking.lockWaitMs", 5000L);
+
+    /**
+     * Confirmation codes reserved per database round trip and handed out from
+     * memory (see ConfCodeRepository). 0 allocates every code with a row lock
+     * on conf_codes (original behaviour).
+     */
+    public static final int CONF_CODE_BLOCK =
+            Integer.getInteger("bistro.confCodes.block", 32);
+
+    /**
+     * Name of this server among the servers sharing the database. Codes
+     * reserved under this name are given back when a server with the same
+     * name starts, so it must be different for every server and stay the
+     * same across restarts. Defaults to the host name.
+     */
+    public static final String INSTANCE_ID =
+            System.getProperty("bistro.instanceId", defaultInstanceId());
+
+    /**
+     * Rows per page of the page requests (GET_RESERVATIONS_PAGE, ...) and of
+     * STREAM_LIST when the client does not give a page size.
+     */
+    public static final int PAGE_SIZE =
+            Integer.getInteger("bistro.page.size", 100);
+
+    /**
+     * Largest page size a client may ask for.
+     */
+    public static final int PAGE_MAX =
+            Integer.getInteger("bistro.page.max", 1000);
+
+    /**
+     * Maximum number of messages waiting to be written to one client.
+     * Responses and pushed events are queued and written by a per-client
+     * writer, so a slow client never blocks the thread handling a request.
+     * 0 writes on the calling thread (original behaviour).
+     */
+    public static final int OUTBOUND_CAPACITY =
+            Integer.getInteger("bistro.outbound.capacity", 256);
+
+    /**
+     * What happens when the outbound queue of a client is full.
+     *
+     * "coalesce"   - a pushed change event replaces a queued event for the
+     *                same row; anything else drops the client (default).
+     * "disconnect" - the client is dropped.
+     */
+    public static final String OUTBOUND_POLICY =
+            System.getProperty("bistro.outbound.policy", "coalesce");
+
+    /**
+     * Returns the overflow policy of the outbound queues.
+     *
+     * @return COALESCE unless "disconnect" was requested
+     */
+    public static OverflowPolicy outboundPolicy() {
+        return "disconnect".equalsIgnoreCase(OUTBOUND_POLICY)
+                ? OverflowPolicy.DISCONNECT
+                : OverflowPolicy.COALESCE;
+    }
+
+    private static String defaultInstanceId() {
+        try {
+            return java.net.InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "bistro";
+        }
+    }
+
+    /**
+     * Returns true if requests should be handled by the worker pool.
+     *
+     * @return true for concurrent dispatch mode
+     */
+    public static boolean isConcurrentDispatch() {
+        return "concurrent".equalsIgnoreCase(DISPATCH_MODE) || isVirtualThreads();
+    }
+
+    /**
+     * Returns true if virtual threads were requested.
+     *
+     * @return true for the virtual thread mode
+     */
+    public static boolean isVirtualThreads() {
+        return "virtual".equalsIgnoreCase(THREAD_MODE);
+    }
+}
@@ -0,0 +1,312 @@
+package Server;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ServerLog
+ * ---------
+ * Asynchronous, leveled log of the server.
+ *
+ * Each subsystem logs through its own {@link Category} ("pool", "request",
+ * "jobs", ...). A message below the level of its category is dropped before
+ * anything is formatted, so hot paths guard their debug messages with
+ * {@link Category#isDebug()} and pay nothing when debug is off. Messages that
+ * pass are queued and written to the console by a single background thread;
+ * request threads never wait for console I/O. If the queue is full, messages
+ * are dropped (and counted) instead of blocking; errors are then printed
+ * directly.
+ *
+ * Messages at bistro.log.guiLevel and above, and the lines written with
+ * {@link #gui(String)}, are also kept in a bounded ring buffer that the server
+ * window reads (see ServerPortFrameController), so a burst of messages never
+ * floods the JavaFX thread.
+ *
+ * Levels are set with bistro.log.level (default INFO) and per category with
+ * bistro.log.&lt;category&gt;, e.g. -Dbistro.log.pool=DEBUG.
+ */
+public final class ServerLog {
+
+    /** Message levels, lowest first. */
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final Level DEFAULT_LEVEL = level(System.getProperty("bistro.log.level"), Level.INFO);
+    private static final Level GUI_LEVEL = level(System.getProperty("bistro.log.guiLevel"), Level.INFO);
+    private static final int QUEUE_SIZE = Integer.getInteger("bistro.log.queue", 8192);
+    private static final int GUI_LINES = Math.max(1, Integer.getInteger("bistro.log.guiLines", 500));
+
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final ConcurrentHashMap<String, Category> CATEGORIES = new ConcurrentHashMap<>();
+
+    private static final BlockingQueue<Entry> QUEUE = new ArrayBlockingQueue<>(Math.max(16, QUEUE_SIZE));
+    private static final AtomicLong DROPPED = new AtomicLong();
+    /** Messages queued and not written yet. */
+    private static final AtomicLong PENDING = new AtomicLong();
+
+    /** Lines for the server window, oldest first; guarded by itself. */
+    private static final ArrayDeque<String> RING = new ArrayDeque<>();
+    /** Sequence number of the last line added to RING; guarded by RING. */
+    private static long lastSeq;
+
+    static {
+        Thread writer = new Thread(ServerLog::writeLoop, "server-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private ServerLog() {
+    }
+
+    /**
+     * A named subsystem with its own level.
+     */
+    public static final class Category {
+        private final String name;
+        private final Level level;
+
+        private Category(String name, Level level) {
+            this.name = name;
+            this.level = level;
+        }
+
+        /**
+         * @param l a message level
+         * @return true if messages of that level are logged
+         */
+        public boolean isEnabled(Level l) {
+            return l.compareTo(level) >= 0;
+        }
+
+        /**
+         * @return true if debug messages are logged
+         */
+        public boolean isDebug() {
+            return level == Level.DEBUG;
+        }
+
+        /**
+         * Logs a debug message. Guard with {@link #isDebug()} when building
+         * the message costs anything.
+         *
+         * @param msg message
+         */
+        public void debug(String msg) {
+            log(Level.DEBUG, msg, null);
+        }
+
+        /**
+         * @param msg message
+         */
+        public void info(String msg) {
+            log(Level.INFO, msg, null);
+        }
+
+        /**
+         * @param msg message
+         */
+        public void warn(String msg) {
+            log(Level.WARN, msg, null);
+        }
+
+        /**
+         * @param msg message
+         * @param t cause, printed with its stack trace (may be null)
+         */
+        public void warn(String msg, Throwable t) {
+            log(Level.WARN, msg, t);
+        }
+
+        /**
+         * @param msg message
+         */
+        public void error(String msg) {
+            log(Level.ERROR, msg, null);
+        }
+
+        /**
+         * @param msg message
+         * @param t cause, printed with its stack trace (may be null)
+         */
+        public void error(String msg, Throwable t) {
+            log(Level.ERROR, msg, t);
+        }
+
+        private void log(Level l, String msg, Throwable t) {
+            if (!isEnabled(l)) return;
+            enqueue(new Entry(l, name, msg, t, true, l.compareTo(GUI_LEVEL) >= 0));
+        }
+    }
+
+    /** One queued message. */
+    private static final class Entry {
+        final long time = System.currentTimeMillis();
+        final Level level;
+        final String category;
+        final String msg;
+        final Throwable error;
+        final boolean console;
+        final boolean gui;
+
+        Entry(Level level, String category, String msg, Throwable error, boolean console, boolean gui) {
+            this.level = level;
+            this.category = category;
+            this.msg = msg;
+            this.error = error;
+            this.console = console;
+            this.gui = gui;
+        }
+    }
+
+    /**
+     * Returns the category with the given name.
+     *
+     * @param name category name, also used in bistro.log.&lt;name&gt;
+     * @return the category
+     */
+    public static Category category(String name) {
+        return CATEGORIES.computeIfAbsent(name,
+                n -> new Category(n, level(System.getProperty("bistro.log." + n), DEFAULT_LEVEL)));
+    }
+
+    /**
+     * Shows a line in the server window only (not on the console).
+     *
+     * @param msg line to show
+     */
+    public static void gui(String msg) {
+        enqueue(new Entry(Level.INFO, "gui", msg, null, false, true));
+    }
+
+    /**
+     * Appends the window lines added after a sequence number.
+     *
+     * @param afterSeq sequence number returned by the previous call (0 at first)
+     * @param out where the lines are appended, each followed by a newline
+     * @return sequence number of the last line
+     */
+    public static long appendGuiLines(long afterSeq, StringBuilder out) {
+        synchronized (RING) {
+            long seq = lastSeq - RING.size();
+            for (String line : RING) {
+                seq++;
+                if (seq > afterSeq) out.append(line).append('\n');
+            }
+            return lastSeq;
+        }
+    }
+
+    /**
+     * Removes the lines kept for the server window.
+     */
+    public static void clearGui() {
+        synchronized (RING) {
+            RING.clear();
+        }
+    }
+
+    /**
+     * Returns the number of lines the server window keeps.
+     *
+     * @return ring buffer size
+     */
+    public static int guiCapacity() {
+        return GUI_LINES;
+    }
+
+    /**
+     * Waits until the queued messages are written, for the end of the run.
+     *
+     * @param timeoutMillis longest wait
+     */
+    public static void flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (PENDING.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a one-line summary for the server log.
+     *
+     * @return log statistics
+     */
+    public static String getStats() {
+        return "logDropped=" + DROPPED.get();
+    }
+
+    // ================= Internals =================
+
+    private static void enqueue(Entry e) {
+        PENDING.incrementAndGet();
+        if (QUEUE.offer(e)) return;
+        PENDING.decrementAndGet();
+        DROPPED.incrementAndGet();
+        if (e.level == Level.ERROR) write(e);
+    }
+
+    private static void writeLoop() {
+        List<Entry> batch = new ArrayList<>(256);
+        while (true) {
+            try {
+                batch.add(QUEUE.take());
+                QUEUE.drainTo(batch, 255);
+                for (Entry e : batch) {
+                    try {
+                        write(e);
+                    } catch (Throwable t) {
+                        // keep the writer alive whatever a message does
+                    }
+                }
+            } catch (InterruptedException ie) {
+                return;
+            } finally {
+                PENDING.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private static void write(Entry e) {
+        if (e.console) {
+            StringBuilder sb = new StringBuilder(e.msg.length() + 40);
+            sb.append(TIME.format(Instant.ofEpochMilli(e.time))).append(' ')
+              .append(e.level).append(" [").append(e.category).append("] ").append(e.msg);
+            System.out.println(sb);
+            if (e.error != null) e.error.printStackTrace(System.out);
+        }
+        if (e.gui) {
+            String line = (e.level.compareTo(Level.WARN) >= 0) ? "[" + e.level + "] " + e.msg : e.msg;
+            synchronized (RING) {
+                RING.addLast(line);
+                while (RING.size() > GUI_LINES) RING.removeFirst();
+                lastSeq++;
+            }
+        }
+    }
+
+    private static Level level(String value, Level fallback) {
+        if (value == null || value.trim().isEmpty()) return fallback;
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package Server;
 import java.util.ArrayList;
 
 import java.util.List;
+import entities.DayAvailability;
 import entities.Reservation;
 
 import entities.Reservation;
@@ -173,6 +174,17 @@ public class ServerResponseBuilder {
     public static Object slotsList(List<String> slots) {
         return new Object[] { ServerResponseType.SLOTS_LIST, slots };
     }
+
+    /**
+     * Builds a response containing the availability calendar of a party size.
+     *
+     * @param diners number of diners the calendar was computed for
+     * @param days one entry per day
+     * @return server response with the calendar
+     */
+    public static Object availabilityCalendar(int diners, List<DayAvailability> days) {
+        return new Object[] { ServerResponseType.AVAILABILITY_CALENDAR, diners, days };
+    }
     
     /**
      * Builds a response indicating successful reservation creation.
@@ -207,6 +219,20 @@ public class ServerResponseBuilder {
     public static Object createFailed(String msg, List<String> suggestedSlots) {
         return new Object[] { ServerResponseType.CREATE_FAILED, msg, suggestedSlots };
     }
+
+    /**
+     * Builds a response indicating failed reservation creation, with the
+     * same-day time slots and the full alternatives (other days, smaller
+     * party).
+     *
+     * @param msg failure message
+     * @param suggestedSlots same-day alternative slots (HH:mm)
+     * @param suggestions alternatives, nearest first
+     * @return server response for creation failure with suggestions
+     */
+    public static Object createFailed(String msg, List<String> suggestedSlots, List<entities.SlotSuggestion> suggestions) {
+        return new Object[] { ServerResponseType.CREATE_FAILED, msg, suggestedSlots, suggestions };
+    }
     
     /**
      * Builds a response indicating successful payment.
@@ -268,4 +294,26 @@ public class ServerResponseBuilder {
         return new Object[]{ ServerResponseType.WAITINGLIST_ERROR, msg };
     }
 
+    /**
+     * Wraps a response to a correlated request with the request id,
+     * so the client can match it to the request that is waiting for it.
+     *
+     * @param requestId id sent by the client with the request
+     * @param response the response to wrap
+     * @return correlated server response
+     */
+    public static Object correlated(long requestId, Object response) {
+        return new Object[]{ ServerResponseType.CORRELATED, requestId, response };
+    }
+
+    /**
+     * Builds the single response to a BATCH request.
+     *
+     * @param responses one response per sub-request, in request order
+     * @return batch result response
+     */
+    public static Object batchResult(Object[] responses) {
+        return new Object[]{ ServerResponseType.BATCH_RESULT, responses };
+    }
+
 }
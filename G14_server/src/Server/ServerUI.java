@@ -199,5 +199,8 @@ public class ServerUI extends Application {
             serverController.setDbStatus("Disconnected");
             serverController.appendLog("Server stopped and DB disconnected.");
         }
+
+        // Write out what is still queued before the JVM exits
+        ServerLog.flush(2000);
     }
 } 
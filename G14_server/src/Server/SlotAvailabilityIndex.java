@@ -0,0 +1,577 @@
+package Server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SlotAvailabilityIndex
+ * ---------------------
+ * In-memory occupancy of every active table over 30-minute slots, from
+ * today 00:00 across the 31-day booking horizon.
+ *
+ * It answers the questions of the reservation form without SQL:
+ * "which is the smallest free table for this start time?" and
+ * "how many seats has the largest table?". Before, every slot of a day
+ * cost one table query plus one overlap query per candidate table.
+ *
+ * Each table keeps one counter per slot (the number of reservations that
+ * cover the slot) instead of a single bit, so two overlapping reservations
+ * can be removed independently.
+ *
+ * The index is loaded lazily (active tables from {@link TableCatalog}, then
+ * one reservation query) and reloaded when:
+ * - it was invalidated (table, opening hours or bulk reservation changes),
+ * - the day changed (the horizon moves forward),
+ * - it is older than {@link ServerConfig#SLOT_INDEX_MAX_AGE_SEC}, as a safety
+ *   net for changes made by paths that do not update it.
+ * Single reservations (create, cancel, update) update it in place.
+ *
+ * A reservation occupies [reservationTime, reservationTime + 2h), the same
+ * rule as the overlap query: blocking statuses are all but CANCELED and DONE.
+ *
+ * For the availability calendar it also keeps, per party size, one bit mask
+ * per day of the start times that have a free table. A mask is recomputed
+ * only when a reservation touching its day changed since it was built.
+ */
+public final class SlotAvailabilityIndex {
+
+    /** Length of a slot in seconds (30 minutes). */
+    private static final int SLOT_SECONDS = 30 * 60;
+
+    /** Slots per day. */
+    private static final int SLOTS_PER_DAY = 48;
+
+    /** Reservation length (2 hours). */
+    private static final Duration BOOKING_LENGTH = Duration.ofHours(2);
+
+    /** Days covered from today: the 31-day horizon, today and the 2 hours after the last day. */
+    private static final int HORIZON_DAYS = 33;
+
+    /** Number of slots covered. */
+    private static final int SLOTS = HORIZON_DAYS * SLOTS_PER_DAY;
+
+    /** Slots covered by one reservation. */
+    private static final int BOOKING_SLOTS = (int) (BOOKING_LENGTH.getSeconds() / SLOT_SECONDS);
+
+    /** The single index of the server. */
+    private static final SlotAvailabilityIndex INSTANCE = new SlotAvailabilityIndex();
+
+    /** Readers search concurrently; loads and updates are exclusive. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Start of slot 0 (today 00:00 at load time); null until loaded. */
+    private LocalDateTime base;
+
+    /** True when the index must be reloaded before its next use. */
+    private boolean stale = true;
+
+    /** System.currentTimeMillis() of the last load. */
+    private long loadedAt;
+
+    /** Active tables, smallest first (seats, then table number). */
+    private List<Table> tables = new ArrayList<>();
+
+    /** Active tables by table number. */
+    private Map<Integer, Table> tablesByNum = new HashMap<>();
+
+    /** Blocking reservations inside the horizon, by ResId. */
+    private Map<Integer, Booking> bookings = new HashMap<>();
+
+    /** ResId of the blocking reservation holding each confirmation code. */
+    private Map<Integer, Integer> resIdByConfCode = new HashMap<>();
+
+    /** Incremented for a day whenever a reservation touching its start times changes. */
+    private int[] dayVersions = new int[HORIZON_DAYS];
+
+    /**
+     * Free start-time masks by minimum table seats (bit i = slot i of the day),
+     * one per day. Filled under the read lock, so guarded by its own monitor.
+     */
+    private final Map<Integer, long[]> freeMasks = new HashMap<>();
+
+    /** Day versions the masks of {@link #freeMasks} were computed from. */
+    private final Map<Integer, int[]> freeMaskVersions = new HashMap<>();
+
+    /** Occupancy of one active table. */
+    private static final class Table {
+        final int num;
+        final int seats;
+        final short[] busy = new short[SLOTS];
+
+        Table(int num, int seats) {
+            this.num = num;
+            this.seats = seats;
+        }
+    }
+
+    /** Slots covered by one blocking reservation. */
+    private static final class Booking {
+        final int resId;
+        final int confCode;
+        final int tableNum;
+        final int first;
+        final int last;
+
+        Booking(int resId, int confCode, int tableNum, int first, int last) {
+            this.resId = resId;
+            this.confCode = confCode;
+            this.tableNum = tableNum;
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    /** Singleton - use {@link #getInstance()}. */
+    private SlotAvailabilityIndex() {
+    }
+
+    /**
+     * Returns the index of the server.
+     *
+     * @return the single instance
+     */
+    public static SlotAvailabilityIndex getInstance() {
+        return INSTANCE;
+    }
+
+    // ================= Queries =================
+
+    /**
+     * Returns true if a 2-hour reservation starting at the given time can be
+     * answered by the index. Loads or reloads the index first if needed.
+     *
+     * @param conn database connection used if the index must be (re)loaded
+     * @param start reservation start time
+     * @return false if the index is disabled or the time is outside the horizon
+     * @throws SQLException if loading fails
+     */
+    public boolean covers(Connection conn, Timestamp start) throws SQLException {
+        if (!ServerConfig.SLOT_INDEX_ENABLED || start == null) return false;
+
+        ensureFresh(conn);
+
+        lock.readLock().lock();
+        try {
+            int[] range = slotRange(start.toLocalDateTime());
+            return range != null && range[0] >= 0 && range[1] < SLOTS;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the smallest active table with at least the given seats that is
+     * free for 2 hours from the given time. Only call after
+     * {@link #covers(Connection, Timestamp)} returned true.
+     *
+     * @param start reservation start time
+     * @param diners number of diners
+     * @return table number, or null if no table is free (or the time is not covered)
+     */
+    public Integer findBestTable(Timestamp start, int diners) {
+        return findBestTable(start, diners, Collections.emptySet());
+    }
+
+    /**
+     * Same as {@link #findBestTable(Timestamp, int)}, skipping the given tables.
+     *
+     * @param start reservation start time
+     * @param diners number of diners
+     * @param exclude tables not to return
+     * @return table number, or null if no other table is free
+     */
+    public Integer findBestTable(Timestamp start, int diners, Set<Integer> exclude) {
+        lock.readLock().lock();
+        try {
+            int[] range = slotRange(start.toLocalDateTime());
+            if (range == null || range[0] < 0 || range[1] >= SLOTS) return null;
+
+            for (Table t : tables) {
+                if (t.seats >= diners && !exclude.contains(t.num) && isFree(t, range[0], range[1])) {
+                    return t.num;
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true if the index shows a table free for 2 hours from the
+     * given time. Only call after {@link #covers(Connection, Timestamp)}
+     * returned true.
+     *
+     * @param tableNum table number
+     * @param start reservation start time
+     * @return false if the table is busy, unknown or the time is not covered
+     */
+    public boolean isTableFree(int tableNum, Timestamp start) {
+        lock.readLock().lock();
+        try {
+            int[] range = slotRange(start.toLocalDateTime());
+            if (range == null || range[0] < 0 || range[1] >= SLOTS) return false;
+
+            Table t = tablesByNum.get(tableNum);
+            return t != null && isFree(t, range[0], range[1]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of seats of the largest active table.
+     * Only call after {@link #covers(Connection, Timestamp)} returned true.
+     *
+     * @return maximum seats, or 0 if there is no active table
+     */
+    public int getMaxSeats() {
+        lock.readLock().lock();
+        try {
+            return tables.isEmpty() ? 0 : tables.get(tables.size() - 1).seats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns, for each day from the given date, a bit mask of the half-hour
+     * start times (bit i = i * 30 minutes after midnight) at which a table
+     * with enough seats is free for 2 hours. Only call after
+     * {@link #covers(Connection, Timestamp)} returned true.
+     *
+     * Masks are cached per smallest fitting table size and only the days
+     * changed since the last call are recomputed.
+     *
+     * @param from first day
+     * @param days number of days
+     * @param diners number of diners
+     * @return one mask per day; 0 for days outside the horizon
+     */
+    public long[] getFreeStartMasks(LocalDate from, int days, int diners) {
+        long[] result = new long[days];
+
+        lock.readLock().lock();
+        try {
+            if (base == null) return result;
+
+            Integer minSeats = null;
+            for (Table t : tables) {
+                if (t.seats >= diners) {
+                    minSeats = t.seats;
+                    break;
+                }
+            }
+            if (minSeats == null) return result; // party too large for every table
+
+            int offset = (int) (from.toEpochDay() - base.toLocalDate().toEpochDay());
+
+            synchronized (freeMasks) {
+                long[] masks = freeMasks.computeIfAbsent(minSeats, k -> new long[HORIZON_DAYS]);
+                int[] versions = freeMaskVersions.computeIfAbsent(minSeats, k -> {
+                    int[] v = new int[HORIZON_DAYS];
+                    Arrays.fill(v, -1);
+                    return v;
+                });
+
+                for (int i = 0; i < days; i++) {
+                    int day = offset + i;
+                    if (day < 0 || day >= HORIZON_DAYS) continue;
+
+                    if (versions[day] != dayVersions[day]) {
+                        masks[day] = computeFreeStartMask(day, minSeats);
+                        versions[day] = dayVersions[day];
+                    }
+                    result[i] = masks[day];
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ================= Updates =================
+
+    /**
+     * Forces a reload before the next use. Called after changes the index
+     * cannot follow row by row (tables, opening hours, jobs that update
+     * many reservations).
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            stale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records a new blocking reservation (after its transaction committed).
+     *
+     * @param resId reservation id
+     * @param confCode confirmation code
+     * @param tableNum assigned table
+     * @param start reservation start time
+     */
+    public void add(int resId, int confCode, int tableNum, Timestamp start) {
+        lock.writeLock().lock();
+        try {
+            if (stale || base == null) return; // the next load reads it from the database
+            removeBooking(resId);
+            addBooking(resId, confCode, tableNum, start.toLocalDateTime());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the blocking reservation holding a confirmation code
+     * (after it was canceled).
+     *
+     * @param confCode confirmation code
+     */
+    public void removeByConfCode(int confCode) {
+        lock.writeLock().lock();
+        try {
+            Integer resId = resIdByConfCode.get(confCode);
+            if (resId != null) removeBooking(resId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-reads one reservation and updates its slots (after its time,
+     * table or status changed).
+     *
+     * @param conn database connection
+     * @param resId reservation id
+     * @throws SQLException if the reservation cannot be read
+     */
+    public void refresh(Connection conn, int resId) throws SQLException {
+        String sql =
+            "SELECT ResId, ConfCode, TableNum, reservationTime, Status " +
+            "FROM schema_for_project.reservation WHERE ResId = ?";
+
+        lock.writeLock().lock();
+        try {
+            if (stale || base == null) return;
+            removeBooking(resId);
+
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, resId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next() && isBlocking(rs.getString("Status"))) {
+                        Integer tableNum = (Integer) rs.getObject("TableNum");
+                        Timestamp start = rs.getTimestamp("reservationTime");
+                        if (tableNum != null && start != null) {
+                            addBooking(resId, rs.getInt("ConfCode"), tableNum, start.toLocalDateTime());
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ================= Loading =================
+
+    /**
+     * Loads the index now (at server start) instead of on first use.
+     *
+     * @param conn database connection
+     * @throws SQLException if loading fails
+     */
+    public void preload(Connection conn) throws SQLException {
+        if (ServerConfig.SLOT_INDEX_ENABLED) ensureFresh(conn);
+    }
+
+    /**
+     * Reloads the index if it is stale, from a previous day or too old.
+     *
+     * @param conn database connection
+     * @throws SQLException if loading fails
+     */
+    private void ensureFresh(Connection conn) throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (!needsReload()) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (needsReload()) load(conn);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean needsReload() {
+        return stale
+                || base == null
+                || !base.toLocalDate().equals(LocalDate.now())
+                || System.currentTimeMillis() - loadedAt > ServerConfig.SLOT_INDEX_MAX_AGE_SEC * 1000L;
+    }
+
+    /**
+     * Loads the active tables and the blocking reservations of the horizon.
+     * Runs with the write lock held.
+     *
+     * @param conn database connection
+     * @throws SQLException if a query fails
+     */
+    private void load(Connection conn) throws SQLException {
+        LocalDateTime newBase = LocalDate.now().atStartOfDay();
+
+        List<Table> newTables = new ArrayList<>();
+        for (TableCatalog.Entry e : TableCatalog.get(conn).getActiveTables()) {
+            newTables.add(new Table(e.tableNum, e.seats));
+        }
+
+        base = newBase;
+        tables = newTables;
+        tablesByNum = new HashMap<>();
+        for (Table t : newTables) tablesByNum.put(t.num, t);
+        bookings = new HashMap<>();
+        resIdByConfCode = new HashMap<>();
+        dayVersions = new int[HORIZON_DAYS];
+        synchronized (freeMasks) {
+            freeMasks.clear();
+            freeMaskVersions.clear();
+        }
+
+        String bookingsSql =
+            "SELECT ResId, ConfCode, TableNum, reservationTime " +
+            "FROM schema_for_project.reservation " +
+            "WHERE TableNum IS NOT NULL " +
+            "  AND Status NOT IN ('CANCELED','DONE') " +
+            "  AND reservationTime < ? " +
+            "  AND DATE_ADD(reservationTime, INTERVAL 2 HOUR) > ?";
+        try (PreparedStatement ps = conn.prepareStatement(bookingsSql)) {
+            ps.setTimestamp(1, Timestamp.valueOf(newBase.plusDays(HORIZON_DAYS)));
+            ps.setTimestamp(2, Timestamp.valueOf(newBase));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    addBooking(rs.getInt("ResId"), rs.getInt("ConfCode"), rs.getInt("TableNum"),
+                            rs.getTimestamp("reservationTime").toLocalDateTime());
+                }
+            }
+        }
+
+        stale = false;
+        loadedAt = System.currentTimeMillis();
+    }
+
+    // ================= Helpers (write lock held) =================
+
+    private void addBooking(int resId, int confCode, int tableNum, LocalDateTime start) {
+        int[] range = slotRange(start);
+        if (range == null) return;
+
+        int first = Math.max(0, range[0]);
+        int last = Math.min(SLOTS - 1, range[1]);
+        if (first > last) return; // outside the horizon
+
+        Booking b = new Booking(resId, confCode, tableNum, first, last);
+        bookings.put(resId, b);
+        resIdByConfCode.put(confCode, resId);
+
+        Table t = tablesByNum.get(tableNum);
+        if (t != null) {
+            for (int i = first; i <= last; i++) t.busy[i]++;
+        }
+        touchDays(first, last);
+    }
+
+    private void removeBooking(int resId) {
+        Booking b = bookings.remove(resId);
+        if (b == null) return;
+        resIdByConfCode.remove(b.confCode, resId);
+
+        Table t = tablesByNum.get(b.tableNum);
+        if (t != null) {
+            for (int i = b.first; i <= b.last; i++) {
+                if (t.busy[i] > 0) t.busy[i]--;
+            }
+        }
+        touchDays(b.first, b.last);
+    }
+
+    /**
+     * Marks the days whose start times depend on the slots first..last
+     * (a start up to 2 hours earlier overlaps them).
+     */
+    private void touchDays(int first, int last) {
+        int fromDay = Math.max(0, first - (BOOKING_SLOTS - 1)) / SLOTS_PER_DAY;
+        int toDay = last / SLOTS_PER_DAY;
+        for (int d = fromDay; d <= toDay; d++) dayVersions[d]++;
+    }
+
+    /**
+     * Computes the free start-time mask of one day for tables with at least
+     * the given seats. Runs with the read or write lock held.
+     */
+    private long computeFreeStartMask(int day, int minSeats) {
+        long mask = 0;
+        for (int i = 0; i < SLOTS_PER_DAY; i++) {
+            int first = day * SLOTS_PER_DAY + i;
+            int last = first + BOOKING_SLOTS - 1;
+            if (last >= SLOTS) break;
+
+            for (Table t : tables) {
+                if (t.seats >= minSeats && isFree(t, first, last)) {
+                    mask |= 1L << i;
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the first and last slot touched by a 2-hour reservation
+     * starting at the given time, relative to the base (may be out of range).
+     *
+     * @param start reservation start time
+     * @return { first, last }, or null before the index is loaded
+     */
+    private int[] slotRange(LocalDateTime start) {
+        if (base == null) return null;
+        long from = Duration.between(base, start).getSeconds();
+        long to = from + BOOKING_LENGTH.getSeconds();
+        long first = Math.floorDiv(from, SLOT_SECONDS);
+        long last = Math.floorDiv(to + SLOT_SECONDS - 1, SLOT_SECONDS) - 1;
+        return new int[]{ (int) Math.max(Integer.MIN_VALUE / 2, Math.min(first, Integer.MAX_VALUE / 2)),
+                          (int) Math.max(Integer.MIN_VALUE / 2, Math.min(last, Integer.MAX_VALUE / 2)) };
+    }
+
+    private static boolean isFree(Table t, int first, int last) {
+        for (int i = first; i <= last; i++) {
+            if (t.busy[i] != 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean isBlocking(String status) {
+        return status != null && !"CANCELED".equals(status) && !"DONE".equals(status);
+    }
+}
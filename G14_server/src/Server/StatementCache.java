@@ -0,0 +1,258 @@
+package Server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StatementCache
+ * --------------
+ * Bounded LRU cache of the prepared statements of one physical connection,
+ * keyed by SQL text. The repositories call conn.prepareStatement(sql) with a
+ * constant SQL string on every call (isTableFree does it once per table and
+ * slot); with the cache the statement is prepared once per connection and
+ * reused across borrows.
+ *
+ * The repositories get {@link #getConnection()}, a view of the physical
+ * connection whose prepareStatement(String) returns a cached statement.
+ * Closing that statement clears its parameters and batch and gives it back
+ * to the cache instead of closing it. Statements are really closed when they
+ * are evicted or when the connection is closed. If the same SQL is prepared
+ * again while its cached statement is still open (nested use), the second
+ * one is an ordinary, uncached statement. The other prepareStatement
+ * overloads are never cached.
+ *
+ * Size is set with bistro.pool.statementCacheSize; 0 disables caching.
+ */
+final class StatementCache {
+
+    /** Counters of all the caches, for the server log and window. */
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+
+    private final Connection physical;
+    private final Connection view;
+
+    /** Cached statements by SQL, least recently used first; guarded by this. */
+    private final LinkedHashMap<String, Entry> statements;
+
+    /** One cached statement. */
+    private static final class Entry {
+        final PreparedStatement ps;
+        /** Handed out and not closed yet; guarded by the cache. */
+        boolean inUse;
+        /** Left the cache while in use: closed when given back. */
+        boolean evicted;
+
+        Entry(PreparedStatement ps) {
+            this.ps = ps;
+        }
+    }
+
+    /**
+     * Creates the cache of a physical connection.
+     *
+     * @param physical the JDBC connection
+     * @param capacity largest number of statements kept open
+     */
+    StatementCache(Connection physical, int capacity) {
+        this.physical = physical;
+        this.statements = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= capacity) return false;
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+        this.view = (Connection) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new ConnectionHandler());
+    }
+
+    /**
+     * Returns the connection handed to the repositories.
+     *
+     * @return the physical connection, with cached prepareStatement(String)
+     */
+    Connection getConnection() {
+        return view;
+    }
+
+    /**
+     * Closes every cached statement. Statements still in use are closed by
+     * the physical connection.
+     */
+    synchronized void closeAll() {
+        for (Entry e : statements.values()) {
+            if (e.inUse) {
+                e.evicted = true;
+            } else {
+                closeQuietly(e.ps);
+            }
+        }
+        statements.clear();
+    }
+
+    /**
+     * Returns a one-line summary of the counters of all caches.
+     *
+     * @return cache statistics
+     */
+    static String getStats() {
+        return "stmtHits=" + HITS.get() + " stmtMisses=" + MISSES.get() + " stmtEvicted=" + EVICTIONS.get();
+    }
+
+    // ================= Internals =================
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        synchronized (this) {
+            Entry e = statements.get(sql);
+            if (e != null && !e.inUse) {
+                e.inUse = true;
+                HITS.incrementAndGet();
+                return wrap(e);
+            }
+            MISSES.incrementAndGet();
+            if (e != null) {
+                // Nested use of the same SQL: the cached one is busy
+                return physical.prepareStatement(sql);
+            }
+        }
+
+        Entry e = new Entry(physical.prepareStatement(sql));
+        e.inUse = true;
+        synchronized (this) {
+            if (statements.containsKey(sql)) {
+                // Prepared again meanwhile (only if the connection is shared)
+                e.evicted = true;
+            } else {
+                statements.put(sql, e);
+            }
+        }
+        return wrap(e);
+    }
+
+    /** Called by removeEldestEntry with the lock held. */
+    private void evict(Entry e) {
+        EVICTIONS.incrementAndGet();
+        if (e.inUse) {
+            e.evicted = true;
+        } else {
+            closeQuietly(e.ps);
+        }
+    }
+
+    /** Gives a statement back when the repository closes it. */
+    private void giveBack(Entry e) {
+        boolean reusable = true;
+        try {
+            ResultSet rs = e.ps.getResultSet();
+            if (rs != null) rs.close();
+            e.ps.clearParameters();
+            e.ps.clearBatch();
+            e.ps.clearWarnings();
+        } catch (SQLException ex) {
+            reusable = false;
+        }
+
+        synchronized (this) {
+            e.inUse = false;
+            if (!reusable && !e.evicted) {
+                statements.values().remove(e);
+                e.evicted = true;
+            }
+            if (e.evicted) closeQuietly(e.ps);
+        }
+    }
+
+    private PreparedStatement wrap(Entry e) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new StatementHandler(e));
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static Object invoke(Object target, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /** The connection seen by the repositories. */
+    private final class ConnectionHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "prepareStatement":
+                    if (args.length == 1 && args[0] instanceof String) {
+                        return prepare((String) args[0]);
+                    }
+                    break;
+                case "close":
+                    closeAll();
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return StatementCache.invoke(physical, m, args);
+        }
+    }
+
+    /** A cached statement as seen by the repositories, until it is closed. */
+    private final class StatementHandler implements InvocationHandler {
+        private final Entry entry;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        StatementHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) giveBack(entry);
+                    return null;
+                case "isClosed":
+                    return closed.get() || entry.ps.isClosed();
+                case "getConnection":
+                    return view;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed.get()) throw new SQLException("Statement is closed.");
+            return StatementCache.invoke(entry.ps, m, args);
+        }
+    }
+}
@@ -28,14 +28,7 @@ public class SubscribersRepository {
      * @throws SQLException on database error
      */
     public Integer findCostumerId(Connection conn, String phone, String email) throws SQLException {
-        String sql = "SELECT CostumerId FROM costumer WHERE PhoneNum=? OR Email=? LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, phone);
-            ps.setString(2, email);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getInt("CostumerId") : null;
-            }
-        }
+        return CustomerIdentityCache.getInstance().findByPhoneOrEmail(conn, phone, email);
     }
 
     /**
@@ -207,16 +200,7 @@ public class SubscribersRepository {
      * @throws SQLException on database error
      */
     public Integer getCostumerIdBySubscriberId(Connection conn, int subscriberId) throws SQLException {
-        String sql = "SELECT CostumerId FROM schema_for_project.subscriber WHERE SubscriberId = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, subscriberId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return (Integer) rs.getObject("CostumerId");
-                }
-                return null;
-            }
-        }
+        return CustomerIdentityCache.getInstance().findBySubscriber(conn, subscriberId);
     }
 
     
@@ -0,0 +1,244 @@
+package Server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TableCatalog
+ * ------------
+ * Immutable snapshot of the restaurant tables (number, seats, active flag),
+ * sorted by seats and then table number.
+ *
+ * The `table` rows only change through the ADD_TABLE, UPDATE_TABLE_SEATS,
+ * DEACTIVATE_TABLE and ACTIVATE_TABLE operations, which call
+ * {@link #reload(Connection)} after their commit to swap in a new snapshot.
+ * Every other reader uses {@link #get(Connection)} instead of querying.
+ *
+ * The occupancy flag (isOccupied) changes with every seating, so it is not
+ * part of the catalog and is still read from the database.
+ *
+ * Code running inside a transaction that changes tables (the revalidation of
+ * future reservations) must see its own uncommitted rows and uses
+ * {@link #load(Connection)} instead.
+ */
+public final class TableCatalog {
+
+    private static final ServerLog.Category LOG = ServerLog.category("slots");
+
+    /** Current snapshot; null until loaded or after a failed reload. */
+    private static TableCatalog current;
+
+    /** Incremented by every reload, so a slower load never replaces a newer snapshot. */
+    private static long generation;
+
+    /** Generation the current snapshot was loaded in. */
+    private static long currentGeneration;
+
+    /** One table. */
+    public static final class Entry {
+        /** Table number */
+        public final int tableNum;
+
+        /** Number of seats */
+        public final int seats;
+
+        /** Whether the table is active */
+        public final boolean active;
+
+        Entry(int tableNum, int seats, boolean active) {
+            this.tableNum = tableNum;
+            this.seats = seats;
+            this.active = active;
+        }
+    }
+
+    /** All tables, smallest first (seats, then table number). */
+    private final List<Entry> tables;
+
+    /** Active tables, smallest first. */
+    private final List<Entry> activeTables;
+
+    /** All tables by number. */
+    private final Map<Integer, Entry> byNum;
+
+    private TableCatalog(List<Entry> tables) {
+        this.tables = Collections.unmodifiableList(tables);
+
+        List<Entry> active = new ArrayList<>();
+        Map<Integer, Entry> map = new HashMap<>();
+        for (Entry e : tables) {
+            if (e.active) active.add(e);
+            map.put(e.tableNum, e);
+        }
+        this.activeTables = Collections.unmodifiableList(active);
+        this.byNum = map;
+    }
+
+    // ================= Snapshot access =================
+
+    /**
+     * Returns the current catalog, loading it first if needed.
+     *
+     * @param conn database connection used if the catalog must be loaded
+     * @return the current snapshot
+     * @throws SQLException if loading fails
+     */
+    public static TableCatalog get(Connection conn) throws SQLException {
+        long gen;
+        synchronized (TableCatalog.class) {
+            if (current != null) return current;
+            gen = generation;
+        }
+
+        TableCatalog loaded = load(conn);
+
+        synchronized (TableCatalog.class) {
+            if (current == null && gen == generation) {
+                current = loaded;
+                currentGeneration = gen;
+            }
+            return current != null ? current : loaded;
+        }
+    }
+
+    /**
+     * Replaces the current catalog with the committed rows. Called right
+     * after a table change was committed; inside a transactional UnitOfWork,
+     * done at its commit. Never throws: if the rows cannot be read the
+     * catalog is dropped and loaded again on next use.
+     *
+     * @param conn database connection (after commit)
+     */
+    public static void reload(Connection conn) {
+        UnitOfWork.afterCommit(() -> reloadNow(conn));
+    }
+
+    private static void reloadNow(Connection conn) {
+        long gen;
+        synchronized (TableCatalog.class) {
+            gen = ++generation;
+            current = null;
+        }
+
+        try {
+            TableCatalog loaded = load(conn);
+            synchronized (TableCatalog.class) {
+                // A reload that started later wins; this one only replaces an older snapshot
+                if (gen == generation || (current != null && currentGeneration < gen)) {
+                    current = loaded;
+                    currentGeneration = gen;
+                }
+            }
+        } catch (SQLException e) {
+            synchronized (TableCatalog.class) {
+                if (current != null && currentGeneration < gen) current = null;
+            }
+            LOG.warn("Table catalog reload failed, will load on next use: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads all tables from the database, bypassing the current snapshot.
+     *
+     * @param conn database connection
+     * @return a new snapshot
+     * @throws SQLException if a database error occurs
+     */
+    public static TableCatalog load(Connection conn) throws SQLException {
+        String sql =
+            "SELECT TableNum, Seats, isActive FROM schema_for_project.`table` " +
+            "ORDER BY Seats ASC, TableNum ASC";
+
+        List<Entry> list = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                list.add(new Entry(rs.getInt("TableNum"), rs.getInt("Seats"), rs.getInt("isActive") == 1));
+            }
+        }
+        return new TableCatalog(list);
+    }
+
+    // ================= Queries =================
+
+    /**
+     * Returns all tables, smallest first.
+     *
+     * @return unmodifiable list
+     */
+    public List<Entry> getTables() {
+        return tables;
+    }
+
+    /**
+     * Returns the active tables, smallest first.
+     *
+     * @return unmodifiable list
+     */
+    public List<Entry> getActiveTables() {
+        return activeTables;
+    }
+
+    /**
+     * Returns the numbers of the active tables with at least the given
+     * seats, smallest first.
+     *
+     * @param diners number of diners
+     * @return candidate table numbers
+     */
+    public List<Integer> getCandidates(int diners) {
+        List<Integer> result = new ArrayList<>();
+        for (Entry e : activeTables) {
+            if (e.seats >= diners) result.add(e.tableNum);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the seats of the largest active table.
+     *
+     * @return maximum seats, or 0 if there is no active table
+     */
+    public int getMaxActiveSeats() {
+        return activeTables.isEmpty() ? 0 : activeTables.get(activeTables.size() - 1).seats;
+    }
+
+    /**
+     * Returns the seats of the largest table, active or not.
+     *
+     * @return maximum seats, or 0 if there is no table
+     */
+    public int getMaxSeats() {
+        return tables.isEmpty() ? 0 : tables.get(tables.size() - 1).seats;
+    }
+
+    /**
+     * Returns the seats of a table.
+     *
+     * @param tableNum table number
+     * @return number of seats, or -1 if the table does not exist
+     */
+    public int getSeats(int tableNum) {
+        Entry e = byNum.get(tableNum);
+        return e == null ? -1 : e.seats;
+    }
+
+    /**
+     * Checks that a table exists, is active and has enough seats.
+     *
+     * @param tableNum table number
+     * @param diners number of diners
+     * @return true if the table can seat the party
+     */
+    public boolean fits(int tableNum, int diners) {
+        Entry e = byNum.get(tableNum);
+        return e != null && e.active && e.seats >= diners;
+    }
+}
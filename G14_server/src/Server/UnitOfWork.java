@@ -0,0 +1,380 @@
+package Server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UnitOfWork
+ * ----------
+ * One pooled connection, and optionally one transaction, for all the database
+ * work of a client request or a scheduled job on the current thread.
+ *
+ * While a unit of work is open, {@link MySQLConnectionPool#getConnection()}
+ * returns the same connection every time (taken from the pool the first time
+ * it is needed) and {@link MySQLConnectionPool#releaseConnection} leaves it
+ * alone; it goes back to the pool when the unit of work is closed. So the
+ * DBController and repository methods share it without any change, and a
+ * request that calls several of them leases the pool once.
+ * {@link MySQLConnectionPool#tryGetConnection()} still returns a separate
+ * connection.
+ *
+ * A transactional unit of work also runs everything in one transaction,
+ * committed by {@link #commit()}; closing it without commit rolls back. The
+ * methods that manage their own transaction keep working: their
+ * setAutoCommit(false) / commit() / rollback() become a savepoint, its
+ * release and a rollback to it, so a failed step still undoes only its own
+ * changes. The transaction uses READ COMMITTED: the bookings rely on
+ * BookingLocks and must see rows committed while they waited for them.
+ * Since the inner commits are not real, the booking locks taken inside are
+ * kept (a {@link BookingLocks.Scope}) until the unit of work ends, and the
+ * side effects that announce a commit to other requests (change pushes,
+ * cache invalidations, catalog reloads) wait for {@link #commit()} through
+ * {@link #afterCommit(Runnable)}.
+ *
+ * Between two DB calls the pool does not count the connection as held, so
+ * a long request is not reported as a leak (see MySQLConnectionPool).
+ *
+ * Units of work nest: begin() on a thread that already has one joins it, and
+ * closing the joined handle does nothing.
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+    private static final ServerLog.Category LOG = ServerLog.category("pool");
+
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    /** Connections requests got from their unit of work instead of the pool. */
+    private static final AtomicLong REUSED = new AtomicLong();
+
+    /** The unit of work this handle belongs to (itself for the owner). */
+    private final UnitOfWork root;
+    private final boolean transactional;
+
+    private MySQLConnectionPool pool;
+    private PooledConnection lease;
+
+    /** DB calls currently using the lease (getConnection without release yet). */
+    private int calls;
+
+    /** Transaction state, only for transactional units of work. */
+    private Transaction tx;
+    private boolean committed;
+
+    /** Booking locks kept until the end, only for transactional units of work. */
+    private BookingLocks.Scope bookingLocks;
+
+    /** Actions waiting for the commit. */
+    private List<Runnable> afterCommit;
+
+    private UnitOfWork(boolean transactional) {
+        this.root = this;
+        this.transactional = transactional;
+        if (transactional) bookingLocks = BookingLocks.beginScope();
+    }
+
+    private UnitOfWork(UnitOfWork root) {
+        this.root = root;
+        this.transactional = root.transactional;
+    }
+
+    /**
+     * Opens a unit of work on the current thread, or joins the one already
+     * open (which keeps its own transactional setting).
+     *
+     * @param transactional whether all the work runs in one transaction
+     * @return the unit of work, to close when the work is done
+     */
+    public static UnitOfWork begin(boolean transactional) {
+        UnitOfWork current = CURRENT.get();
+        if (current != null) return new UnitOfWork(current);
+
+        UnitOfWork uow = new UnitOfWork(transactional);
+        CURRENT.set(uow);
+        return uow;
+    }
+
+    /**
+     * Returns the unit of work open on the current thread.
+     *
+     * @return the unit of work, or null if there is none
+     */
+    static UnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns true if the current thread runs inside a transactional unit of
+     * work, whose changes are not committed yet even where the code sees
+     * auto-commit.
+     *
+     * @return true inside a transactional unit of work
+     */
+    public static boolean inTransaction() {
+        UnitOfWork current = CURRENT.get();
+        return current != null && current.transactional && !current.committed;
+    }
+
+    /**
+     * Runs an action once the changes of the current thread are committed:
+     * at the commit of the transactional unit of work open on the thread
+     * (dropped if it rolls back), or right away anywhere else.
+     *
+     * @param action what to run after the commit
+     */
+    public static void afterCommit(Runnable action) {
+        UnitOfWork current = CURRENT.get();
+        if (current == null || !current.transactional || current.committed) {
+            action.run();
+            return;
+        }
+        if (current.afterCommit == null) current.afterCommit = new ArrayList<>();
+        current.afterCommit.add(action);
+    }
+
+    /**
+     * Returns a one-line summary for the server log.
+     *
+     * @return unit of work statistics
+     */
+    static String getStats() {
+        return "uowReused=" + REUSED.get();
+    }
+
+    /**
+     * Returns the connection of the unit of work, taking it from the pool
+     * the first time. Called by the pool.
+     *
+     * @param from the pool to take it from
+     * @return the connection, or null if the pool could not open one
+     */
+    PooledConnection lease(MySQLConnectionPool from) {
+        if (lease != null) {
+            REUSED.incrementAndGet();
+            if (calls++ == 0) lease.unpark();
+            return lease;
+        }
+
+        PooledConnection pc = from.acquire();
+        if (pc == null) return null;
+
+        if (transactional) {
+            try {
+                tx = new Transaction(pc.getConnection());
+                pc.setView(tx.view);
+            } catch (SQLException e) {
+                from.releaseConnection(pc);
+                throw new IllegalStateException("Could not start the transaction: " + e.getMessage());
+            }
+        }
+        pool = from;
+        lease = pc;
+        calls = 1;
+        return pc;
+    }
+
+    /**
+     * Called by the pool when a connection is released. The connection of
+     * the unit of work stays with it; once no DB call uses it, it is parked
+     * (not counted as held by the leak detection).
+     *
+     * @param pc a connection being released
+     * @return true if it is the connection of this unit of work
+     */
+    boolean keep(PooledConnection pc) {
+        if (pc == null || pc != lease) return false;
+        if (calls > 0 && --calls == 0) pc.park();
+        return true;
+    }
+
+    /**
+     * Commits the transaction of a transactional unit of work. Does nothing
+     * for a joined handle or a unit of work that is not transactional.
+     *
+     * @throws SQLException if the commit fails, or the transaction was lost
+     *         (rolled back by the database, for example after a deadlock)
+     */
+    public void commit() throws SQLException {
+        if (root != this || !transactional || committed) return;
+        if (tx != null) tx.commit();
+        committed = true;
+
+        if (afterCommit == null) return;
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                LOG.warn("After-commit action failed: " + e.getMessage(), e);
+            }
+        }
+        afterCommit = null;
+    }
+
+    /**
+     * Ends the unit of work: rolls back an uncommitted transaction and gives
+     * the connection back to the pool. Does nothing for a joined handle.
+     */
+    @Override
+    public void close() {
+        if (root != this) return;
+        CURRENT.remove();
+        afterCommit = null;
+
+        try {
+            if (lease == null) return;
+            try {
+                if (tx != null) {
+                    lease.setView(null);
+                    tx.end(committed);
+                }
+            } finally {
+                pool.releaseConnection(lease);
+                lease = null;
+                tx = null;
+            }
+        } finally {
+            // Only now are the rows the locks protect committed or rolled back
+            if (bookingLocks != null) bookingLocks.close();
+        }
+    }
+
+    private static Object invoke(Object target, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * The transaction of a transactional unit of work, and the connection
+     * view that turns the transactions of the code inside it into savepoints.
+     */
+    private static final class Transaction implements InvocationHandler {
+        private final Connection conn;
+        private final Connection view;
+        private final boolean oldAutoCommit;
+        private final int oldIsolation;
+
+        /** What the code inside sees. */
+        private boolean autoCommit = true;
+        /** Start of the current inner transaction, if one is open. */
+        private Savepoint savepoint;
+        /** Whether an inner transaction committed (writes to announce). */
+        private boolean wrote;
+        /** Set when a savepoint vanished: the database rolled everything back. */
+        private boolean lost;
+
+        Transaction(Connection conn) throws SQLException {
+            this.conn = conn;
+            this.oldAutoCommit = conn.getAutoCommit();
+            this.oldIsolation = conn.getTransactionIsolation();
+            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            conn.setAutoCommit(false);
+            this.view = (Connection) Proxy.newProxyInstance(
+                    UnitOfWork.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            String name = m.getName();
+            int argc = (args == null) ? 0 : args.length;
+
+            if (name.equals("getAutoCommit")) return autoCommit;
+            if (name.equals("setAutoCommit")) {
+                setAutoCommit((Boolean) args[0]);
+                return null;
+            }
+            if (name.equals("commit") && argc == 0) {
+                if (!autoCommit) {
+                    endInner();
+                    savepoint = savepoint();
+                }
+                return null;
+            }
+            if (name.equals("rollback") && argc == 0) {
+                if (!autoCommit && savepoint != null) {
+                    try {
+                        conn.rollback(savepoint);
+                    } catch (SQLException e) {
+                        lost = true;
+                        throw e;
+                    }
+                    savepoint = savepoint();
+                }
+                return null;
+            }
+            if (name.equals("equals")) return proxy == args[0];
+            if (name.equals("hashCode")) return System.identityHashCode(proxy);
+            return UnitOfWork.invoke(conn, m, args);
+        }
+
+        private void setAutoCommit(boolean on) throws SQLException {
+            if (on == autoCommit) return;
+            if (on) {
+                // Turning auto-commit on commits the inner transaction
+                endInner();
+                savepoint = null;
+            } else {
+                savepoint = savepoint();
+            }
+            autoCommit = on;
+        }
+
+        /** Keeps the changes of the inner transaction in the outer one. */
+        private void endInner() throws SQLException {
+            wrote = true;
+            if (savepoint == null) return;
+            try {
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                lost = true;
+                throw e;
+            }
+        }
+
+        private Savepoint savepoint() throws SQLException {
+            try {
+                return conn.setSavepoint();
+            } catch (SQLException e) {
+                lost = true;
+                throw e;
+            }
+        }
+
+        void commit() throws SQLException {
+            if (lost) {
+                conn.rollback();
+                throw new SQLException("TRANSACTION_LOST");
+            }
+            conn.commit();
+            if (wrote) SlotAvailabilityIndex.getInstance().invalidate();
+        }
+
+        /** Rolls back if not committed and restores the connection settings. */
+        void end(boolean committed) {
+            try {
+                if (!committed) conn.rollback();
+            } catch (SQLException e) {
+                LOG.warn("Unit of work rollback failed: " + e.getMessage());
+            }
+            // The slot index already has the bookings made inside (added at their inner commit)
+            if (!committed && wrote) SlotAvailabilityIndex.getInstance().invalidate();
+            try {
+                conn.setAutoCommit(oldAutoCommit);
+                conn.setTransactionIsolation(oldIsolation);
+            } catch (SQLException e) {
+                LOG.warn("Unit of work could not restore the connection: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.sql.ResultSet;
 import java.util.ArrayList;
 
 import entities.CurrentDinerRow;
+import entities.PageCursor;
 import entities.Subscriber;
 import entities.WaitlistRow;
 
@@ -55,6 +56,38 @@ public class ViewRepository {
         return list;
     }
 
+    /**
+     * Retrieves a single waitlist entry.
+     *
+     * @param conn database connection
+     * @param confCode confirmation code of the entry
+     * @return the waitlist row, or null if the code is not on the waitlist
+     * @throws Exception if a database error occurs
+     */
+    public WaitlistRow getWaitlistRow(Connection conn, int confCode) throws Exception {
+        String sql =
+            "SELECT w.ConfirmationCode, w.timeEnterQueue, w.NumberOfDiners, w.costumerId, " +
+            "       c.PhoneNum, c.Email " +
+            "FROM waitinglist w " +
+            "JOIN costumer c ON w.costumerId = c.CostumerId " +
+            "WHERE w.ConfirmationCode = ?";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, confCode);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new WaitlistRow(
+                    rs.getInt("ConfirmationCode"),
+                    rs.getTimestamp("timeEnterQueue"),
+                    rs.getInt("NumberOfDiners"),
+                    rs.getInt("costumerId"),
+                    rs.getString("PhoneNum"),
+                    rs.getString("Email")
+                );
+            }
+        }
+    }
+
     /**
      * Retrieves the waitlist entries for a specific year and month.
      *
@@ -81,20 +114,88 @@ public class ViewRepository {
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    list.add(new WaitlistRow(
-                        rs.getInt("ConfirmationCode"),
-                        rs.getTimestamp("timeEnterQueue"),
-                        rs.getInt("NumberOfDiners"),
-                        rs.getInt("costumerId"),
-                        rs.getString("PhoneNum"),
-                        rs.getString("Email")
-                    ));
+                    list.add(mapWaitlistRow(rs));
                 }
             }
         }
         return list;
     }
 
+    /**
+     * Query of the waitlist entries of a month in page order
+     * (entry time, then confirmation code). Parameters: year, month.
+     */
+    private static final String WAITLIST_MONTH_PAGE_SELECT =
+        "SELECT w.ConfirmationCode, w.timeEnterQueue, w.NumberOfDiners, w.costumerId, " +
+        "       c.PhoneNum, c.Email " +
+        "FROM waitinglist w " +
+        "JOIN costumer c ON w.costumerId = c.CostumerId " +
+        "WHERE w.timeEnterQueue >= ? AND w.timeEnterQueue < ? ";
+
+    private static final String WAITLIST_PAGE_ORDER =
+        "ORDER BY w.timeEnterQueue ASC, w.ConfirmationCode ASC";
+
+    /**
+     * Retrieves one page of the waitlist entries of a month (keyset pagination).
+     *
+     * @param conn database connection
+     * @param year target year
+     * @param month target month (1–12)
+     * @param after cursor of the last entry already read, or null for the first page
+     * @param limit maximum number of entries to return
+     * @return waitlist rows of the page
+     * @throws Exception if a database error occurs
+     */
+    public ArrayList<WaitlistRow> getWaitlistByMonthPage(Connection conn, int year, int month,
+                                                        PageCursor after, int limit) throws Exception {
+        String sql = WAITLIST_MONTH_PAGE_SELECT +
+            (after == null ? "" :
+                "AND (w.timeEnterQueue > ? OR (w.timeEnterQueue = ? AND w.ConfirmationCode > ?)) ") +
+            WAITLIST_PAGE_ORDER + " LIMIT ?";
+
+        ArrayList<WaitlistRow> list = new ArrayList<>();
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = bindMonth(ps, year, month);
+            if (after != null) {
+                ps.setTimestamp(i++, after.getTime());
+                ps.setTimestamp(i++, after.getTime());
+                ps.setInt(i++, after.getId());
+            }
+            ps.setInt(i, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapWaitlistRow(rs));
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Reads the waitlist entries of a month in page order and hands them to
+     * the handler while the ResultSet is read (rows are streamed by the driver).
+     *
+     * @param conn database connection
+     * @param year target year
+     * @param month target month (1–12)
+     * @param handler receives each row
+     * @throws Exception if a database error occurs or the handler fails
+     */
+    public void streamWaitlistByMonth(Connection conn, int year, int month,
+                                      RowHandler<WaitlistRow> handler) throws Exception {
+        try (PreparedStatement ps = prepareStreaming(conn, WAITLIST_MONTH_PAGE_SELECT + WAITLIST_PAGE_ORDER)) {
+            bindMonth(ps, year, month);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(mapWaitlistRow(rs));
+                }
+            }
+        }
+    }
+
     
 
     /**
@@ -118,20 +219,127 @@ public class ViewRepository {
              ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
-                list.add(new Subscriber(
-                    rs.getInt("subscriberId"),
-                    rs.getString("Name"),
-                    rs.getString("ScanCode"),
-                    rs.getInt("CostumerId"),
-                    rs.getString("Personalinfo"),
-                    rs.getString("PhoneNum"),
-                    rs.getString("Email")
-                ));
+                list.add(mapSubscriber(rs));
+            }
+        }
+        return list;
+    }
+
+    /** Query of the subscribers with their contact details, without order. */
+    private static final String SUBSCRIBER_PAGE_SELECT =
+        "SELECT s.subscriberId, s.Name,s.ScanCode, s.Personalinfo, s.CostumerId, " +
+        "       c.PhoneNum, c.Email " +
+        "FROM subscriber s " +
+        "JOIN costumer c ON s.CostumerId = c.CostumerId ";
+
+    /**
+     * Retrieves one page of the subscribers by subscriber id (keyset pagination).
+     *
+     * @param conn database connection
+     * @param after cursor of the last subscriber already read, or null for the first page
+     * @param limit maximum number of subscribers to return
+     * @return subscribers of the page
+     * @throws Exception if a database error occurs
+     */
+    public ArrayList<Subscriber> getSubscribersPage(Connection conn, PageCursor after, int limit) throws Exception {
+        String sql = SUBSCRIBER_PAGE_SELECT +
+            (after == null ? "" : "WHERE s.subscriberId > ? ") +
+            "ORDER BY s.subscriberId ASC LIMIT ?";
+
+        ArrayList<Subscriber> list = new ArrayList<>();
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (after != null) ps.setInt(i++, after.getId());
+            ps.setInt(i, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapSubscriber(rs));
+                }
             }
         }
         return list;
     }
 
+    /**
+     * Reads all subscribers by subscriber id and hands them to the handler
+     * while the ResultSet is read (rows are streamed by the driver).
+     *
+     * @param conn database connection
+     * @param handler receives each subscriber
+     * @throws Exception if a database error occurs or the handler fails
+     */
+    public void streamSubscribers(Connection conn, RowHandler<Subscriber> handler) throws Exception {
+        try (PreparedStatement ps = prepareStreaming(conn, SUBSCRIBER_PAGE_SELECT + "ORDER BY s.subscriberId ASC");
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                handler.handle(mapSubscriber(rs));
+            }
+        }
+    }
+
+    /**
+     * Prepares a forward-only query whose rows the driver streams instead of
+     * buffering the whole result (fetch size {@link Integer#MIN_VALUE} for
+     * MySQL Connector/J). The connection cannot run other statements until
+     * the ResultSet is closed.
+     *
+     * @param conn database connection
+     * @param sql query
+     * @return the prepared statement
+     * @throws Exception if a database error occurs
+     */
+    private PreparedStatement prepareStreaming(Connection conn, String sql) throws Exception {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(Integer.MIN_VALUE);
+        return ps;
+    }
+
+    /**
+     * Binds the time range of a month (first day inclusive, first day of
+     * the next month exclusive) as parameters 1 and 2; unlike
+     * YEAR()/MONTH() this lets the database use an index on timeEnterQueue.
+     *
+     * @param ps statement
+     * @param year target year
+     * @param month target month (1–12)
+     * @return index of the next parameter
+     * @throws Exception if a parameter cannot be set
+     */
+    private int bindMonth(PreparedStatement ps, int year, int month) throws Exception {
+        java.time.LocalDate first = java.time.LocalDate.of(year, month, 1);
+        ps.setTimestamp(1, java.sql.Timestamp.valueOf(first.atStartOfDay()));
+        ps.setTimestamp(2, java.sql.Timestamp.valueOf(first.plusMonths(1).atStartOfDay()));
+        return 3;
+    }
+
+    /** Maps the current row of a waitlist query. */
+    private WaitlistRow mapWaitlistRow(ResultSet rs) throws Exception {
+        return new WaitlistRow(
+            rs.getInt("ConfirmationCode"),
+            rs.getTimestamp("timeEnterQueue"),
+            rs.getInt("NumberOfDiners"),
+            rs.getInt("costumerId"),
+            rs.getString("PhoneNum"),
+            rs.getString("Email")
+        );
+    }
+
+    /** Maps the current row of a subscriber query. */
+    private Subscriber mapSubscriber(ResultSet rs) throws Exception {
+        return new Subscriber(
+            rs.getInt("subscriberId"),
+            rs.getString("Name"),
+            rs.getString("ScanCode"),
+            rs.getInt("CostumerId"),
+            rs.getString("Personalinfo"),
+            rs.getString("PhoneNum"),
+            rs.getString("Email")
+        );
+    }
+
 
     /**
      * Retrieves current diners.
@@ -172,4 +380,40 @@ public class ViewRepository {
         }
         return list;
     }
+
+    /**
+     * Retrieves the current diner row of a reservation.
+     *
+     * @param conn database connection
+     * @param confCode reservation confirmation code
+     * @return the current diner row, or null if that party is not seated
+     * @throws Exception if a database error occurs
+     */
+    public CurrentDinerRow getCurrentDiner(Connection conn, int confCode) throws Exception {
+        String sql =
+            "SELECT r.ResId, r.reservationTime, r.NumOfDin, r.Status, r.CustomerId, " +
+            "       r.arrivalTime, c.PhoneNum, c.Email " +
+            "FROM reservation r " +
+            "JOIN costumer c ON r.CustomerId = c.CostumerId " +
+            "WHERE r.ConfCode = ? AND r.Status = 'ACTIVE' " +
+            "  AND r.arrivalTime IS NOT NULL AND r.leaveTime IS NULL " +
+            "ORDER BY r.arrivalTime DESC LIMIT 1";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, confCode);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new CurrentDinerRow(
+                    rs.getInt("ResId"),
+                    rs.getTimestamp("reservationTime"),
+                    rs.getInt("NumOfDin"),
+                    rs.getString("Status"),
+                    rs.getInt("CustomerId"),
+                    rs.getTimestamp("arrivalTime"),
+                    rs.getString("PhoneNum"),
+                    rs.getString("Email")
+                );
+            }
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package Server;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * VirtualThreads
+ * --------------
+ * Small helper that creates virtual thread factories when the running
+ * JVM supports them (Java 21 and later).
+ *
+ * The factory is looked up by reflection so the server still compiles
+ * and runs on older JVMs; there {@link #factory(String)} returns null
+ * and the caller falls back to platform threads.
+ */
+public final class VirtualThreads {
+
+    /** Utility class - no instances. */
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns true if the JVM can create virtual threads.
+     *
+     * @return true on Java 21 and later
+     */
+    public static boolean isSupported() {
+        return factory("probe-") != null;
+    }
+
+    /**
+     * Creates a factory for virtual threads named prefix0, prefix1, ...
+     *
+     * @param prefix thread name prefix
+     * @return the factory, or null if virtual threads are not available
+     */
+    public static ThreadFactory factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) ofVirtual.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package server_gui;
 
 import Server.DBController;
+import Server.ServerLog;
 import Server.ServerUI;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -10,6 +13,7 @@ import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 /** 
  * ServerPortFrameController
@@ -48,6 +52,22 @@ public class ServerPortFrameController {
     @FXML
     private Label dbStatusLabel;
 
+    /** Label that displays the connection pool counters */
+    @FXML
+    private Label poolStatsLabel;
+
+    /** Refreshes the connection pool counters every few seconds */
+    private Timeline poolStatsRefresh;
+
+    /** Moves new log lines from ServerLog into the log area */
+    private Timeline logRefresh;
+
+    /** Sequence number of the last log line shown */
+    private long lastLogSeq;
+
+    /** Number of lines currently in the log area */
+    private int logLines;
+
     /** Label that displays the server IP address */
     @FXML
     private Label serverIpLabel;
@@ -81,9 +101,14 @@ public class ServerPortFrameController {
         serverPortLabel.setText("Server Port: " + ServerUI.DEFAULT_PORT);
 
         dbStatusLabel.setText("DB Status: Not connected");
+        poolStatsLabel.setText("DB Pool: -");
         serverIpLabel.setText("Server IP: -");
         serverHostLabel.setText("Server Host: -");
         Platform.runLater(() -> dbPasswordField.requestFocus());
+
+        logRefresh = new Timeline(new KeyFrame(Duration.millis(250), e -> showNewLogLines()));
+        logRefresh.setCycleCount(Timeline.INDEFINITE);
+        logRefresh.play();
     }
 
     /**
@@ -107,7 +132,9 @@ public class ServerPortFrameController {
     private void onStartServerClick(ActionEvent event) {
     	
     	// Clear previous logs to keep output clean
+    	ServerLog.clearGui();
     	logArea.clear();
+    	logLines = 0;
 
         String p = portxt.getText().trim();
         int port = ServerUI.DEFAULT_PORT;
@@ -158,6 +185,7 @@ public class ServerPortFrameController {
         // DB connection successful
         setDbStatus("Connected");
         appendLog("DB connected successfully.");
+        startPoolStatsRefresh();
 
         // Start server
         ServerUI.runServer(port);
@@ -203,6 +231,23 @@ public class ServerPortFrameController {
         );
     }
 
+    /**
+     * Starts showing the connection pool counters, refreshed every 2 seconds:
+     * connections in use, idle and open, requests waiting, timeouts, broken
+     * connections closed, connections held too long, connections taken back
+     * and prepared statement cache hits.
+     */
+    private void startPoolStatsRefresh() {
+        if (poolStatsRefresh == null) {
+            poolStatsRefresh = new Timeline(new KeyFrame(Duration.seconds(2), e -> {
+                String stats = DBController.getPoolStats();
+                poolStatsLabel.setText("DB Pool: " + (stats == null ? "-" : stats));
+            }));
+            poolStatsRefresh.setCycleCount(Timeline.INDEFINITE);
+        }
+        poolStatsRefresh.play();
+    }
+
     /**
      * Updates server information labels in the GUI.
      *
@@ -224,12 +269,36 @@ public class ServerPortFrameController {
      *
      * This method is used to display server events,
      * errors, and status messages in real time.
+     * The message goes through ServerLog and appears with the next refresh,
+     * so it may be called from any thread, as often as needed.
      *
      * @param msg The message to append to the log
      */
     public void appendLog(String msg) {
-        Platform.runLater(() ->
-            logArea.appendText(msg + "\n")
-        );
+        ServerLog.gui(msg);
+    }
+
+    /**
+     * Shows the log lines added since the last refresh. The log area keeps
+     * at most the lines ServerLog keeps; beyond that it is rebuilt from them.
+     */
+    private void showNewLogLines() {
+        StringBuilder sb = new StringBuilder();
+        long seq = ServerLog.appendGuiLines(lastLogSeq, sb);
+        if (seq == lastLogSeq) return;
+
+        int added = (int) Math.min(seq - lastLogSeq, Integer.MAX_VALUE);
+        lastLogSeq = seq;
+
+        if (logLines + added > ServerLog.guiCapacity()) {
+            sb.setLength(0);
+            ServerLog.appendGuiLines(0, sb);
+            logArea.setText(sb.toString());
+            logArea.positionCaret(logArea.getLength());
+            logLines = ServerLog.guiCapacity();
+        } else {
+            logArea.appendText(sb.toString());
+            logLines += added;
+        }
     }
 }
@@ -1,7 +1,17 @@
 package server_repositries;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Server.MySQLConnectionPool;
+import Server.PooledConnection;
+import Server.ServerConfig;
+import Server.ServerLog;
 
 /**
  * Repository responsible for managing reservation confirmation codes.
@@ -9,6 +19,18 @@ import java.util.Random;
  * This class allocates unique confirmation codes and marks them as
  * in use in the database, and also allows freeing codes when they
  * are no longer needed.
+ *
+ * Codes are reserved in blocks: one statement marks a block of free codes
+ * (or newly generated ones) as reserved by this server (in_use = 2,
+ * reserved_by = block token) and the codes are then handed out from memory.
+ * Handing out a code only updates its own row, so bookings no longer queue
+ * on the first free row of conf_codes. Block tokens start with
+ * {@link ServerConfig#INSTANCE_ID}, so servers sharing the database never
+ * get the same code and a restarted server can give back the codes it had
+ * reserved but not used.
+ *
+ * in_use values: 0 = free, 1 = used by a reservation or waitlist entry,
+ * 2 = reserved by a server.
  */
 public class ConfCodeRepository {
 
@@ -18,10 +40,64 @@ public class ConfCodeRepository {
      */
     private ConfCodeRepository() {}
 
+    private static final ServerLog.Category LOG = ServerLog.category("codes");
+
+    /** MySQL error code of an unknown column. */
+    private static final int ER_BAD_FIELD = 1054;
+
+    /** Codes reserved by this server and not handed out yet. */
+    private static final ConcurrentLinkedQueue<Integer> reserved = new ConcurrentLinkedQueue<>();
+
+    /** Number of the next block, part of its token. */
+    private static final AtomicLong blockSeq = new AtomicLong(System.currentTimeMillis());
+
+    /** Only one thread reserves a new block at a time. */
+    private static final Object refillLock = new Object();
+
+    /** Set when conf_codes has no reserved_by column: blocks are not used. */
+    private static volatile boolean blocksUnsupported = false;
+
     
     /**
      * Allocates a confirmation code.
      *
+     * The code is taken from the block reserved in memory (a new block is
+     * reserved when it is empty) and marked as in use within the caller's
+     * transaction. If blocks are disabled or cannot be reserved, the code is
+     * allocated directly with {@link #allocateDirect(Connection)}.
+     *
+     * @param conn active database connection
+     * @return allocated confirmation code
+     * @throws SQLException if a database error occurs or no code can be allocated
+     */
+    public static int allocate(Connection conn) throws SQLException {
+        if (ServerConfig.CONF_CODE_BLOCK > 0 && !blocksUnsupported) {
+            String take =
+                "UPDATE schema_for_project.conf_codes SET in_use = 1, reserved_by = NULL " +
+                "WHERE code = ? AND in_use = 2";
+
+            for (int tries = 0; tries < 3; tries++) {
+                Integer code = reserved.poll();
+                if (code == null) {
+                    refill();
+                    code = reserved.poll();
+                    if (code == null) break;
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(take)) {
+                    ps.setInt(1, code);
+                    if (ps.executeUpdate() == 1) return code;
+                }
+                // Not reserved any more (given back by a restart of a server with the same id)
+            }
+        }
+
+        return allocateDirect(conn);
+    }
+
+    /**
+     * Allocates a confirmation code with one row lock on conf_codes.
+     *
      * The method first attempts to reuse an existing free code from the database.
      * If none are available, it generates a new random code and inserts it.
      * The allocated code is marked as in use.
@@ -30,7 +106,7 @@ public class ConfCodeRepository {
      * @return allocated confirmation code
      * @throws SQLException if a database error occurs or no code can be allocated
      */
-    public static int allocate(Connection conn) throws SQLException {
+    private static int allocateDirect(Connection conn) throws SQLException {
 
         String pickFree =
             "SELECT code FROM schema_for_project.conf_codes " +
@@ -83,4 +159,142 @@ public class ConfCodeRepository {
             ps.executeUpdate();
         }
     }
+
+    /**
+     * Frees several confirmation codes with one statement.
+     *
+     * @param conn active database connection
+     * @param codes confirmation codes to free
+     * @throws SQLException if a database error occurs
+     */
+    public static void freeAll(Connection conn, Collection<Integer> codes) throws SQLException {
+        if (codes.isEmpty()) return;
+
+        StringBuilder sql = new StringBuilder(
+                "UPDATE schema_for_project.conf_codes SET in_use = 0 WHERE code IN (");
+        for (int i = 0; i < codes.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (Integer code : codes) ps.setInt(i++, code);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Gives back the codes this server reserved but did not hand out: the
+     * rest of the current block, and blocks left by a previous run that
+     * stopped without giving them back. Called when the server starts and
+     * when it stops.
+     *
+     * @param conn active database connection
+     * @return number of codes given back
+     * @throws SQLException if a database error occurs
+     */
+    public static int releaseReserved(Connection conn) throws SQLException {
+        if (ServerConfig.CONF_CODE_BLOCK <= 0 || blocksUnsupported) return 0;
+
+        synchronized (refillLock) {
+            reserved.clear();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE schema_for_project.conf_codes SET in_use = 0, reserved_by = NULL " +
+                    "WHERE in_use = 2 AND reserved_by LIKE ?")) {
+                ps.setString(1, ServerConfig.INSTANCE_ID + ":%");
+                return ps.executeUpdate();
+            } catch (SQLException ex) {
+                if (ex.getErrorCode() != ER_BAD_FIELD) throw ex;
+                disableBlocks();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Reserves a new block of codes if the current one is empty. Runs on its
+     * own connection and commits at once, so a booking that rolls back never
+     * gives back codes that are already in memory. Does nothing if no
+     * connection is free; allocate() then takes a code directly.
+     */
+    private static void refill() {
+        synchronized (refillLock) {
+            if (!reserved.isEmpty() || blocksUnsupported) return;
+
+            int size = ServerConfig.CONF_CODE_BLOCK;
+            String token = ServerConfig.INSTANCE_ID + ":" + blockSeq.incrementAndGet();
+
+            PooledConnection pc = null;
+            try {
+                // The caller holds a connection already: never wait for a second one
+                pc = MySQLConnectionPool.getInstance().tryGetConnection();
+                if (pc == null) return;
+                Connection conn = pc.getConnection();
+
+                boolean oldAuto = conn.getAutoCommit();
+                conn.setAutoCommit(true);
+                try {
+                    // 1) reuse free codes
+                    int got;
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "UPDATE schema_for_project.conf_codes SET in_use = 2, reserved_by = ? " +
+                            "WHERE in_use = 0 LIMIT ?")) {
+                        ps.setString(1, token);
+                        ps.setInt(2, size);
+                        got = ps.executeUpdate();
+                    }
+
+                    // 2) then new random codes; the ones already taken are skipped
+                    if (got < size) {
+                        insertNewCodes(conn, token, size - got);
+                    }
+
+                    List<Integer> codes = new ArrayList<>();
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "SELECT code FROM schema_for_project.conf_codes WHERE reserved_by = ? AND in_use = 2")) {
+                        ps.setString(1, token);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) codes.add(rs.getInt("code"));
+                        }
+                    }
+                    reserved.addAll(codes);
+                } finally {
+                    conn.setAutoCommit(oldAuto);
+                }
+
+            } catch (SQLException ex) {
+                if (ex.getErrorCode() == ER_BAD_FIELD) {
+                    disableBlocks();
+                } else {
+                    LOG.warn("Confirmation code block not reserved: " + ex.getMessage());
+                }
+            } finally {
+                if (pc != null) MySQLConnectionPool.getInstance().releaseConnection(pc);
+            }
+        }
+    }
+
+    /**
+     * Inserts random new codes reserved under a block token, with one statement.
+     */
+    private static void insertNewCodes(Connection conn, String token, int count) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "INSERT IGNORE INTO schema_for_project.conf_codes (code, in_use, reserved_by) VALUES ");
+        for (int i = 0; i < count; i++) sql.append(i == 0 ? "(?, 2, ?)" : ", (?, 2, ?)");
+
+        Random rnd = new Random();
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < count; i++) {
+                ps.setInt(2 * i + 1, 100000 + rnd.nextInt(900000));
+                ps.setString(2 * i + 2, token);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    private static void disableBlocks() {
+        if (!blocksUnsupported) {
+            blocksUnsupported = true;
+            LOG.warn("conf_codes has no reserved_by column, codes are allocated one by one.");
+        }
+    }
 }
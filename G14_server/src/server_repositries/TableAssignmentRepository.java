@@ -2,6 +2,8 @@ package server_repositries;
 
 import java.sql.*;
 
+import Server.BookingLocks;
+
 /**
  * Repository responsible for assigning tables to reservations and waitlist entries.
  * Handles table release events, priority rules, waitlist offers, expirations,
@@ -138,12 +140,18 @@ public class TableAssignmentRepository {
         int seats = TableRepository.getSeats(con, tableNum);
         if (seats <= 0) return null;
 
-        // Priority #1: pre-booked reservations.
-        Result r1 = tryAssignReservation(con, tableNum, seats);
-        if (r1 != null) return r1;
-
-        // Priority #2: waiting list (FIFO with automatic skipping via diners<=seats).
-        return tryOfferWaitlist(con, tableNum, seats);
+        // Kept until the caller commits (its BookingLocks scope), so a booking of this table sees the assignment
+        BookingLocks.Held held = BookingLocks.getInstance().lockNow(tableNum);
+        try {
+            // Priority #1: pre-booked reservations.
+            Result r1 = tryAssignReservation(con, tableNum, seats);
+            if (r1 != null) return r1;
+
+            // Priority #2: waiting list (FIFO with automatic skipping via diners<=seats).
+            return tryOfferWaitlist(con, tableNum, seats);
+        } finally {
+            held.close();
+        }
     }
     
     /**
@@ -608,6 +616,20 @@ public class TableAssignmentRepository {
             }
         }
 
+        // Kept until the caller commits (its BookingLocks scope)
+        BookingLocks.Held held = BookingLocks.getInstance().lockNow(tableNum);
+        try {
+            return seatArrival(con, confCode, resId, tableNum);
+        } finally {
+            held.close();
+        }
+    }
+
+    /**
+     * Reserves the table found for an arriving reservation and records the
+     * arrival on it. Called with the booking lock of the table held.
+     */
+    private static Object[] seatArrival(Connection con, int confCode, int resId, int tableNum) throws SQLException {
         // Reserve the table atomically using TableRepository
         if (!server_repositries.TableRepository.reserve(con, tableNum)) {
             return new Object[]{ "השולחן נתפס כרגע ע\"י לקוח אחר או שהוא כבר תפוס. נסי שוב.", -1 };
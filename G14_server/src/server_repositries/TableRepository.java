@@ -52,7 +52,7 @@ public class TableRepository {
 
 
 	/**
-     * Retrieves the number of seats for a specific table.
+     * Retrieves the number of seats for a specific table from the table catalog.
      *
      * @param con active database connection
      * @param tableNum table number
@@ -60,14 +60,7 @@ public class TableRepository {
      * @throws SQLException if a database error occurs
      */
     public static int getSeats(Connection con, int tableNum) throws SQLException {
-        String sql = "SELECT Seats FROM schema_for_project.`table` WHERE TableNum=?";
-        try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setInt(1, tableNum);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return -1;
-                return rs.getInt("Seats");
-            }
-        }
+        return Server.TableCatalog.get(con).getSeats(tableNum);
     }
 
     /**
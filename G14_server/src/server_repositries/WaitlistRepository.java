@@ -2,7 +2,10 @@ package server_repositries;
 
 import java.sql.*;
 
+import Server.BookingLocks;
+import Server.CustomerIdentityCache;
 import Server.OrdersRepository;
+import Server.TableCatalog;
 import entities.WaitlistJoinResult;
 import entities.WaitlistStatus;
 import server_repositries.TableRepository;
@@ -54,32 +57,8 @@ public class WaitlistRepository {
             //Attempt immediate seating without affecting existing reservations
             Integer tableNum = findFreeTableNowNoReservationConflict(con, diners);
             if (tableNum != null) {
-
-            	// Reserve the table atomically (set isOccupied = 1)
-                if (!TableRepository.reserve(con, tableNum)) {
-                	// Table was taken by another process, continue to WAITING flow
-                    tableNum = null;
-                } else {
-                    try {
-                    	int resId = insertImmediateSeatedReservation(con, costumerId, diners, confCode, tableNum);
-
-                    	// ✅ יצירת payment OPEN להזמנה שהושבה עכשיו
-                    	OrdersRepository.ensureOpenPaymentExists(con, resId, confCode);
-
-                    	return new WaitlistJoinResult(
-                    	    WaitlistStatus.SEATED_NOW,
-                    	    confCode,
-                    	    tableNum,
-                    	    "Table is available now. Please proceed to table " + tableNum + "."
-                    	);
-
-
-                    } catch (SQLException e) {
-                    	 // If insertion fails, release the table back to available
-                        TableRepository.release(con, tableNum);
-                        throw e;
-                    }
-                }
+                WaitlistJoinResult seated = seatNow(con, costumerId, diners, confCode, tableNum);
+                if (seated != null) return seated;
             }
 
             // No immediate table available – add to WAITING list
@@ -139,30 +118,8 @@ public class WaitlistRepository {
             // Attempt immediate seating without affecting existing reservations
             Integer tableNum = findFreeTableNowNoReservationConflict(con, diners);
             if (tableNum != null) {
-
-            	// Reserve the table atomically
-                if (!TableRepository.reserve(con, tableNum)) {
-                    tableNum = null;
-                } else {
-                    try {
-                    	int resId = insertImmediateSeatedReservation(con, costumerId, diners, confCode, tableNum);
-
-                    	// ✅ יצירת payment OPEN להזמנה שהושבה עכשיו
-                    	OrdersRepository.ensureOpenPaymentExists(con, resId, confCode);
-
-                    	return new WaitlistJoinResult(
-                    	    WaitlistStatus.SEATED_NOW,
-                    	    confCode,
-                    	    tableNum,
-                    	    "Table is available now. Please proceed to table " + tableNum + "."
-                    	);
-
-
-                    } catch (SQLException e) {
-                        TableRepository.release(con, tableNum);
-                        throw e;
-                    }
-                }
+                WaitlistJoinResult seated = seatNow(con, costumerId, diners, confCode, tableNum);
+                if (seated != null) return seated;
             }
 
             //No immediate table available – add to WAITING list
@@ -303,18 +260,7 @@ public class WaitlistRepository {
      * @throws SQLException if a database error occurs
      */
     private static Integer getCostumerIdBySubscriber(Connection con, int subscriberId) throws SQLException {
-        String sql =
-            "SELECT CostumerId FROM schema_for_project.subscriber " +
-            "WHERE subscriberId=?";
-
-        try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setInt(1, subscriberId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                Object v = rs.getObject("CostumerId");
-                return (v == null) ? null : rs.getInt("CostumerId");
-            }
-        }
+        return CustomerIdentityCache.getInstance().findBySubscriber(con, subscriberId);
     }
 
 
@@ -328,18 +274,7 @@ public class WaitlistRepository {
      * @throws SQLException if a database error occurs
      */
     private static Integer getCostumerIdByEmailPhone(Connection con, String email, String phone) throws SQLException {
-        String sql =
-            "SELECT CostumerId FROM schema_for_project.costumer " +
-            "WHERE Email=? AND PhoneNum=?";
-
-        try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setString(1, email);
-            ps.setString(2, phone);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                return rs.getInt("CostumerId");
-            }
-        }
+        return CustomerIdentityCache.getInstance().findByPhoneAndEmail(con, phone, email);
     }
 
     /**
@@ -405,16 +340,7 @@ public class WaitlistRepository {
      * @throws SQLException if a database error occurs
      */
     private static int getMaxActiveTableSeats(Connection con) throws SQLException {
-        String sql =
-            "SELECT COALESCE(MAX(Seats), 0) AS maxSeats " +
-            "FROM schema_for_project.`table` " +
-            "WHERE isActive = 1";
-
-        try (PreparedStatement ps = con.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            if (!rs.next()) return 0;
-            return rs.getInt("maxSeats");
-        }
+        return TableCatalog.get(con).getMaxActiveSeats();
     }
     
     /**
@@ -425,15 +351,7 @@ public class WaitlistRepository {
      * @throws SQLException if a database error occurs
      */
     private static int getMaxTableSeats(Connection con) throws SQLException {
-        String sql =
-            "SELECT MAX(Seats) AS maxSeats " +
-            "FROM schema_for_project.table ";
-
-        try (PreparedStatement ps = con.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            if (!rs.next()) return 0;
-            return rs.getInt("maxSeats");
-        }
+        return TableCatalog.get(con).getMaxSeats();
     }
     
     /**
@@ -475,6 +393,49 @@ public class WaitlistRepository {
     }
 
 
+    /**
+     * Seats a party at a free table right away: reserves the table and inserts
+     * the seated reservation with its open payment. Holds the booking lock of
+     * the table, which the caller keeps until its commit (BookingLocks scope),
+     * so a concurrent booking of the table sees the new reservation.
+     *
+     * @param con active database connection
+     * @param costumerId customer identifier
+     * @param diners number of diners
+     * @param confCode confirmation code
+     * @param tableNum free table found for the party
+     * @return the SEATED_NOW result, or null if the table was taken meanwhile
+     * @throws SQLException if a database error occurs
+     */
+    private static WaitlistJoinResult seatNow(Connection con, int costumerId, int diners, int confCode, int tableNum) throws SQLException {
+        BookingLocks.Held held = BookingLocks.getInstance().lockNow(tableNum);
+        try {
+            // Reserve the table atomically (set isOccupied = 1)
+            if (!TableRepository.reserve(con, tableNum)) {
+                // Table was taken by another process, continue to WAITING flow
+                return null;
+            }
+
+            try {
+                int resId = insertImmediateSeatedReservation(con, costumerId, diners, confCode, tableNum);
+                OrdersRepository.ensureOpenPaymentExists(con, resId, confCode);
+            } catch (SQLException e) {
+                // If insertion fails, release the table back to available
+                TableRepository.release(con, tableNum);
+                throw e;
+            }
+
+            return new WaitlistJoinResult(
+                WaitlistStatus.SEATED_NOW,
+                confCode,
+                tableNum,
+                "Table is available now. Please proceed to table " + tableNum + "."
+            );
+        } finally {
+            held.close();
+        }
+    }
+
     /**
      * Inserts a reservation for a customer who is seated immediately
      * from the waiting list.
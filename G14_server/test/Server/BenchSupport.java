@@ -0,0 +1,70 @@
+package Server;
+
+import java.util.Arrays;
+
+/**
+ * BenchSupport
+ * ------------
+ * Small helpers shared by the load tests and benchmarks of this folder.
+ */
+final class BenchSupport {
+
+    private BenchSupport() {
+    }
+
+    /**
+     * Growable list of latencies in nanoseconds. Not thread safe: each
+     * thread records into its own and they are merged at the end.
+     */
+    static final class Latencies {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.size; i++) add(other.values[i]);
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * Returns "p50=.. p99=.. max=.. ms" (sorts the values).
+         */
+        String summary() {
+            if (size == 0) return "p50=- p99=- max=-";
+            Arrays.sort(values, 0, size);
+            return "p50=" + ms(percentile(0.50)) + " p99=" + ms(percentile(0.99))
+                    + " max=" + ms(values[size - 1]) + " ms";
+        }
+
+        long percentile(double p) {
+            int i = (int) Math.ceil(p * size) - 1;
+            return values[Math.max(0, Math.min(size - 1, i))];
+        }
+    }
+
+    /** Formats nanoseconds as milliseconds with two decimals. */
+    static String ms(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+
+    /** Burns CPU for about the given time, like request parsing and building a response. */
+    static long spin(long micros) {
+        long end = System.nanoTime() + micros * 1000;
+        long x = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 100; i++) x = x * 31 + i;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,272 @@
+package Server;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BookingLocksStressTest
+ * ----------------------
+ * Concurrent booking stress test of {@link BookingLocks}, without a database.
+ *
+ * Worker threads book 2-hour slots of a few tables over two days (so some
+ * bookings cross midnight) with the same sequence createReservation uses:
+ * lock the (date, table) stripes, check the table is free, insert, commit,
+ * unlock. The "database" is a map of committed bookings; an insert only
+ * becomes visible at commit, after a pause that widens the race.
+ *
+ * The threads mix three kinds of work:
+ * - single bookings that commit before unlocking (createReservation), and
+ *   cancellations that keep the tables from filling up,
+ * - transactions that book two tables inside a {@link BookingLocks.Scope}
+ *   and commit after both (a DBController transaction or a transactional
+ *   unit of work); the second lock may fail with BOOKING_BUSY,
+ * - an admin thread that moves bookings between tables under
+ *   {@link BookingLocks#lockAll()}, like revalidateFutureReservations.
+ *
+ * The test passes when no two committed bookings of a table overlap and
+ * every thread finished (no deadlock). A control run without locks is
+ * reported too: it should find overlaps, which shows the check works.
+ *
+ * Run: java -cp &lt;server classes&gt; Server.BookingLocksStressTest [threads] [attemptsPerThread]
+ * Exits with status 1 on failure.
+ */
+public final class BookingLocksStressTest {
+
+    private static final int TABLES = 6;
+    private static final int SLOTS = 2 * 48;
+    private static final LocalDateTime BASE = LocalDate.now().plusDays(3).atStartOfDay();
+
+    /** Committed bookings per table: start slot (half hours from BASE). */
+    private final Map<Integer, List<Integer>> committed = new ConcurrentHashMap<>();
+
+    private final boolean useLocks;
+    private final AtomicLong booked = new AtomicLong();
+    private final AtomicLong taken = new AtomicLong();
+    private final AtomicLong busy = new AtomicLong();
+    private final AtomicLong moved = new AtomicLong();
+    private final AtomicLong canceled = new AtomicLong();
+
+    private BookingLocksStressTest(boolean useLocks) {
+        this.useLocks = useLocks;
+        for (int t = 1; t <= TABLES; t++) {
+            committed.put(t, Collections.synchronizedList(new ArrayList<>()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int attempts = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+
+        // Transactions that lock out of order give up quickly instead of waiting the server default
+        if (System.getProperty("bistro.booking.lockWaitMs") == null) {
+            System.setProperty("bistro.booking.lockWaitMs", "20");
+        }
+
+        BookingLocksStressTest control = new BookingLocksStressTest(false);
+        control.run(threads, attempts);
+        System.out.println("Control run without locks: " + control.overlaps() + " overlapping bookings");
+
+        BookingLocksStressTest test = new BookingLocksStressTest(true);
+        boolean finished = test.run(threads, attempts);
+        int overlaps = test.overlaps();
+
+        System.out.println("With locks: threads=" + threads + " attempts=" + (threads * attempts)
+                + " booked=" + test.booked + " tableTaken=" + test.taken + " busy=" + test.busy
+                + " canceled=" + test.canceled + " moved=" + test.moved + " overlaps=" + overlaps);
+        System.out.println(BookingLocks.getInstance().getStats());
+
+        if (!finished || overlaps > 0) {
+            System.out.println("FAILED" + (finished ? "" : ": threads did not finish (deadlock?)"));
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    private boolean run(int threads, int attempts) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        for (int i = 0; i < threads; i++) {
+            final boolean transactions = (i % 2 == 1);
+            pool.execute(() -> {
+                for (int n = 0; n < attempts; n++) {
+                    try {
+                        if (transactions) bookTwoInScope(); else bookOne();
+                    } catch (SQLException e) {
+                        if (!"BOOKING_BUSY".equals(e.getMessage())) throw new IllegalStateException(e);
+                        busy.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.execute(() -> {
+            for (int n = 0; n < attempts / 10; n++) {
+                try {
+                    moveBookings();
+                } catch (SQLException e) {
+                    busy.incrementAndGet();
+                }
+            }
+        });
+        pool.shutdown();
+        return pool.awaitTermination(5, TimeUnit.MINUTES);
+    }
+
+    /** One booking, committed before its lock is released. */
+    private void bookOne() throws SQLException {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int table = 1 + rnd.nextInt(TABLES);
+        int slot = rnd.nextInt(SLOTS - 4);
+
+        BookingLocks.Held held = lock(table, slot);
+        try {
+            if (isFree(table, slot)) {
+                pause();
+                commit(table, slot);
+            } else {
+                taken.incrementAndGet();
+            }
+        } finally {
+            if (held != null) held.close();
+        }
+
+        // Cancellations do not lock: they only free tables, and keep the tables from filling up
+        if (rnd.nextInt(3) == 0) cancel(1 + rnd.nextInt(TABLES));
+    }
+
+    /** Two bookings in one transaction: the locks stay held until both are committed. */
+    private void bookTwoInScope() throws SQLException {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        List<int[]> pending = new ArrayList<>();
+
+        BookingLocks.Scope scope = useLocks ? BookingLocks.beginScope() : null;
+        try {
+            for (int k = 0; k < 2; k++) {
+                int table = 1 + rnd.nextInt(TABLES);
+                int slot = rnd.nextInt(SLOTS - 4);
+
+                BookingLocks.Held held = lock(table, slot);
+                try {
+                    if (isFree(table, slot) && !conflicts(pending, table, slot)) {
+                        pending.add(new int[] { table, slot });
+                    } else {
+                        taken.incrementAndGet();
+                    }
+                } finally {
+                    if (held != null) held.close();
+                }
+            }
+            pause();
+            for (int[] b : pending) commit(b[0], b[1]);
+        } finally {
+            if (scope != null) scope.close();
+        }
+    }
+
+    /** Moves a few bookings to another free table, all under every lock. */
+    private void moveBookings() throws SQLException {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        BookingLocks.Scope scope = useLocks ? BookingLocks.beginScope() : null;
+        try {
+            BookingLocks.Held all = useLocks ? BookingLocks.getInstance().lockAll() : null;
+            try {
+                for (int k = 0; k < 5; k++) {
+                    int from = 1 + rnd.nextInt(TABLES);
+                    List<Integer> list = committed.get(from);
+                    Integer slot;
+                    synchronized (list) {
+                        if (list.isEmpty()) continue;
+                        slot = list.get(rnd.nextInt(list.size()));
+                    }
+                    int to = 1 + rnd.nextInt(TABLES);
+                    if (to == from || !isFree(to, slot)) continue;
+                    pause();
+                    list.remove(slot);
+                    commit(to, slot);
+                    moved.incrementAndGet();
+                }
+            } finally {
+                if (all != null) all.close();
+            }
+        } finally {
+            if (scope != null) scope.close();
+        }
+    }
+
+    private BookingLocks.Held lock(int table, int slot) throws SQLException {
+        if (!useLocks) return null;
+        return BookingLocks.getInstance().lock(table, time(slot), time(slot + 4));
+    }
+
+    private boolean isFree(int table, int slot) {
+        List<Integer> list = committed.get(table);
+        synchronized (list) {
+            for (int s : list) {
+                if (Math.abs(s - slot) < 4) return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean conflicts(List<int[]> pending, int table, int slot) {
+        for (int[] b : pending) {
+            if (b[0] == table && Math.abs(b[1] - slot) < 4) return true;
+        }
+        return false;
+    }
+
+    private void cancel(int table) {
+        List<Integer> list = committed.get(table);
+        synchronized (list) {
+            if (list.isEmpty()) return;
+            list.remove(ThreadLocalRandom.current().nextInt(list.size()));
+        }
+        canceled.incrementAndGet();
+    }
+
+    private void commit(int table, int slot) {
+        committed.get(table).add(slot);
+        booked.incrementAndGet();
+    }
+
+    private int overlaps() {
+        int n = 0;
+        for (List<Integer> list : committed.values()) {
+            List<Integer> sorted = new ArrayList<>(list);
+            Collections.sort(sorted);
+            for (int i = 1; i < sorted.size(); i++) {
+                if (sorted.get(i) - sorted.get(i - 1) < 4) n++;
+            }
+        }
+        return n;
+    }
+
+    private static Timestamp time(int slot) {
+        return Timestamp.valueOf(BASE.plusMinutes(30L * slot));
+    }
+
+    /** Gives other threads a chance to run between the check and the commit. */
+    private static void pause() {
+        if (ThreadLocalRandom.current().nextInt(4) == 0) {
+            try {
+                Thread.sleep(0, 200_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            Thread.yield();
+        }
+    }
+}
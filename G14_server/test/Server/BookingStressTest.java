@@ -0,0 +1,171 @@
+package Server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import entities.CreateReservationRequest;
+import entities.Reservation;
+
+/**
+ * BookingStressTest
+ * -----------------
+ * Concurrent booking stress test against MySQL: many threads call
+ * {@link DBController#createReservation} for the same day and party sizes,
+ * the way concurrent dispatch runs them, and the test then checks that no
+ * two live reservations of a table overlap.
+ *
+ * The bookings are made on the first open day at least two days ahead, for
+ * one test customer, and are canceled (and their confirmation codes freed)
+ * at the end. Run it against a copy of the database, not the live one.
+ *
+ * Run: java -Dbistro.test.dbUser=root -Dbistro.test.dbPassword=... \
+ *          -cp &lt;server classes and lib/*&gt; Server.BookingStressTest [threads] [attemptsPerThread]
+ * Exits with status 1 when overlapping reservations are found.
+ */
+public final class BookingStressTest {
+
+    private static final String PHONE = "0500000000";
+    private static final String EMAIL = "booking-stress@bistro.test";
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int attempts = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        DBController.configure(System.getProperty("bistro.test.dbUser", "root"),
+                System.getProperty("bistro.test.dbPassword", ""));
+        if (!DBController.initPool()) {
+            System.out.println("FAILED: no database connection");
+            System.exit(1);
+        }
+
+        MySQLConnectionPool pool = MySQLConnectionPool.getInstance();
+        LocalDate day;
+        OpeningWindow win;
+        PooledConnection pc = pool.getConnection();
+        try {
+            day = LocalDate.now().plusDays(2);
+            win = OpeningHoursCache.getInstance().get(pc.getConnection(), day);
+            while (win.isClosed && day.isBefore(LocalDate.now().plusDays(30))) {
+                day = day.plusDays(1);
+                win = OpeningHoursCache.getInstance().get(pc.getConnection(), day);
+            }
+        } finally {
+            pool.releaseConnection(pc);
+        }
+        if (win.isClosed) {
+            System.out.println("FAILED: no open day in the next 30 days");
+            System.exit(1);
+        }
+
+        // Half-hour starts of the day that end before closing
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (LocalDateTime t = day.atTime(win.openTime); !t.plusHours(2).isAfter(day.atTime(win.closeTime)); t = t.plusMinutes(30)) {
+            starts.add(t);
+        }
+
+        ConcurrentLinkedQueue<Reservation> created = new ConcurrentLinkedQueue<>();
+        Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+
+        long t0 = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.execute(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int n = 0; n < attempts; n++) {
+                    LocalDateTime start = starts.get(rnd.nextInt(starts.size()));
+                    CreateReservationRequest req = new CreateReservationRequest(null, PHONE, EMAIL,
+                            Timestamp.valueOf(start), 1 + rnd.nextInt(4));
+                    try {
+                        created.add(DBController.createReservation(req));
+                    } catch (Exception e) {
+                        String code = (e.getMessage() == null) ? e.getClass().getSimpleName() : e.getMessage();
+                        failures.computeIfAbsent(code, k -> new AtomicInteger()).incrementAndGet();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        boolean finished = workers.awaitTermination(10, TimeUnit.MINUTES);
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+
+        int overlaps;
+        pc = pool.getConnection();
+        try {
+            Connection conn = pc.getConnection();
+            overlaps = countOverlaps(conn, day);
+            cleanUp(conn, created);
+        } finally {
+            pool.releaseConnection(pc);
+        }
+
+        System.out.println("Day " + day + ": threads=" + threads + " attempts=" + (threads * attempts)
+                + " booked=" + created.size() + " in " + ms + " ms, failures=" + new TreeMap<>(failures));
+        System.out.println(BookingLocks.getInstance().getStats());
+        System.out.println("Overlapping reservations: " + overlaps);
+
+        DBController.shutdownPool();
+        if (!finished || overlaps > 0) {
+            System.out.println("FAILED" + (finished ? "" : ": bookings did not finish"));
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    /**
+     * Counts pairs of live reservations of the same table whose 2-hour
+     * windows overlap on the given day.
+     */
+    private static int countOverlaps(Connection conn, LocalDate day) throws SQLException {
+        String sql =
+            "SELECT COUNT(*) " +
+            "FROM schema_for_project.reservation a " +
+            "JOIN schema_for_project.reservation b " +
+            "  ON a.TableNum = b.TableNum AND a.ResId < b.ResId " +
+            "WHERE a.Status NOT IN ('CANCELED','DONE') " +
+            "  AND b.Status NOT IN ('CANCELED','DONE') " +
+            "  AND DATE(a.reservationTime) = ? " +
+            "  AND a.reservationTime < DATE_ADD(b.reservationTime, INTERVAL 2 HOUR) " +
+            "  AND b.reservationTime < DATE_ADD(a.reservationTime, INTERVAL 2 HOUR)";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, java.sql.Date.valueOf(day));
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /** Cancels the test reservations and frees their confirmation codes. */
+    private static void cleanUp(Connection conn, Iterable<Reservation> created) throws SQLException {
+        List<Integer> codes = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE schema_for_project.reservation SET Status='CANCELED', TableNum=NULL WHERE ResId=?")) {
+            for (Reservation r : created) {
+                ps.setInt(1, r.getResId());
+                ps.addBatch();
+                codes.add(r.getConfCode());
+            }
+            ps.executeBatch();
+        }
+        server_repositries.ConfCodeRepository.freeAll(conn, codes);
+        SlotAvailabilityIndex.getInstance().invalidate();
+    }
+}
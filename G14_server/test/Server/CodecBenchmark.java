@@ -0,0 +1,141 @@
+package Server;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import common.BistroBinaryCodec;
+import entities.ClientRequestType;
+import entities.Reservation;
+import entities.RestaurantTable;
+import entities.ServerResponseType;
+import entities.TimeReportRow;
+import entities.WaitlistRow;
+import ocsf.codec.MessageCodec;
+import ocsf.codec.SerializationCodec;
+
+/**
+ * CodecBenchmark
+ * --------------
+ * Payload size and encode/decode time of the wire codecs: Java
+ * serialization ({@link SerializationCodec}, the classic path) against
+ * {@link BistroBinaryCodec}, for the messages that matter: large lists
+ * (RESERVATIONS_LIST_ALL, TIME_REPORT_DATA, WAITLIST_LIST, TABLES_LIST) and
+ * a small request.
+ *
+ * Each measurement runs warm-up rounds first, then times encode and decode
+ * separately for about a second each. It is a plain main program, not a
+ * JMH benchmark (the tree has no JMH); numbers vary a few percent between
+ * runs, so compare them on the same machine.
+ *
+ * Run: java -cp &lt;server classes&gt; Server.CodecBenchmark [rows]
+ * Exits with status 1 if a codec does not give back the message it encoded.
+ */
+public final class CodecBenchmark {
+
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        MessageCodec[] codecs = { new SerializationCodec(), new BistroBinaryCodec() };
+        Object[][] messages = {
+            { ServerResponseType.RESERVATIONS_LIST_ALL, reservations(rows) },
+            { ServerResponseType.TIME_REPORT_DATA, timeReport(rows) },
+            { ServerResponseType.WAITLIST_LIST, waitlist(rows / 5) },
+            { ServerResponseType.TABLES_LIST, tables(30) },
+            { ClientRequestType.GET_RESERVATIONS },
+        };
+
+        boolean ok = true;
+        System.out.println(String.format("%-24s %-14s %10s %12s %12s", "message", "codec", "bytes", "encode us", "decode us"));
+        for (Object[] msg : messages) {
+            for (MessageCodec codec : codecs) {
+                byte[] data = codec.encode(msg);
+                ok &= sameShape(msg, codec.decode(data));
+
+                for (int i = 0; i < 2000; i++) sink = codec.decode(codec.encode(msg));
+
+                double encode = time(() -> sink = codec.encode(msg));
+                double decode = time(() -> sink = codec.decode(data));
+                System.out.println(String.format("%-24s %-14s %10d %12.1f %12.1f",
+                        msg[0], codec.getName(), data.length, encode, decode));
+            }
+        }
+
+        if (!ok) {
+            System.out.println("FAILED: a message did not survive encode/decode");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private interface Op {
+        void run() throws Exception;
+    }
+
+    /** Average microseconds per call over about MEASURE_NANOS. */
+    private static double time(Op op) throws Exception {
+        long calls = 0;
+        long t0 = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 50; i++) op.run();
+            calls += 50;
+            elapsed = System.nanoTime() - t0;
+        } while (elapsed < MEASURE_NANOS);
+        return elapsed / 1000.0 / calls;
+    }
+
+    /** Same envelope: same type and, for a list, the same number of rows. */
+    private static boolean sameShape(Object[] sent, Object got) {
+        if (!(got instanceof Object[])) return false;
+        Object[] back = (Object[]) got;
+        if (back.length != sent.length || back[0] != sent[0]) return false;
+        return sent.length < 2 || ((List<?>) back[1]).size() == ((List<?>) sent[1]).size();
+    }
+
+    private static ArrayList<Reservation> reservations(int n) {
+        ArrayList<Reservation> list = new ArrayList<>(n);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            list.add(new Reservation(i + 1, 1000 + i % 300, new Timestamp(now + i * 1_800_000L), 2 + i % 5,
+                    i % 7 == 0 ? "CANCELED" : "ACTIVE", i % 3 == 0 ? new Timestamp(now) : null, null,
+                    new Timestamp(now - 86_400_000L), i % 2 == 0 ? "ONLINE" : "TERMINAL",
+                    100000 + i, i % 4 == 0 ? null : 1 + i % 20, i % 2 == 0, null));
+        }
+        return list;
+    }
+
+    private static ArrayList<TimeReportRow> timeReport(int n) {
+        ArrayList<TimeReportRow> list = new ArrayList<>(n);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            Timestamp at = new Timestamp(now + i * 60_000L);
+            list.add(new TimeReportRow(i + 1, 100000 + i, i % 2 == 0 ? "RESERVATION" : "WAITLIST",
+                    at, i % 2 == 0 ? null : at, at, new Timestamp(at.getTime() + 7_200_000L), at,
+                    i % 15, 90 + i % 60, i % 20));
+        }
+        return list;
+    }
+
+    private static ArrayList<WaitlistRow> waitlist(int n) {
+        ArrayList<WaitlistRow> list = new ArrayList<>(n);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            list.add(new WaitlistRow(200000 + i, new Timestamp(now - i * 60_000L), 1 + i % 6, 2000 + i,
+                    "05" + (10000000 + i), "guest" + i + "@mail.com"));
+        }
+        return list;
+    }
+
+    private static ArrayList<RestaurantTable> tables(int n) {
+        ArrayList<RestaurantTable> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            list.add(new RestaurantTable(i + 1, 2 + 2 * (i % 4), i % 10 != 9, i % 3 == 0));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,221 @@
+package Server;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ocsf.client.AbstractClient;
+import ocsf.server.AbstractServer;
+import ocsf.server.ConnectionToClient;
+
+/**
+ * DispatchLoadTest
+ * ----------------
+ * Load test of the request dispatch modes (bistro.dispatch), without MySQL.
+ *
+ * An OCSF server answers every request the way EchoServer does: some CPU
+ * work and one query through {@link MySQLConnectionPool}, here served by
+ * {@link FakeDriver} with a fixed round trip. Every client keeps a few
+ * requests in flight and checks that the answers come back in order.
+ *
+ * The serial run handles each request inside the synchronized
+ * receiveMessageFromClient, like bistro.dispatch=serial. The concurrent
+ * runs hand the requests to a {@link RequestDispatcher} with 1, 2, 4 ...
+ * up to twice the cores worker threads. Throughput should grow with the
+ * workers until the cores (CPU part) or the pool (query part) are busy.
+ *
+ * Run: java [-Dload.cpuMicros=300] [-Dload.queryMicros=2000] \
+ *          -cp &lt;server classes&gt; Server.DispatchLoadTest [clients] [secondsPerRun]
+ * Exits with status 1 if a client got its answers out of order.
+ */
+public final class DispatchLoadTest {
+
+    /** Requests each client keeps in flight. */
+    private static final int DEPTH = 4;
+
+    private static final long CPU_MICROS = Long.getLong("load.cpuMicros", 300);
+
+    private static final AtomicLong rejected = new AtomicLong();
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        FakeDriver.register();
+        FakeDriver.queryMicros = Long.getLong("load.queryMicros", 2000);
+        MySQLConnectionPool.init(FakeDriver.URL, "u", "p",
+                ServerConfig.POOL_MAX_ACTIVE, 0, ServerConfig.POOL_ACQUIRE_TIMEOUT_MS, 60_000, 60);
+
+        System.out.println("cores=" + cores + " clients=" + clients + " inFlight=" + DEPTH
+                + " cpu=" + CPU_MICROS + "us query=" + FakeDriver.queryMicros + "us pool=" + ServerConfig.POOL_MAX_ACTIVE);
+
+        int port = 5700;
+        // Warm-up, not reported
+        run(port++, new RequestDispatcher(cores, 32), clients, 1);
+
+        boolean ordered = true;
+        Result serial = run(port++, null, clients, seconds);
+        serial.print("serial", "-");
+        ordered &= serial.ordered;
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, 2 * cores)) {
+            Result r = run(port++, new RequestDispatcher(threads, ServerConfig.DISPATCH_MAX_PENDING_PER_CLIENT),
+                    clients, seconds);
+            r.print("concurrent", String.valueOf(threads));
+            ordered &= r.ordered;
+            if (threads == 2 * cores) break;
+        }
+
+        System.out.println(MySQLConnectionPool.getInstance().getStats() + " rejected=" + rejected);
+        MySQLConnectionPool.getInstance().shutdown();
+
+        if (!ordered) {
+            System.out.println("FAILED: answers out of order");
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    private static Result run(int port, RequestDispatcher dispatcher, int clients, int seconds) throws Exception {
+        LoadServer server = new LoadServer(port, dispatcher);
+        server.listen();
+
+        List<LoadClient> list = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            LoadClient c = new LoadClient(port);
+            c.start();
+            list.add(c);
+        }
+
+        long t0 = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        for (LoadClient c : list) c.running = false;
+        long elapsed = System.nanoTime() - t0;
+
+        // Let the requests in flight finish
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (LoadClient c : list) {
+            while (!c.idle() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        }
+
+        Result r = new Result();
+        for (LoadClient c : list) {
+            synchronized (c) {
+                r.answered += c.answered;
+                r.ordered &= !c.outOfOrder && c.idle();
+                r.latencies.addAll(c.latencies);
+            }
+            c.closeConnection();
+        }
+        r.seconds = elapsed / 1e9;
+
+        server.close();
+        if (dispatcher != null) dispatcher.shutdown();
+        return r;
+    }
+
+    /** Answers a request: CPU work, one pooled query, then the echo. */
+    private static void answer(Object msg, ConnectionToClient client) {
+        sink += BenchSupport.spin(CPU_MICROS);
+
+        MySQLConnectionPool pool = MySQLConnectionPool.getInstance();
+        PooledConnection pc = pool.getConnection();
+        try (PreparedStatement ps = pc.getConnection().prepareStatement("SELECT 1");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            pool.releaseConnection(pc);
+        }
+
+        try {
+            client.sendToClient(msg);
+        } catch (IOException e) {
+            // the client is gone
+        }
+    }
+
+    private static final class LoadServer extends AbstractServer {
+        private final RequestDispatcher dispatcher;
+
+        LoadServer(int port, RequestDispatcher dispatcher) {
+            super(port);
+            this.dispatcher = dispatcher;
+            setBacklog(1000);
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+            if (dispatcher == null) {
+                answer(msg, client);
+            } else if (!dispatcher.dispatch(client, () -> answer(msg, client))) {
+                rejected.incrementAndGet();
+            }
+        }
+    }
+
+    /** Sends numbered requests, DEPTH at a time, and expects the answers in order. */
+    private static final class LoadClient extends AbstractClient {
+        private final long[] sentAt = new long[DEPTH];
+        private final BenchSupport.Latencies latencies = new BenchSupport.Latencies();
+        private long nextSeq;
+        private long expected;
+        private long answered;
+        private boolean outOfOrder;
+        volatile boolean running = true;
+
+        LoadClient(int port) {
+            super("localhost", port);
+        }
+
+        synchronized void start() throws IOException {
+            openConnection();
+            for (int i = 0; i < DEPTH; i++) sendNext();
+        }
+
+        synchronized boolean idle() {
+            return expected == nextSeq;
+        }
+
+        private void sendNext() throws IOException {
+            sentAt[(int) (nextSeq % DEPTH)] = System.nanoTime();
+            sendToServer(Long.valueOf(nextSeq++));
+        }
+
+        @Override
+        protected synchronized void handleMessageFromServer(Object msg) {
+            long seq = (Long) msg;
+            if (seq != expected) outOfOrder = true;
+            expected = seq + 1;
+            latencies.add(System.nanoTime() - sentAt[(int) (seq % DEPTH)]);
+            answered++;
+
+            if (!running) return;
+            try {
+                sendNext();
+            } catch (IOException e) {
+                running = false;
+            }
+        }
+    }
+
+    private static final class Result {
+        long answered;
+        double seconds;
+        boolean ordered = true;
+        final BenchSupport.Latencies latencies = new BenchSupport.Latencies();
+
+        void print(String mode, String threads) {
+            System.out.println(String.format("%-10s workers=%-3s %8.0f req/s  %s",
+                    mode, threads, answered / seconds, latencies.summary()));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package Server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * FakeDriver
+ * ----------
+ * JDBC driver for the load tests that do not need MySQL. Its connections
+ * accept every call; a statement execution waits {@code queryMicros} (the
+ * round trip to the database) and returns no rows. Opening a connection
+ * waits {@code connectMillis}.
+ *
+ * The pool is pointed at it with {@link #URL}:
+ * MySQLConnectionPool.init(FakeDriver.URL, "u", "p", ...).
+ */
+final class FakeDriver implements Driver {
+
+    /** JDBC URL served by this driver. */
+    static final String URL = "jdbc:bistro-fake:test";
+
+    /** Time a statement execution takes (microseconds). */
+    static volatile long queryMicros = 2000;
+
+    /** Time opening a physical connection takes (ms). */
+    static volatile long connectMillis = 5;
+
+    /** Physical connections open now, and the most open at once. */
+    static final AtomicInteger open = new AtomicInteger();
+    static final AtomicInteger maxOpen = new AtomicInteger();
+
+    /** Statements prepared and executed. */
+    static final AtomicLong prepared = new AtomicLong();
+    static final AtomicLong executed = new AtomicLong();
+
+    private static boolean registered;
+
+    private FakeDriver() {
+    }
+
+    /** Registers the driver with DriverManager (once). */
+    static synchronized void register() {
+        if (registered) return;
+        try {
+            DriverManager.registerDriver(new FakeDriver());
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        registered = true;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) return null;
+        pause(connectMillis * 1000);
+        maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+        return proxy(Connection.class, new FakeConnection());
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /** One physical connection. */
+    private static final class FakeConnection implements InvocationHandler {
+        private boolean closed;
+        private boolean autoCommit = true;
+        private int isolation = Connection.TRANSACTION_REPEATABLE_READ;
+        private Connection self;
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            self = (Connection) proxy;
+            switch (m.getName()) {
+                case "close":
+                    if (!closed) open.decrementAndGet();
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "isValid":
+                    return !closed;
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "getTransactionIsolation":
+                    return isolation;
+                case "setTransactionIsolation":
+                    isolation = (Integer) args[0];
+                    return null;
+                case "prepareStatement":
+                case "prepareCall":
+                    prepared.incrementAndGet();
+                    return proxy(m.getReturnType(), new FakeStatement(self));
+                case "createStatement":
+                    return proxy(Statement.class, new FakeStatement(self));
+                case "setSavepoint":
+                    return proxy(Savepoint.class, (p, sm, sa) -> defaultValue(sm.getReturnType()));
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakeConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    if (closed && !m.getName().startsWith("get")) throw new SQLException("Connection closed");
+                    return defaultValue(m.getReturnType());
+            }
+        }
+    }
+
+    /** A statement: every execution waits for the simulated round trip. */
+    private static final class FakeStatement implements InvocationHandler {
+        private final Connection conn;
+        private boolean closed;
+
+        FakeStatement(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            String name = m.getName();
+            switch (name) {
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return conn;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakeStatement@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    break;
+            }
+            if (name.startsWith("execute")) {
+                executed.incrementAndGet();
+                pause(queryMicros);
+                if (name.equals("executeQuery")) return emptyResultSet();
+                if (name.equals("executeBatch")) return new int[0];
+                if (name.equals("execute")) return false;
+                return (m.getReturnType() == long.class) ? (Object) 1L : (Object) 1;
+            }
+            if (name.equals("getResultSet") || name.equals("getGeneratedKeys")) return emptyResultSet();
+            return defaultValue(m.getReturnType());
+        }
+    }
+
+    private static ResultSet emptyResultSet() {
+        return proxy(ResultSet.class, (p, m, a) -> defaultValue(m.getReturnType()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeDriver.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0d;
+        if (type == float.class) return 0f;
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == char.class) return (char) 0;
+        return 0;
+    }
+
+    /** Waits like a blocking socket read (keeps the thread, unlike a spin). */
+    private static void pause(long micros) {
+        if (micros <= 0) return;
+        try {
+            Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
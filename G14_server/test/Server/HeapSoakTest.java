@@ -0,0 +1,145 @@
+package Server;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+
+import entities.Reservation;
+import entities.ServerResponseType;
+import ocsf.client.AbstractClient;
+import ocsf.server.AbstractServer;
+import ocsf.server.ConnectionToClient;
+
+/**
+ * HeapSoakTest
+ * ------------
+ * Soak test of the output stream reset policy (bistro.output.resetBytes),
+ * without MySQL.
+ *
+ * One client asks for the responses over one connection and the server
+ * sends each as a new RESERVATIONS_LIST_ALL list, like a terminal
+ * refreshing its screen all evening. The heap in use (after a full
+ * collection, client and server together) is sampled after the first 10%
+ * of the responses and again at the end, while the connection is still
+ * open. With a reset policy the heap stays flat; without one every
+ * response stays in the handle tables of both object streams.
+ *
+ * Run: java -cp &lt;server classes&gt; Server.HeapSoakTest [responses] [policy,...]
+ *      (policies in bytes: 0 = reset per message, N = every N bytes, -1 = never;
+ *       default 0,65536,-1)
+ * Exits with status 1 if the heap grew by more than 16 MB with a policy
+ * that resets.
+ */
+public final class HeapSoakTest {
+
+    private static final int ROWS = 5;
+    private static final long MAX_GROWTH_MB = 16;
+
+    public static void main(String[] args) throws Exception {
+        int responses = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String policies = args.length > 1 ? args[1] : "0,65536,-1";
+
+        boolean ok = true;
+        int port = 5800;
+        for (String p : policies.split(",")) {
+            long policy = Long.parseLong(p.trim());
+            ok &= run(port++, policy, responses);
+        }
+
+        if (!ok) {
+            System.out.println("FAILED: heap grew with a reset policy");
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    private static boolean run(int port, long policy, int responses) throws Exception {
+        SoakServer server = new SoakServer(port);
+        server.setOutputResetInterval(policy);
+        server.listen();
+
+        SoakClient client = new SoakClient(port);
+        long t0 = System.nanoTime();
+        client.openConnection();
+        client.sendToServer(Integer.valueOf(responses));
+
+        client.await(responses / 10);
+        long before = usedHeapMb();
+        client.await(responses);
+        long after = usedHeapMb();
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+
+        ConnectionToClient conn = (ConnectionToClient) server.getClientConnections()[0];
+        long bytes = conn.getBytesWritten();
+        long sent = conn.getMessagesSent();
+
+        client.closeConnection();
+        server.close();
+
+        boolean resets = policy >= 0;
+        long growth = after - before;
+        System.out.println(String.format("resetBytes=%-6d responses=%d in %d ms  heap %d MB -> %d MB (%+d MB)"
+                + "  bytesWritten=%d (%d per response)",
+                policy, responses, ms, before, after, growth, bytes, sent == 0 ? 0 : bytes / sent));
+        return !resets || growth <= MAX_GROWTH_MB;
+    }
+
+    /** Heap in use after a full collection, in MB. */
+    private static long usedHeapMb() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+    }
+
+    /** A new list of reservations, as getAllReservations would return. */
+    private static ArrayList<Reservation> reservations(int seq) {
+        ArrayList<Reservation> list = new ArrayList<>(ROWS);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ROWS; i++) {
+            int id = seq * ROWS + i;
+            list.add(new Reservation(id, 1000 + i, new Timestamp(now + i * 1_800_000L), 2 + i % 4, "ACTIVE",
+                    null, null, new Timestamp(now), "ONLINE", 100000 + id % 900000, 1 + i, false, null));
+        }
+        return list;
+    }
+
+    private static final class SoakServer extends AbstractServer {
+        SoakServer(int port) {
+            super(port);
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+            int count = (Integer) msg;
+            try {
+                for (int i = 0; i < count; i++) {
+                    client.sendToClient(new Object[] { ServerResponseType.RESERVATIONS_LIST_ALL, reservations(i) });
+                }
+            } catch (IOException e) {
+                // the client is gone
+            }
+        }
+    }
+
+    private static final class SoakClient extends AbstractClient {
+        private int received;
+
+        SoakClient(int port) {
+            super("localhost", port);
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            while (received < count && isConnected()) wait(1000);
+        }
+
+        @Override
+        protected synchronized void handleMessageFromServer(Object msg) {
+            received++;
+            notifyAll();
+        }
+    }
+}
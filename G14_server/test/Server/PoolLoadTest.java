@@ -0,0 +1,276 @@
+package Server;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import entities.ClientRequestType;
+import entities.ServerResponseType;
+import ocsf.client.AbstractClient;
+
+/**
+ * PoolLoadTest
+ * ------------
+ * Overload test of the bounded {@link MySQLConnectionPool}, without MySQL.
+ *
+ * Threads borrow a connection, run one query through {@link FakeDriver}
+ * (a fixed round trip) and give the connection back, as fast as they can.
+ * The runs start at bistro.pool.maxActive threads and go up to ten times
+ * as many. Past maxActive the extra threads wait for the pool: the wait
+ * (acquire latency) should grow with the queue and stay well under the
+ * acquire timeout, the throughput should stay at about
+ * maxActive / round trip, and no more than maxActive physical connections
+ * should ever be open.
+ *
+ * The last run sends read-only BATCH requests to an {@link EchoServer}
+ * from twice maxActive clients at once (load.batchClients), with enough
+ * dispatch threads to handle them all together. Every sub-request must get
+ * its answer: a batch that kept a connection while its sub-requests wait
+ * for one would starve the pool and they would fail with "Connection pool
+ * exhausted".
+ *
+ * Run: java [-Dbistro.pool.maxActive=20] [-Dbistro.pool.acquireTimeoutMs=5000] \
+ *          [-Dload.queryMicros=2000] [-Dload.batchClients=40] \
+ *          -cp &lt;server classes&gt; Server.PoolLoadTest [threads,...] [secondsPerRun]
+ * Exits with status 1 if the pool opened more than maxActive connections
+ * or a batch sub-request failed.
+ */
+public final class PoolLoadTest {
+
+    /** Sub-requests per BATCH. */
+    private static final int BATCH_SIZE = 4;
+
+    public static void main(String[] args) throws Exception {
+        // Enough dispatch threads for every batch client at once; read before ServerConfig loads
+        if (System.getProperty("bistro.dispatch.threads") == null) {
+            System.setProperty("bistro.dispatch.threads", "128");
+        }
+        int maxActive = ServerConfig.POOL_MAX_ACTIVE;
+        String counts = args.length > 0 ? args[0]
+                : maxActive + "," + 2 * maxActive + "," + 5 * maxActive + "," + 10 * maxActive;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        FakeDriver.register();
+        FakeDriver.queryMicros = Long.getLong("load.queryMicros", 2000);
+        MySQLConnectionPool.init(FakeDriver.URL, "u", "p",
+                maxActive, 0, ServerConfig.POOL_ACQUIRE_TIMEOUT_MS, 60_000, 60);
+        MySQLConnectionPool pool = MySQLConnectionPool.getInstance();
+
+        System.out.println("maxActive=" + maxActive + " acquireTimeout=" + ServerConfig.POOL_ACQUIRE_TIMEOUT_MS
+                + "ms query=" + FakeDriver.queryMicros + "us");
+
+        // Warm-up, not reported
+        run(pool, maxActive, 1);
+
+        for (String c : counts.split(",")) {
+            run(pool, Integer.parseInt(c.trim()), seconds).print();
+        }
+
+        int batchClients = Integer.getInteger("load.batchClients", 2 * maxActive);
+        long batchFailures = runBatches(5850, batchClients, seconds);
+
+        System.out.println(pool.getStats() + " physicalOpened(max)=" + FakeDriver.maxOpen.get());
+        pool.shutdown();
+
+        if (FakeDriver.maxOpen.get() > maxActive) {
+            System.out.println("FAILED: " + FakeDriver.maxOpen.get() + " connections open at once, maxActive=" + maxActive);
+            System.exit(1);
+        }
+        if (batchFailures > 0) {
+            System.out.println("FAILED: " + batchFailures + " batch sub-requests failed");
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    private static Result run(MySQLConnectionPool pool, int threads, int seconds) throws InterruptedException {
+        Result r = new Result(threads);
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+
+        List<Thread> list = new ArrayList<>();
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Worker w = new Worker(pool, end, r);
+            workers.add(w);
+            Thread t = new Thread(w, "pool-load-" + i);
+            list.add(t);
+            t.start();
+        }
+        long t0 = System.nanoTime();
+        for (Thread t : list) t.join();
+        r.seconds = (System.nanoTime() - t0) / 1e9;
+
+        for (Worker w : workers) {
+            r.acquire.addAll(w.acquire);
+            r.total.addAll(w.total);
+        }
+        return r;
+    }
+
+    /**
+     * Sends read-only BATCH requests to an EchoServer from many clients at
+     * once, one batch in flight per client.
+     *
+     * @return the number of sub-requests answered with an error
+     */
+    private static long runBatches(int port, int clients, int seconds) throws Exception {
+        EchoServer server = new EchoServer(port);
+        server.listen();
+
+        List<BatchClient> list = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            BatchClient c = new BatchClient(port);
+            c.openConnection();
+            list.add(c);
+        }
+        long t0 = System.nanoTime();
+        for (BatchClient c : list) c.sendNext();
+        Thread.sleep(seconds * 1000L);
+        for (BatchClient c : list) c.running = false;
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+
+        // Let the batches in flight finish
+        long deadline = System.currentTimeMillis() + 30_000;
+        for (BatchClient c : list) {
+            while (!c.idle() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        }
+
+        BenchSupport.Latencies latencies = new BenchSupport.Latencies();
+        long batches = 0;
+        long failed = 0;
+        String firstError = null;
+        for (BatchClient c : list) {
+            synchronized (c) {
+                batches += c.answered;
+                failed += c.failed;
+                if (firstError == null) firstError = c.firstError;
+                latencies.addAll(c.latencies);
+            }
+            c.closeConnection();
+        }
+        server.close();
+
+        System.out.println(String.format("batches clients=%-4d %7.0f batches/s  %s  failedSubRequests=%d%s",
+                clients, batches / elapsed, latencies.summary(), failed,
+                firstError == null ? "" : " (" + firstError + ")"));
+        return failed;
+    }
+
+    /** Borrow, query, release, until the end of the run. */
+    private static final class Worker implements Runnable {
+        private final MySQLConnectionPool pool;
+        private final long end;
+        private final Result result;
+        private final BenchSupport.Latencies acquire = new BenchSupport.Latencies();
+        private final BenchSupport.Latencies total = new BenchSupport.Latencies();
+
+        Worker(MySQLConnectionPool pool, long end, Result result) {
+            this.pool = pool;
+            this.end = end;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < end) {
+                long t0 = System.nanoTime();
+                PooledConnection pc;
+                try {
+                    pc = pool.getConnection();
+                } catch (IllegalStateException e) {
+                    result.timeouts.incrementAndGet();
+                    continue;
+                }
+                if (pc == null) {
+                    result.failed.incrementAndGet();
+                    continue;
+                }
+                acquire.add(System.nanoTime() - t0);
+                try (PreparedStatement ps = pc.getConnection().prepareStatement("SELECT 1");
+                     ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                } catch (SQLException e) {
+                    result.failed.incrementAndGet();
+                } finally {
+                    pool.releaseConnection(pc);
+                }
+                total.add(System.nanoTime() - t0);
+            }
+        }
+    }
+
+    /** Sends one read-only BATCH at a time and counts the failed sub-requests. */
+    private static final class BatchClient extends AbstractClient {
+        private final BenchSupport.Latencies latencies = new BenchSupport.Latencies();
+        private long sentAt;
+        private boolean waiting;
+        private long answered;
+        private long failed;
+        private String firstError;
+        volatile boolean running = true;
+
+        BatchClient(int port) {
+            super("localhost", port);
+        }
+
+        synchronized boolean idle() {
+            return !waiting;
+        }
+
+        synchronized void sendNext() throws IOException {
+            Object[] requests = new Object[BATCH_SIZE];
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                requests[i] = new Object[] { ClientRequestType.GET_RESERVATIONS };
+            }
+            sentAt = System.nanoTime();
+            waiting = true;
+            sendToServer(new Object[] { ClientRequestType.BATCH, requests });
+        }
+
+        @Override
+        protected synchronized void handleMessageFromServer(Object msg) {
+            Object[] data = (Object[]) msg;
+            if (data[0] != ServerResponseType.BATCH_RESULT) return; // change notifications and the like
+            latencies.add(System.nanoTime() - sentAt);
+            waiting = false;
+            answered++;
+            for (Object response : (Object[]) data[1]) {
+                Object[] r = (Object[]) response;
+                if (r[0] == ServerResponseType.ERROR) {
+                    failed++;
+                    if (firstError == null) firstError = String.valueOf(r[1]);
+                }
+            }
+
+            if (!running) return;
+            try {
+                sendNext();
+            } catch (IOException e) {
+                running = false;
+            }
+        }
+    }
+
+    private static final class Result {
+        final int threads;
+        double seconds;
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final BenchSupport.Latencies acquire = new BenchSupport.Latencies();
+        final BenchSupport.Latencies total = new BenchSupport.Latencies();
+
+        Result(int threads) {
+            this.threads = threads;
+        }
+
+        void print() {
+            System.out.println(String.format("threads=%-4d %7.0f ops/s  acquire %s  total %s  timeouts=%d failed=%d",
+                    threads, total.size() / seconds, acquire.summary(), total.summary(), timeouts.get(), failed.get()));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package Server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.AvailableSlotsRequest;
+
+/**
+ * SlotSearchBenchmark
+ * -------------------
+ * Benchmark of the slot search (DBController.getAvailableSlots) against
+ * MySQL, with the in-memory slot index, the set-based query and the
+ * per-slot SQL path, the last one also without the statement cache and
+ * with server-side prepare.
+ *
+ * Each lookup asks for the free start times of one day and party size, the
+ * way ReservationFormController does on every date change. One round covers
+ * the next days of the booking horizon for 2, 4 and 6 diners; the rounds
+ * repeat for a fixed time after one warm-up round.
+ *
+ * The settings are read once per JVM (ServerConfig, the pool), so every
+ * configuration runs in its own child JVM with the same classpath:
+ *   index           bistro.slotIndex=true                                 (default)
+ *   setbased        bistro.slotIndex=false bistro.slotQuery.setBased=true
+ *   sql             bistro.slotIndex=false bistro.slotQuery.setBased=false
+ *   sql-nocache     as sql, and bistro.pool.statementCacheSize=0
+ *   sql-serverprep  as sql, and bistro.pool.serverPrepare=true
+ * Every configuration must find the same slots; the benchmark compares a
+ * checksum of the first round.
+ *
+ * With load.tables (for example 10,50,200) the configurations run once per
+ * table count: active test tables (TableNum from 9000, 2 to 8 seats) are
+ * added until the restaurant has that many, and deleted at the end. Counts
+ * below the active tables already there are skipped. Run it against a copy
+ * of the database, not the live one.
+ *
+ * Run: java -Dbistro.test.dbUser=root -Dbistro.test.dbPassword=... [-Dload.tables=10,50,200] \
+ *          -cp &lt;server classes and lib/*&gt; Server.SlotSearchBenchmark [configs] [days] [secondsPerRun]
+ * Exits with status 1 if a configuration failed or found other slots.
+ */
+public final class SlotSearchBenchmark {
+
+    private static final int[] DINERS = { 2, 4, 6 };
+
+    /** Configuration name -> system properties of its child JVM. */
+    private static final Map<String, String[]> CONFIGS = new LinkedHashMap<>();
+    static {
+        CONFIGS.put("index", new String[] { "bistro.slotIndex=true" });
+        CONFIGS.put("setbased", new String[] { "bistro.slotIndex=false", "bistro.slotQuery.setBased=true" });
+        CONFIGS.put("sql", new String[] { "bistro.slotIndex=false", "bistro.slotQuery.setBased=false" });
+        CONFIGS.put("sql-nocache", new String[] { "bistro.slotIndex=false", "bistro.slotQuery.setBased=false",
+                "bistro.pool.statementCacheSize=0" });
+        CONFIGS.put("sql-serverprep", new String[] { "bistro.slotIndex=false", "bistro.slotQuery.setBased=false",
+                "bistro.pool.serverPrepare=true" });
+    }
+
+    private static final String CHILD = "--child";
+    private static final String RESULT = "result ";
+
+    /** First TableNum of the test tables. */
+    private static final int FIRST_TEST_TABLE = 9000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(CHILD)) {
+            try {
+                child(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            } catch (Throwable t) {
+                t.printStackTrace(System.out);
+                System.exit(1); // the pool threads would keep the JVM alive
+            }
+            return;
+        }
+
+        String configs = args.length > 0 ? args[0] : String.join(",", CONFIGS.keySet());
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 14;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        String tables = System.getProperty("load.tables", "").trim();
+
+        boolean ok = true;
+        if (tables.isEmpty()) {
+            ok = runAll(configs, days, seconds);
+        } else {
+            DBController.configure(System.getProperty("bistro.test.dbUser", "root"),
+                    System.getProperty("bistro.test.dbPassword", ""));
+            if (!DBController.initPool()) {
+                System.out.println("FAILED: no database connection");
+                System.exit(1);
+            }
+            try {
+                for (String t : tables.split(",")) {
+                    int count = Integer.parseInt(t.trim());
+                    int active = setTables(count);
+                    if (active != count) {
+                        System.out.println("tables=" + count + " skipped: the database has " + active + " active tables");
+                        continue;
+                    }
+                    System.out.println("tables=" + count);
+                    ok &= runAll(configs, days, seconds);
+                }
+            } finally {
+                removeTestTables();
+                DBController.shutdownPool();
+            }
+        }
+
+        if (!ok) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    /** Runs every configuration; false if one failed or found other slots. */
+    private static boolean runAll(String configs, int days, int seconds) throws Exception {
+        boolean ok = true;
+        String expected = null;
+        for (String name : configs.split(",")) {
+            String checksum = runChild(name.trim(), days, seconds);
+            if (checksum == null) {
+                System.out.println(name + ": FAILED");
+                ok = false;
+            } else if (expected == null) {
+                expected = checksum;
+            } else if (!expected.equals(checksum)) {
+                System.out.println(name + ": other slots than the first configuration");
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Adds test tables until there are the given number of active tables.
+     *
+     * @return the number of active tables now (more than asked if the
+     *         database already had more)
+     */
+    private static int setTables(int count) throws SQLException {
+        MySQLConnectionPool pool = MySQLConnectionPool.getInstance();
+        PooledConnection pc = pool.getConnection();
+        try {
+            Connection conn = pc.getConnection();
+            int active;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM schema_for_project.`table` WHERE isActive = 1");
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                active = rs.getInt(1);
+            }
+            int next;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT COALESCE(MAX(TableNum) + 1, ?) FROM schema_for_project.`table` WHERE TableNum >= ?")) {
+                ps.setInt(1, FIRST_TEST_TABLE);
+                ps.setInt(2, FIRST_TEST_TABLE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    next = rs.getInt(1);
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO schema_for_project.`table` (TableNum, isActive, Seats, isOccupied) VALUES (?, 1, ?, 0)")) {
+                for (; active < count; active++, next++) {
+                    ps.setInt(1, next);
+                    ps.setInt(2, 2 + 2 * (next % 4));
+                    ps.executeUpdate();
+                }
+            }
+            return active;
+        } finally {
+            pool.releaseConnection(pc);
+        }
+    }
+
+    private static void removeTestTables() throws SQLException {
+        MySQLConnectionPool pool = MySQLConnectionPool.getInstance();
+        PooledConnection pc = pool.getConnection();
+        try (PreparedStatement ps = pc.getConnection().prepareStatement(
+                "DELETE FROM schema_for_project.`table` WHERE TableNum >= ?")) {
+            ps.setInt(1, FIRST_TEST_TABLE);
+            int n = ps.executeUpdate();
+            if (n > 0) System.out.println("Removed " + n + " test tables");
+        } finally {
+            pool.releaseConnection(pc);
+        }
+    }
+
+    /**
+     * Runs one configuration in a child JVM and echoes its output.
+     *
+     * @return the checksum the child reported, or null if it failed
+     */
+    private static String runChild(String name, int days, int seconds) throws Exception {
+        String[] props = CONFIGS.get(name);
+        if (props == null) throw new IllegalArgumentException("Unknown configuration: " + name + " (" + CONFIGS.keySet() + ")");
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("bistro.")) cmd.add("-D" + key + "=" + System.getProperty(key));
+        }
+        for (String p : props) cmd.add("-D" + p);
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(SlotSearchBenchmark.class.getName());
+        cmd.add(CHILD);
+        cmd.add(name);
+        cmd.add(String.valueOf(days));
+        cmd.add(String.valueOf(seconds));
+
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        String checksum = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(RESULT)) {
+                    checksum = line.substring(RESULT.length());
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        return p.waitFor() == 0 ? checksum : null;
+    }
+
+    /** One configuration: warm-up round, then timed rounds. */
+    private static void child(String name, int days, int seconds) throws Exception {
+        DBController.configure(System.getProperty("bistro.test.dbUser", "root"),
+                System.getProperty("bistro.test.dbPassword", ""));
+        if (!DBController.initPool()) {
+            System.out.println("FAILED: no database connection");
+            System.exit(1);
+        }
+
+        LocalDate first = LocalDate.now().plusDays(1);
+        List<AvailableSlotsRequest> round = new ArrayList<>();
+        for (int d = 0; d < days; d++) {
+            LocalDate day = first.plusDays(d);
+            for (int diners : DINERS) {
+                round.add(new AvailableSlotsRequest(Timestamp.valueOf(day.atStartOfDay()),
+                        Timestamp.valueOf(day.atTime(23, 59)), diners));
+            }
+        }
+
+        // Warm-up round; its slots are the checksum
+        long checksum = 0;
+        int slots = 0;
+        for (AvailableSlotsRequest req : round) {
+            List<String> found = DBController.getAvailableSlots(req);
+            checksum = checksum * 31 + found.hashCode();
+            slots += found.size();
+        }
+
+        BenchSupport.Latencies latencies = new BenchSupport.Latencies();
+        long t0 = System.nanoTime();
+        long end = t0 + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            for (AvailableSlotsRequest req : round) {
+                long s = System.nanoTime();
+                DBController.getAvailableSlots(req);
+                latencies.add(System.nanoTime() - s);
+            }
+        }
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+
+        System.out.println(String.format("%-8s days=%d lookups=%-6d %8.1f lookups/s  %s  slotsPerRound=%d",
+                name, days, latencies.size(), latencies.size() / elapsed, latencies.summary(), slots));
+        System.out.println(name + ": " + MySQLConnectionPool.getInstance().getStats());
+        System.out.println(RESULT + Long.toHexString(checksum));
+
+        DBController.shutdownPool();
+        System.exit(0);
+    }
+}
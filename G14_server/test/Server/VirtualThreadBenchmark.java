@@ -0,0 +1,223 @@
+package Server;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ocsf.client.AbstractClient;
+import ocsf.server.AbstractServer;
+import ocsf.server.ConnectionToClient;
+
+/**
+ * VirtualThreadBenchmark
+ * ----------------------
+ * Compares the platform and virtual thread modes (bistro.threads) at 50,
+ * 500 and 5000 simulated terminals, without MySQL.
+ *
+ * The server is set up like EchoServer for each mode: platform mode keeps
+ * one platform reader thread per connection and a fixed worker pool;
+ * virtual mode reads every connection and runs every request on a virtual
+ * thread, at most bistro.virtual.maxActive at a time. Each request does
+ * one query through {@link MySQLConnectionPool}, served by
+ * {@link FakeDriver} with a fixed round trip, so the pool is used from
+ * virtual threads too.
+ *
+ * The terminals are slow: each one sends a request, waits for the answer,
+ * then waits load.thinkMs before the next one. The report shows the
+ * throughput, latency, the platform threads the server added and the heap
+ * in use. Virtual mode needs Java 21; on older JVMs only platform mode
+ * runs. Note that the simulated terminals use one platform reader thread
+ * each as well, in both modes.
+ *
+ * Run: java [-Dload.thinkMs=1000] [-Dload.queryMicros=2000] \
+ *          -cp &lt;server classes&gt; Server.VirtualThreadBenchmark [clients,...] [secondsPerRun]
+ */
+public final class VirtualThreadBenchmark {
+
+    private static final long THINK_MS = Long.getLong("load.thinkMs", 1000);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /** Requests refused by the dispatcher (client queue full), and requests that failed. */
+    private static final AtomicLong rejected = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        String counts = args.length > 0 ? args[0] : "50,500,5000";
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        FakeDriver.register();
+        FakeDriver.queryMicros = Long.getLong("load.queryMicros", 2000);
+        MySQLConnectionPool.init(FakeDriver.URL, "u", "p",
+                ServerConfig.POOL_MAX_ACTIVE, 0, ServerConfig.POOL_ACQUIRE_TIMEOUT_MS, 60_000, 60);
+
+        boolean virtual = VirtualThreads.isSupported();
+        System.out.println("think=" + THINK_MS + "ms query=" + FakeDriver.queryMicros + "us pool="
+                + ServerConfig.POOL_MAX_ACTIVE + " workers=" + ServerConfig.DISPATCH_THREADS
+                + " virtualMaxActive=" + ServerConfig.VIRTUAL_MAX_ACTIVE
+                + (virtual ? "" : " (virtual threads need Java 21: platform mode only)"));
+
+        int port = 5750;
+        for (String c : counts.split(",")) {
+            int clients = Integer.parseInt(c.trim());
+            run(port++, false, clients, seconds);
+            if (virtual) run(port++, true, clients, seconds);
+        }
+
+        System.out.println(MySQLConnectionPool.getInstance().getStats() + " rejected=" + rejected + " failed=" + failed);
+        MySQLConnectionPool.getInstance().shutdown();
+        System.exit(0);
+    }
+
+    private static void run(int port, boolean virtual, int clients, int seconds) throws Exception {
+        int baseThreads = THREADS.getThreadCount();
+
+        RequestDispatcher dispatcher = virtual
+                ? new RequestDispatcher(VirtualThreads.factory("request-worker-v"),
+                        ServerConfig.VIRTUAL_MAX_ACTIVE, ServerConfig.DISPATCH_MAX_PENDING_PER_CLIENT)
+                : new RequestDispatcher(ServerConfig.DISPATCH_THREADS, ServerConfig.DISPATCH_MAX_PENDING_PER_CLIENT);
+        LoadServer server = new LoadServer(port, dispatcher);
+        if (virtual) server.setConnectionThreadFactory(VirtualThreads.factory("client-reader-"));
+        server.listen();
+
+        ScheduledExecutorService timer = Executors.newScheduledThreadPool(2, daemon("think-"));
+        List<Terminal> terminals = new ArrayList<>();
+        int connectFailures = 0;
+        for (int i = 0; i < clients; i++) {
+            Terminal t = new Terminal(port, timer);
+            try {
+                t.openConnection();
+                terminals.add(t);
+            } catch (IOException e) {
+                connectFailures++;
+            }
+        }
+        // Spread the first requests over one think time
+        for (Terminal t : terminals) {
+            timer.schedule(t::sendNext, (long) (Math.random() * THINK_MS), TimeUnit.MILLISECONDS);
+        }
+
+        Thread.sleep(THINK_MS + 500);
+        for (Terminal t : terminals) t.reset();
+        long t0 = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long elapsed = System.nanoTime() - t0;
+
+        // Platform threads the server added: all new threads minus the terminal readers
+        int serverThreads = THREADS.getThreadCount() - baseThreads - terminals.size() - 2;
+        long heapMb = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024);
+
+        BenchSupport.Latencies all = new BenchSupport.Latencies();
+        long answered = 0;
+        for (Terminal t : terminals) {
+            t.running = false;
+            synchronized (t) {
+                answered += t.answered;
+                all.addAll(t.latencies);
+            }
+        }
+
+        System.out.println(String.format("%-8s clients=%-5d %7.0f req/s  %s  serverThreads=%d heap=%dMB%s",
+                virtual ? "virtual" : "platform", clients, answered / (elapsed / 1e9), all.summary(),
+                serverThreads, heapMb, connectFailures > 0 ? " connectFailures=" + connectFailures : ""));
+
+        timer.shutdownNow();
+        for (Terminal t : terminals) {
+            try {
+                t.closeConnection();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+        server.close();
+        dispatcher.shutdown();
+        Thread.sleep(500);
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicLong seq = new AtomicLong();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Answers a request with one pooled query. */
+    private static void answer(Object msg, ConnectionToClient client) {
+        MySQLConnectionPool pool = MySQLConnectionPool.getInstance();
+        try {
+            PooledConnection pc = pool.getConnection();
+            try (PreparedStatement ps = pc.getConnection().prepareStatement("SELECT 1");
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+            } finally {
+                pool.releaseConnection(pc);
+            }
+            client.sendToClient(msg);
+        } catch (SQLException | IOException | IllegalStateException e) {
+            failed.incrementAndGet();
+        }
+    }
+
+    private static final class LoadServer extends AbstractServer {
+        private final RequestDispatcher dispatcher;
+
+        LoadServer(int port, RequestDispatcher dispatcher) {
+            super(port);
+            this.dispatcher = dispatcher;
+            setBacklog(1000);
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+            if (!dispatcher.dispatch(client, () -> answer(msg, client))) rejected.incrementAndGet();
+        }
+    }
+
+    /** A slow terminal: one request at a time, with a think time between them. */
+    private static final class Terminal extends AbstractClient {
+        private final ScheduledExecutorService timer;
+        private final BenchSupport.Latencies latencies = new BenchSupport.Latencies();
+        private long sentAt;
+        private long answered;
+        volatile boolean running = true;
+
+        Terminal(int port, ScheduledExecutorService timer) {
+            super("localhost", port);
+            this.timer = timer;
+        }
+
+        synchronized void reset() {
+            answered = 0;
+            latencies.clear();
+        }
+
+        synchronized void sendNext() {
+            if (!running) return;
+            sentAt = System.nanoTime();
+            try {
+                sendToServer("ping");
+            } catch (IOException e) {
+                running = false;
+            }
+        }
+
+        @Override
+        protected synchronized void handleMessageFromServer(Object msg) {
+            latencies.add(System.nanoTime() - sentAt);
+            answered++;
+            if (running) timer.schedule(this::sendNext, THINK_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
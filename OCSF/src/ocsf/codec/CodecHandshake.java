@@ -0,0 +1 @@
+package ocsf.codec;import java.nio.charset.StandardCharsets;import java.util.*;/*** Frames used to agree on a codec when a framed connection is opened.<p>** The client may send, as its very first frame, an offer:* <code>"OCSF-CODEC?" name1,name2,...</code> (codec names in order of* preference). The server answers with a single frame* <code>"OCSF-CODEC=" name</code> naming the codec both sides use from* then on. A client that sends no offer keeps the default* <code>SerializationCodec</code>.<p>** Handshake frames are plain ASCII so they can never be mistaken for a* Java serialization stream (which starts with 0xACED).*/public final class CodecHandshake{  private static final String OFFER = "OCSF-CODEC?";  private static final String ANSWER = "OCSF-CODEC=";  /**   * Largest frame either side accepts. A bigger length prefix means a   * broken or hostile peer.   */  public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;  private CodecHandshake() {}  /**   * Builds the offer frame sent by the client.   *   * @param codecs the client's codecs, most preferred first.   * @return the frame payload.   */  public static byte[] offer(List<MessageCodec> codecs)  {    StringBuilder sb = new StringBuilder(OFFER);    for (int i = 0; i < codecs.size(); i++)    {      if (i > 0) sb.append(',');      sb.append(codecs.get(i).getName());    }    return sb.toString().getBytes(StandardCharsets.US_ASCII);  }  /**   * Reads an offer frame.   *   * @param frame a frame received by the server.   * @return the offered codec names, or null if the frame is not an offer.   */  public static String[] parseOffer(byte[] frame)  {    String text = asText(frame, OFFER);    return text == null ? null : text.split(",");  }  /**   * Builds the answer frame sent by the server.   *   * @param codec the chosen codec.   * @return the frame payload.   */  public static byte[] answer(MessageCodec codec)  {    return (ANSWER + codec.getName()).getBytes(StandardCharsets.US_ASCII);  }  /**   * Reads an answer frame.   *   * @param frame a frame received by the client.   * @return the chosen codec name, or null if the frame is not an answer.   */  public static String parseAnswer(byte[] frame)  {    return asText(frame, ANSWER);  }  /**   * Picks the first offered codec that is also known locally.   *   * @param offered the names offered by the client.   * @param known the codecs known by the server.   * @return the chosen codec; the serialization codec if none matches.   */  public static MessageCodec choose(String[] offered, List<MessageCodec> known)  {    for (String name : offered)    {      MessageCodec codec = find(name.trim(), known);      if (codec != null)        return codec;    }    return new SerializationCodec();  }  /**   * Finds a codec by name.   *   * @param name the codec name.   * @param codecs the codecs to search.   * @return the codec, or null.   */  public static MessageCodec find(String name, List<MessageCodec> codecs)  {    for (MessageCodec codec : codecs)    {      if (codec.getName().equals(name))        return codec;    }    return SerializationCodec.NAME.equals(name) ? new SerializationCodec() : null;  }  private static String asText(byte[] frame, String prefix)  {    if (frame.length < prefix.length())      return null;    for (int i = 0; i < prefix.length(); i++)    {      if (frame[i] != prefix.charAt(i))        return null;    }    return new String(frame, prefix.length(), frame.length - prefix.length(),      StandardCharsets.US_ASCII);  }}// End of CodecHandshake class
\ No newline at end of file
@@ -0,0 +1 @@
+package ocsf.codec;import java.io.IOException;/*** Turns the messages exchanged by an OCSF client and server into bytes* and back. Codecs are used by the framed transports (the NIO server* transport and the framed mode of <code>AbstractClient</code>); each* frame carries exactly one encoded message.<p>** Client and server agree on a codec when the connection is opened:* the client sends the names of the codecs it can use, in order of* preference, and the server answers with the first one it also knows* (see <code>CodecHandshake</code>). Without a handshake both sides use* <code>SerializationCodec</code>.** @see ocsf.codec.SerializationCodec* @see ocsf.codec.CodecHandshake*/public interface MessageCodec{  /**   * Returns the name used to select this codec during the handshake.   * Two codecs with the same name must produce the same bytes.   *   * @return the codec name.   */  String getName();  /**   * Encodes one message.   *   * @param msg the message.   * @return the encoded bytes.   * @exception IOException if the message cannot be encoded.   */  byte[] encode(Object msg) throws IOException;  /**   * Decodes one message.   *   * @param data the bytes of one frame.   * @return the decoded message.   * @exception IOException if the bytes are not a valid message.   * @exception ClassNotFoundException if a class of the message is missing.   */  Object decode(byte[] data) throws IOException, ClassNotFoundException;}// End of MessageCodec interface
\ No newline at end of file
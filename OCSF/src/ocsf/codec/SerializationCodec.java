@@ -0,0 +1 @@
+package ocsf.codec;import java.io.*;/*** Codec based on standard Java serialization. Every message is written* with a fresh object stream, so no state is kept between messages.* This is the default codec and is always available.*/public class SerializationCodec implements MessageCodec{  /**   * Name of this codec in the handshake.   */  public static final String NAME = "java";  public String getName()  {    return NAME;  }  public byte[] encode(Object msg) throws IOException  {    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);    ObjectOutputStream out = new ObjectOutputStream(bytes);    out.writeObject(msg);    out.close();    return bytes.toByteArray();  }  public Object decode(byte[] data) throws IOException, ClassNotFoundException  {    ObjectInputStream in = new ObjectInputStream(      new ByteArrayInputStream(data));    return in.readObject();  }}// End of SerializationCodec class
\ No newline at end of file
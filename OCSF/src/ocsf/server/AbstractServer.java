@@ -1 +1 @@
-// This file contains material supporting section 3.8 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.com package ocsf.server;import java.net.*;import java.util.*;import java.io.*;/*** The <code> AbstractServer </code> class maintains a thread that waits* for connection attempts from clients. When a connection attempt occurs* it creates a new <code> ConnectionToClient </code> instance which* runs as a thread. When a client is thus connected to the* server, the two programs can then exchange <code> Object </code>* instances.<p>** Method <code> handleMessageFromClient </code> must be defined by* a concrete subclass. Several other hook methods may also be* overriden.<p>** Several public service methods are provided to applications that use* this framework, and several hook methods are also available<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr Robert Lagani&egrave;re* @author Dr Timothy C. Lethbridge* @author Fran&ccedil;ois B&eacute;langer* @author Paul Holden* @version February 2001 (2.12)* @see ocsf.server.ConnectionToClient*/public abstract class AbstractServer implements Runnable{  // INSTANCE VARIABLES *********************************************  /**   * The server socket: listens for clients who want to connect.   */  private ServerSocket serverSocket = null;  /**   * The connection listener thread.   */  private Thread connectionListener;  /**   * The port number   */  private int port;  /**   * The server timeout while for accepting connections.   * After timing out, the server will check to see if a command to   * stop the server has been issued; it not it will resume accepting   * connections.   * Set to half a second by default.   */  private int timeout = 500;  /**   * The maximum queue length; i.e. the maximum number of clients that   * can be waiting to connect.   * Set to 10 by default.   */  private int backlog = 10;  /**   * The thread group associated with client threads. Each member of the   * thread group is a <code> ConnectionToClient </code>.   */  private ThreadGroup clientThreadGroup;  /**   * Indicates if the listening thread is ready to stop.  Set to   * false by default.   */  private boolean readyToStop = false;// CONSTRUCTOR ******************************************************  /**   * Constructs a new server.   *   * @param port the port number on which to listen.   */  public AbstractServer(int port)  {    this.port = port;    this.clientThreadGroup =      new ThreadGroup("ConnectionToClient threads")      {        // All uncaught exceptions in connection threads will        // be sent to the clientException callback method.        public void uncaughtException(          Thread thread, Throwable exception)        {          clientException((ConnectionToClient)thread, exception);        }      };  }// INSTANCE METHODS *************************************************  /**   * Begins the thread that waits for new clients.   * If the server is already in listening mode, this   * call has no effect.   *   * @exception IOException if an I/O error occurs   * when creating the server socket.   */  final public void listen() throws IOException  {    if (!isListening())    {      if (serverSocket == null)      {        serverSocket = new ServerSocket(getPort(), backlog);      }      serverSocket.setSoTimeout(timeout);      readyToStop = false;      connectionListener = new Thread(this);      connectionListener.start();    }  }  /**   * Causes the server to stop accepting new connections.   */  final public void stopListening()  {    readyToStop = true;  }  /**   * Closes the server socket and the connections with all clients.   * Any exception thrown while closing a client is ignored.   * If one wishes to catch these exceptions, then clients   * should be individually closed before calling this method.   * The method also stops listening if this thread is running.   * If the server is already closed, this   * call has no effect.   *   * @exception IOException if an I/O error occurs while   * closing the server socket.   */  final synchronized public void close() throws IOException  {    if (serverSocket == null)      return;      stopListening();    try    {      serverSocket.close();    }    finally    {      // Close the client sockets of the already connected clients      Thread[] clientThreadList = getClientConnections();      for (int i=0; i<clientThreadList.length; i++)      {         try         {           ((ConnectionToClient)clientThreadList[i]).close();         }         // Ignore all exceptions when closing clients.         catch(Exception ex) {}      }      serverSocket = null;      serverClosed();    }  }  /**   * Sends a message to every client connected to the server.   * This is merely a utility; a subclass may want to do some checks   * before actually sending messages to all clients.  This method   * can be overriden, but if so it should still perform the general   * function of sending to all clients, perhaps after some kind   * of filtering is done. Any exception thrown while   * sending the message to a particular client is ignored.   *   * @param msg   Object The message to be sent   */  public void sendToAllClients(Object msg)  {    Thread[] clientThreadList = getClientConnections();    for (int i=0; i<clientThreadList.length; i++)    {      try      {        ((ConnectionToClient)clientThreadList[i]).sendToClient(msg);      }      catch (Exception ex) {}    }  }// ACCESSING METHODS ------------------------------------------------  /**   * Returns true if the server is ready to accept new clients.   *   * @return true if the server is listening.   */  final public boolean isListening()  {    return (connectionListener != null);  }  /**   * Returns an array containing the existing   * client connections. This can be used by   * concrete subclasses to implement messages that do something with   * each connection (e.g. kill it, send a message to it etc.).   * Remember that after this array is obtained, some clients   * in this migth disconnect. New clients can also connect,   * these later will not appear in the array.   *   * @return an array of <code>Thread</code> containing   * <code>ConnectionToClient</code> instances.   */  synchronized final public Thread[] getClientConnections()  {    Thread[] clientThreadList = new      Thread[clientThreadGroup.activeCount()];    clientThreadGroup.enumerate(clientThreadList);    return clientThreadList;  }  /**   * Counts the number of clients currently connected.   *   * @return the number of clients currently connected.   */  final public int getNumberOfClients()  {    return clientThreadGroup.activeCount();  }  /**   * Returns the port number.   *   * @return the port number.   */  final public int getPort()  {    return port;  }  /**   * Sets the port number for the next connection.   * The server must be closed and restarted for the port   * change to be in effect.   *   * @param port the port number.   */  final public void setPort(int port)  {    this.port = port;  }  /**   * Sets the timeout time when accepting connections.   * The default is half a second. This means that stopping the   * server may take up to timeout duration to actually stop.   * The server must be stopped and restarted for the timeout   * change to be effective.   *   * @param timeout the timeout time in ms.   */  final public void setTimeout(int timeout)  {    this.timeout = timeout;  }  /**   * Sets the maximum number of waiting connections accepted by the   * operating system. The default is 20.   * The server must be closed and restarted for the backlog   * change to be in effect.   *   * @param backlog the maximum number of connections.   */  final public void setBacklog(int backlog)  {    this.backlog = backlog;  }// RUN METHOD -------------------------------------------------------  /**   * Runs the listening thread that allows clients to connect.   * Not to be called.   */  final public void run()  {    // call the hook method to notify that the server is starting    serverStarted();    try    {      // Repeatedly waits for a new client connection, accepts it, and      // starts a new thread to handle data exchange.      while(!readyToStop)      {        try        {          // Wait here for new connection attempts, or a timeout          Socket clientSocket = serverSocket.accept();          // When a client is accepted, create a thread to handle          // the data exchange, then add it to thread group          synchronized(this)          {            ConnectionToClient c = new ConnectionToClient(              this.clientThreadGroup, clientSocket, this);          }        }        catch (InterruptedIOException exception)        {          // This will be thrown when a timeout occurs.          // The server will continue to listen if not ready to stop.        }      }      // call the hook method to notify that the server has stopped      serverStopped();    }    catch (IOException exception)    {      if (!readyToStop)      {        // Closing the socket must have thrown a SocketException        listeningException(exception);      }      else      {        serverStopped();      }    }    finally    {      readyToStop = true;      connectionListener = null;    }  }// METHODS DESIGNED TO BE OVERRIDDEN BY CONCRETE SUBCLASSES ---------  /**   * Hook method called each time a new client connection is   * accepted. The default implementation does nothing.   * @param client the connection connected to the client.   */  protected void clientConnected(ConnectionToClient client) {}  /**   * Hook method called each time a client disconnects.   * The default implementation does nothing. The method   * may be overridden by subclasses but should remains synchronized.   *   * @param client the connection with the client.   */  synchronized protected void clientDisconnected(    ConnectionToClient client) {}  /**   * Hook method called each time an exception is thrown in a   * ConnectionToClient thread.   * The method may be overridden by subclasses but should remains   * synchronized.   *   * @param client the client that raised the exception.   * @param Throwable the exception thrown.   */  synchronized protected void clientException(    ConnectionToClient client, Throwable exception) {}  /**   * Hook method called when the server stops accepting   * connections because an exception has been raised.   * The default implementation does nothing.   * This method may be overriden by subclasses.   *   * @param exception the exception raised.   */  protected void listeningException(Throwable exception) {}  /**   * Hook method called when the server starts listening for   * connections.  The default implementation does nothing.   * The method may be overridden by subclasses.   */  protected void serverStarted() {}  /**   * Hook method called when the server stops accepting   * connections.  The default implementation   * does nothing. This method may be overriden by subclasses.   */  protected void serverStopped() {}  /**   * Hook method called when the server is clased.   * The default implementation does nothing. This method may be   * overriden by subclasses. When the server is closed while still   * listening, serverStopped() will also be called.   */  protected void serverClosed() {}  /**   * Handles a command sent from one client to the server.   * This MUST be implemented by subclasses, who should respond to   * messages.   * This method is called by a synchronized method so it is also   * implcitly synchronized.   *   * @param msg   the message sent.   * @param client the connection connected to the client that   *  sent the message.   */  protected abstract void handleMessageFromClient(    Object msg, ConnectionToClient client);// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Receives a command sent from the client to the server.   * Called by the run method of <code>ConnectionToClient</code>   * instances that are watching for messages coming from the server   * This method is synchronized to ensure that whatever effects it has   * do not conflict with work being done by other threads. The method   * simply calls the <code>handleMessageFromClient</code> slot method.   *   * @param msg   the message sent.   * @param client the connection connected to the client that   *  sent the message.   */  final synchronized void receiveMessageFromClient(    Object msg, ConnectionToClient client)  {    this.handleMessageFromClient(msg, client);  }}// End of AbstractServer Class
\ No newline at end of file
+// This file contains material supporting section 3.8 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.com package ocsf.server;import java.net.*;import java.util.*;import java.io.*;/*** The <code> AbstractServer </code> class maintains a thread that waits* for connection attempts from clients. When a connection attempt occurs* it creates a new <code> ConnectionToClient </code> instance which* runs as a thread. When a client is thus connected to the* server, the two programs can then exchange <code> Object </code>* instances.<p>** Method <code> handleMessageFromClient </code> must be defined by* a concrete subclass. Several other hook methods may also be* overriden.<p>** Several public service methods are provided to applications that use* this framework, and several hook methods are also available<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr Robert Lagani&egrave;re* @author Dr Timothy C. Lethbridge* @author Fran&ccedil;ois B&eacute;langer* @author Paul Holden* @version February 2001 (2.12)* @see ocsf.server.ConnectionToClient*/public abstract class AbstractServer implements Runnable{  // INSTANCE VARIABLES *********************************************  /**   * The server socket: listens for clients who want to connect.   */  private ServerSocket serverSocket = null;  /**   * The connection listener thread.   */  private Thread connectionListener;  /**   * The port number   */  private int port;  /**   * The server timeout while for accepting connections.   * After timing out, the server will check to see if a command to   * stop the server has been issued; it not it will resume accepting   * connections.   * Set to half a second by default.   */  private int timeout = 500;  /**   * The maximum queue length; i.e. the maximum number of clients that   * can be waiting to connect.   * Set to 10 by default.   */  private int backlog = 10;  /**   * The thread group associated with client threads. Each member of the   * thread group is a <code> ConnectionToClient </code>.   */  private ThreadGroup clientThreadGroup;  /**   * Indicates if the listening thread is ready to stop.  Set to   * false by default.   */  private boolean readyToStop = false;  /**   * Number of I/O threads of the NIO transport. When 0 (the default)   * the classic transport with one thread per client is used.   */  private int nioThreads = 0;  /**   * The NIO transport, created by listen when nioThreads &gt; 0.   */  private NioServerTransport nioTransport;  /**   * Factory for the reader threads of classic connections. When null   * (the default) every <code>ConnectionToClient</code> is itself a thread   * of the client thread group. When set (for example to a virtual thread   * factory) the reader loop of each connection runs on a thread created   * by this factory.   */  private java.util.concurrent.ThreadFactory connectionThreadFactory;  /**   * Classic connections whose reader runs on a factory thread. They are   * not members of the client thread group and are tracked here.   */  private final Set<ConnectionToClient> detachedClients =    java.util.concurrent.ConcurrentHashMap.newKeySet();  /**   * Reset policy of the object streams used to send to clients.   * 0 = reset after every message (the default), N &gt; 0 = reset once   * at least N bytes were written since the last reset, negative = never.   */  private volatile long outputResetInterval = 0;  /**   * Maximum number of messages waiting to be written to one client.   * 0 (the default) means classic connections write on the sending   * thread and NIO connections queue without limit.   */  private volatile int outboundCapacity = 0;  /**   * What a connection does when its outbound queue is full.   */  private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DISCONNECT;  /**   * Codecs the NIO transport accepts in a codec handshake.   */  private volatile List<ocsf.codec.MessageCodec> codecs =    Collections.emptyList();// CONSTRUCTOR ******************************************************  /**   * Constructs a new server.   *   * @param port the port number on which to listen.   */  public AbstractServer(int port)  {    this.port = port;    this.clientThreadGroup =      new ThreadGroup("ConnectionToClient threads")      {        // All uncaught exceptions in connection threads will        // be sent to the clientException callback method.        public void uncaughtException(          Thread thread, Throwable exception)        {          clientException((ConnectionToClient)thread, exception);        }      };  }// INSTANCE METHODS *************************************************  /**   * Begins the thread that waits for new clients.   * If the server is already in listening mode, this   * call has no effect.   *   * @exception IOException if an I/O error occurs   * when creating the server socket.   */  final public void listen() throws IOException  {    if (!isListening())    {      if (nioThreads > 0)      {        if (nioTransport == null)        {          nioTransport = new NioServerTransport(this, nioThreads);          nioTransport.bind(getPort(), backlog);        }      }      else      {        if (serverSocket == null)        {          serverSocket = new ServerSocket(getPort(), backlog);        }        serverSocket.setSoTimeout(timeout);      }      readyToStop = false;      connectionListener = new Thread(this);      connectionListener.start();    }  }  /**   * Causes the server to stop accepting new connections.   */  final public void stopListening()  {    readyToStop = true;    if (nioTransport != null)      nioTransport.wakeup();  }  /**   * Closes the server socket and the connections with all clients.   * Any exception thrown while closing a client is ignored.   * If one wishes to catch these exceptions, then clients   * should be individually closed before calling this method.   * The method also stops listening if this thread is running.   * If the server is already closed, this   * call has no effect.   *   * @exception IOException if an I/O error occurs while   * closing the server socket.   */  final synchronized public void close() throws IOException  {    if (serverSocket == null && nioTransport == null)      return;      stopListening();    try    {      if (serverSocket != null)        serverSocket.close();    }    finally    {      // Close the client sockets of the already connected clients      Thread[] clientThreadList = getClientConnections();      for (int i=0; i<clientThreadList.length; i++)      {         try         {           ((ConnectionToClient)clientThreadList[i]).close();         }         // Ignore all exceptions when closing clients.         catch(Exception ex) {}      }      if (nioTransport != null)      {        try        {          nioTransport.close();        }        catch(Exception ex) {}        nioTransport = null;      }      serverSocket = null;      serverClosed();    }  }  /**   * Sends a message to every client connected to the server.   * This is merely a utility; a subclass may want to do some checks   * before actually sending messages to all clients.  This method   * can be overriden, but if so it should still perform the general   * function of sending to all clients, perhaps after some kind   * of filtering is done. Any exception thrown while   * sending the message to a particular client is ignored.   *   * @param msg   Object The message to be sent   */  public void sendToAllClients(Object msg)  {    Thread[] clientThreadList = getClientConnections();    for (int i=0; i<clientThreadList.length; i++)    {      try      {        ((ConnectionToClient)clientThreadList[i]).sendToClient(msg);      }      catch (Exception ex) {}    }  }  /**   * Sends a message to every connected client accepted by the filter,   * for example the clients that subscribed to some kind of event.   * Any exception thrown while sending the message to a particular   * client is ignored.   *   * @param msg    Object The message to be sent   * @param filter selects the clients that receive the message.   * @return the number of clients the message was sent to.   */  public int sendToAllClients(Object msg,    java.util.function.Predicate<ConnectionToClient> filter)  {    Thread[] clientThreadList = getClientConnections();    int sent = 0;    for (int i=0; i<clientThreadList.length; i++)    {      ConnectionToClient client = (ConnectionToClient)clientThreadList[i];      try      {        if (filter.test(client))        {          client.sendToClient(msg);          sent++;        }      }      catch (Exception ex) {}    }    return sent;  }// ACCESSING METHODS ------------------------------------------------  /**   * Returns true if the server is ready to accept new clients.   *   * @return true if the server is listening.   */  final public boolean isListening()  {    return (connectionListener != null);  }  /**   * Returns an array containing the existing   * client connections. This can be used by   * concrete subclasses to implement messages that do something with   * each connection (e.g. kill it, send a message to it etc.).   * Remember that after this array is obtained, some clients   * in this migth disconnect. New clients can also connect,   * these later will not appear in the array.   *   * @return an array of <code>Thread</code> containing   * <code>ConnectionToClient</code> instances.   */  synchronized final public Thread[] getClientConnections()  {    Thread[] clientThreadList = new      Thread[clientThreadGroup.activeCount()];    clientThreadGroup.enumerate(clientThreadList);    if (nioTransport == null && detachedClients.isEmpty())      return clientThreadList;    // Clients served by the NIO transport or by factory threads    // are not members of the thread group    ArrayList<Thread> all = new ArrayList<Thread>(Arrays.asList(clientThreadList));    all.addAll(detachedClients);    if (nioTransport != null)      all.addAll(Arrays.asList(nioTransport.getConnections()));    return all.toArray(new Thread[0]);  }  /**   * Counts the number of clients currently connected.   *   * @return the number of clients currently connected.   */  final public int getNumberOfClients()  {    NioServerTransport nio = nioTransport;    return clientThreadGroup.activeCount() + detachedClients.size()      + (nio == null ? 0 : nio.getNumberOfConnections());  }  /**   * Returns the port number.   *   * @return the port number.   */  final public int getPort()  {    return port;  }  /**   * Sets the port number for the next connection.   * The server must be closed and restarted for the port   * change to be in effect.   *   * @param port the port number.   */  final public void setPort(int port)  {    this.port = port;  }  /**   * Sets the timeout time when accepting connections.   * The default is half a second. This means that stopping the   * server may take up to timeout duration to actually stop.   * The server must be stopped and restarted for the timeout   * change to be effective.   *   * @param timeout the timeout time in ms.   */  final public void setTimeout(int timeout)  {    this.timeout = timeout;  }  /**   * Sets the maximum number of waiting connections accepted by the   * operating system. The default is 20.   * The server must be closed and restarted for the backlog   * change to be in effect.   *   * @param backlog the maximum number of connections.   */  final public void setBacklog(int backlog)  {    this.backlog = backlog;  }  /**   * Selects the transport used for the next call to listen.   * With 0 (the default) every client gets its own   * <code>ConnectionToClient</code> thread reading an object stream.   * With a positive value the clients are served by that many   * non-blocking I/O threads and messages are exchanged as   * length-prefixed frames (see <code>NioServerTransport</code>).   * The server must be closed and restarted for the change   * to be in effect.   *   * @param nioThreads the number of I/O threads, or 0.   */  final public void setNioThreads(int nioThreads)  {    this.nioThreads = nioThreads;  }  /**   * Sets the codecs a client of the NIO transport may choose from when   * it opens its connection (see <code>ocsf.codec.CodecHandshake</code>).   * Java serialization is always available, even if not listed.   *   * @param codecs the accepted codecs.   */  final public void setCodecs(ocsf.codec.MessageCodec... codecs)  {    this.codecs = Collections.unmodifiableList(Arrays.asList(codecs));  }  /**   * @return the codecs accepted in a codec handshake.   */  final public List<ocsf.codec.MessageCodec> getCodecs()  {    return codecs;  }  /**   * Sets how often the object stream of each client is reset.   * A reset clears the table of objects the stream already wrote;   * without it every message sent stays referenced (and cannot be   * garbage collected) until the client disconnects.   *   * @param bytes 0 to reset after every message, N &gt; 0 to reset   *        after at least N bytes, or a negative value to never reset.   */  final public void setOutputResetInterval(long bytes)  {    this.outputResetInterval = bytes;  }  /**   * @return the reset policy set with setOutputResetInterval.   */  final public long getOutputResetInterval()  {    return outputResetInterval;  }  /**   * Gives every connection a bounded queue of messages waiting to be   * written, so that a slow client never blocks the thread calling   * sendToClient. Classic connections get a writer thread that drains   * the queue; NIO connections already write from their I/O thread and   * only get the bound. Only connections accepted after the call are   * affected.   *   * @param capacity the maximum number of waiting messages per client,   *        or 0 to write on the sending thread (classic transport) and   *        queue without limit (NIO transport).   * @param policy what to do when the queue of a client is full.   */  final public void setOutboundQueue(int capacity, OverflowPolicy policy)  {    this.outboundCapacity = Math.max(0, capacity);    this.overflowPolicy = policy == null ? OverflowPolicy.DISCONNECT : policy;  }  /**   * @return the outbound queue capacity set with setOutboundQueue.   */  final public int getOutboundCapacity()  {    return outboundCapacity;  }  /**   * @return the overflow policy set with setOutboundQueue.   */  final public OverflowPolicy getOverflowPolicy()  {    return overflowPolicy;  }  /**   * Sets the factory used to create the reader thread of each classic   * connection, for example a virtual thread factory. With null (the   * default) each connection is a platform thread of the client thread   * group. Only connections accepted after the call are affected.   *   * @param factory the thread factory, or null.   */  final public void setConnectionThreadFactory(    java.util.concurrent.ThreadFactory factory)  {    this.connectionThreadFactory = factory;  }  /**   * Starts the reader loop of a classic connection on a thread of the   * connection thread factory. Returns false if no factory is set, in   * which case the connection starts itself as a group thread.   *   * @param client the connection to start.   * @return true if the connection was started by the factory.   */  boolean startDetached(ConnectionToClient client)  {    java.util.concurrent.ThreadFactory factory = connectionThreadFactory;    if (factory == null)      return false;    detachedClients.add(client);    factory.newThread(client).start();    return true;  }  /**   * Creates the thread that drains the outbound queue of a classic   * connection, with the connection thread factory when one is set.   *   * @param task the writer loop.   * @param name the name of the thread.   * @return the thread, not started.   */  Thread newWriterThread(Runnable task, String name)  {    java.util.concurrent.ThreadFactory factory = connectionThreadFactory;    if (factory != null)      return factory.newThread(task);    Thread writer = new Thread(task, name);    writer.setDaemon(true);    return writer;  }  /**   * Called when the reader loop of a connection ends.   *   * @param client the connection.   */  void connectionEnded(ConnectionToClient client)  {    detachedClients.remove(client);  }  /**   * @return true if the server uses the NIO transport.   */  final public boolean isNioTransport()  {    return nioThreads > 0;  }// RUN METHOD -------------------------------------------------------  /**   * Runs the listening thread that allows clients to connect.   * Not to be called.   */  final public void run()  {    // call the hook method to notify that the server is starting    serverStarted();    try    {      // Repeatedly waits for a new client connection, accepts it, and      // starts a new thread to handle data exchange.      NioServerTransport nio = nioTransport;      while(!readyToStop)      {        if (nio != null)        {          // NIO transport: accept and hand the channels to the I/O threads          nio.accept(timeout);          continue;        }        try        {          // Wait here for new connection attempts, or a timeout          Socket clientSocket = serverSocket.accept();          // When a client is accepted, create a thread to handle          // the data exchange, then add it to thread group          synchronized(this)          {            ConnectionToClient c = new ConnectionToClient(              this.clientThreadGroup, clientSocket, this);          }        }        catch (InterruptedIOException exception)        {          // This will be thrown when a timeout occurs.          // The server will continue to listen if not ready to stop.        }      }      // call the hook method to notify that the server has stopped      serverStopped();    }    catch (IOException exception)    {      if (!readyToStop)      {        // Closing the socket must have thrown a SocketException        listeningException(exception);      }      else      {        serverStopped();      }    }    finally    {      readyToStop = true;      connectionListener = null;    }  }// METHODS DESIGNED TO BE OVERRIDDEN BY CONCRETE SUBCLASSES ---------  /**   * Hook method called each time a new client connection is   * accepted. The default implementation does nothing.   * @param client the connection connected to the client.   */  protected void clientConnected(ConnectionToClient client) {}  /**   * Hook method called each time a client disconnects.   * The default implementation does nothing. The method   * may be overridden by subclasses but should remains synchronized.   *   * @param client the connection with the client.   */  synchronized protected void clientDisconnected(    ConnectionToClient client) {}  /**   * Hook method called each time an exception is thrown in a   * ConnectionToClient thread.   * The method may be overridden by subclasses but should remains   * synchronized.   *   * @param client the client that raised the exception.   * @param Throwable the exception thrown.   */  synchronized protected void clientException(    ConnectionToClient client, Throwable exception) {}  /**   * Hook method called when the server stops accepting   * connections because an exception has been raised.   * The default implementation does nothing.   * This method may be overriden by subclasses.   *   * @param exception the exception raised.   */  protected void listeningException(Throwable exception) {}  /**   * Hook method called when the server starts listening for   * connections.  The default implementation does nothing.   * The method may be overridden by subclasses.   */  protected void serverStarted() {}  /**   * Hook method called when the server stops accepting   * connections.  The default implementation   * does nothing. This method may be overriden by subclasses.   */  protected void serverStopped() {}  /**   * Hook method called when the server is clased.   * The default implementation does nothing. This method may be   * overriden by subclasses. When the server is closed while still   * listening, serverStopped() will also be called.   */  protected void serverClosed() {}  /**   * Handles a command sent from one client to the server.   * This MUST be implemented by subclasses, who should respond to   * messages.   * This method is called by a synchronized method so it is also   * implcitly synchronized.   *   * @param msg   the message sent.   * @param client the connection connected to the client that   *  sent the message.   */  protected abstract void handleMessageFromClient(    Object msg, ConnectionToClient client);  /**   * Hook method called for each message sent while the outbound queue   * policy is COALESCE. Two messages with equal keys carry the same   * kind of update, so when the queue of a client is full the newer one   * may replace the older one still waiting. The default implementation   * returns null: no message is ever replaced.   *   * @param msg the message being sent.   * @return the coalescing key of the message, or null.   */  protected Object getCoalesceKey(Object msg)  {    return null;  }// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Receives a command sent from the client to the server.   * Called by the run method of <code>ConnectionToClient</code>   * instances that are watching for messages coming from the server   * This method is synchronized to ensure that whatever effects it has   * do not conflict with work being done by other threads. The method   * simply calls the <code>handleMessageFromClient</code> slot method.   *   * @param msg   the message sent.   * @param client the connection connected to the client that   *  sent the message.   */  final synchronized void receiveMessageFromClient(    Object msg, ConnectionToClient client)  {    this.handleMessageFromClient(msg, client);  }}// End of AbstractServer Class
\ No newline at end of file
@@ -1 +1 @@
-// This file contains material supporting section 3.8 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.compackage ocsf.server;import java.io.*;import java.net.*;import java.util.*;/*** An instance of this class is created by the server when a client* connects. It accepts messages coming from the client and is* responsible for sending data to the client since the socket is* private to this class. The AbstractServer contains a set of* instances of this class and is responsible for adding and deleting* them.<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr Robert Lagani&egrave;re* @author Dr Timothy C. Lethbridge* @author Fran&ccedil;ois B&eacute;langer* @author Paul Holden* @version February 2001 (2.12)*/public class ConnectionToClient extends Thread{// INSTANCE VARIABLES ***********************************************  /**  * A reference to the Server that created this instance.  */  private AbstractServer server;  /**  * Sockets are used in the operating system as channels  * of communication between two processes.  * @see java.net.Socket  */  private Socket clientSocket;  /**  * Stream used to read from the client.  */  private ObjectInputStream input;  /**  * Stream used to write to the client.  */  private ObjectOutputStream output;  /**  * Indicates if the thread is ready to stop. Set to true when closing  * of the connection is initiated.  */  private boolean readyToStop;  /**   * Map to save information about the client such as its login ID.   * The initial size of the map is small since it is not expected   * that concrete servers will want to store many different types of   * information about each client. Used by the setInfo and getInfo   * methods.   */  private HashMap savedInfo = new HashMap(10);// CONSTRUCTORS *****************************************************  /**   * Constructs a new connection to a client.   *   * @param group the thread group that contains the connections.   * @param clientSocket contains the client's socket.   * @param server a reference to the server that created   *        this instance   * @exception IOException if an I/O error occur when creating   *        the connection.   */  ConnectionToClient(ThreadGroup group, Socket clientSocket,    AbstractServer server) throws IOException  {    super(group,(Runnable)null);    // Initialize variables    this.clientSocket = clientSocket;    this.server = server;    clientSocket.setSoTimeout(0); // make sure timeout is infinite    //Initialize the objects streams    try    {      input = new ObjectInputStream(clientSocket.getInputStream());      output = new ObjectOutputStream(clientSocket.getOutputStream());    }    catch (IOException ex)    {      try      {        closeAll();      }      catch (Exception exc) { }      throw ex;  // Rethrow the exception.    }    readyToStop = false;    start(); // Start the thread waits for data from the socket  }// INSTANCE METHODS *************************************************  /**   * Sends an object to the client.   *   * @param msg the message to be sent.   * @exception IOException if an I/O error occur when sending the   *    message.   */  final public void sendToClient(Object msg) throws IOException  {    if (clientSocket == null || output == null)      throw new SocketException("socket does not exist");    output.writeObject(msg);  }  /**   * Closes the client.   * If the connection is already closed, this   * call has no effect.   *   * @exception IOException if an error occurs when closing the socket.   */  final public void close() throws IOException  {    readyToStop = true; // Set the flag that tells the thread to stop    try    {      closeAll();    }    finally    {      server.clientDisconnected(this);    }  }// ACCESSING METHODS ------------------------------------------------  /**   * Returns the address of the client.   *   * @return the client's Internet address.   */  final public InetAddress getInetAddress()  {    return clientSocket == null ? null : clientSocket.getInetAddress();  }  /**   * Returns a string representation of the client.   *   * @return the client's description.   */  public String toString()  {    return clientSocket == null ? null :      clientSocket.getInetAddress().getHostName()        +" (" + clientSocket.getInetAddress().getHostAddress() + ")";  }  /**   * Saves arbitrary information about this client. Designed to be   * used by concrete subclasses of AbstractServer. Based on a hash map.   *   * @param infoType   identifies the type of information   * @param info       the information itself.   */  public void setInfo(String infoType, Object info)  {    savedInfo.put(infoType, info);  }  /**   * Returns information about the client saved using setInfo.   * Based on a hash map.   *   * @param infoType   identifies the type of information   */  public Object getInfo(String infoType)  {    return savedInfo.get(infoType);  }// RUN METHOD -------------------------------------------------------  /**   * Constantly reads the client's input stream.   * Sends all objects that are read to the server.   * Not to be called.   */  final public void run()  {    server.clientConnected(this);    // This loop reads the input stream and responds to messages    // from clients    try    {      // The message from the client      Object msg;      while (!readyToStop)      {        // This block waits until it reads a message from the client        // and then sends it for handling by the server        msg = input.readObject();        server.receiveMessageFromClient(msg, this);      }    }    catch (Exception exception)    {      if (!readyToStop)      {        try        {          closeAll();        }        catch (Exception ex) { }        server.clientException(this, exception);      }    }  }// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Closes all connection to the server.   *   * @exception IOException if an I/O error occur when closing the   *     connection.   */  private void closeAll() throws IOException  {    try    {      // Close the socket      if (clientSocket != null)        clientSocket.close();      // Close the output stream      if (output != null)        output.close();      // Close the input stream      if (input != null)        input.close();    }    finally    {      // Set the streams and the sockets to NULL no matter what      // Doing so allows, but does not require, any finalizers      // of these objects to reclaim system resources if and      // when they are garbage collected.      output = null;      input = null;      clientSocket = null;    }  }  /**   * This method is called by garbage collection.   */  protected void finalize()  {    try    {      closeAll();    }    catch(IOException e) {}  }}// End of ConnectionToClient class
\ No newline at end of file
+// This file contains material supporting section 3.8 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.compackage ocsf.server;import java.io.*;import java.net.*;import java.util.*;/*** An instance of this class is created by the server when a client* connects. It accepts messages coming from the client and is* responsible for sending data to the client since the socket is* private to this class. The AbstractServer contains a set of* instances of this class and is responsible for adding and deleting* them.<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr Robert Lagani&egrave;re* @author Dr Timothy C. Lethbridge* @author Fran&ccedil;ois B&eacute;langer* @author Paul Holden* @version February 2001 (2.12)*/public class ConnectionToClient extends Thread{// INSTANCE VARIABLES ***********************************************  /**  * A reference to the Server that created this instance.  */  private AbstractServer server;  /**  * Sockets are used in the operating system as channels  * of communication between two processes.  * @see java.net.Socket  */  private Socket clientSocket;  /**  * Stream used to read from the client.  */  private ObjectInputStream input;  /**  * Stream used to write to the client.  */  private ObjectOutputStream output;  /**  * Indicates if the thread is ready to stop. Set to true when closing  * of the connection is initiated.  */  private boolean readyToStop;  /**   * Map to save information about the client such as its login ID.   * The initial size of the map is small since it is not expected   * that concrete servers will want to store many different types of   * information about each client. Used by the setInfo and getInfo   * methods.   */  private HashMap savedInfo = new HashMap(10);  /**   * The non-blocking channel used when the server runs with the NIO   * transport. Null for classic (thread per connection) clients.   */  private NioServerTransport.Channel nioChannel;  /**   * Number of bytes written to the client so far.   */  private volatile long bytesWritten = 0;  /**   * Number of messages sent to the client so far.   */  private volatile long messagesSent = 0;  /**   * Value of bytesWritten at the last reset of the output stream.   */  private long bytesAtLastReset = 0;  /**   * Counts the bytes that reach the socket.   */  private CountingOutputStream counter;  /**   * Lock that keeps messages sent by different threads from   * interleaving on the output stream.   */  private final Object sendLock = new Object();  /**   * Messages waiting for the writer thread. Null when the server has   * no outbound queue capacity: sendToClient then writes itself.   */  private OutboundQueue outbound;  /**   * The outbound queue of either transport, kept for the metrics after   * the connection closed. Null when the connection has no queue.   */  private OutboundQueue queue;  /**   * The thread draining the outbound queue, or null.   */  private Thread writer;  /**   * True while the writer thread is writing a message it took from   * the queue.   */  private boolean writing = false;  /**   * Set when the connection closes; the writer thread then stops.   */  private boolean outboundClosed = false;  /**   * Number of messages whose write completed, for the latency average.   */  private long writesTimed = 0;  /**   * Total and longest time between sendToClient and the message being   * handed to the socket, in ns.   */  private long totalWriteNanos = 0;  private long maxWriteNanos = 0;// CONSTRUCTORS *****************************************************  /**   * Constructs a new connection to a client.   *   * @param group the thread group that contains the connections.   * @param clientSocket contains the client's socket.   * @param server a reference to the server that created   *        this instance   * @exception IOException if an I/O error occur when creating   *        the connection.   */  ConnectionToClient(ThreadGroup group, Socket clientSocket,    AbstractServer server) throws IOException  {    super(group,(Runnable)null);    // Initialize variables    this.clientSocket = clientSocket;    this.server = server;    clientSocket.setSoTimeout(0); // make sure timeout is infinite    //Initialize the objects streams    try    {      input = new ObjectInputStream(clientSocket.getInputStream());      counter = new CountingOutputStream(clientSocket.getOutputStream());      output = new ObjectOutputStream(counter);      if (server.getOutboundCapacity() > 0)      {        outbound = new OutboundQueue(          server.getOutboundCapacity(), server.getOverflowPolicy());        queue = outbound;        writer = server.newWriterThread(this::drainOutbound,          "ocsf-writer " + clientSocket.getInetAddress().getHostAddress());        writer.start();      }    }    catch (IOException ex)    {      try      {        closeAll();      }      catch (Exception exc) { }      throw ex;  // Rethrow the exception.    }    readyToStop = false;    // Start the thread waits for data from the socket, either this    // thread or one created by the server's connection thread factory    if (!server.startDetached(this))      start();  }  /**   * Constructs a connection served by the NIO transport.   * No thread is started: reading and writing are done by the   * transport's I/O threads.   *   * @param nioChannel the channel of the client.   * @param server a reference to the server that created   *        this instance   */  ConnectionToClient(NioServerTransport.Channel nioChannel,    AbstractServer server)  {    super("NIO " + nioChannel);    this.nioChannel = nioChannel;    this.server = server;    this.queue = nioChannel.getQueue();    readyToStop = false;  }// INSTANCE METHODS *************************************************  /**   * Sends an object to the client.   *   * @param msg the message to be sent.   * @exception IOException if an I/O error occur when sending the   *    message.   */  final public void sendToClient(Object msg) throws IOException  {    Object key = server.getOverflowPolicy() == OverflowPolicy.COALESCE      ? server.getCoalesceKey(msg) : null;    if (nioChannel != null)    {      // Every NIO frame is serialized with a fresh stream, so there is      // no handle table to reset      int size = nioChannel.send(msg, key);      synchronized (sendLock)      {        bytesWritten += size;        messagesSent++;      }      return;    }    if (outbound != null)    {      boolean full;      synchronized (outbound)      {        if (outboundClosed)          throw new SocketException("socket does not exist");        full = !outbound.offer(msg, key);        outbound.notifyAll();      }      if (full)      {        // The client does not read fast enough: drop it. The reader        // thread reports the closed socket through clientException.        String name = toString();        try        {          closeAll();        }        catch (IOException ex) { }        throw new IOException("outbound queue of " + name + " is full");      }      return;    }    writeToStream(msg, System.nanoTime());  }  /**   * Writes one message to the object stream of a classic connection.   *   * @param msg the message to be sent.   * @param queuedAt System.nanoTime() when sendToClient was called.   * @exception IOException if an I/O error occur when writing.   */  private void writeToStream(Object msg, long queuedAt) throws IOException  {    synchronized (sendLock)    {      if (clientSocket == null || output == null)        throw new SocketException("socket does not exist");      output.writeObject(msg);      // The stream remembers every object it wrote so it can send      // back-references later. Without a reset, every response stays      // reachable for the life of the connection.      long interval = server.getOutputResetInterval();      if (interval >= 0        && counter.count - bytesAtLastReset >= interval)      {        output.reset();        bytesAtLastReset = counter.count;      }      output.flush();      bytesWritten = counter.count;      messagesSent++;      recordWrite(System.nanoTime() - queuedAt);    }  }  /**   * Closes the client.   * If the connection is already closed, this   * call has no effect.   *   * @exception IOException if an error occurs when closing the socket.   */  final public void close() throws IOException  {    readyToStop = true; // Set the flag that tells the thread to stop    // Let the writer send what is already queued, such as a last reply    if (Thread.currentThread() != writer)      awaitOutboundDrained(1000);    try    {      closeAll();    }    finally    {      server.clientDisconnected(this);    }  }// ACCESSING METHODS ------------------------------------------------  /**   * Returns the address of the client.   *   * @return the client's Internet address.   */  final public InetAddress getInetAddress()  {    if (nioChannel != null)      return nioChannel.getInetAddress();    return clientSocket == null ? null : clientSocket.getInetAddress();  }  /**   * Returns a string representation of the client.   *   * @return the client's description.   */  public String toString()  {    if (nioChannel != null)      return nioChannel.toString();    return clientSocket == null ? null :      clientSocket.getInetAddress().getHostName()        +" (" + clientSocket.getInetAddress().getHostAddress() + ")";  }  /**   * Saves arbitrary information about this client. Designed to be   * used by concrete subclasses of AbstractServer. Based on a hash map.   *   * @param infoType   identifies the type of information   * @param info       the information itself.   */  public void setInfo(String infoType, Object info)  {    savedInfo.put(infoType, info);  }  /**   * Returns information about the client saved using setInfo.   * Based on a hash map.   *   * @param infoType   identifies the type of information   */  public Object getInfo(String infoType)  {    return savedInfo.get(infoType);  }  /**   * Returns the number of bytes sent to the client so far.   *   * @return the number of bytes written.   */  final public long getBytesWritten()  {    return bytesWritten;  }  /**   * Returns the number of messages sent to the client so far.   *   * @return the number of messages sent.   */  final public long getMessagesSent()  {    return messagesSent;  }  /**   * Returns the number of messages waiting to be written to the client.   *   * @return the current outbound queue depth.   */  final public int getOutboundQueueDepth()  {    if (queue == null)      return 0;    synchronized (queue)    {      return queue.size();    }  }  /**   * Waits until at most the given number of messages wait to be   * written to the client. The queue wakes the caller every time a   * message leaves it, so no polling is needed. A closed connection   * has an empty queue.   *   * @param depth the queue depth to wait for.   * @param timeout the maximum wait time in ms.   * @return true if the depth was reached, false on timeout.   * @exception InterruptedException if the thread is interrupted.   */  final public boolean awaitOutboundQueueDepth(int depth, long timeout)    throws InterruptedException  {    if (queue == null)      return true;    long deadline = System.currentTimeMillis() + timeout;    synchronized (queue)    {      long left;      while (queue.size() > depth)      {        left = deadline - System.currentTimeMillis();        if (left <= 0)          return false;        queue.wait(left);      }      return true;    }  }  /**   * Returns the largest number of messages that waited at the same   * time to be written to the client.   *   * @return the maximum outbound queue depth.   */  final public int getMaxOutboundQueueDepth()  {    if (queue == null)      return 0;    synchronized (queue)    {      return queue.getMaxDepth();    }  }  /**   * Returns the number of messages that replaced a message still   * waiting in the outbound queue (COALESCE policy).   *   * @return the number of coalesced messages.   */  final public long getCoalescedCount()  {    if (queue == null)      return 0;    synchronized (queue)    {      return queue.getCoalesced();    }  }  /**   * Returns the average time between sendToClient and the message   * being handed to the socket.   *   * @return the average write latency in microseconds.   */  final public long getAverageWriteLatencyMicros()  {    synchronized (sendLock)    {      return writesTimed == 0 ? 0 : totalWriteNanos / writesTimed / 1000;    }  }  /**   * Returns the longest time between sendToClient and the message   * being handed to the socket.   *   * @return the maximum write latency in microseconds.   */  final public long getMaxWriteLatencyMicros()  {    synchronized (sendLock)    {      return maxWriteNanos / 1000;    }  }// RUN METHOD -------------------------------------------------------  /**   * Constantly reads the client's input stream.   * Sends all objects that are read to the server.   * Not to be called.   */  final public void run()  {    server.clientConnected(this);    // This loop reads the input stream and responds to messages    // from clients    try    {      // The message from the client      Object msg;      while (!readyToStop)      {        // This block waits until it reads a message from the client        // and then sends it for handling by the server        msg = input.readObject();        server.receiveMessageFromClient(msg, this);      }    }    catch (Exception exception)    {      if (!readyToStop)      {        try        {          closeAll();        }        catch (Exception ex) { }        server.clientException(this, exception);      }    }    finally    {      server.connectionEnded(this);    }  }// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Loop of the writer thread: writes queued messages, oldest first,   * until the connection closes.   */  private void drainOutbound()  {    try    {      while (true)      {        OutboundQueue.Entry next;        synchronized (outbound)        {          writing = false;          outbound.notifyAll();          while (outbound.isEmpty() && !outboundClosed)            outbound.wait();          if (outboundClosed)            return;          next = outbound.poll();          writing = true;        }        writeToStream(next.payload, next.queuedAt);      }    }    catch (InterruptedException ex) { }    catch (IOException ex)    {      // The reader thread notices the closed socket and reports it      try      {        closeAll();      }      catch (IOException exc) { }    }  }  /**   * Waits until the writer thread sent every queued message, the   * connection closed or the timeout expired.   *   * @param timeout the maximum wait time in ms.   */  private void awaitOutboundDrained(long timeout)  {    if (outbound == null)      return;    long deadline = System.currentTimeMillis() + timeout;    synchronized (outbound)    {      try      {        long left;        while ((writing || !outbound.isEmpty()) && !outboundClosed          && (left = deadline - System.currentTimeMillis()) > 0)          outbound.wait(left);      }      catch (InterruptedException ex)      {        Thread.currentThread().interrupt();      }    }  }  /**   * Records the latency of one completed write.   *   * @param nanos time between sendToClient and the end of the write.   */  void recordWrite(long nanos)  {    synchronized (sendLock)    {      writesTimed++;      totalWriteNanos += nanos;      maxWriteNanos = Math.max(maxWriteNanos, nanos);    }  }  /**   * Closes all connection to the server.   *   * @exception IOException if an I/O error occur when closing the   *     connection.   */  private void closeAll() throws IOException  {    // Stop the writer thread and drop what it did not send    if (outbound != null)    {      synchronized (outbound)      {        outboundClosed = true;        outbound.clear();        outbound.notifyAll();      }    }    try    {      // Close the NIO channel      if (nioChannel != null)        nioChannel.close();      // Close the socket      if (clientSocket != null)        clientSocket.close();      // Close the output stream      if (output != null)        output.close();      // Close the input stream      if (input != null)        input.close();    }    finally    {      // Set the streams and the sockets to NULL no matter what      // Doing so allows, but does not require, any finalizers      // of these objects to reclaim system resources if and      // when they are garbage collected.      output = null;      input = null;      clientSocket = null;      nioChannel = null;    }  }  /**   * Called by the NIO transport when the channel of this client   * failed or was closed by the client. Mirrors the end of the   * run method of classic connections.   *   * @param exception the reason the channel was lost.   */  void nioChannelLost(Exception exception)  {    if (!readyToStop)    {      try      {        closeAll();      }      catch (Exception ex) { }      server.clientException(this, exception);    }  }  /**   * Output stream that counts the bytes written through it.   */  private static class CountingOutputStream extends FilterOutputStream  {    long count = 0;    CountingOutputStream(OutputStream out)    {      super(out);    }    public void write(int b) throws IOException    {      out.write(b);      count++;    }    public void write(byte[] b, int off, int len) throws IOException    {      out.write(b, off, len);      count += len;    }  }  /**   * This method is called by garbage collection.   */  protected void finalize()  {    try    {      closeAll();    }    catch(IOException e) {}  }}// End of ConnectionToClient class
\ No newline at end of file
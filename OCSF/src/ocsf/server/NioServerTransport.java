@@ -0,0 +1 @@
+package ocsf.server;import java.io.*;import java.net.*;import java.nio.ByteBuffer;import java.nio.channels.*;import java.util.*;import java.util.concurrent.*;import ocsf.codec.*;/*** Non-blocking (NIO) transport used by <code>AbstractServer</code> when* it is configured with <code>setNioThreads(n)</code> and n &gt; 0.<p>** Instead of one <code>ConnectionToClient</code> thread per client, all* clients are served by a small fixed number of I/O threads, each one* running its own <code>Selector</code>. The listening thread of the* server only accepts new channels and hands them to the I/O threads in* round-robin order.<p>** Wire format: every message is one frame made of a 4 byte big-endian* length followed by the message encoded with the codec of the channel* (Java serialization unless the client negotiated another codec, see* <code>CodecHandshake</code>). The client must therefore use the framed* mode of <code>AbstractClient</code>.<p>** Messages read by an I/O thread are passed to* <code>receiveMessageFromClient</code> on that same thread, so slow* handlers should hand their work to another thread.** @see ocsf.server.AbstractServer#setNioThreads(int)*/class NioServerTransport{// CONSTANTS *********************************************************  /**   * Largest frame accepted from a client. A bigger length prefix   * means a broken or hostile peer and the channel is closed.   */  static final int MAX_FRAME_SIZE = CodecHandshake.MAX_FRAME_SIZE;// INSTANCE VARIABLES ***********************************************  /**   * The server whose hook methods are called.   */  private final AbstractServer server;  /**   * The listening channel.   */  private ServerSocketChannel serverChannel;  /**   * Selector used by the listening thread to wait for new clients.   */  private Selector acceptSelector;  /**   * The I/O threads.   */  private final IoLoop[] loops;  /**   * Index of the I/O thread that receives the next client.   */  private int nextLoop = 0;  /**   * The connections currently open on this transport.   */  private final Set<ConnectionToClient> connections =    ConcurrentHashMap.newKeySet();// CONSTRUCTORS *****************************************************  /**   * Constructs the transport. Nothing is opened until bind is called.   *   * @param server the server that owns this transport.   * @param ioThreads number of I/O threads.   */  NioServerTransport(AbstractServer server, int ioThreads)  {    this.server = server;    this.loops = new IoLoop[Math.max(1, ioThreads)];  }// INSTANCE METHODS *************************************************  /**   * Opens the listening channel and starts the I/O threads.   *   * @param port the port number on which to listen.   * @param backlog the maximum number of waiting connections.   * @exception IOException if the channel cannot be opened.   */  void bind(int port, int backlog) throws IOException  {    serverChannel = ServerSocketChannel.open();    serverChannel.bind(new InetSocketAddress(port), backlog);    serverChannel.configureBlocking(false);    acceptSelector = Selector.open();    serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);    for (int i = 0; i < loops.length; i++)    {      loops[i] = new IoLoop("ocsf-nio-" + (i + 1));    }  }  /**   * Waits up to <code>timeout</code> ms for new clients and registers   * the ones that arrived. Called repeatedly by the listening thread.   *   * @param timeout the maximum wait time in ms.   * @exception IOException if the listening channel failed or was closed.   */  void accept(int timeout) throws IOException  {    try    {      acceptSelector.select(timeout);      acceptSelector.selectedKeys().clear();      SocketChannel socket;      while ((socket = serverChannel.accept()) != null)      {        register(socket);      }    }    catch (ClosedSelectorException ex)    {      throw new SocketException("server channel closed");    }  }  /**   * Wakes the listening thread so that it notices a stop request   * without waiting for the accept timeout.   */  void wakeup()  {    Selector s = acceptSelector;    if (s != null)      s.wakeup();  }  /**   * Returns the connections currently open on this transport.   *   * @return an array of <code>ConnectionToClient</code>.   */  Thread[] getConnections()  {    return connections.toArray(new Thread[0]);  }  /**   * @return the number of connections currently open.   */  int getNumberOfConnections()  {    return connections.size();  }  /**   * Closes the listening channel and stops the I/O threads.   * Open client channels must be closed before calling this method.   *   * @exception IOException if an error occurs when closing the channel.   */  void close() throws IOException  {    try    {      if (acceptSelector != null)        acceptSelector.close();      if (serverChannel != null)        serverChannel.close();    }    finally    {      for (int i = 0; i < loops.length; i++)      {        if (loops[i] != null)          loops[i].shutdown();      }      acceptSelector = null;      serverChannel = null;    }  }  /**   * Creates the connection object of a newly accepted channel and   * gives it to the next I/O thread.   *   * @param socket the accepted channel.   */  private void register(SocketChannel socket)  {    try    {      socket.configureBlocking(false);      socket.socket().setTcpNoDelay(true);      IoLoop loop = loops[nextLoop];      nextLoop = (nextLoop + 1) % loops.length;      Channel channel = new Channel(socket, loop);      ConnectionToClient client = new ConnectionToClient(channel, server);      channel.client = client;      connections.add(client);      // Same order as classic connections: the hook runs before      // any message of the client is handled.      server.clientConnected(client);      loop.register(channel);    }    catch (IOException ex)    {      try      {        socket.close();      }      catch (IOException exc) { }    }  }// INNER CLASSES ----------------------------------------------------  /**   * One I/O thread with its selector. Registrations and interest   * changes requested by other threads are queued and applied by the   * I/O thread itself.   */  private final class IoLoop implements Runnable  {    private final Selector selector;    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();    private final Thread thread;    private volatile boolean running = true;    IoLoop(String name) throws IOException    {      selector = Selector.open();      thread = new Thread(this, name);      thread.setDaemon(true);      thread.start();    }    void register(Channel channel)    {      execute(() ->      {        try        {          channel.key = channel.socket.register(            selector, SelectionKey.OP_READ, channel);          channel.updateInterest();        }        catch (IOException ex)        {          channel.lost(ex);        }      });    }    void execute(Runnable task)    {      pending.add(task);      selector.wakeup();    }    void shutdown()    {      running = false;      selector.wakeup();    }    public void run()    {      try      {        while (running)        {          selector.select();          Runnable task;          while ((task = pending.poll()) != null)            task.run();          Iterator<SelectionKey> it = selector.selectedKeys().iterator();          while (it.hasNext())          {            SelectionKey key = it.next();            it.remove();            Channel channel = (Channel)key.attachment();            try            {              if (key.isValid() && key.isWritable())                channel.flush();              if (key.isValid() && key.isReadable())                channel.read();            }            catch (CancelledKeyException ex)            {              // The channel was closed by another thread            }            catch (Exception ex)            {              channel.lost(ex);            }          }        }      }      catch (IOException ex)      {        ex.printStackTrace();      }      finally      {        try        {          selector.close();        }        catch (IOException ex) { }      }    }  }  /**   * The channel of one client: frame decoding on the read side and a   * queue of encoded frames on the write side.   */  final class Channel  {    private final SocketChannel socket;    private final IoLoop loop;    private final InetAddress address;    private SelectionKey key;    private ConnectionToClient client;    /** Length prefix of the frame being read. */    private final ByteBuffer header = ByteBuffer.allocate(4);    /** Body of the frame being read, null while reading the header. */    private ByteBuffer body;    /** Frames waiting to be written, oldest first. */    private final OutboundQueue writeQueue = new OutboundQueue(      server.getOutboundCapacity(), server.getOverflowPolicy());    /** Frame being written, no longer in writeQueue; null when idle. */    private OutboundQueue.Entry current;    private volatile boolean closed = false;    /** Codec used for this channel; may change once, during the handshake. */    private volatile MessageCodec codec = new SerializationCodec();    /** True once the first frame (possibly a codec offer) was read. */    private boolean firstFrameRead = false;    Channel(SocketChannel socket, IoLoop loop)    {      this.socket = socket;      this.loop = loop;      this.address = socket.socket().getInetAddress();    }    InetAddress getInetAddress()    {      return address;    }    OutboundQueue getQueue()    {      return writeQueue;    }    /**     * Encodes a message and queues it for writing.     *     * @param msg the message to send.     * @param key the coalescing key of the message, or null.     * @return the size of the frame in bytes.     * @exception IOException if the channel is closed or its queue     *            is full.     */    int send(Object msg, Object key) throws IOException    {      if (closed)        throw new SocketException("socket does not exist");      return sendFrame(codec.encode(msg), key);    }    /**     * Queues one frame for writing. The frame is written right away     * when possible; what does not fit in the socket buffer is     * finished by the I/O thread. When the queue is full and the frame     * cannot be coalesced, the channel is closed.     *     * @param payload the frame payload.     * @param key the coalescing key of the frame, or null.     * @return the size of the frame in bytes.     * @exception IOException if writing fails or the queue is full.     */    private int sendFrame(byte[] payload, Object key) throws IOException    {      ByteBuffer frame = ByteBuffer.allocate(4 + payload.length);      frame.putInt(payload.length);      frame.put(payload);      frame.flip();      boolean full;      synchronized (writeQueue)      {        full = !writeQueue.offer(frame, key);        if (!full && current == null && !writeAvailable())          loop.execute(this::updateInterest);      }      if (full)      {        IOException overflow =          new IOException("outbound queue of " + this + " is full");        lost(overflow);        throw overflow;      }      return 4 + payload.length;    }    /**     * Writes queued frames until the queue is empty or the socket     * buffer is full. Runs on the I/O thread.     */    void flush() throws IOException    {      synchronized (writeQueue)      {        if (!writeAvailable())          return;      }      updateInterest();    }    /**     * Writes the current frame, then the queued ones, until everything     * was written or the socket buffer is full. The caller holds the     * writeQueue lock.     *     * @return true if no frame is left to write.     * @exception IOException if writing fails.     */    private boolean writeAvailable() throws IOException    {      while (true)      {        if (current == null)        {          current = writeQueue.poll();          if (current == null)            return true;        }        ByteBuffer frame = (ByteBuffer)current.payload;        socket.write(frame);        if (frame.hasRemaining())          return false;        if (client != null)          client.recordWrite(System.nanoTime() - current.queuedAt);        current = null;      }    }    /**     * Asks for write events only while frames are waiting.     * Runs on the I/O thread.     */    void updateInterest()    {      if (key == null || !key.isValid())        return;      boolean writing;      synchronized (writeQueue)      {        writing = current != null || !writeQueue.isEmpty();      }      key.interestOps(writing        ? SelectionKey.OP_READ | SelectionKey.OP_WRITE        : SelectionKey.OP_READ);    }    /**     * Reads what is available and hands every complete frame to the     * server. Runs on the I/O thread.     */    void read() throws Exception    {      while (!closed)      {        if (body == null)        {          if (socket.read(header) < 0)            throw new EOFException();          if (header.hasRemaining())            return;          header.flip();          int length = header.getInt();          header.clear();          if (length <= 0 || length > MAX_FRAME_SIZE)            throw new StreamCorruptedException("invalid frame length " + length);          body = ByteBuffer.allocate(length);        }        if (socket.read(body) < 0)          throw new EOFException();        if (body.hasRemaining())          return;        byte[] data = body.array();        body = null;        if (!firstFrameRead)        {          firstFrameRead = true;          String[] offered = CodecHandshake.parseOffer(data);          if (offered != null)          {            MessageCodec chosen = CodecHandshake.choose(offered, server.getCodecs());            sendFrame(CodecHandshake.answer(chosen), null);            codec = chosen;            continue;          }        }        Object msg = codec.decode(data);        server.receiveMessageFromClient(msg, client);      }    }    /**     * Called when reading or writing failed.     *     * @param exception the failure.     */    void lost(Exception exception)    {      if (client != null)        client.nioChannelLost(exception);      else        close();    }    /**     * Closes the channel. May be called from any thread.     */    void close()    {      if (closed)        return;      closed = true;      // Nothing more will be written; wakes threads waiting for room      synchronized (writeQueue)      {        writeQueue.clear();      }      connections.remove(client);      if (key != null)        key.cancel();      try      {        socket.close();      }      catch (IOException ex) { }    }    public String toString()    {      return address == null ? "?" :        address.getHostName() + " (" + address.getHostAddress() + ")";    }  }}// End of NioServerTransport class
\ No newline at end of file
@@ -0,0 +1 @@
+package ocsf.server;import java.util.*;/*** Bounded queue of the messages waiting to be written to one client,* shared by the classic and NIO transports. It is not thread safe:* callers synchronize on the queue. Threads waiting on the queue are* woken whenever it shrinks.** @see ocsf.server.AbstractServer#setOutboundQueue(int, OverflowPolicy)*/final class OutboundQueue{// INSTANCE VARIABLES ***********************************************  /**   * The waiting messages, oldest first. A message being written is no   * longer in the queue, so it is never replaced.   */  private final ArrayDeque<Entry> entries = new ArrayDeque<>();  /**   * Maximum number of waiting messages, 0 for no limit.   */  private final int capacity;  /**   * What to do when the queue is full.   */  private final OverflowPolicy policy;  /**   * Largest number of messages that waited at the same time.   */  private int maxDepth = 0;  /**   * Number of messages that replaced a waiting message.   */  private long coalesced = 0;// CONSTRUCTORS *****************************************************  /**   * @param capacity the maximum number of waiting messages, 0 for none.   * @param policy what to do when the queue is full.   */  OutboundQueue(int capacity, OverflowPolicy policy)  {    this.capacity = Math.max(0, capacity);    this.policy = policy == null ? OverflowPolicy.DISCONNECT : policy;  }// INSTANCE METHODS *************************************************  /**   * Adds a message at the end of the queue. When the queue is full and   * the policy is COALESCE, the message replaces the waiting message   * with the same key instead.   *   * @param payload the message, or its encoded form.   * @param key the coalescing key of the message, or null.   * @return false if the queue is full and the message could not be   *         coalesced; the connection should then be closed.   */  boolean offer(Object payload, Object key)  {    long now = System.nanoTime();    if (capacity > 0 && entries.size() >= capacity)    {      if (policy != OverflowPolicy.COALESCE || key == null)        return false;      for (Entry entry : entries)      {        if (key.equals(entry.key))        {          // The queued time is kept: latency counts from the first          // message the replacement stands for          entry.payload = payload;          coalesced++;          return true;        }      }      return false;    }    entries.add(new Entry(payload, key, now));    maxDepth = Math.max(maxDepth, entries.size());    return true;  }  /**   * @return the oldest waiting message, removed, or null.   */  Entry poll()  {    Entry next = entries.poll();    if (next != null)      notifyAll();    return next;  }  /**   * Discards all waiting messages.   */  void clear()  {    entries.clear();    notifyAll();  }  /**   * @return true if no message is waiting.   */  boolean isEmpty()  {    return entries.isEmpty();  }  /**   * @return the number of waiting messages.   */  int size()  {    return entries.size();  }  /**   * @return the largest number of messages that waited at the same time.   */  int getMaxDepth()  {    return maxDepth;  }  /**   * @return the number of messages that replaced a waiting message.   */  long getCoalesced()  {    return coalesced;  }// INNER CLASSES ----------------------------------------------------  /**   * One waiting message.   */  static final class Entry  {    Object payload;    final Object key;    final long queuedAt;    Entry(Object payload, Object key, long queuedAt)    {      this.payload = payload;      this.key = key;      this.queuedAt = queuedAt;    }  }}// End of OutboundQueue class
\ No newline at end of file
@@ -0,0 +1 @@
+package ocsf.server;/*** What a connection does when its outbound queue is full.** @see ocsf.server.AbstractServer#setOutboundQueue(int, OverflowPolicy)*/public enum OverflowPolicy{  /**   * The connection is closed: a client that cannot keep up with what   * is sent to it is dropped.   */  DISCONNECT,  /**   * A message whose coalescing key (see   * <code>AbstractServer.getCoalesceKey</code>) equals the key of a   * message still waiting in the queue replaces that message. When no   * such message is waiting the connection is closed as with DISCONNECT.   */  COALESCE}// End of OverflowPolicy enum
\ No newline at end of file